@@ -0,0 +1,268 @@
+package org.peakaboo.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.peakaboo.calibration.CalibrationProfile;
+import org.peakaboo.common.PeakabooLog;
+import org.peakaboo.controller.plotter.PlotController;
+import org.peakaboo.controller.plotter.SavedSession;
+import org.peakaboo.dataset.DatasetReadResult;
+import org.peakaboo.dataset.DatasetReadResult.ReadStatus;
+import org.peakaboo.dataset.StandardDataSet;
+import org.peakaboo.datasink.model.export.CSVWriter;
+import org.peakaboo.datasource.model.datafile.DataFile;
+import org.peakaboo.datasource.model.datafile.PathDataFile;
+import org.peakaboo.datasource.plugin.DataSourceLookup;
+import org.peakaboo.datasource.plugin.DataSourcePlugin;
+import org.peakaboo.datasource.plugin.DataSourcePluginManager;
+import org.peakaboo.framework.autodialog.model.Group;
+import org.peakaboo.framework.cyclops.Coord;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.plural.streams.StreamExecutor;
+import org.peakaboo.mapping.rawmap.RawMap;
+import org.peakaboo.mapping.rawmap.RawMapSet;
+
+/**
+ * Generates and writes the maps for a single dataset without any user
+ * interaction. The dataset is read with the {@link DataSourcePlugin} named in
+ * the session if there is one, or whichever plugin claims the files otherwise.
+ * The session's filters, fittings and calibration are then applied, and each
+ * map is written as a CSV file into a directory named after the dataset.
+ *
+ * @author NAS
+ *
+ */
+class BatchJob {
+
+	private Path dataset;
+	private String sessionYaml;
+	private File outputDir;
+	private File configDir;
+	private ForkJoinPool pool;
+
+	BatchJob(Path dataset, String sessionYaml, File outputDir, File configDir, ForkJoinPool pool) {
+		this.dataset = dataset;
+		this.sessionYaml = sessionYaml;
+		this.outputDir = outputDir;
+		this.configDir = configDir;
+		this.pool = pool;
+	}
+
+	String getName() {
+		String name = dataset.getFileName().toString();
+		if (!Files.isDirectory(dataset) && name.lastIndexOf('.') > 0) {
+			name = name.substring(0, name.lastIndexOf('.'));
+		}
+		return name;
+	}
+
+	Result run() {
+		Result result = new Result(getName());
+		long start = System.nanoTime();
+		try {
+			List<DataFile> files = dataFiles();
+			if (files.isEmpty()) {
+				return result.fail("No data files found");
+			}
+
+			//each job gets its own controller and its own copy of the session
+			PlotController controller = new PlotController(configDir);
+			SavedSession session = SavedSession.deserialize(sessionYaml);
+
+			Optional<DataSourcePlugin> found = dataSource(session, files);
+			if (!found.isPresent()) {
+				return result.fail("Could not determine the data format");
+			}
+			DataSourcePlugin dsp = found.get();
+			List<Object> parameters = parameters(session, dsp, files);
+
+			long readStart = System.nanoTime();
+			StandardDataSet data = new StandardDataSet();
+			DatasetReadResult read = data.asyncReadFileListAsDataset(files, dsp).startWorkingBlocking();
+			result.readSeconds = seconds(readStart);
+			if (read == null || read.status != ReadStatus.SUCCESS) {
+				String message = read == null ? "Dataset Read Result was null" : read.status + " " + read.message;
+				if (read != null && read.problem != null) {
+					PeakabooLog.get().log(Level.WARNING, "Error Opening Data " + dataset, read.problem);
+				}
+				return result.fail(message);
+			}
+			if (data.getAnalysis().channelsPerScan() == 0) {
+				return result.fail("Dataset contains no spectra");
+			}
+
+			//set the data directly rather than through the data controller's async read,
+			//since the controller would deliver it through the event queue
+			controller.data().setDataSetProvider(data);
+
+			//discards refer to specific scans in the session's own dataset
+			session.data.discards = new ArrayList<>();
+			session.data.title = null;
+			controller.loadSessionSettings(session, true);
+			controller.data().setDataSourcePluginUUID(dsp.pluginUUID());
+			controller.data().setDataSourceParameters(parameters);
+			controller.data().setDataPaths(files);
+
+			result.spectra = data.getScanData().scanCount();
+
+			long mapStart = System.nanoTime();
+			StreamExecutor<RawMapSet> task = controller.getMapTask();
+			task.setPool(pool);
+			Optional<RawMapSet> maps = task.run();
+			result.mapSeconds = seconds(mapStart);
+			if (!maps.isPresent()) {
+				return result.fail("Map generation did not complete");
+			}
+
+			Coord<Integer> size;
+			if (data.hasGenuineDataSize()) {
+				size = data.getDataSize().getDataDimensions();
+			} else {
+				size = new Coord<>(maps.get().size(), 1);
+			}
+			File target = new File(outputDir, result.name);
+			write(maps.get(), size, controller.calibration().getCalibrationProfile(), target);
+			Files.write(new File(target, "session.peakaboo").toPath(), controller.getSavedSettings().serialize().getBytes(StandardCharsets.UTF_8));
+			result.maps = maps.get().mapCount();
+
+			data.discard();
+			result.totalSeconds = seconds(start);
+			result.success = true;
+			return result;
+
+		} catch (Exception e) {
+			PeakabooLog.get().log(Level.WARNING, "Failed to process " + dataset, e);
+			return result.fail(e.toString());
+		}
+	}
+
+	/**
+	 * A directory is read as a single multi-file dataset, anything else as a
+	 * single file dataset
+	 */
+	private List<DataFile> dataFiles() throws IOException {
+		if (!Files.isDirectory(dataset)) {
+			List<DataFile> files = new ArrayList<>();
+			files.add(new PathDataFile(dataset));
+			return files;
+		}
+		try (Stream<Path> listing = Files.list(dataset)) {
+			return listing
+					.filter(Files::isRegularFile)
+					.filter(p -> !p.getFileName().toString().startsWith("."))
+					.sorted()
+					.map(PathDataFile::new)
+					.collect(Collectors.toList());
+		}
+	}
+
+	private Optional<DataSourcePlugin> dataSource(SavedSession session, List<DataFile> files) {
+		//prefer the plugin the session was created with
+		String uuid = session.data.dataSourcePluginUUID;
+		if (uuid != null && DataSourcePluginManager.system().getByUUID(uuid) != null) {
+			DataSourcePlugin dsp = DataSourcePluginManager.system().getByUUID(uuid).create();
+			if (dsp != null) {
+				return Optional.of(dsp);
+			}
+		}
+
+		List<DataSourcePlugin> candidates = DataSourcePluginManager.system().newInstances();
+		List<DataSourcePlugin> formats = DataSourceLookup.findDataSourcesForFiles(files, candidates);
+		if (formats.size() > 1) {
+			PeakabooLog.get().log(Level.INFO, "Multiple formats match " + dataset + ", using " + formats.get(0).pluginName());
+		}
+		return formats.stream().findFirst();
+	}
+
+	/**
+	 * Applies any data source parameters stored in the session. There's no one to
+	 * ask, so parameters not in the session keep their default values.
+	 */
+	private List<Object> parameters(SavedSession session, DataSourcePlugin dsp, List<DataFile> files) {
+		Optional<Group> parameters = dsp.getParametersForDataFile(files);
+		if (!parameters.isPresent()) {
+			return null;
+		}
+		Group group = parameters.get();
+		if (session.data.dataSourceParameters != null) {
+			try {
+				group.deserialize(session.data.dataSourceParameters);
+			} catch (RuntimeException e) {
+				PeakabooLog.get().log(Level.WARNING, "Failed to load saved Data Source parameters", e);
+			}
+		}
+		return group.serialize();
+	}
+
+	private static void write(RawMapSet maps, Coord<Integer> size, CalibrationProfile profile, File target) throws IOException {
+		target.mkdirs();
+		for (RawMap map : maps) {
+			ReadOnlySpectrum data = map.getData(profile);
+			File file = new File(target, map.transitionSeries.toString() + ".csv");
+			try (OutputStream stream = Files.newOutputStream(file.toPath()); CSVWriter writer = new CSVWriter(stream)) {
+				for (int y = 0; y < size.y; y++) {
+					for (int x = 0; x < size.x; x++) {
+						int index = y * size.x + x;
+						writer.value(index < data.size() ? data.get(index) : 0f);
+					}
+					writer.endRow();
+				}
+			}
+		}
+	}
+
+	private static double seconds(long start) {
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+
+
+	static class Result {
+		String name;
+		boolean success = false;
+		String message = "";
+		int spectra = 0;
+		int maps = 0;
+		double readSeconds = 0;
+		double mapSeconds = 0;
+		//reading, mapping and writing
+		double totalSeconds = 0;
+
+		Result(String name) {
+			this.name = name;
+		}
+
+		Result fail(String message) {
+			this.success = false;
+			this.message = message;
+			return this;
+		}
+
+		double spectraPerSecond() {
+			return totalSeconds <= 0 ? 0 : spectra / totalSeconds;
+		}
+
+		@Override
+		public String toString() {
+			if (!success) {
+				return String.format("%s: FAILED (%s)", name, message);
+			}
+			return String.format("%s: %d spectra, %d maps, read %.2fs, mapped %.2fs, total %.2fs, %.1f spectra/s",
+					name, spectra, maps, readSeconds, mapSeconds, totalSeconds, spectraPerSecond());
+		}
+
+	}
+
+}
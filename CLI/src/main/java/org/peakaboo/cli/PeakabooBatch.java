@@ -0,0 +1,231 @@
+package org.peakaboo.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import org.peakaboo.calibration.CalibrationPluginManager;
+import org.peakaboo.common.PeakabooLog;
+import org.peakaboo.common.Version;
+import org.peakaboo.controller.plotter.SavedSession;
+import org.peakaboo.controller.plotter.Settings;
+import org.peakaboo.datasink.plugin.DataSinkPluginManager;
+import org.peakaboo.datasource.model.components.scandata.loaderqueue.ParallelLoaderQueue;
+import org.peakaboo.datasource.plugin.DataSourcePluginManager;
+import org.peakaboo.filter.model.FilterPluginManager;
+import org.peakaboo.mapping.filter.model.MapFilterPluginManager;
+
+/**
+ * Headless entry point which generates maps for many datasets using the
+ * settings from a saved session. Datasets are processed several at a time,
+ * and all of them share a single pool of worker threads for both loading and
+ * map generation, so that the total number of threads in use stays bounded.
+ *
+ * @author NAS
+ *
+ */
+public class PeakabooBatch {
+
+	private static final String USAGE = String.join("\n",
+		"Usage: peakaboo-batch --session FILE --output DIR [options] DATASET...",
+		"",
+		"Each DATASET is either a file, or a directory whose files make up one dataset.",
+		"",
+		"Options:",
+		"  --session FILE   saved .peakaboo session with the filters, fittings and calibration to use",
+		"  --output DIR     directory to write maps to, one subdirectory per dataset",
+		"  --list FILE      read additional datasets from FILE, one per line",
+		"  --threads N      worker threads for loading and mapping, shared by all datasets (default: all processors)",
+		"  --jobs N         datasets processed at the same time (default: 2)",
+		"  --config DIR     directory for settings, logs and plugins (default: ~/.peakaboo-batch)",
+		"  --plugins DIR    directory to load plugins from (default: CONFIG/Plugins)"
+	);
+
+	private File session;
+	private File output;
+	private File config = new File(System.getProperty("user.home"), ".peakaboo-batch");
+	private File plugins;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int jobs = 2;
+	private List<Path> datasets = new ArrayList<>();
+
+
+	public static void main(String[] args) {
+		PeakabooBatch batch = new PeakabooBatch();
+		try {
+			if (!batch.parse(args)) {
+				System.out.println(USAGE);
+				System.exit(0);
+			}
+		} catch (IllegalArgumentException | IOException e) {
+			System.err.println(e.getMessage());
+			System.err.println();
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		System.exit(batch.run() ? 0 : 2);
+	}
+
+	/**
+	 * Reads the given command line arguments, returning false if the user only
+	 * asked for help
+	 */
+	boolean parse(String[] args) throws IOException {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--")) {
+				datasets.add(Paths.get(arg));
+				continue;
+			}
+			if (arg.equals("--help")) {
+				return false;
+			}
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + arg);
+			}
+			String value = args[++i];
+			switch (arg) {
+			case "--session": session = new File(value); break;
+			case "--output": output = new File(value); break;
+			case "--config": config = new File(value); break;
+			case "--plugins": plugins = new File(value); break;
+			case "--threads": threads = positive(arg, value); break;
+			case "--jobs": jobs = positive(arg, value); break;
+			case "--list":
+				for (String line : Files.readAllLines(Paths.get(value), StandardCharsets.UTF_8)) {
+					if (!line.trim().isEmpty()) {
+						datasets.add(Paths.get(line.trim()));
+					}
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + arg);
+			}
+		}
+
+		if (session == null || !session.isFile()) {
+			throw new IllegalArgumentException("A session file is required");
+		}
+		if (output == null) {
+			throw new IllegalArgumentException("An output directory is required");
+		}
+		if (datasets.isEmpty()) {
+			throw new IllegalArgumentException("No datasets given");
+		}
+		if (plugins == null) {
+			plugins = new File(config, "Plugins");
+		}
+		return true;
+	}
+
+	private static int positive(String arg, String value) {
+		try {
+			int number = Integer.parseInt(value);
+			if (number > 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			//fall through to the error below
+		}
+		throw new IllegalArgumentException(arg + " must be a positive number");
+	}
+
+	boolean run() {
+		String sessionYaml;
+		try {
+			init();
+			sessionYaml = new String(Files.readAllBytes(session.toPath()), StandardCharsets.UTF_8);
+			//make sure the session is readable before starting any jobs
+			SavedSession.deserialize(sessionYaml);
+			output.mkdirs();
+		} catch (Exception e) {
+			PeakabooLog.get().log(Level.SEVERE, "Failed to start batch processing", e);
+			return false;
+		}
+
+		System.out.println(Version.longVersionNo + ": " + datasets.size() + " dataset(s), " + jobs + " at a time, " + threads + " thread(s)");
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		//data sources load through ParallelLoaderQueues, which then share the same threads
+		ParallelLoaderQueue.setSharedExecutor(pool);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, datasets.size()));
+		long start = System.nanoTime();
+
+		List<Future<BatchJob.Result>> futures = new ArrayList<>();
+		for (Path dataset : datasets) {
+			BatchJob job = new BatchJob(dataset, sessionYaml, output, config, pool);
+			futures.add(executor.submit(() -> {
+				BatchJob.Result result = job.run();
+				System.out.println(result);
+				return result;
+			}));
+		}
+
+		int succeeded = 0;
+		long spectra = 0;
+		for (Future<BatchJob.Result> future : futures) {
+			try {
+				BatchJob.Result result = future.get();
+				if (result.success) {
+					succeeded++;
+					spectra += result.spectra;
+				}
+			} catch (Exception e) {
+				PeakabooLog.get().log(Level.SEVERE, "Batch job failed", e);
+			}
+		}
+		executor.shutdown();
+		pool.shutdown();
+		ParallelLoaderQueue.setSharedExecutor(null);
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Processed %d of %d dataset(s), %d spectra in %.2fs, %.1f spectra/s overall",
+				succeeded, datasets.size(), spectra, seconds, seconds <= 0 ? 0 : spectra / seconds));
+		return succeeded == datasets.size();
+	}
+
+	void init() throws IOException {
+		PeakabooLog.init(dir(config, "Logging"));
+		PeakabooLog.get().log(Level.INFO, "Starting batch " + Version.longVersionNo + " - " + Version.buildDate);
+		Settings.init(dir(config, "Settings"));
+
+		FilterPluginManager.init(dir(plugins, "Filter"));
+		MapFilterPluginManager.init(dir(plugins, "MapFilter"));
+		DataSourcePluginManager.init(dir(plugins, "DataSource"));
+		DataSinkPluginManager.init(dir(plugins, "DataSink"));
+		CalibrationPluginManager.init(dir(plugins, "CalibrationReference"));
+	}
+
+	int getThreads() {
+		return threads;
+	}
+
+	int getJobs() {
+		return jobs;
+	}
+
+	File getPlugins() {
+		return plugins;
+	}
+
+	List<Path> getDatasets() {
+		return datasets;
+	}
+
+	private static File dir(File parent, String name) {
+		File dir = new File(parent, name);
+		dir.mkdirs();
+		return dir;
+	}
+
+}
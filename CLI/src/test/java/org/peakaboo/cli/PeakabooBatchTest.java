@@ -0,0 +1,107 @@
+package org.peakaboo.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.controller.plotter.PlotController;
+import org.peakaboo.curvefit.peak.table.Element;
+import org.peakaboo.curvefit.peak.table.PeakTable;
+import org.peakaboo.curvefit.peak.transition.TransitionShell;
+
+public class PeakabooBatchTest {
+
+	private static final int SCANS = 20;
+	private static final int CHANNELS = 2048;
+
+	@Test
+	public void arguments() throws IOException {
+		Path dir = Files.createTempDirectory("batchargs");
+		File session = Files.write(dir.resolve("session.peakaboo"), new byte[0]).toFile();
+		Path list = Files.write(dir.resolve("list.txt"), Arrays.asList("b.txt", "", "c.txt"), StandardCharsets.UTF_8);
+
+		PeakabooBatch batch = new PeakabooBatch();
+		Assert.assertTrue(batch.parse(new String[] {
+				"--session", session.getPath(), "--output", dir.toString(), "--config", dir.toString(),
+				"--threads", "3", "--jobs", "4", "--list", list.toString(), "a.txt"
+		}));
+		Assert.assertEquals(3, batch.getThreads());
+		Assert.assertEquals(4, batch.getJobs());
+		Assert.assertEquals(new File(dir.toFile(), "Plugins"), batch.getPlugins());
+		Assert.assertEquals(Arrays.asList("b.txt", "c.txt", "a.txt"),
+				batch.getDatasets().stream().map(Path::toString).collect(Collectors.toList()));
+
+		Assert.assertFalse(new PeakabooBatch().parse(new String[] {"--help"}));
+
+		String[] valid = {"--session", session.getPath(), "--output", dir.toString()};
+		rejects(valid);
+		rejects("--output", dir.toString(), "a.txt");
+		rejects("--session", new File(dir.toFile(), "missing").getPath(), "--output", dir.toString(), "a.txt");
+		rejects("--session", session.getPath(), "a.txt");
+		rejects("--session", session.getPath(), "--output", dir.toString(), "--threads", "0", "a.txt");
+		rejects("--session", session.getPath(), "--output", dir.toString(), "--jobs", "many", "a.txt");
+		rejects("--session", session.getPath(), "--output", dir.toString(), "--colour", "red", "a.txt");
+		rejects("--session", session.getPath(), "--output", dir.toString(), "a.txt", "--threads");
+	}
+
+	private static void rejects(String... args) throws IOException {
+		try {
+			new PeakabooBatch().parse(args);
+			Assert.fail("Accepted " + String.join(" ", args));
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	/**
+	 * Maps a small plain text dataset from start to finish
+	 */
+	@Test
+	public void batch() throws IOException {
+		Path dir = Files.createTempDirectory("batch");
+		Path config = dir.resolve("config");
+		Path output = dir.resolve("output");
+		Path session = dir.resolve("session.peakaboo");
+		Path dataset = dir.resolve("scan.txt");
+
+		Random random = new Random(1);
+		List<String> lines = Stream.generate(() -> random.ints(CHANNELS, 0, 100)
+					.mapToObj(Integer::toString)
+					.collect(Collectors.joining(" ")))
+				.limit(SCANS)
+				.collect(Collectors.toList());
+		Files.write(dataset, lines, StandardCharsets.UTF_8);
+
+		//the session is written once the plugins it refers to have been loaded
+		Files.write(session, new byte[0]);
+		PeakabooBatch batch = new PeakabooBatch();
+		Assert.assertTrue(batch.parse(new String[] {
+				"--session", session.toString(), "--output", output.toString(), "--config", config.toString(),
+				"--threads", "2", dataset.toString()
+		}));
+		batch.init();
+		PlotController controller = new PlotController(config.toFile());
+		controller.fitting().setMinMaxEnergy(0f, 20.48f);
+		controller.fitting().addTransitionSeries(PeakTable.SYSTEM.get(Element.Fe, TransitionShell.K));
+		Files.write(session, controller.getSavedSettings().serialize().getBytes(StandardCharsets.UTF_8));
+
+		Assert.assertTrue(batch.run());
+
+		File[] maps = output.resolve("scan").toFile().listFiles((d, name) -> name.endsWith(".csv"));
+		Assert.assertNotNull(maps);
+		Assert.assertEquals(1, maps.length);
+		List<String> rows = Files.readAllLines(maps[0].toPath(), StandardCharsets.UTF_8);
+		Assert.assertEquals(1, rows.size());
+		Assert.assertEquals(SCANS, rows.get(0).split(", ").length);
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.peakaboo.framework.cyclops;
 
+import java.nio.FloatBuffer;
 import java.util.Iterator;
 import java.util.stream.Stream;
 
@@ -23,10 +24,22 @@ public class IReadOnlySpectrum implements ReadOnlySpectrum {
 		return backer.backingArrayCopy();
 	}
 
+	public void copyInto(int start, float[] target, int offset, int length) {
+		backer.copyInto(start, target, offset, length);
+	}
+
 	public ReadOnlySpectrum subSpectrum(int start, int stop) {
 		return backer.subSpectrum(start, stop);
 	}
 
+	public ReadOnlySpectrum view(int start, int stop) {
+		return backer.view(start, stop);
+	}
+
+	public FloatBuffer buffer() {
+		return backer.buffer();
+	}
+
 	public Stream<Float> stream() {
 		return backer.stream();
 	}
@@ -5,6 +5,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -134,6 +135,11 @@ public class ISpectrum implements Spectrum
 			this.data = source.backingArrayCopy();
 			this.size = source.size;
 			this.maxIndex = source.maxIndex;
+		} else {
+			this.size = copy.size();
+			this.data = new float[size];
+			copy.copyInto(data, 0);
+			this.maxIndex = size - 1;
 		}
 				
 	}
@@ -147,7 +153,9 @@ public class ISpectrum implements Spectrum
 	@Override
 	public void copy(ReadOnlySpectrum s)
 	{
-		copy(s.backingArrayCopy());
+		int length = Math.min(this.data.length, s.size());
+		s.copyInto(0, this.data, 0, length);
+		maxIndex = Math.max(maxIndex, s.size()-1);
 	}
 
 	/**
@@ -239,6 +247,15 @@ public class ISpectrum implements Spectrum
 		return Arrays.copyOf(data, data.length);
 	}
 
+	@Override
+	public void copyInto(int start, float[] target, int offset, int length)
+	{
+		if (start < 0 || start + length > size) {
+			throw new IndexOutOfBoundsException("Range " + start + "-" + (start + length - 1) + " is not within a spectrum of size " + size);
+		}
+		System.arraycopy(data, start, target, offset, length);
+	}
+
 	/**
 	 * Returns a new Spectrum containing a copy of the data for a subsection of this spectrum.
 	 * @param start
@@ -256,6 +273,31 @@ public class ISpectrum implements Spectrum
 		return target; 
 	}
 	
+	/**
+	 * Returns a read-only view of a subsection of this spectrum from start to stop
+	 * (inclusive), backed by this spectrum's data.
+	 */
+	@Override
+	public SpectrumView view(int start, int stop)
+	{
+		return new SpectrumView(data, start, stop - start + 1);
+	}
+
+	/**
+	 * Returns a read-only view of this whole spectrum, backed by this spectrum's
+	 * data.
+	 */
+	public SpectrumView readOnlyView()
+	{
+		return new SpectrumView(data, 0, size);
+	}
+
+	@Override
+	public FloatBuffer buffer()
+	{
+		return FloatBuffer.wrap(data, 0, size).slice().asReadOnlyBuffer();
+	}
+
 	/**
 	 * Return the array which is backing this Spectrum. This method does not return a copy, 
 	 * but the real array. Modifying the contents of this array will modify the contents 
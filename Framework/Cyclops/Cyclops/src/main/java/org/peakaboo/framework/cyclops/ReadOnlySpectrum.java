@@ -1,6 +1,7 @@
 package org.peakaboo.framework.cyclops;
 
 import java.io.Serializable;
+import java.nio.FloatBuffer;
 import java.util.Iterator;
 import java.util.stream.Stream;
 
@@ -28,6 +29,23 @@ public interface ReadOnlySpectrum extends Serializable, Iterable<Float> {
 	 */
 	float[] backingArrayCopy();
 
+	/**
+	 * Copies all values into the given array, starting at the given offset
+	 */
+	default void copyInto(float[] target, int offset) {
+		copyInto(0, target, offset, size());
+	}
+
+	/**
+	 * Copies length values starting at index start into the given array,
+	 * starting at the given offset
+	 */
+	default void copyInto(int start, float[] target, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			target[offset + i] = get(start + i);
+		}
+	}
+
 	/**
 	 * Returns a new Spectrum containing a copy of the data for a subsection of this spectrum.
 	 * @param start
@@ -35,6 +53,23 @@ public interface ReadOnlySpectrum extends Serializable, Iterable<Float> {
 	 */
 	ReadOnlySpectrum subSpectrum(int start, int stop);
 
+	/**
+	 * Returns a read-only view of a subsection of this spectrum from start to stop
+	 * (inclusive). Where possible, the view shares this spectrum's data rather
+	 * than copying it, and so will reflect any later changes to it.
+	 */
+	default ReadOnlySpectrum view(int start, int stop) {
+		return subSpectrum(start, stop);
+	}
+
+	/**
+	 * Returns a read-only {@link FloatBuffer} over this spectrum's values. Where
+	 * possible, the buffer shares this spectrum's data rather than copying it.
+	 */
+	default FloatBuffer buffer() {
+		return FloatBuffer.wrap(backingArrayCopy(), 0, size()).asReadOnlyBuffer();
+	}
+
 	/**
 	 * Return a stream accessing the backing array. Note that stream processing tends to be 
 	 * considerably slower than looping over the Spectrum.
@@ -0,0 +1,203 @@
+package org.peakaboo.framework.cyclops;
+
+/**
+ * Window operations over raw spectrum data which cost O(n) per pass no matter
+ * how wide the window is. Rather than revisiting every point in the window
+ * for every channel, each operation carries some state from one channel to
+ * the next: a running sum, a decaying weighted sum, or a ring buffer of
+ * candidate minimums.
+ * <br/><br/>
+ * Windows are clipped to the bounds of the data. Unless otherwise noted, the
+ * source and target arrays must not be the same array, and the target array
+ * must be at least as long as the source.
+ *
+ * @author NAS
+ *
+ */
+public class SlidingWindow {
+
+	private SlidingWindow() {
+		//Not Constructable
+	}
+
+	/**
+	 * For each channel i, sums the source values from i-reach to i+reach
+	 */
+	public static void sum(float[] source, float[] target, int reach) {
+		int length = source.length;
+		//accumulate in double so that the running sum doesn't drift
+		double sum = 0;
+		for (int i = 0; i < Math.min(reach, length); i++) {
+			sum += source[i];
+		}
+		for (int i = 0; i < length; i++) {
+			int enter = i + reach;
+			int leave = i - reach - 1;
+			if (enter < length) sum += source[enter];
+			if (leave >= 0) sum -= source[leave];
+			target[i] = (float) sum;
+		}
+	}
+
+	/**
+	 * For each channel i, averages the source values from i-reach to i+reach.
+	 * Near the ends of the data, only the values inside the data are averaged.
+	 */
+	public static void average(float[] source, float[] target, int reach) {
+		int length = source.length;
+		sum(source, target, reach);
+		for (int i = 0; i < length; i++) {
+			int count = Math.min(i + reach, length - 1) - Math.max(i - reach, 0) + 1;
+			target[i] /= count;
+		}
+	}
+
+	/**
+	 * For each channel i, finds the smallest source value from i-reach to
+	 * i+reach. Indexes of values which may still become the minimum are kept in
+	 * a ring buffer in increasing order of value, so every index is added and
+	 * removed at most once.
+	 */
+	public static void minimum(float[] source, float[] target, int reach) {
+		int length = source.length;
+		int capacity = Math.min(2 * reach + 2, length + 1);
+		int[] ring = new int[capacity];
+		int head = 0, count = 0;
+
+		for (int enter = 0; enter < length + reach; enter++) {
+			if (enter < length) {
+				//drop any candidates which can never be the minimum again
+				float value = source[enter];
+				while (count > 0 && source[ring[(head + count - 1) % capacity]] >= value) {
+					count--;
+				}
+				ring[(head + count) % capacity] = enter;
+				count++;
+			}
+
+			int i = enter - reach;
+			if (i < 0) continue;
+
+			//drop the oldest candidate once it falls out of the window
+			if (ring[head] < i - reach) {
+				head = (head + 1) % capacity;
+				count--;
+			}
+			target[i] = source[ring[head]];
+		}
+	}
+
+	/**
+	 * For each channel i, calculates the weighted average of the source values
+	 * from i-reach to i+reach, where a value d channels away from i has a weight
+	 * of ratio<sup>d</sup>. Near the ends of the data, only the weights of values
+	 * inside the data are counted. The weighted sums on either side of each
+	 * channel are updated by decaying the previous sum and removing the value
+	 * which fell out of the window.
+	 */
+	public static void exponential(float[] source, float[] target, int reach, float ratio) {
+		int length = source.length;
+		double r = ratio;
+		double tail = Math.pow(r, reach + 1);
+
+		//values and weights on the left of and including each channel
+		double[] left = new double[length];
+		double[] leftWeight = new double[length];
+		double sum = 0, weight = 0;
+		for (int i = 0; i < length; i++) {
+			sum = source[i] + r * sum;
+			weight = 1 + r * weight;
+			int leave = i - reach - 1;
+			if (leave >= 0) {
+				sum -= tail * source[leave];
+				weight -= tail;
+			}
+			left[i] = sum;
+			leftWeight[i] = weight;
+		}
+
+		//values and weights on the right, combined with the left as we go
+		sum = 0;
+		weight = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			sum = source[i] + r * sum;
+			weight = 1 + r * weight;
+			int leave = i + reach + 1;
+			if (leave < length) {
+				sum -= tail * source[leave];
+				weight -= tail;
+			}
+			double total = left[i] + sum - source[i];
+			double totalWeight = leftWeight[i] + weight - 1;
+			target[i] = totalWeight == 0 ? 0f : (float) (total / totalWeight);
+		}
+	}
+
+	/**
+	 * One pass of SNIP (Statistics-sensitive Non-linear Iterative Peak-clipping).
+	 * Each channel i is replaced with the mean of the source values at i-distance
+	 * and i+distance if that mean is lower than the value at i. Positions beyond
+	 * the ends of the data are clamped to the first and last channels.
+	 */
+	public static void snip(float[] source, float[] target, int distance) {
+		int length = source.length;
+		int last = length - 1;
+		for (int i = 0; i < length; i++) {
+			float mean = (source[Math.max(0, i - distance)] + source[Math.min(last, i + distance)]) / 2f;
+			float value = source[i];
+			target[i] = mean < value ? mean : value;
+		}
+	}
+
+	/**
+	 * For each channel i, calculates the weighted average of the source values
+	 * from i-reach to i+reach, where a value d channels away from i has weight
+	 * coefficients[|d|]. Near the ends of the data, only the coefficients of
+	 * values inside the data are counted. Unlike the other operations here this
+	 * costs O(n*reach), but it is only meant for short arbitrary kernels, and
+	 * channels away from the ends are calculated without bounds checks.
+	 */
+	public static void symmetric(float[] source, float[] target, float[] coefficients) {
+		int length = source.length;
+		int reach = coefficients.length - 1;
+		float total = coefficients[0];
+		for (int d = 1; d <= reach; d++) {
+			total += 2 * coefficients[d];
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (i >= reach && i < length - reach) {
+				float sum = coefficients[0] * source[i];
+				for (int d = 1; d <= reach; d++) {
+					sum += coefficients[d] * (source[i - d] + source[i + d]);
+				}
+				target[i] = total == 0 ? 0f : sum / total;
+			} else {
+				float sum = 0;
+				float normalize = 0;
+				for (int d = -reach; d <= reach; d++) {
+					int p = i + d;
+					if (p < 0 || p >= length) continue;
+					float coefficient = coefficients[Math.abs(d)];
+					sum += coefficient * source[p];
+					normalize += coefficient;
+				}
+				target[i] = normalize == 0 ? 0f : sum / normalize;
+			}
+		}
+	}
+
+	/**
+	 * Returns an array of length n+1 where entry i is the sum of the first i
+	 * source values, so that the sum of any range of channels from start to
+	 * stop (inclusive) is prefix[stop+1] - prefix[start].
+	 */
+	public static double[] prefixSums(float[] source) {
+		double[] prefix = new double[source.length + 1];
+		for (int i = 0; i < source.length; i++) {
+			prefix[i+1] = prefix[i] + source[i];
+		}
+		return prefix;
+	}
+
+}
@@ -37,9 +37,11 @@ public class SpectrumCalculations
 	public static Spectrum maxLists_inplace(final Spectrum s1, final ReadOnlySpectrum s2)
 	{
 		int size = Math.min(s1.size(), s2.size());
+		float[] a1 = s1.backingArray();
+		float[] a2 = array(s2);
 		for (int i = 0; i < size; i++)
 		{
-			s1.set(i, Math.max(s1.get(i), s2.get(i)));
+			a1[i] = Math.max(a1[i], a2[i]);
 		}
 		
 
@@ -192,7 +194,7 @@ public class SpectrumCalculations
 	public static Spectrum multiplyBy_target(final ReadOnlySpectrum source, final Spectrum target, final float value)
 	{	
 		//optimization to get rid of get/set call overhead
-		final float[] sourceArray = ((Spectrum)source).backingArray();
+		final float[] sourceArray = array(source);
 		final float[] targetArray = target.backingArray();
 		
 		final int size = source.size();
@@ -420,7 +422,7 @@ public class SpectrumCalculations
 
 		//optimization to get rid of get/set call overhead
 		final float[] l1Array = l1.backingArray();
-		final float[] l2Array = ((Spectrum)l2).backingArray();
+		final float[] l2Array = array(l2);
 		
 		final int maxInd = Math.min(l1.size(), l2.size());
 		
@@ -480,7 +482,7 @@ public class SpectrumCalculations
 	public static void subtractLists_inplace(Spectrum l1, Spectrum l2)
 	{
 		float[] l1a = l1.backingArray();
-		float[] l2a = ((Spectrum)l2).backingArray();
+		float[] l2a = array(l2);
 		
 		int maxInd = Math.min(l1.size(), l2.size());
 		for (int i = 0; i < maxInd; i++)
@@ -502,7 +504,7 @@ public class SpectrumCalculations
 	{
 
 		float[] l1a = l1.backingArray();
-		float[] l2a = ((Spectrum)l2).backingArray();
+		float[] l2a = array(l2);
 		
 		int maxInd = Math.min(l1.size(), l2.size());
 		float value;
@@ -517,8 +519,8 @@ public class SpectrumCalculations
 
 	
 	public static void subtractLists_target(ReadOnlySpectrum l1, ReadOnlySpectrum l2, Spectrum target) {
-		float[] l1a = ((Spectrum)l1).backingArray();
-		float[] l2a = ((Spectrum)l2).backingArray();
+		float[] l1a = array(l1);
+		float[] l2a = array(l2);
 		float[] ta = target.backingArray();
 		
 		int maxInd = Math.min(l1.size(), l2.size());
@@ -530,8 +532,8 @@ public class SpectrumCalculations
 	
 	public static void subtractLists_target(ReadOnlySpectrum l1, ReadOnlySpectrum l2, Spectrum target, final float minimum) {
 		
-		float[] l1a = ((Spectrum)l1).backingArray();
-		float[] l2a = ((Spectrum)l2).backingArray();
+		float[] l1a = array(l1);
+		float[] l2a = array(l2);
 		float[] ta = target.backingArray();
 		
 		int maxInd = Math.min(l1.size(), l2.size());
@@ -783,6 +785,26 @@ public class SpectrumCalculations
 		return result;
 	}
 
-
+	/**
+	 * Returns the values of the given spectrum without copying them when it is
+	 * backed by an array, or is a {@link SpectrumView} covering the whole of
+	 * one, so that loops over any kind of spectrum can index an array
+	 * directly. The returned array may be longer than the spectrum, and
+	 * must not be modified.
+	 */
+	public static float[] array(ReadOnlySpectrum spectrum) {
+		if (spectrum instanceof Spectrum) {
+			return ((Spectrum) spectrum).backingArray();
+		}
+		if (spectrum instanceof SpectrumView) {
+			float[] shared = ((SpectrumView) spectrum).wholeArray();
+			if (shared != null) {
+				return shared;
+			}
+		}
+		float[] values = new float[spectrum.size()];
+		spectrum.copyInto(values, 0);
+		return values;
+	}
 
 }
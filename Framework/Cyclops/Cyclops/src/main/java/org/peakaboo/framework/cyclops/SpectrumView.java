@@ -0,0 +1,180 @@
+package org.peakaboo.framework.cyclops;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A read-only spectrum over a range of an array shared with some other owner,
+ * usually an {@link ISpectrum}. Nothing is copied when a view is created, so
+ * it reflects any later changes made to the array by its owner.
+ *
+ * @author NAS
+ *
+ */
+public class SpectrumView implements ReadOnlySpectrum {
+
+	private float[] data;
+	private int offset;
+	private int size;
+
+	/**
+	 * Creates a view of size values from the given array, starting at offset
+	 */
+	public SpectrumView(float[] data, int offset, int size) {
+		if (offset < 0 || size < 0 || offset + size > data.length) {
+			throw new IndexOutOfBoundsException("Range " + offset + "-" + (offset + size - 1) + " is not within an array of length " + data.length);
+		}
+		this.data = data;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	@Override
+	public float get(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index " + i + " is not within a spectrum of size " + size);
+		}
+		return data[offset + i];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public float[] backingArrayCopy() {
+		return Arrays.copyOfRange(data, offset, offset + size);
+	}
+
+	@Override
+	public void copyInto(int start, float[] target, int offset, int length) {
+		if (start < 0 || start + length > size) {
+			throw new IndexOutOfBoundsException("Range " + start + "-" + (start + length - 1) + " is not within a spectrum of size " + size);
+		}
+		System.arraycopy(data, this.offset + start, target, offset, length);
+	}
+
+	@Override
+	public ISpectrum subSpectrum(int start, int stop) {
+		return new ISpectrum(Arrays.copyOfRange(data, offset + start, offset + stop + 1), false);
+	}
+
+	@Override
+	public SpectrumView view(int start, int stop) {
+		int length = stop - start + 1;
+		if (start < 0 || length < 0 || start + length > size) {
+			throw new IndexOutOfBoundsException("Range " + start + "-" + stop + " is not within a spectrum of size " + size);
+		}
+		return new SpectrumView(data, offset + start, length);
+	}
+
+	/**
+	 * Returns the shared array when this view covers all of it, so that it can be
+	 * read directly, or null otherwise
+	 */
+	float[] wholeArray() {
+		return offset == 0 && size == data.length ? data : null;
+	}
+
+	@Override
+	public FloatBuffer buffer() {
+		return FloatBuffer.wrap(data, offset, size).slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public Stream<Float> stream() {
+		return StreamSupport.stream(Spliterators.spliterator(iterator(), size, Spliterator.ORDERED), false);
+	}
+
+	@Override
+	public Iterator<Float> iterator() {
+		return new Iterator<Float>() {
+
+			int index = 0;
+
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			public Float next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return data[offset + index++];
+			}
+		};
+	}
+
+	/**
+	 * Hash code returns the integer sum of the first 10 (or less) elements
+	 */
+	@Override
+	public int hashCode() {
+		float sum = 0;
+		for (int i = 0; i < Math.min(10, size); i++) {
+			sum += data[offset + i];
+		}
+		return (int)sum;
+	}
+
+	@Override
+	public boolean equals(Object oother) {
+		if (!(oother instanceof ReadOnlySpectrum)) return false;
+		ReadOnlySpectrum other = (ReadOnlySpectrum) oother;
+		if (other.size() != size) return false;
+		for (int i = 0; i < size; i++) {
+			if (other.get(i) != data[offset + i]) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return toString(" ");
+	}
+
+	@Override
+	public String toString(String delimiter) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i != 0) sb.append(delimiter);
+			sb.append(data[offset + i]);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public float sum() {
+		float sum = 0;
+		for (int i = offset; i < offset + size; i++) {
+			sum += data[i];
+		}
+		return sum;
+	}
+
+	@Override
+	public float max() {
+		float max = data[offset];
+		for (int i = offset; i < offset + size; i++) {
+			max = Math.max(max, data[i]);
+		}
+		return max;
+	}
+
+	@Override
+	public float min() {
+		float min = data[offset];
+		for (int i = offset; i < offset + size; i++) {
+			min = Math.min(min, data[i]);
+		}
+		return min;
+	}
+
+}
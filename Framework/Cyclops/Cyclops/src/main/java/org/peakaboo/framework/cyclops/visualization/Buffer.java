@@ -28,6 +28,15 @@ public interface Buffer extends Surface
 	
 	void setPixelValue(int x, int y, PaletteColour c);
 	void setPixelValue(int offset, PaletteColour c);
+	
+	/**
+	 * Sets a row of pixels from packed ARGB values, starting at the given offset
+	 */
+	default void setPixelsARGB(int offset, int[] argb, int start, int length) {
+		for (int i = 0; i < length; i++) {
+			setPixelValue(offset + i, new PaletteColour(argb[start + i]));
+		}
+	}
 
 	void clear();
 	
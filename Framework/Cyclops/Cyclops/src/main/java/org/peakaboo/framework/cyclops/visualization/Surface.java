@@ -1,5 +1,7 @@
 package org.peakaboo.framework.cyclops.visualization;
 
+import org.peakaboo.framework.cyclops.Bounds;
+import org.peakaboo.framework.cyclops.Coord;
 import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 
 /**
@@ -282,6 +284,15 @@ public interface Surface
 	void clip();
 
 
+	/**
+	 * Returns the bounds of the drawable region in the current coordinate system, or null if the drawable region is
+	 * not limited. Painters can use this to skip work which would not be visible.
+	 */
+	default Coord<Bounds<Float>> getClipBounds() {
+		return null;
+	}
+
+
 	/**
 	 * Shifts the origin point.
 	 * 
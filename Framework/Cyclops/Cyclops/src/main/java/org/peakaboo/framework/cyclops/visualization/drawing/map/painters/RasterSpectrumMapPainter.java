@@ -1,18 +1,22 @@
 package org.peakaboo.framework.cyclops.visualization.drawing.map.painters;
 
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.IntStream;
 
 import org.peakaboo.framework.cyclops.Spectrum;
-import org.peakaboo.framework.cyclops.visualization.Buffer;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
+import org.peakaboo.framework.cyclops.visualization.drawing.ViewTransform;
+import org.peakaboo.framework.cyclops.visualization.drawing.map.tiles.TiledMapRenderer;
 import org.peakaboo.framework.cyclops.visualization.drawing.painters.PainterData;
 import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 import org.peakaboo.framework.cyclops.visualization.palette.palettes.AbstractPalette;
 
 /**
  * 
- * This class implements the drawing of a map using block pixel filling
+ * This class implements the drawing of a map using block pixel filling. Raster
+ * maps are drawn as tiles from a {@link TiledMapRenderer}, so that only the
+ * visible part of the map is coloured, at a level of detail to suit its size.
  * 
  * @author Nathaniel Sherry, 2009
  */
@@ -20,7 +24,17 @@ import org.peakaboo.framework.cyclops.visualization.palette.palettes.AbstractPal
 public class RasterSpectrumMapPainter extends SpectrumMapPainter
 {
 
-	protected Buffer buffer;
+	protected TiledMapRenderer tiles = new TiledMapRenderer();
+	
+	//describes the data the tiles were built from
+	private Spectrum tiledData;
+	private ViewTransform tiledTransform;
+	private boolean tiledOrientation;
+	private int tiledWidth, tiledHeight;
+	private float tiledMaximum;
+	//describes the colouring of the tiles, palettes are compared by value since
+	//callers often build new ones for every drawing
+	private List<AbstractPalette> tiledPalettes;
 
 	
 	public RasterSpectrumMapPainter(List<AbstractPalette> colourRules, Spectrum data)
@@ -41,16 +55,12 @@ public class RasterSpectrumMapPainter extends SpectrumMapPainter
 		
 		p.context.save();
 	
-			Spectrum modData = transformDataForMap(p.dr, data);
 			float maxIntensity = calcMaxIntensity(p);
 			
 			if (p.dr.drawToVectorSurface) {
-				drawAsScalar(p, modData, cellSize, maxIntensity);
+				drawAsScalar(p, transformDataForMap(p.dr, data), cellSize, maxIntensity);
 			} else {
-				if (buffer == null) {
-					buffer = drawAsRaster(p, modData, maxIntensity, p.dr.dataHeight * p.dr.dataWidth);
-				}
-				p.context.compose(buffer, 0, 0, cellSize);
+				drawAsTiles(p, cellSize, maxIntensity);
 			}
 
 		p.context.restore();
@@ -66,22 +76,32 @@ public class RasterSpectrumMapPainter extends SpectrumMapPainter
 	}
 
 
-	private Buffer drawAsRaster(PainterData p, final Spectrum data, final float maxIntensity,
-			final int maximumIndex)
+	private void drawAsTiles(PainterData p, float cellSize, final float maxIntensity)
 	{
-
-		final Buffer b = p.context.getImageBuffer(p.dr.dataWidth, p.dr.dataHeight);
-
-		IntStream.range(0, data.size()).parallel().forEach(ordinal -> {				
-			float intensity = data.get(ordinal);
-			
-			if (maximumIndex > ordinal) {
-				b.setPixelValue(ordinal, getColourFromRules(intensity, maxIntensity, p.dr.viewTransform));
-			}
-		});
 		
+		//the pyramid only needs to be rebuilt when the data or its layout changes
+		if (
+				tiledData != data || 
+				tiledTransform != p.dr.viewTransform || 
+				tiledOrientation != p.dr.screenOrientation || 
+				tiledWidth != p.dr.dataWidth || 
+				tiledHeight != p.dr.dataHeight
+			) {
+			Spectrum modData = transformDataForMap(p.dr, data);
+			tiles.setData(SpectrumCalculations.array(modData), p.dr.dataWidth, p.dr.dataHeight);
+			tiledData = data;
+			tiledTransform = p.dr.viewTransform;
+			tiledOrientation = p.dr.screenOrientation;
+			tiledWidth = p.dr.dataWidth;
+			tiledHeight = p.dr.dataHeight;
+		} else if (tiledMaximum != maxIntensity || !colourRules.equals(tiledPalettes)) {
+			tiles.recolour();
+		}
+		tiledMaximum = maxIntensity;
+		tiledPalettes = new ArrayList<>(colourRules);
+		
+		tiles.draw(p.context, cellSize, intensity -> getColourFromRules(intensity, maxIntensity, p.dr.viewTransform));
 		
-		return b;
 	}
 
 
@@ -126,7 +146,9 @@ public class RasterSpectrumMapPainter extends SpectrumMapPainter
 	@Override
 	public void clearBuffer()
 	{
-		buffer = null;
+		//the data may have been changed in place, so rebuild the pyramid too
+		tiledData = null;
+		tiles.recolour();
 	}
 
 	
@@ -0,0 +1,119 @@
+package org.peakaboo.framework.cyclops.visualization.drawing.map.tiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A MapPyramid holds a map's values at a series of levels of detail. Level 0
+ * is the map itself, and each level after that is half the width and height of
+ * the one before it, with each value being the mean of the (up to) four values
+ * it covers. Drawing a large map at a small size can then read from the level
+ * which best matches the size it is drawn at, rather than from every value in
+ * the map.
+ *
+ * @author NAS
+ *
+ */
+public class MapPyramid {
+
+	private final List<float[]> levels = new ArrayList<>();
+	private final List<Integer> widths = new ArrayList<>();
+	private final List<Integer> heights = new ArrayList<>();
+
+	/**
+	 * Builds a pyramid for the given map. The data array is used directly as
+	 * level 0 when it is exactly width * height long, and must not be modified
+	 * afterwards.
+	 */
+	public MapPyramid(float[] data, int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Map dimensions must be positive");
+		}
+		if (data.length != width * height) {
+			data = Arrays.copyOf(data, width * height);
+		}
+
+		levels.add(data);
+		widths.add(width);
+		heights.add(height);
+		while (width > 1 || height > 1) {
+			data = downsample(data, width, height);
+			width = half(width);
+			height = half(height);
+			levels.add(data);
+			widths.add(width);
+			heights.add(height);
+		}
+	}
+
+	public int getLevels() {
+		return levels.size();
+	}
+
+	public int getWidth(int level) {
+		return widths.get(level);
+	}
+
+	public int getHeight(int level) {
+		return heights.get(level);
+	}
+
+	/**
+	 * Returns the values at the given level, row by row. The returned array must
+	 * not be modified.
+	 */
+	public float[] getData(int level) {
+		return levels.get(level);
+	}
+
+	/**
+	 * Returns the level whose values are closest to one per pixel without being
+	 * larger than a pixel, when the map is drawn with the given cell size
+	 */
+	public int getLevel(float cellSize) {
+		int level = 0;
+		while (level < levels.size() - 1 && cellSize * (2 << level) <= 1f) {
+			level++;
+		}
+		return level;
+	}
+
+	private static int half(int size) {
+		return (size + 1) / 2;
+	}
+
+	static float[] downsample(float[] source, int width, int height) {
+		int halfWidth = half(width);
+		int halfHeight = half(height);
+		float[] target = new float[halfWidth * halfHeight];
+
+		IntStream.range(0, halfHeight).parallel().forEach(y -> {
+			int y0 = y * 2;
+			int y1 = Math.min(y0 + 1, height - 1);
+			for (int x = 0; x < halfWidth; x++) {
+				int x0 = x * 2;
+				int x1 = Math.min(x0 + 1, width - 1);
+				float sum = source[y0 * width + x0];
+				int count = 1;
+				if (x1 != x0) {
+					sum += source[y0 * width + x1];
+					count++;
+				}
+				if (y1 != y0) {
+					sum += source[y1 * width + x0];
+					count++;
+					if (x1 != x0) {
+						sum += source[y1 * width + x1];
+						count++;
+					}
+				}
+				target[y * halfWidth + x] = sum / count;
+			}
+		});
+
+		return target;
+	}
+
+}
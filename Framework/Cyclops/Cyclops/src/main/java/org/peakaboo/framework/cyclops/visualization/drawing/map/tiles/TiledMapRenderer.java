@@ -0,0 +1,273 @@
+package org.peakaboo.framework.cyclops.visualization.drawing.map.tiles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleFunction;
+import java.util.stream.Collectors;
+
+import org.peakaboo.framework.cyclops.Bounds;
+import org.peakaboo.framework.cyclops.Coord;
+import org.peakaboo.framework.cyclops.visualization.Buffer;
+import org.peakaboo.framework.cyclops.visualization.Surface;
+import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
+
+/**
+ * Draws a map as square tiles of colour taken from a {@link MapPyramid}. Only
+ * the tiles which are visible within the Surface's clip, at the level of detail
+ * which matches the size the map is drawn at, are coloured, and they are
+ * coloured in parallel. Coloured tiles are kept in a least-recently-used cache
+ * of bounded size, so that panning and zooming over a large map only colours
+ * the tiles which come into view, and memory use doesn't grow with the size of
+ * the map.
+ *
+ * @author NAS
+ *
+ */
+public class TiledMapRenderer {
+
+	public static final int TILE_SIZE = 256;
+
+	/**
+	 * The default number of coloured pixels to keep in the tile cache, 64MB worth
+	 */
+	public static final int DEFAULT_CACHE_PIXELS = 16 * 1024 * 1024;
+
+	private final TileCache tiles;
+	private MapPyramid pyramid;
+
+	//the last region drawn, reused while the view stays the same
+	private Buffer region;
+	private int regionLevel, regionX, regionY, regionWidth, regionHeight;
+
+	public TiledMapRenderer() {
+		this(DEFAULT_CACHE_PIXELS);
+	}
+
+	/**
+	 * @param cachePixels the number of coloured pixels to keep in the tile cache
+	 */
+	public TiledMapRenderer(int cachePixels) {
+		tiles = new TileCache(cachePixels);
+	}
+
+	/**
+	 * Sets the map to draw, discarding any coloured tiles. The data array must not
+	 * be modified afterwards.
+	 */
+	public synchronized void setData(float[] data, int width, int height) {
+		pyramid = new MapPyramid(data, width, height);
+		recolour();
+	}
+
+	public synchronized boolean hasData() {
+		return pyramid != null;
+	}
+
+	public synchronized MapPyramid getPyramid() {
+		return pyramid;
+	}
+
+	/**
+	 * Discards any coloured tiles, so that the map is coloured again as it comes
+	 * into view. This should be called whenever the colouring changes.
+	 */
+	public synchronized void recolour() {
+		tiles.clear();
+		region = null;
+	}
+
+	/**
+	 * Returns the number of coloured pixels currently held in the tile cache
+	 */
+	public synchronized int getCachedPixels() {
+		return tiles.pixels;
+	}
+
+	/**
+	 * Draws the part of the map which falls within the Surface's clip
+	 *
+	 * @param context the Surface to draw to, with the map's top left corner at the origin
+	 * @param cellSize the size of one of the map's cells on the Surface
+	 * @param colouring gives the colour for a value from the map
+	 */
+	public synchronized void draw(Surface context, float cellSize, DoubleFunction<PaletteColour> colouring) {
+		if (pyramid == null) return;
+
+		int level = pyramid.getLevel(cellSize);
+		float scale = cellSize * (1 << level);
+		int width = pyramid.getWidth(level);
+		int height = pyramid.getHeight(level);
+
+		int x0 = 0, y0 = 0, x1 = width, y1 = height;
+		Coord<Bounds<Float>> clip = context.getClipBounds();
+		if (clip != null) {
+			x0 = clamp((int) Math.floor(clip.x.start / scale), width);
+			x1 = clamp((int) Math.ceil(clip.x.end / scale), width);
+			y0 = clamp((int) Math.floor(clip.y.start / scale), height);
+			y1 = clamp((int) Math.ceil(clip.y.end / scale), height);
+		}
+		if (x1 <= x0 || y1 <= y0) return;
+
+		if (region == null || regionLevel != level || regionX != x0 || regionY != y0 || regionWidth != x1 - x0 || regionHeight != y1 - y0) {
+			int[] pixels = render(level, x0, y0, x1 - x0, y1 - y0, colouring);
+			region = context.getImageBuffer(x1 - x0, y1 - y0);
+			for (int row = 0; row < y1 - y0; row++) {
+				region.setPixelsARGB(row * (x1 - x0), pixels, row * (x1 - x0), x1 - x0);
+			}
+			regionLevel = level;
+			regionX = x0;
+			regionY = y0;
+			regionWidth = x1 - x0;
+			regionHeight = y1 - y0;
+		}
+
+		context.save();
+		context.translate(x0 * scale, y0 * scale);
+		context.compose(region, 0, 0, scale);
+		context.restore();
+	}
+
+	/**
+	 * Colours a region of the given level of the map, reusing cached tiles where
+	 * possible and colouring any missing tiles in parallel.
+	 *
+	 * @return the region's colours as packed ARGB values, row by row
+	 */
+	public synchronized int[] render(int level, int x, int y, int width, int height, DoubleFunction<PaletteColour> colouring) {
+		int levelWidth = pyramid.getWidth(level);
+		int levelHeight = pyramid.getHeight(level);
+		if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > levelWidth || y + height > levelHeight) {
+			throw new IllegalArgumentException("Region lies outside of the map");
+		}
+		int[] pixels = new int[width * height];
+		if (width == 0 || height == 0) return pixels;
+
+		//find the tiles we need, and colour the ones we don't have
+		Map<Long, int[]> visible = new HashMap<>();
+		List<Long> missing = new ArrayList<>();
+		for (int ty = y / TILE_SIZE; ty <= (y + height - 1) / TILE_SIZE; ty++) {
+			for (int tx = x / TILE_SIZE; tx <= (x + width - 1) / TILE_SIZE; tx++) {
+				long key = key(level, tx, ty);
+				int[] tile = tiles.get(key);
+				if (tile == null) {
+					missing.add(key);
+				} else {
+					visible.put(key, tile);
+				}
+			}
+		}
+		visible.putAll(missing.parallelStream().collect(Collectors.toMap(key -> key, key -> colourTile(key, colouring))));
+		for (Long key : missing) {
+			tiles.put(key, visible.get(key));
+		}
+
+		//copy the visible part of each tile into the region
+		for (Map.Entry<Long, int[]> entry : visible.entrySet()) {
+			int tx = tileX(entry.getKey());
+			int ty = tileY(entry.getKey());
+			int[] tile = entry.getValue();
+			int tileLeft = tx * TILE_SIZE;
+			int tileTop = ty * TILE_SIZE;
+			int tileWidth = Math.min(TILE_SIZE, levelWidth - tileLeft);
+
+			int left = Math.max(x, tileLeft);
+			int right = Math.min(x + width, tileLeft + tileWidth);
+			int top = Math.max(y, tileTop);
+			int bottom = Math.min(y + height, tileTop + TILE_SIZE);
+			for (int row = top; row < bottom; row++) {
+				System.arraycopy(tile, (row - tileTop) * tileWidth + (left - tileLeft), pixels, (row - y) * width + (left - x), right - left);
+			}
+		}
+
+		return pixels;
+	}
+
+	private int[] colourTile(long key, DoubleFunction<PaletteColour> colouring) {
+		int level = tileLevel(key);
+		int levelWidth = pyramid.getWidth(level);
+		int levelHeight = pyramid.getHeight(level);
+		float[] data = pyramid.getData(level);
+
+		int left = tileX(key) * TILE_SIZE;
+		int top = tileY(key) * TILE_SIZE;
+		int width = Math.min(TILE_SIZE, levelWidth - left);
+		int height = Math.min(TILE_SIZE, levelHeight - top);
+
+		int[] tile = new int[width * height];
+		for (int row = 0; row < height; row++) {
+			int source = (top + row) * levelWidth + left;
+			for (int column = 0; column < width; column++) {
+				tile[row * width + column] = colouring.apply(data[source + column]).getARGB();
+			}
+		}
+		return tile;
+	}
+
+	private static int clamp(int value, int max) {
+		return Math.max(0, Math.min(max, value));
+	}
+
+	private static long key(int level, int tx, int ty) {
+		return ((long) level << 48) | ((long) ty << 24) | tx;
+	}
+
+	private static int tileLevel(long key) {
+		return (int) (key >>> 48);
+	}
+
+	private static int tileY(long key) {
+		return (int) ((key >>> 24) & 0xFFFFFF);
+	}
+
+	private static int tileX(long key) {
+		return (int) (key & 0xFFFFFF);
+	}
+
+
+	/**
+	 * Least-recently-used cache of coloured tiles, bounded by the number of pixels
+	 * it holds rather than the number of tiles, since tiles at the edges of the map
+	 * are smaller.
+	 */
+	private static class TileCache {
+
+		private final LinkedHashMap<Long, int[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+		private final int capacity;
+		private int pixels = 0;
+
+		TileCache(int capacity) {
+			this.capacity = capacity;
+		}
+
+		int[] get(long key) {
+			return tiles.get(key);
+		}
+
+		void put(long key, int[] tile) {
+			int[] old = tiles.put(key, tile);
+			if (old != null) {
+				pixels -= old.length;
+			}
+			pixels += tile.length;
+
+			Iterator<int[]> eldest = tiles.values().iterator();
+			while (pixels > capacity && eldest.hasNext()) {
+				int[] evicted = eldest.next();
+				if (evicted == tile) break;
+				pixels -= evicted.length;
+				eldest.remove();
+			}
+		}
+
+		void clear() {
+			tiles.clear();
+			pixels = 0;
+		}
+
+	}
+
+}
@@ -65,4 +65,15 @@ public class PaletteColour {
 		return Integer.toHexString(arbg);
 	}
 	
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof PaletteColour)) return false;
+		return arbg == ((PaletteColour) other).arbg;
+	}
+	
+	@Override
+	public int hashCode() {
+		return arbg;
+	}
+	
 }
@@ -6,6 +6,8 @@ import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 
 /**
  * A Palette is used to control the colour scheme used to fill in a Map.
+ * Palettes are immutable, and palettes which give the same colours should be
+ * equal, so that colours drawn with one palette can be reused for another.
  * 
  * @author Nathaniel Sherry, 2009
  * @see scidraw.drawing.map.MapDrawing Map
@@ -1,6 +1,7 @@
 package org.peakaboo.framework.cyclops.visualization.palette.palettes;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 
@@ -33,4 +34,16 @@ public class ColourListPalette extends AbstractPalette {
 		return spectrum.get(index);
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ColourListPalette)) return false;
+		ColourListPalette o = (ColourListPalette) other;
+		return Objects.equals(spectrum, o.spectrum) && hasNegatives == o.hasNegatives;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(spectrum, hasNegatives);
+	}
+
 }
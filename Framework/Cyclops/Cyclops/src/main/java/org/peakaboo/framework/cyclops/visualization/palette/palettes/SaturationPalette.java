@@ -1,5 +1,7 @@
 package org.peakaboo.framework.cyclops.visualization.palette.palettes;
 
+import java.util.Objects;
+
 import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 
 public class SaturationPalette extends AbstractPalette
@@ -23,4 +25,16 @@ public class SaturationPalette extends AbstractPalette
 		return unsaturated;
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof SaturationPalette)) return false;
+		SaturationPalette o = (SaturationPalette) other;
+		return Objects.equals(saturated, o.saturated) && Objects.equals(unsaturated, o.unsaturated);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(saturated, unsaturated);
+	}
+
 }
@@ -1,5 +1,7 @@
 package org.peakaboo.framework.cyclops.visualization.palette.palettes;
 
+import java.util.Objects;
+
 import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 
 public class SingleColourPalette extends AbstractPalette
@@ -18,4 +20,16 @@ public class SingleColourPalette extends AbstractPalette
 		return colour;
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof SingleColourPalette)) return false;
+		SingleColourPalette o = (SingleColourPalette) other;
+		return Objects.equals(colour, o.colour);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(colour);
+	}
+
 }
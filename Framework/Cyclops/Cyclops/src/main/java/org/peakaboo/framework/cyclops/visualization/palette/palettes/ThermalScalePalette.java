@@ -2,6 +2,7 @@ package org.peakaboo.framework.cyclops.visualization.palette.palettes;
 
 
 import java.util.List;
+import java.util.Objects;
 
 import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
 import org.peakaboo.framework.cyclops.visualization.palette.Spectrums;
@@ -75,4 +76,16 @@ public class ThermalScalePalette extends AbstractPalette
 		return spectrum.get(index);
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ThermalScalePalette)) return false;
+		ThermalScalePalette o = (ThermalScalePalette) other;
+		return Objects.equals(spectrum, o.spectrum) && hasNegatives == o.hasNegatives;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(spectrum, hasNegatives);
+	}
+
 }
@@ -1,8 +1,11 @@
 package cyclops;
 
+import java.nio.FloatBuffer;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
 
 public class ISpectrumTests {
@@ -41,4 +44,38 @@ public class ISpectrumTests {
 		
 	}
 	
+	@Test
+	public void views() {
+		
+		ISpectrum s1 = new ISpectrum(new float[] {0, 1, 2, 3, 4});
+		
+		//views share the spectrum's data
+		ReadOnlySpectrum view = s1.view(1, 3);
+		Assert.assertEquals(3, view.size());
+		Assert.assertEquals(6f, view.sum(), 0f);
+		s1.set(2, 10f);
+		Assert.assertEquals(10f, view.get(1), 0f);
+		Assert.assertEquals(10f, view.view(1, 2).get(0), 0f);
+		
+		float[] target = new float[5];
+		view.copyInto(target, 2);
+		Assert.assertArrayEquals(new float[] {0, 0, 1, 10, 3}, target, 0f);
+		
+		FloatBuffer buffer = view.buffer();
+		Assert.assertTrue(buffer.isReadOnly());
+		Assert.assertEquals(3, buffer.remaining());
+		Assert.assertEquals(1f, buffer.get(0), 0f);
+		
+		//copies made from views are independent
+		Spectrum copy = new ISpectrum(view);
+		Assert.assertEquals(view, copy);
+		s1.set(1, 5f);
+		Assert.assertEquals(1f, copy.get(0), 0f);
+		
+		Spectrum s2 = new ISpectrum(5);
+		s2.copy(s1.readOnlyView());
+		Assert.assertEquals(s1, s2);
+		
+	}
+	
 }
@@ -0,0 +1,101 @@
+package cyclops;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.peakaboo.framework.cyclops.SlidingWindow;
+
+/**
+ * Measures the cost of one window pass over a single 2048 channel spectrum
+ * as the window grows. The naive versions revisit every point in the window
+ * for each channel, the way the background and noise filters used to.
+ * <br/><br/>
+ * This is not a unit test, run it via {@link #main(String[])} on the test
+ * classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlidingWindowBenchmark {
+
+	private static final int CHANNELS = 2048;
+
+	@Param({"2", "10", "50", "100", "200", "400"})
+	public int reach;
+
+	private float[] source, target;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(3);
+		source = new float[CHANNELS];
+		target = new float[CHANNELS];
+		for (int i = 0; i < CHANNELS; i++) {
+			source[i] = random.nextFloat() * 1000f;
+		}
+	}
+
+	@Benchmark
+	public float[] naiveSum() {
+		for (int i = 0; i < CHANNELS; i++) {
+			float sum = 0;
+			for (int p = Math.max(0, i - reach); p <= Math.min(CHANNELS - 1, i + reach); p++) {
+				sum += source[p];
+			}
+			target[i] = sum;
+		}
+		return target;
+	}
+
+	@Benchmark
+	public float[] sum() {
+		SlidingWindow.sum(source, target, reach);
+		return target;
+	}
+
+	@Benchmark
+	public float[] naiveMinimum() {
+		for (int i = 0; i < CHANNELS; i++) {
+			float min = Float.MAX_VALUE;
+			for (int p = Math.max(0, i - reach); p <= Math.min(CHANNELS - 1, i + reach); p++) {
+				min = Math.min(min, source[p]);
+			}
+			target[i] = min;
+		}
+		return target;
+	}
+
+	@Benchmark
+	public float[] minimum() {
+		SlidingWindow.minimum(source, target, reach);
+		return target;
+	}
+
+	@Benchmark
+	public float[] exponential() {
+		SlidingWindow.exponential(source, target, reach, 0.5f);
+		return target;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SlidingWindowBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,100 @@
+package cyclops;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.framework.cyclops.SlidingWindow;
+
+public class SlidingWindowTests {
+
+	private static final int[] REACHES = {0, 1, 3, 10, 150, 600};
+
+	@Test
+	public void sum() {
+		float[] data = data(500);
+		for (int reach : REACHES) {
+			float[] actual = new float[data.length];
+			SlidingWindow.sum(data, actual, reach);
+			for (int i = 0; i < data.length; i++) {
+				double expected = 0;
+				for (int p = Math.max(0, i - reach); p <= Math.min(data.length - 1, i + reach); p++) {
+					expected += data[p];
+				}
+				Assert.assertEquals(expected, actual[i], Math.abs(expected) * 1e-5 + 1e-3);
+			}
+		}
+	}
+
+	@Test
+	public void minimum() {
+		float[] data = data(500);
+		for (int reach : REACHES) {
+			float[] actual = new float[data.length];
+			SlidingWindow.minimum(data, actual, reach);
+			for (int i = 0; i < data.length; i++) {
+				float expected = Float.MAX_VALUE;
+				for (int p = Math.max(0, i - reach); p <= Math.min(data.length - 1, i + reach); p++) {
+					expected = Math.min(expected, data[p]);
+				}
+				Assert.assertEquals(expected, actual[i], 0f);
+			}
+		}
+	}
+
+	@Test
+	public void exponential() {
+		float[] data = data(500);
+		for (int reach : REACHES) {
+			float[] actual = new float[data.length];
+			SlidingWindow.exponential(data, actual, reach, 0.5f);
+			for (int i = 0; i < data.length; i++) {
+				double sum = 0, weight = 0;
+				for (int p = Math.max(0, i - reach); p <= Math.min(data.length - 1, i + reach); p++) {
+					double w = Math.pow(0.5, Math.abs(p - i));
+					sum += data[p] * w;
+					weight += w;
+				}
+				Assert.assertEquals(sum / weight, actual[i], 1e-3);
+			}
+		}
+	}
+
+	@Test
+	public void symmetric() {
+		float[] data = data(100);
+		float[] coefficients = {17, 12, -3};
+		float[] actual = new float[data.length];
+		SlidingWindow.symmetric(data, actual, coefficients);
+		for (int i = 0; i < data.length; i++) {
+			float sum = 0, normalize = 0;
+			for (int d = -2; d <= 2; d++) {
+				if (i + d < 0 || i + d >= data.length) continue;
+				sum += coefficients[Math.abs(d)] * data[i + d];
+				normalize += coefficients[Math.abs(d)];
+			}
+			Assert.assertEquals(sum / normalize, actual[i], 1e-3);
+		}
+	}
+
+	@Test
+	public void prefixSums() {
+		float[] data = data(100);
+		double[] prefix = SlidingWindow.prefixSums(data);
+		double expected = 0;
+		for (int i = 10; i <= 40; i++) {
+			expected += data[i];
+		}
+		Assert.assertEquals(expected, prefix[41] - prefix[10], 1e-3);
+	}
+
+	private static float[] data(int size) {
+		Random random = new Random(2);
+		float[] data = new float[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = random.nextFloat() * 1000f;
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,99 @@
+package cyclops;
+
+import java.util.Random;
+import java.util.function.DoubleFunction;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.framework.cyclops.visualization.drawing.map.tiles.MapPyramid;
+import org.peakaboo.framework.cyclops.visualization.drawing.map.tiles.TiledMapRenderer;
+import org.peakaboo.framework.cyclops.visualization.palette.PaletteColour;
+
+public class TiledMapRendererTests {
+
+	private static final DoubleFunction<PaletteColour> GREYS = value -> {
+		int grey = (int) Math.max(0, Math.min(255, value));
+		return new PaletteColour(255, grey, grey, grey);
+	};
+
+	@Test
+	public void pyramid() {
+		int width = 5, height = 3;
+		float[] data = data(width, height);
+		MapPyramid pyramid = new MapPyramid(data, width, height);
+
+		Assert.assertEquals(4, pyramid.getLevels());
+		Assert.assertSame(data, pyramid.getData(0));
+		Assert.assertEquals(3, pyramid.getWidth(1));
+		Assert.assertEquals(2, pyramid.getHeight(1));
+		Assert.assertEquals(1, pyramid.getWidth(3));
+		Assert.assertEquals(1, pyramid.getHeight(3));
+
+		float[] level1 = pyramid.getData(1);
+		//a full block of four values
+		Assert.assertEquals((data[0] + data[1] + data[5] + data[6]) / 4f, level1[0], 0.0001f);
+		//the right edge only covers one column
+		Assert.assertEquals((data[4] + data[9]) / 2f, level1[2], 0.0001f);
+		//the bottom edge only covers one row
+		Assert.assertEquals((data[10] + data[11]) / 2f, level1[3], 0.0001f);
+		//the bottom right corner only covers one value
+		Assert.assertEquals(data[14], level1[5], 0.0001f);
+
+		Assert.assertEquals(0, pyramid.getLevel(4f));
+		Assert.assertEquals(0, pyramid.getLevel(0.6f));
+		Assert.assertEquals(1, pyramid.getLevel(0.5f));
+		Assert.assertEquals(2, pyramid.getLevel(0.2f));
+		Assert.assertEquals(3, pyramid.getLevel(0.0001f));
+	}
+
+	/**
+	 * Regions assembled from tiles should match colouring the map directly, and
+	 * the tile cache should not grow past its capacity
+	 */
+	@Test
+	public void tiles() {
+		int width = 1000, height = 700;
+		float[] data = data(width, height);
+		int tilePixels = TiledMapRenderer.TILE_SIZE * TiledMapRenderer.TILE_SIZE;
+		TiledMapRenderer renderer = new TiledMapRenderer(tilePixels * 4);
+		renderer.setData(data, width, height);
+
+		Random random = new Random(3);
+		for (int i = 0; i < 20; i++) {
+			int x = random.nextInt(width);
+			int y = random.nextInt(height);
+			int w = random.nextInt(width - x) + 1;
+			int h = random.nextInt(height - y) + 1;
+			int[] region = renderer.render(0, x, y, w, h, GREYS);
+			for (int row = 0; row < h; row++) {
+				for (int column = 0; column < w; column++) {
+					int expected = GREYS.apply(data[(y + row) * width + x + column]).getARGB();
+					Assert.assertEquals(expected, region[row * w + column]);
+				}
+			}
+			Assert.assertTrue(renderer.getCachedPixels() <= tilePixels * 4);
+		}
+
+		//lower levels of detail come from the pyramid
+		MapPyramid pyramid = renderer.getPyramid();
+		int level = 2;
+		int[] region = renderer.render(level, 0, 0, pyramid.getWidth(level), pyramid.getHeight(level), GREYS);
+		float[] levelData = pyramid.getData(level);
+		for (int i = 0; i < region.length; i++) {
+			Assert.assertEquals(GREYS.apply(levelData[i]).getARGB(), region[i]);
+		}
+
+		renderer.recolour();
+		Assert.assertEquals(0, renderer.getCachedPixels());
+	}
+
+	private static float[] data(int width, int height) {
+		Random random = new Random(1);
+		float[] data = new float[width * height];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = random.nextFloat() * 255f;
+		}
+		return data;
+	}
+
+}
@@ -9,6 +9,7 @@ import java.awt.Font;
 import java.awt.GradientPaint;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.font.TextLayout;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
@@ -17,6 +18,8 @@ import java.awt.image.BufferedImage;
 import java.util.Stack;
 import java.util.logging.Level;
 
+import org.peakaboo.framework.cyclops.Bounds;
+import org.peakaboo.framework.cyclops.Coord;
 import org.peakaboo.framework.cyclops.log.CyclopsLog;
 import org.peakaboo.framework.cyclops.visualization.Buffer;
 import org.peakaboo.framework.cyclops.visualization.Surface;
@@ -82,6 +85,18 @@ abstract class AbstractGraphicsSurface implements Surface
 		graphics.clip(path);
 		path = newPath();
 	}
+	
+	
+	public Coord<Bounds<Float>> getClipBounds()
+	{
+		Shape clip = graphics.getClip();
+		if (clip == null) return null;
+		Rectangle2D bounds = clip.getBounds2D();
+		return new Coord<>(
+				new Bounds<>((float)bounds.getMinX(), (float)bounds.getMaxX()), 
+				new Bounds<>((float)bounds.getMinY(), (float)bounds.getMaxY())
+			);
+	}
 
 
 	public void fill()
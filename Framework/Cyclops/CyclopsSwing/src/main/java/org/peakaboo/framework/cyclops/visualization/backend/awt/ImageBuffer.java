@@ -86,6 +86,23 @@ public class ImageBuffer extends ScreenSurface implements Buffer
 	
 	
 
+	@Override
+	public void setPixelsARGB(int offset, int[] argb, int start, int length)
+	{
+		if (datasource == null) {
+			init();
+		}
+		dirty = true;
+		offset *= 4;
+		for (int i = 0; i < length; i++) {
+			int pixel = argb[start + i];
+			datasource[offset++] = (pixel >> 16) & 0xFF;
+			datasource[offset++] = (pixel >> 8) & 0xFF;
+			datasource[offset++] = pixel & 0xFF;
+			datasource[offset++] = (pixel >>> 24);
+		}
+	}
+	
 	@Override
 	public PaletteColour getPixelValue(int x, int y) {
 		int index = (y * image.getWidth() + x);
@@ -1,8 +1,8 @@
 package org.peakaboo.framework.eventful;
 
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 
@@ -21,15 +21,16 @@ public class Eventful implements IEventful
 
 	protected final List<EventfulListener>	listeners;
 	private Consumer<Runnable> uiThreadRunnerOverride = null;
+	private final EventfulDispatcher dispatcher = new EventfulDispatcher();
 	
 
 	public Eventful()
 	{
-		listeners = new LinkedList<EventfulListener>();
+		listeners = new CopyOnWriteArrayList<EventfulListener>();
 	}
 
 
-	public synchronized void addListener(EventfulListener l)
+	public void addListener(EventfulListener l)
 	{
 		listeners.add(l);
 	}
@@ -37,23 +38,15 @@ public class Eventful implements IEventful
 
 
 	//Done on the event thread on purpose
-	public synchronized void removeListener(final EventfulListener l)
+	public void removeListener(final EventfulListener l)
 	{
-		getUIThreadRunner().accept(() -> { 
-			synchronized(Eventful.this) { 
-					listeners.remove(l);
-			}
-		});
+		getUIThreadRunner().accept(() -> listeners.remove(l));
 	}
 
 	//Done on the event thread on purpose
-	public synchronized void removeAllListeners()
+	public void removeAllListeners()
 	{
-		getUIThreadRunner().accept(() -> { 
-			synchronized(Eventful.this) { 
-					listeners.clear();
-			}
-		});
+		getUIThreadRunner().accept(() -> listeners.clear());
 	}
 
 	private Consumer<Runnable> getUIThreadRunner() {
@@ -69,10 +62,16 @@ public class Eventful implements IEventful
 	 */
 	public void setUIThreadRunnerOverride(Consumer<Runnable> override) {
 		uiThreadRunnerOverride = override;
+		//events delivered some other way may need to arrive eagerly, so they aren't merged
+		dispatcher.setMerging(override == null);
 	}
 	
 	
 	/**
+	 * Notifies listeners of a change. If an earlier notification is still waiting
+	 * to be delivered, this one is merged into it, since listeners will see the
+	 * latest state either way.
+	 * 
 	 * @see org.peakaboo.framework.eventful.IEventful#updateListeners()
 	 */
 	public void updateListeners()
@@ -80,15 +79,28 @@ public class Eventful implements IEventful
 
 		if (listeners.size() == 0) return;
 
-		getUIThreadRunner().accept(() -> { 
-			synchronized(Eventful.this) {
-				for (EventfulListener l : listeners) {
-					l.change();
-				}
+		dispatcher.fire(getUIThreadRunner(), Eventful.class, true, () -> { 
+			for (EventfulListener l : listeners) {
+				l.change();
 			}
 		});
 
 	}
+	
+	/**
+	 * The number of times {@link #updateListeners()} has been called with
+	 * listeners present
+	 */
+	public long getEventsFired() {
+		return dispatcher.getFired();
+	}
+	
+	/**
+	 * The number of notifications delivered to listeners, after merging
+	 */
+	public long getEventsDelivered() {
+		return dispatcher.getDelivered();
+	}
 
 
 }
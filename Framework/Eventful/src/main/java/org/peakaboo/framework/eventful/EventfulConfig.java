@@ -1,12 +1,32 @@
 package org.peakaboo.framework.eventful;
 
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 public class EventfulConfig {
 
 	public static Consumer<Runnable> uiThreadRunner = r -> r.run();
 	
+	static final LongAdder FIRED = new LongAdder();
+	static final LongAdder DELIVERED = new LongAdder();
+	
+	/**
+	 * The number of events fired by all Eventful objects so far
+	 */
+	public static long getEventsFired() {
+		return FIRED.sum();
+	}
+	
+	/**
+	 * The number of events delivered to listeners by all Eventful objects so far.
+	 * Events merged into other events aren't delivered, so this can be lower than
+	 * {@link #getEventsFired()}.
+	 */
+	public static long getEventsDelivered() {
+		return DELIVERED.sum();
+	}
+	
 	private static LinkedBlockingQueue<Runnable> globalDeliveryQueue = new LinkedBlockingQueue<>();
 	public static void deliver(Runnable job) {
 		globalDeliveryQueue.add(job);
@@ -0,0 +1,99 @@
+package org.peakaboo.framework.eventful;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sends events to listeners through a thread runner, merging an event into an
+ * identical one which is still waiting to be delivered. Controllers often fire
+ * several identical events in response to one change, and since listeners only
+ * act on the latest state, delivering them all would just repeat the same work.
+ * <br/><br/>
+ * Merging can be turned off for owners whose events must be delivered eagerly,
+ * like caches invalidating their dependents, since a caller whose event was
+ * merged returns before that event is delivered.
+ *
+ * @author NAS
+ *
+ */
+class EventfulDispatcher {
+
+	private final Map<Object, Delivery> pending = new HashMap<>();
+	private final LongAdder fired = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private volatile boolean merging = true;
+
+	/**
+	 * Fires an event. If an identical event (one with an equal key) is still
+	 * waiting to be delivered, the two are merged.
+	 *
+	 * @param runner the thread runner to deliver the event with
+	 * @param key identifies the event for merging
+	 * @param keepPlace when true, a merged event is delivered in the place of the
+	 *        earlier one. Otherwise, the earlier one is dropped and the event is
+	 *        delivered in its own place, after any events fired in between.
+	 * @param delivery notifies the listeners
+	 */
+	void fire(Consumer<Runnable> runner, Object key, boolean keepPlace, Runnable delivery) {
+		fired.increment();
+		EventfulConfig.FIRED.increment();
+
+		Delivery job;
+		synchronized (pending) {
+			Delivery existing = merging ? pending.get(key) : null;
+			if (existing != null) {
+				if (keepPlace) {
+					return;
+				}
+				existing.cancelled = true;
+			}
+			job = new Delivery(key, delivery);
+			pending.put(key, job);
+		}
+		runner.accept(job);
+	}
+
+	void setMerging(boolean merging) {
+		this.merging = merging;
+	}
+
+	long getFired() {
+		return fired.sum();
+	}
+
+	long getDelivered() {
+		return delivered.sum();
+	}
+
+
+	private class Delivery implements Runnable {
+
+		private final Object key;
+		private final Runnable delivery;
+		//guarded by the pending map
+		private boolean cancelled = false;
+
+		Delivery(Object key, Runnable delivery) {
+			this.key = key;
+			this.delivery = delivery;
+		}
+
+		@Override
+		public void run() {
+			synchronized (pending) {
+				if (cancelled) {
+					return;
+				}
+				//events fired from here on aren't covered by this delivery
+				pending.remove(key, this);
+			}
+			delivered.increment();
+			EventfulConfig.DELIVERED.increment();
+			delivery.run();
+		}
+
+	}
+
+}
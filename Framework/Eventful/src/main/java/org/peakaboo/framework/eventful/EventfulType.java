@@ -1,7 +1,7 @@
 package org.peakaboo.framework.eventful;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 public class EventfulType<T> implements IEventfulType<T>
@@ -9,57 +9,68 @@ public class EventfulType<T> implements IEventfulType<T>
 
 	protected final List<EventfulTypeListener<T>>	listeners;
 	private Consumer<Runnable> uiThreadRunnerOverride = null;
+	private final EventfulDispatcher dispatcher = new EventfulDispatcher();
 	
 	public EventfulType() {
 		
-		listeners = new LinkedList<EventfulTypeListener<T>>();
+		listeners = new CopyOnWriteArrayList<EventfulTypeListener<T>>();
 		
 	}
 
-	public synchronized void addListener(final EventfulTypeListener<T> l)
+	public void addListener(final EventfulTypeListener<T> l)
 	{
 		listeners.add(l);
 	}
 
 
 	//Done on the event thread on purpose
-	public synchronized void removeListener(final EventfulTypeListener<T> l)
+	public void removeListener(final EventfulTypeListener<T> l)
 	{
-		getUIThreadRunner().accept(() -> { 
-			synchronized(EventfulType.this) { 
-				listeners.remove(l);
-			}
-		});
+		getUIThreadRunner().accept(() -> listeners.remove(l));
 	}
 	
 
 	//Done on the event thread on purpose
-	public synchronized void removeAllListeners()
+	public void removeAllListeners()
 	{
-		getUIThreadRunner().accept(() -> { 
-			synchronized(EventfulType.this) { 
-				listeners.clear();
-			}
-		});
+		getUIThreadRunner().accept(() -> listeners.clear());
 	}
 
 
 
+	/**
+	 * Notifies listeners of a change with the given message. If an equal message
+	 * is still waiting to be delivered, it is dropped in favour of this one, so
+	 * that listeners still see messages in the order they were sent.
+	 */
 	public void updateListeners(final T message)
 	{
 
 		if (listeners.size() == 0) return;
 
-		getUIThreadRunner().accept(() -> {
-			synchronized(EventfulType.this){
-				for (EventfulTypeListener<T> l : listeners) {
-					l.change(message);
-				}
+		dispatcher.fire(getUIThreadRunner(), message, false, () -> {
+			for (EventfulTypeListener<T> l : listeners) {
+				l.change(message);
 			}
 		});
 
 	}
 	
+	/**
+	 * The number of times {@link #updateListeners(Object)} has been called with
+	 * listeners present
+	 */
+	public long getEventsFired() {
+		return dispatcher.getFired();
+	}
+	
+	/**
+	 * The number of messages delivered to listeners, after merging
+	 */
+	public long getEventsDelivered() {
+		return dispatcher.getDelivered();
+	}
+	
 	private Consumer<Runnable> getUIThreadRunner() {
 		if (uiThreadRunnerOverride == null) {
 			return EventfulConfig::deliver;
@@ -73,6 +84,8 @@ public class EventfulType<T> implements IEventfulType<T>
 	 */
 	public void setUIThreadRunnerOverride(Consumer<Runnable> override) {
 		uiThreadRunnerOverride = override;
+		//events delivered some other way may need to arrive eagerly, so they aren't merged
+		dispatcher.setMerging(override == null);
 	}
 	
 }
@@ -0,0 +1,253 @@
+package org.peakaboo.framework.eventful.cache;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * EventfulAsyncCache is a kind of EventfulCache which calculates its value on
+ * a pool of worker threads. {@link #getValue()} still waits for an up-to-date
+ * value, but {@link #getLatestValue()} returns the last good value (or a
+ * placeholder) right away while a new one is calculated, which keeps things
+ * like painting from waiting on expensive calculations. When the cache is
+ * invalidated again, any calculation still in flight is cancelled, and
+ * listeners are notified both when the value is invalidated and when a new
+ * value lands. Cancelled calculations are not interrupted, since interrupting
+ * a thread blocked on an interruptible channel (like a data source's
+ * FileChannel) closes the channel. They run to completion and their values
+ * are discarded instead.
+ * <br/><br/>
+ * A cache created with {@link #snapshot(Supplier, Function, Supplier)} captures
+ * its inputs on the thread which requests the value, and only the calculation
+ * runs on a worker thread, so that the worker never reads state which the
+ * requesting thread may be modifying. Upstream EventfulAsyncCaches are started
+ * at the same time, so that their inputs are captured on the same thread.
+ * <br/><br/>
+ * Dependents are only invalidated when this cache is, since their values are
+ * calculated from this cache's up-to-date value.
+ *
+ * @author NAS
+ *
+ */
+public class EventfulAsyncCache<T> extends AbstractEventfulCache<T> {
+
+	private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Eventful Cache Worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private Supplier<T> placeholder;
+	//runs on the requesting thread, returning the calculation to run on a worker
+	private Supplier<Supplier<T>> prepare = () -> this::regenerate;
+	private List<EventfulCache<?>> dependents = new CopyOnWriteArrayList<>();
+	private List<EventfulAsyncCache<?>> upstreams = new CopyOnWriteArrayList<>();
+
+	//all guarded by this
+	private long generation = 0;
+	private T latest = null;
+	private boolean hasLatest = false;
+	private long latestGeneration = -1;
+	private CompletableFuture<T> pending = null;
+	private Future<?> work = null;
+
+	public EventfulAsyncCache(Supplier<T> supplier) {
+		this(supplier, null);
+	}
+
+	/**
+	 * @param supplier calculates the value, on a worker thread
+	 * @param placeholder supplies a value for {@link #getLatestValue()} to return
+	 *        before the first value has been calculated. If null,
+	 *        {@link #getLatestValue()} waits for the first value instead.
+	 */
+	public EventfulAsyncCache(Supplier<T> supplier, Supplier<T> placeholder) {
+		super(supplier);
+		this.placeholder = placeholder;
+	}
+
+	/**
+	 * Creates a cache which captures its inputs on the thread requesting the
+	 * value, before handing them to a worker thread to calculate the value.
+	 * @param inputs captures everything the value is calculated from, on the
+	 *        requesting thread. This should be quick, and must not wait on this
+	 *        cache.
+	 * @param calculation calculates the value from the captured inputs, on a
+	 *        worker thread
+	 * @param placeholder supplies a value for {@link #getLatestValue()} to return
+	 *        before the first value has been calculated, may be null
+	 */
+	public static <S, T> EventfulAsyncCache<T> snapshot(Supplier<S> inputs, Function<S, T> calculation, Supplier<T> placeholder) {
+		EventfulAsyncCache<T> cache = new EventfulAsyncCache<>(() -> calculation.apply(inputs.get()), placeholder);
+		cache.prepare = () -> {
+			S captured = inputs.get();
+			return () -> calculation.apply(captured);
+		};
+		return cache;
+	}
+
+	@Override
+	public void invalidate() {
+		// We don't want to hold the lock for updating the deps to prevent deadlock
+		// where getValue locks from the bottom up and invalidate locks from the top
+		// down.
+		synchronized (this) {
+			generation++;
+			if (pending != null) {
+				pending.cancel(false);
+				//don't interrupt, the calculation's value is discarded when it finishes
+				work.cancel(false);
+				pending = null;
+				work = null;
+			}
+		}
+		for (EventfulCache<?> dependent : dependents) {
+			dependent.invalidate();
+		}
+		updateListeners();
+	}
+
+	/**
+	 * Returns an up-to-date value, waiting for it to be calculated if needed.
+	 */
+	@Override
+	public T getValue() {
+		while (true) {
+			CompletableFuture<T> result;
+			long requested;
+			synchronized (this) {
+				if (isFresh()) {
+					return latest;
+				}
+				requested = generation;
+				result = start();
+			}
+
+			try {
+				result.join();
+			} catch (CancellationException e) {
+				//invalidated while we waited, try again
+			} catch (CompletionException e) {
+				synchronized (this) {
+					//a calculation which fails for stale inputs doesn't matter
+					if (requested != generation) continue;
+				}
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Returns the most recently calculated value, even if it is out of date, and
+	 * starts calculating an up-to-date value in the background. Before any value
+	 * has been calculated, this returns the placeholder or, without one, waits for
+	 * the first value.
+	 */
+	@Override
+	public T getLatestValue() {
+		synchronized (this) {
+			if (!isFresh()) {
+				start();
+			}
+			if (hasLatest) {
+				return latest;
+			}
+		}
+		if (placeholder != null) {
+			return placeholder.get();
+		}
+		return getValue();
+	}
+
+	/**
+	 * Returns true if the latest value is up to date
+	 */
+	public synchronized boolean isFresh() {
+		return hasLatest && latestGeneration == generation;
+	}
+
+	@Override
+	public void addDependent(EventfulCache<?> downstream) {
+		dependents.add(downstream);
+	}
+
+	@Override
+	public void addUpstreamDependency(EventfulCache<?> dependency) {
+		super.addUpstreamDependency(dependency);
+		if (dependency instanceof EventfulAsyncCache) {
+			upstreams.add((EventfulAsyncCache<?>) dependency);
+		}
+	}
+
+	/**
+	 * Starts calculating an up-to-date value if there isn't one
+	 */
+	private synchronized void prime() {
+		if (!isFresh()) {
+			start();
+		}
+	}
+
+	//must hold lock
+	private CompletableFuture<T> start() {
+		if (pending == null) {
+			//upstream inputs are captured on this thread too, before our calculation asks for them
+			for (EventfulAsyncCache<?> upstream : upstreams) {
+				upstream.prime();
+			}
+			long calculating = generation;
+			CompletableFuture<T> result = new CompletableFuture<>();
+			Supplier<T> calculation;
+			try {
+				calculation = prepare.get();
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+				return result;
+			}
+			pending = result;
+			work = WORKERS.submit(() -> calculate(calculating, result, calculation));
+		}
+		return pending;
+	}
+
+	private void calculate(long calculating, CompletableFuture<T> result, Supplier<T> calculation) {
+		T value;
+		try {
+			value = calculation.get();
+		} catch (Throwable e) {
+			synchronized (this) {
+				if (pending == result) {
+					pending = null;
+					work = null;
+				}
+			}
+			result.completeExceptionally(e);
+			return;
+		}
+
+		synchronized (this) {
+			if (calculating != generation) {
+				//invalidated while calculating, this value is already out of date
+				return;
+			}
+			latest = value;
+			hasLatest = true;
+			latestGeneration = calculating;
+			pending = null;
+			work = null;
+		}
+		result.complete(value);
+		updateListeners();
+	}
+
+}
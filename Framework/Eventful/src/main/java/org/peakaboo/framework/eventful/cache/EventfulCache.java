@@ -14,6 +14,15 @@ public interface EventfulCache<T> extends IEventful {
 	void invalidate();
 
 	T getValue();
+	
+	/**
+	 * Returns the most recent value without waiting on an expensive calculation,
+	 * if this cache supports that. Caches which calculate their values on the
+	 * calling thread just return {@link #getValue()}.
+	 */
+	default T getLatestValue() {
+		return getValue();
+	}
 
 	/**
 	 * Mark this cached value as dependant (eg derived from) the given cached value.
@@ -0,0 +1,119 @@
+package org.peakaboo.framework.eventful;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventfulTest {
+
+	private Consumer<Runnable> original;
+	private List<Runnable> uiQueue = new ArrayList<>();
+
+	@Before
+	public void queue() {
+		//hold events until the "ui thread" gets to them
+		original = EventfulConfig.uiThreadRunner;
+		EventfulConfig.uiThreadRunner = uiQueue::add;
+	}
+
+	@After
+	public void restore() {
+		EventfulConfig.uiThreadRunner = original;
+	}
+
+	private void drain() {
+		while (!uiQueue.isEmpty()) {
+			uiQueue.remove(0).run();
+		}
+	}
+
+	/**
+	 * A burst of updates should only be delivered once
+	 */
+	@Test
+	public void coalesce() {
+		Eventful eventful = new Eventful();
+		int[] changes = {0};
+		eventful.addListener(() -> changes[0]++);
+
+		for (int i = 0; i < 5; i++) {
+			eventful.updateListeners();
+		}
+		drain();
+		Assert.assertEquals(1, changes[0]);
+		Assert.assertEquals(5, eventful.getEventsFired());
+		Assert.assertEquals(1, eventful.getEventsDelivered());
+
+		//once delivered, new updates are delivered again
+		eventful.updateListeners();
+		drain();
+		Assert.assertEquals(2, changes[0]);
+	}
+
+	/**
+	 * Repeated messages should be merged, but the order of the last copy of each
+	 * message should be kept
+	 */
+	@Test
+	public void coalesceTyped() {
+		EventfulType<String> eventful = new EventfulType<>();
+		List<String> messages = new ArrayList<>();
+		eventful.addListener(messages::add);
+
+		for (String message : new String[] {"a", "b", "a", "a", "c", "b"}) {
+			eventful.updateListeners(message);
+		}
+		drain();
+		Assert.assertEquals(Arrays.asList("a", "c", "b"), messages);
+		Assert.assertEquals(6, eventful.getEventsFired());
+		Assert.assertEquals(3, eventful.getEventsDelivered());
+	}
+
+	/**
+	 * Events delivered through an override should not be merged
+	 */
+	@Test
+	public void eager() {
+		EventfulType<String> eventful = new EventfulType<>();
+		List<Runnable> queue = new ArrayList<>();
+		eventful.setUIThreadRunnerOverride(queue::add);
+		List<String> messages = new ArrayList<>();
+		eventful.addListener(messages::add);
+
+		eventful.updateListeners("a");
+		eventful.updateListeners("a");
+		queue.forEach(Runnable::run);
+		Assert.assertEquals(Arrays.asList("a", "a"), messages);
+	}
+
+	/**
+	 * Listeners may remove themselves while being notified
+	 */
+	@Test
+	public void removeDuringDelivery() {
+		Eventful eventful = new Eventful();
+		int[] changes = {0};
+		EventfulListener[] listener = new EventfulListener[1];
+		listener[0] = () -> {
+			changes[0]++;
+			eventful.removeListener(listener[0]);
+		};
+		eventful.addListener(listener[0]);
+		eventful.addListener(() -> changes[0]++);
+
+		eventful.updateListeners();
+		drain();
+		Assert.assertEquals(2, changes[0]);
+
+		eventful.updateListeners();
+		drain();
+		Assert.assertEquals(3, changes[0]);
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.peakaboo.framework.eventful.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventfulAsyncCacheTest {
+
+	/**
+	 * While a new value is calculated, the last good value should be returned, and
+	 * listeners should hear when the new value lands
+	 */
+	@Test
+	public void latest() throws InterruptedException {
+		AtomicInteger input = new AtomicInteger(1);
+		CountDownLatch release = new CountDownLatch(1);
+		EventfulAsyncCache<Integer> cache = new EventfulAsyncCache<>(() -> {
+			int value = input.get();
+			if (value == 2) {
+				await(release);
+			}
+			return value;
+		});
+
+		Assert.assertEquals(1, (int) cache.getLatestValue());
+		Assert.assertTrue(cache.isFresh());
+
+		CountDownLatch landed = new CountDownLatch(1);
+		input.set(2);
+		cache.invalidate();
+		cache.addListener(() -> {
+			if (cache.isFresh()) landed.countDown();
+		});
+
+		//still calculating, so we get the old value without waiting
+		Assert.assertEquals(1, (int) cache.getLatestValue());
+		Assert.assertFalse(cache.isFresh());
+
+		release.countDown();
+		Assert.assertTrue(landed.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(2, (int) cache.getLatestValue());
+		Assert.assertEquals(2, (int) cache.getValue());
+	}
+
+	/**
+	 * Invalidating a cache should cancel its calculation in flight without
+	 * interrupting it, and its stale value should never land
+	 */
+	@Test
+	public void cancel() {
+		AtomicInteger input = new AtomicInteger(1);
+		AtomicBoolean interrupted = new AtomicBoolean(false);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+		EventfulAsyncCache<Integer> cache = new EventfulAsyncCache<>(() -> {
+			int value = input.get();
+			if (value == 1) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+				stopped.countDown();
+			}
+			return value;
+		}, () -> 0);
+
+		Assert.assertEquals(0, (int) cache.getLatestValue());
+		await(started);
+
+		input.set(2);
+		cache.invalidate();
+		Assert.assertEquals(2, (int) cache.getValue());
+
+		//let the cancelled calculation finish, its value should be discarded
+		release.countDown();
+		await(stopped);
+		Assert.assertFalse(interrupted.get());
+		Assert.assertEquals(2, (int) cache.getLatestValue());
+		Assert.assertTrue(cache.isFresh());
+	}
+
+	/**
+	 * Inputs should be captured on the requesting thread, including those of
+	 * upstream caches, and only the calculation should run on a worker
+	 */
+	@Test
+	public void snapshot() {
+		Thread requester = Thread.currentThread();
+		AtomicInteger input = new AtomicInteger(1);
+		List<Thread> capturing = new CopyOnWriteArrayList<>();
+		List<Thread> calculating = new CopyOnWriteArrayList<>();
+
+		EventfulAsyncCache<Integer> upstream = EventfulAsyncCache.snapshot(() -> {
+			capturing.add(Thread.currentThread());
+			return input.get();
+		}, captured -> {
+			calculating.add(Thread.currentThread());
+			return captured;
+		}, null);
+		EventfulAsyncCache<Integer> downstream = EventfulAsyncCache.snapshot(() -> {
+			capturing.add(Thread.currentThread());
+			return 10;
+		}, factor -> {
+			calculating.add(Thread.currentThread());
+			return upstream.getValue() * factor;
+		}, null);
+		downstream.addUpstreamDependency(upstream);
+
+		Assert.assertEquals(10, (int) downstream.getValue());
+		input.set(2);
+		upstream.invalidate();
+		Assert.assertEquals(20, (int) downstream.getValue());
+
+		Assert.assertEquals(4, capturing.size());
+		for (Thread thread : capturing) {
+			Assert.assertSame(requester, thread);
+		}
+		Assert.assertEquals(4, calculating.size());
+		for (Thread thread : calculating) {
+			Assert.assertNotSame(requester, thread);
+		}
+	}
+
+	/**
+	 * Dependents should be invalidated with this cache, and see its new value
+	 */
+	@Test
+	public void dependents() {
+		AtomicInteger input = new AtomicInteger(1);
+		EventfulAsyncCache<Integer> upstream = new EventfulAsyncCache<>(input::get);
+		EventfulAsyncCache<Integer> downstream = new EventfulAsyncCache<>(() -> upstream.getValue() * 10);
+		downstream.addUpstreamDependency(upstream);
+
+		Assert.assertEquals(10, (int) downstream.getValue());
+		input.set(2);
+		upstream.invalidate();
+		Assert.assertFalse(downstream.isFresh());
+		Assert.assertEquals(20, (int) downstream.getValue());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
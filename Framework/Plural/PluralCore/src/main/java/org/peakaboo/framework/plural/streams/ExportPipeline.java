@@ -0,0 +1,191 @@
+package org.peakaboo.framework.plural.streams;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Produces the records 0 to count-1 in parallel and hands them back in order.
+ * Records are produced ahead of the consumer, but at most a fixed number are
+ * ever in flight or waiting to be consumed, so memory use stays flat however
+ * large the export is. This makes it suitable for putting expensive per-record
+ * work, like filtering, in front of a writer which must see records in order.
+ * <br/><br/>
+ * If the records can't safely be produced from several threads at once, a
+ * sequential pipeline produces each one on the consuming thread as it is
+ * requested instead.
+ *
+ * @author NAS
+ *
+ */
+public class ExportPipeline<T> implements Iterator<T> {
+
+	private static final int PROGRESS_INTERVAL = 100;
+
+	private int count;
+	private IntFunction<T> stage;
+	private int window;
+	private boolean parallel;
+	private int submitted = 0;
+	private Deque<CompletableFuture<T>> pending = new ArrayDeque<>();
+
+	/**
+	 * Creates a pipeline with a window of a few records per processor
+	 */
+	public ExportPipeline(int count, IntFunction<T> stage) {
+		this(count, stage, defaultWindow());
+	}
+
+	/**
+	 * Creates a pipeline with a window of a few records per processor, which
+	 * only produces records on the consuming thread if parallel is false
+	 */
+	public ExportPipeline(int count, IntFunction<T> stage, boolean parallel) {
+		this(count, stage, defaultWindow(), parallel);
+	}
+
+	/**
+	 * @param count the number of records to produce
+	 * @param stage produces the record at the given index, and may be called from
+	 *              several threads at once
+	 * @param window the most records which may be in flight or waiting at once
+	 */
+	public ExportPipeline(int count, IntFunction<T> stage, int window) {
+		this(count, stage, window, true);
+	}
+
+	/**
+	 * @param count the number of records to produce
+	 * @param stage produces the record at the given index
+	 * @param window the most records which may be in flight or waiting at once
+	 * @param parallel false if stage must only be called from the consuming
+	 *                 thread, one record at a time
+	 */
+	public ExportPipeline(int count, IntFunction<T> stage, int window, boolean parallel) {
+		this.count = count;
+		this.stage = stage;
+		this.window = parallel ? Math.max(1, window) : 1;
+		this.parallel = parallel;
+	}
+
+	private static int defaultWindow() {
+		return 4 * ForkJoinPool.getCommonPoolParallelism();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !pending.isEmpty() || submitted < count;
+	}
+
+	/**
+	 * Returns the next record, waiting for it to be produced if needed. Any
+	 * exception thrown while producing it is rethrown here.
+	 */
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fill();
+		CompletableFuture<T> head = pending.removeFirst();
+		//keep the window full while we wait for the head
+		if (parallel) {
+			fill();
+		}
+		try {
+			return head.join();
+		} catch (CompletionException e) {
+			cancel();
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Stops producing records. Records already being produced are allowed to
+	 * finish, but are discarded.
+	 */
+	public void cancel() {
+		for (CompletableFuture<T> future : pending) {
+			future.cancel(false);
+		}
+		pending.clear();
+		submitted = count;
+	}
+
+	private void fill() {
+		while (submitted < count && pending.size() < window) {
+			int index = submitted++;
+			if (parallel) {
+				pending.addLast(CompletableFuture.supplyAsync(() -> stage.apply(index)));
+			} else {
+				pending.addLast(CompletableFuture.completedFuture(stage.apply(index)));
+			}
+		}
+	}
+
+
+	/**
+	 * Receives records from a pipeline, in order
+	 */
+	@FunctionalInterface
+	public interface RecordWriter<T> {
+		void write(T record) throws IOException;
+	}
+
+	/**
+	 * Produces count records in parallel and passes them to the writer in order on
+	 * the calling thread, periodically reporting the number of records written
+	 * since the last report, and stopping early if an abort is requested. Records
+	 * still being produced are discarded if the writer fails.
+	 *
+	 * @param progress receives the number of records written since it was last called
+	 * @param abortRequested returns true if the export should stop early
+	 * @return false if the export was aborted
+	 */
+	public static <T> boolean run(int count, IntFunction<T> stage, RecordWriter<T> writer, IntConsumer progress, BooleanSupplier abortRequested) throws IOException {
+		return run(count, stage, true, writer, progress, abortRequested);
+	}
+
+	/**
+	 * Produces count records, in parallel if allowed, and passes them to the
+	 * writer in order on the calling thread, as
+	 * {@link #run(int, IntFunction, RecordWriter, IntConsumer, BooleanSupplier)}
+	 * does.
+	 *
+	 * @param parallel false if stage must only be called from the calling thread
+	 * @return false if the export was aborted
+	 */
+	public static <T> boolean run(int count, IntFunction<T> stage, boolean parallel, RecordWriter<T> writer, IntConsumer progress, BooleanSupplier abortRequested) throws IOException {
+		ExportPipeline<T> pipeline = new ExportPipeline<>(count, stage, parallel);
+		try {
+			int written = 0;
+			while (pipeline.hasNext()) {
+				writer.write(pipeline.next());
+				written++;
+				if (written == PROGRESS_INTERVAL) {
+					progress.accept(written);
+					written = 0;
+					if (abortRequested.getAsBoolean()) {
+						return false;
+					}
+				}
+			}
+			progress.accept(written);
+			return true;
+		} finally {
+			pipeline.cancel();
+		}
+	}
+
+}
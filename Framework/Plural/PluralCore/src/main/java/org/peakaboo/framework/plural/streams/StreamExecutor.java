@@ -3,6 +3,8 @@ package org.peakaboo.framework.plural.streams;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -12,21 +14,32 @@ import java.util.stream.StreamSupport;
 import org.peakaboo.framework.eventful.EventfulEnum;
 import org.peakaboo.framework.plural.monitor.TaskMonitor;
 
+/**
+ * Runs a task over a (usually parallel) {@link Stream}, tracking progress as
+ * elements pass through the stream's {@link #observe(Stream)} filter. Progress
+ * is counted without locking, and listeners are considered for a notification
+ * every notificationInterval elements. Those notifications are further
+ * throttled so that listeners are not notified more than once every
+ * {@link #MIN_NOTIFICATION_NANOS}, but a final progress notification is always
+ * sent when the task completes.
+ */
 public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implements Predicate<Object>, TaskMonitor<T>{
 
-
+	private static final long MIN_NOTIFICATION_NANOS = 20_000_000;
 	
 	
 	private Thread thread;
 	private StreamExecutor<?> next;
 	private boolean parallel = true;
+	private ForkJoinPool pool = null;
 	
-	private int count = 0;
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong lastNotification = new AtomicLong(0);
 	private int size = -1;
 	private int interval = 100;
 	Optional<T> result = Optional.empty();
 	
-	private State state = State.RUNNING;
+	private volatile State state = State.RUNNING;
 	private String name;
 	
 	public StreamExecutor(String name) {
@@ -35,7 +48,16 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 	
 	public StreamExecutor(String name, int notificationInterval) {
 		this.name = name;
-		this.interval = notificationInterval;
+		this.interval = Math.max(1, notificationInterval);
+	}
+	
+	/**
+	 * Creates a new StreamExecutor which will run its parallel streams on the 
+	 * given {@link ForkJoinPool} rather than the common pool.
+	 */
+	public StreamExecutor(String name, int notificationInterval, ForkJoinPool pool) {
+		this(name, notificationInterval);
+		this.pool = pool;
 	}
 	
 	
@@ -48,16 +70,40 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 	public void setParallel(boolean parallel) {
 		this.parallel = parallel;
 	}
+	
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the {@link ForkJoinPool} that this executor's task will be run in. 
+	 * Parallel streams created by the task will do their work in this pool. 
+	 * If null, the common pool is used.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
 
 	@Override
-	public synchronized boolean test(Object t) {
-		count++;
-		if (count % interval == 0) {
-			updateListeners(Event.PROGRESS);
+	public boolean test(Object t) {
+		if (count.incrementAndGet() % interval == 0) {
+			notifyProgress();
 		}
 		return state == State.RUNNING;
 	}
 	
+	private void notifyProgress() {
+		long now = System.nanoTime();
+		long last = lastNotification.get();
+		if (now - last < MIN_NOTIFICATION_NANOS) {
+			return;
+		}
+		//only one thread gets to send the notification for this window
+		if (lastNotification.compareAndSet(last, now)) {
+			updateListeners(Event.PROGRESS);
+		}
+	}
+	
 
 	public <S> Stream<S> observe(Stream<S> stream) {
 		if (parallel) {
@@ -75,7 +121,7 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 	}
 
 	@Override
-	public void abort() {
+	public synchronized void abort() {
 		if (state == State.RUNNING) {
 			state = State.ABORTED;
 			updateListeners(Event.ABORTED);
@@ -85,10 +131,12 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 	}
 	
 	@Override
-	public void complete() {
+	public synchronized void complete() {
 		
 		if (state == State.RUNNING) {
 			state = State.COMPLETED;
+			//throttling may have skipped the last few updates
+			updateListeners(Event.PROGRESS);
 			updateListeners(Event.COMPLETED);
 			removeAllListeners();
 		}
@@ -101,7 +149,7 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 	
 	@Override
 	public int getCount() {
-		return count;
+		return count.intValue();
 	}
 
 	@Override
@@ -150,7 +198,7 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 	 */
 	public void setTask(Supplier<T> task) {
 		thread = new Thread(() -> {
-			setResult(task.get());
+			setResult(inPool(task));
 			
 			//If another StreamExecutor is specified to run after this is done, kick it off now
 			if (this.next != null && state == State.COMPLETED) {
@@ -210,13 +258,13 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 				}
 			}
 			
-			setResult(
+			setResult(inPool(() -> 
 				task.apply(
 					observe(
 						StreamSupport.stream(source.spliterator(), true)
 					)
 				)
-			);
+			));
 			
 			//If another StreamExecutor is specified to run after this is done, kick it off now
 			if (this.next != null && state == State.COMPLETED) {
@@ -225,6 +273,17 @@ public class StreamExecutor<T> extends EventfulEnum<TaskMonitor.Event> implement
 		});		
 	}
 
+	/**
+	 * Runs the given task inside this executor's {@link ForkJoinPool}, if one 
+	 * has been set, so that any parallel streams it creates use that pool.
+	 */
+	private T inPool(Supplier<T> task) {
+		if (pool == null) {
+			return task.get();
+		}
+		return pool.submit(task::get).join();
+	}
+	
 	/**
 	 * Convenience method for {@link StreamExecutor#setTask(Iterable, Function)} to accept arrays as input
 	 */
@@ -0,0 +1,89 @@
+package org.peakaboo.framework.plural.streams;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the per-element cost of observing a parallel stream with a
+ * {@link StreamExecutor} at several levels of parallelism. The baseline runs
+ * the same stream without observing it, so the difference between the two is
+ * the overhead StreamExecutor adds to each element.
+ * <br/><br/>
+ * This is not a unit test, run it via {@link #main(String[])} on the test
+ * classpath after mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamExecutorBenchmark {
+
+	private static final int ELEMENTS = 1_000_000;
+
+	@Param({"1", "8", "32", "64"})
+	public int threads;
+
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * A small amount of per-element work, so that the stream isn't optimized away
+	 */
+	private static long work(int i) {
+		return (i * 2654435761L) >>> 7;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ELEMENTS)
+	public long baseline() {
+		return pool.submit(() -> IntStream.range(0, ELEMENTS).parallel().mapToLong(StreamExecutorBenchmark::work).sum()).join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ELEMENTS)
+	public long observed() {
+		StreamExecutor<Long> executor = new StreamExecutor<>("Benchmark", 100, pool);
+		return pool.submit(() -> executor.observe(IntStream.range(0, ELEMENTS).boxed()).mapToLong(StreamExecutorBenchmark::work).sum()).join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ELEMENTS)
+	public long boxedBaseline() {
+		return pool.submit(() -> IntStream.range(0, ELEMENTS).boxed().parallel().mapToLong(StreamExecutorBenchmark::work).sum()).join();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(StreamExecutorBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
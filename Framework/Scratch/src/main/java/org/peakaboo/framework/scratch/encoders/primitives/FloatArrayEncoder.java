@@ -0,0 +1,256 @@
+package org.peakaboo.framework.scratch.encoders.primitives;
+
+import java.util.Arrays;
+
+import org.peakaboo.framework.scratch.ScratchEncoder;
+import org.peakaboo.framework.scratch.ScratchException;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Encodes a float[] directly, without any object serialization. Arrays which
+ * hold only whole numbers (eg photon counts) are stored as zigzag varints of
+ * the difference between consecutive values, which is typically one or two
+ * bytes per value. Any other array falls back to storing raw float bits. The
+ * result can optionally be LZ4 compressed as part of the same step.
+ * <br/><br/>
+ * Layout: [flags:1][length:varint] then either the payload directly, or
+ * [payload length:varint][LZ4 block]
+ */
+public class FloatArrayEncoder implements ScratchEncoder<float[]> {
+
+	private static final int MODE_INTEGER = 0;
+	private static final int MODE_FLOAT = 1;
+	private static final int FLAG_LZ4 = 0x80;
+
+	//largest magnitude at which every integer is exactly representable as a float
+	private static final float MAX_EXACT = 1 << 24;
+
+	private static final ThreadLocal<byte[]> workBuffer = ThreadLocal.withInitial(() -> new byte[0]);
+	private static final ThreadLocal<byte[]> lz4Buffer = ThreadLocal.withInitial(() -> new byte[0]);
+
+	private final boolean compress;
+	private LZ4Compressor compressor;
+	private LZ4FastDecompressor decompressor;
+
+	public FloatArrayEncoder() {
+		this(false);
+	}
+
+	public FloatArrayEncoder(boolean compress) {
+		this.compress = compress;
+		if (compress) {
+			compressor = LZ4Factory.fastestInstance().fastCompressor();
+			decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+		}
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Encoding
+	///////////////////////////////////////////////////
+
+	@Override
+	public byte[] encode(float[] data) throws ScratchException {
+		return encode(data, data.length);
+	}
+
+	/**
+	 * Encodes the first length values of the given array
+	 */
+	public byte[] encode(float[] data, int length) throws ScratchException {
+		int mode = isIntegral(data, length) ? MODE_INTEGER : MODE_FLOAT;
+
+		//worst case is 5 bytes per value for varints
+		byte[] work = buffer(workBuffer, length * 5);
+		int payloadLength;
+		if (mode == MODE_INTEGER) {
+			payloadLength = writeIntegers(data, length, work);
+		} else {
+			payloadLength = writeFloats(data, length, work);
+		}
+
+		if (!compress) {
+			byte[] out = new byte[1 + varintSize(length) + payloadLength];
+			out[0] = (byte) mode;
+			int pos = writeVarint(length, out, 1);
+			System.arraycopy(work, 0, out, pos, payloadLength);
+			return out;
+		}
+
+		byte[] lz4 = buffer(lz4Buffer, compressor.maxCompressedLength(payloadLength));
+		int compressedLength = compressor.compress(work, 0, payloadLength, lz4, 0, lz4.length);
+		byte[] out = new byte[1 + varintSize(length) + varintSize(payloadLength) + compressedLength];
+		out[0] = (byte) (mode | FLAG_LZ4);
+		int pos = writeVarint(length, out, 1);
+		pos = writeVarint(payloadLength, out, pos);
+		System.arraycopy(lz4, 0, out, pos, compressedLength);
+		return out;
+	}
+
+	private static boolean isIntegral(float[] data, int length) {
+		for (int i = 0; i < length; i++) {
+			float v = data[i];
+			if (v != (int) v || v > MAX_EXACT || v < -MAX_EXACT) {
+				//also catches NaN, since NaN != anything
+				return false;
+			}
+			if (v == 0 && Float.floatToRawIntBits(v) != 0) {
+				//negative zero wouldn't survive the round trip
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int writeIntegers(float[] data, int length, byte[] out) {
+		int pos = 0;
+		int last = 0;
+		for (int i = 0; i < length; i++) {
+			int value = (int) data[i];
+			int delta = value - last;
+			last = value;
+			pos = writeVarint((delta << 1) ^ (delta >> 31), out, pos);
+		}
+		return pos;
+	}
+
+	private static int writeFloats(float[] data, int length, byte[] out) {
+		int pos = 0;
+		for (int i = 0; i < length; i++) {
+			int bits = Float.floatToRawIntBits(data[i]);
+			out[pos++] = (byte) (bits >>> 24);
+			out[pos++] = (byte) (bits >>> 16);
+			out[pos++] = (byte) (bits >>> 8);
+			out[pos++] = (byte) bits;
+		}
+		return pos;
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Decoding
+	///////////////////////////////////////////////////
+
+	@Override
+	public float[] decode(byte[] data) throws ScratchException {
+		return decode(data, null);
+	}
+
+	/**
+	 * Decodes the given bytes into the target array if it is exactly the right
+	 * length, or into a new array if it is not. Returns the array which was
+	 * written to.
+	 */
+	public float[] decode(byte[] data, float[] target) throws ScratchException {
+		int flags = data[0] & 0xff;
+		int[] cursor = {1};
+		int length = readVarint(data, cursor);
+		if (target == null || target.length != length) {
+			target = new float[length];
+		}
+
+		byte[] payload = data;
+		int pos = cursor[0];
+		if ((flags & FLAG_LZ4) != 0) {
+			if (decompressor == null) {
+				throw new ScratchException(new IllegalStateException("Compressed float array given to uncompressing encoder"));
+			}
+			int payloadLength = readVarint(data, cursor);
+			payload = buffer(lz4Buffer, payloadLength);
+			decompressor.decompress(data, cursor[0], payload, 0, payloadLength);
+			pos = 0;
+		}
+
+		if ((flags & ~FLAG_LZ4) == MODE_INTEGER) {
+			readIntegers(payload, pos, target, length);
+		} else {
+			readFloats(payload, pos, target, length);
+		}
+		return target;
+	}
+
+	private static void readIntegers(byte[] in, int pos, float[] target, int length) {
+		int last = 0;
+		for (int i = 0; i < length; i++) {
+			//inlined varint read
+			int raw = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = in[pos++];
+				raw |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			last += (raw >>> 1) ^ -(raw & 1);
+			target[i] = last;
+		}
+	}
+
+	private static void readFloats(byte[] in, int pos, float[] target, int length) {
+		for (int i = 0; i < length; i++) {
+			int bits = ((in[pos] & 0xff) << 24) | ((in[pos+1] & 0xff) << 16) | ((in[pos+2] & 0xff) << 8) | (in[pos+3] & 0xff);
+			pos += 4;
+			target[i] = Float.intBitsToFloat(bits);
+		}
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Helpers
+	///////////////////////////////////////////////////
+
+	private static byte[] buffer(ThreadLocal<byte[]> local, int size) {
+		byte[] buffer = local.get();
+		if (buffer.length < size) {
+			buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+			local.set(buffer);
+		}
+		return buffer;
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7f) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static int writeVarint(int value, byte[] out, int pos) {
+		while ((value & ~0x7f) != 0) {
+			out[pos++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out[pos++] = (byte) value;
+		return pos;
+	}
+
+	private static int readVarint(byte[] in, int[] cursor) {
+		int pos = cursor[0];
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in[pos++];
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		cursor[0] = pos;
+		return value;
+	}
+
+	public String toString() {
+		return compress ? "Float Array Encoder -> LZ4" : "Float Array Encoder";
+	}
+
+}
@@ -0,0 +1,13 @@
+package org.peakaboo.framework.scratch.encoders.primitives;
+
+public class Primitives {
+
+	public static FloatArrayEncoder floats() {
+		return new FloatArrayEncoder(false);
+	}
+	
+	public static FloatArrayEncoder floatsLZ4() {
+		return new FloatArrayEncoder(true);
+	}
+	
+}
@@ -9,6 +9,7 @@ import org.peakaboo.framework.scratch.ScratchException;
 import org.peakaboo.framework.scratch.ScratchLog;
 import org.peakaboo.framework.scratch.list.array.ScratchArrayList;
 import org.peakaboo.framework.scratch.list.file.ScratchDiskList;
+import org.peakaboo.framework.scratch.list.mapped.ScratchMappedList;
 
 public class ScratchLists {
 
@@ -29,6 +30,19 @@ public class ScratchLists {
 		}
 	}
 	
+	public static <T> ScratchList<T> mappedBacked(ScratchEncoder<T> encoder) throws IOException {
+		return new ScratchMappedList<>(encoder);
+	}
+	
+	public static <T> ScratchList<T> tryMappedBacked(ScratchEncoder<T> encoder) {
+		try {
+			return mappedBacked(encoder);
+		} catch (IOException e) {
+			ScratchLog.get().log(Level.SEVERE, "Could not allocate memory-mapped store, using disk-backed store instead", e);
+			return tryDiskBacked(encoder);
+		}
+	}
+	
 	public static <T> ScratchList<T> get(DiskStrategy strategy, ScratchEncoder<T> encoder) {
 		switch(strategy) {
 		case PREFER_DISK:
@@ -39,6 +53,14 @@ public class ScratchLists {
 			} catch (IOException e) {
 				throw new ScratchException(e);
 			}
+		case PREFER_MAPPED:
+			return tryMappedBacked(encoder);
+		case REQUIRE_MAPPED:
+			try {
+				return mappedBacked(encoder);
+			} catch (IOException e) {
+				throw new ScratchException(e);
+			}
 		case PREFER_MEMORY:
 			return memoryBacked(encoder);
 		default:
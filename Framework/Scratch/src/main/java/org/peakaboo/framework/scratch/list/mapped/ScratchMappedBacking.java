@@ -0,0 +1,383 @@
+package org.peakaboo.framework.scratch.list.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.peakaboo.framework.scratch.ScratchException;
+
+/**
+ * Append-only, memory-mapped byte store addressed by index. The backing file
+ * is mapped in fixed-size segments, and the location of each entry is packed
+ * into a single long in a primitive index array. Writes are serialized, but
+ * reads take no locks: a reader reads the volatile {@link State}, looks up the
+ * entry in the index, and copies the bytes out of a duplicate of the segment's
+ * buffer.
+ * <br/><br/>
+ * Replaced or removed entries are never overwritten in place. Instead, the
+ * space they occupied is counted as dead, and once dead space outweighs live
+ * space the live entries are compacted into a fresh file.
+ * <br/><br/>
+ * Concurrent reads are safe alongside appends and sets. Structural changes
+ * which shift entries (inserting in the middle, removing) are not, in the
+ * same way as any other {@link java.util.List}.
+ */
+class ScratchMappedBacking {
+
+	//Layout of a packed index entry: [segment:15][offset:24][length:24]
+	private static final int LENGTH_BITS = 24;
+	private static final int OFFSET_BITS = 24;
+	private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+	private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+	private static final int MAX_SEGMENTS = 1 << 15;
+
+	static final int SEGMENT_SIZE = 1 << OFFSET_BITS;
+	static final long EMPTY = -1L;
+
+	/**
+	 * Everything a reader needs to look up an entry. Compacting or clearing
+	 * publishes a new State, so a reader which has already fetched the old one
+	 * will keep reading valid (if stale) data from it.
+	 */
+	private static class State {
+		final File file;
+		final RandomAccessFile raf;
+		final FileChannel channel;
+		MappedByteBuffer[] segments;
+		long[] index;
+
+		State(File file, RandomAccessFile raf, long[] index) {
+			this.file = file;
+			this.raf = raf;
+			this.channel = raf.getChannel();
+			this.segments = new MappedByteBuffer[0];
+			this.index = index;
+		}
+	}
+
+	private volatile State state;
+	private volatile int size;
+
+	//writer-side bookkeeping, guarded by this
+	private int writeSegment;
+	private int writeOffset;
+	private long liveBytes;
+	private long deadBytes;
+
+
+	public ScratchMappedBacking() throws IOException {
+		long[] index = new long[16];
+		Arrays.fill(index, EMPTY);
+		state = createState(index);
+		size = 0;
+		writeSegment = 0;
+		writeOffset = 0;
+		addSegment(state);
+	}
+
+	private static State createState(long[] index) throws IOException {
+		File file = File.createTempFile("ScratchMappedList [temp - ", "]");
+		file.deleteOnExit();
+		State state = new State(file, new RandomAccessFile(file, "rw"), index);
+		register(state);
+		return state;
+	}
+
+	private static void addSegment(State s) throws IOException {
+		int count = s.segments.length;
+		if (count >= MAX_SEGMENTS) {
+			throw new IOException("Mapped scratch store is full");
+		}
+		MappedByteBuffer segment = s.channel.map(MapMode.READ_WRITE, (long)count * SEGMENT_SIZE, SEGMENT_SIZE);
+		MappedByteBuffer[] segments = Arrays.copyOf(s.segments, count+1);
+		segments[count] = segment;
+		s.segments = segments;
+	}
+
+	/**
+	 * Returns an independent buffer over the given segment, positioned at the
+	 * given offset. The casts make sure this calls the methods which exist on
+	 * Java 8, rather than the covariant overrides added in later releases.
+	 */
+	private static ByteBuffer duplicate(MappedByteBuffer segment, int offset) {
+		ByteBuffer buffer = ((ByteBuffer) segment).duplicate();
+		((Buffer) buffer).position(offset);
+		return buffer;
+	}
+
+	private static long pack(int segment, int offset, int length) {
+		return ((long)segment << (OFFSET_BITS + LENGTH_BITS)) | ((long)offset << LENGTH_BITS) | length;
+	}
+
+	private static int segmentOf(long entry) {
+		return (int)(entry >>> (OFFSET_BITS + LENGTH_BITS));
+	}
+
+	private static int offsetOf(long entry) {
+		return (int)((entry >>> LENGTH_BITS) & OFFSET_MASK);
+	}
+
+	private static int lengthOf(long entry) {
+		return (int)(entry & LENGTH_MASK);
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Reading
+	///////////////////////////////////////////////////
+
+	public byte[] get(int index) {
+		if (index < 0 || index >= size) return null;
+		State s = state;
+		long[] idx = s.index;
+		if (index >= idx.length) return null;
+		long entry = idx[index];
+		if (entry == EMPTY) return null;
+
+		ByteBuffer segment = duplicate(s.segments[segmentOf(entry)], offsetOf(entry));
+		byte[] data = new byte[lengthOf(entry)];
+		segment.get(data);
+		return data;
+	}
+
+	public int size() {
+		return size;
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Writing
+	///////////////////////////////////////////////////
+
+	/**
+	 * Appends the given bytes to the end of the store, returning the packed
+	 * location of the new entry
+	 */
+	private long append(State s, byte[] data) throws IOException {
+		if (data.length >= SEGMENT_SIZE) {
+			throw new IOException("Entry of " + data.length + " bytes exceeds mapped segment size");
+		}
+		if (writeOffset + data.length > SEGMENT_SIZE) {
+			writeSegment++;
+			writeOffset = 0;
+		}
+		while (writeSegment >= s.segments.length) {
+			addSegment(s);
+		}
+
+		ByteBuffer segment = duplicate(s.segments[writeSegment], writeOffset);
+		segment.put(data);
+
+		long entry = pack(writeSegment, writeOffset, data.length);
+		writeOffset += data.length;
+		return entry;
+	}
+
+	private void ensureIndexCapacity(State s, int capacity) {
+		if (capacity <= s.index.length) return;
+		int newLength = Math.max(capacity, s.index.length + (s.index.length >> 1));
+		long[] grown = Arrays.copyOf(s.index, newLength);
+		Arrays.fill(grown, s.index.length, newLength, EMPTY);
+		s.index = grown;
+	}
+
+	private void discard(long entry) {
+		if (entry == EMPTY) return;
+		liveBytes -= lengthOf(entry);
+		deadBytes += lengthOf(entry);
+	}
+
+	/**
+	 * Inserts a new entry at the given index, shifting later entries up
+	 */
+	public synchronized void add(int index, byte[] data) {
+		try {
+			State s = state;
+			long entry = append(s, data);
+			int oldSize = size;
+			int newSize = Math.max(oldSize, index) + 1;
+			ensureIndexCapacity(s, newSize);
+			if (index < oldSize) {
+				System.arraycopy(s.index, index, s.index, index+1, oldSize - index);
+			}
+			s.index[index] = entry;
+			liveBytes += data.length;
+			//volatile writes publish the index entry to readers
+			state = s;
+			size = newSize;
+		} catch (IOException e) {
+			throw new ScratchException(e);
+		}
+	}
+
+	public synchronized void set(int index, byte[] data) {
+		try {
+			State s = state;
+			long entry = append(s, data);
+			int newSize = Math.max(size, index + 1);
+			ensureIndexCapacity(s, newSize);
+			discard(s.index[index]);
+			s.index[index] = entry;
+			liveBytes += data.length;
+			state = s;
+			size = newSize;
+			compactIfWasteful();
+		} catch (IOException e) {
+			throw new ScratchException(e);
+		}
+	}
+
+	public synchronized void remove(int index) {
+		State s = state;
+		int oldSize = size;
+		discard(s.index[index]);
+		System.arraycopy(s.index, index+1, s.index, index, oldSize - index - 1);
+		s.index[oldSize-1] = EMPTY;
+		state = s;
+		size = oldSize - 1;
+		try {
+			compactIfWasteful();
+		} catch (IOException e) {
+			throw new ScratchException(e);
+		}
+	}
+
+	/**
+	 * Removes every entry. A fresh State is published rather than reusing the
+	 * current file, so that readers still holding the old State never see its
+	 * entries overwritten.
+	 */
+	public synchronized void clear() {
+		try {
+			long[] index = new long[16];
+			Arrays.fill(index, EMPTY);
+			State fresh = createState(index);
+			writeSegment = 0;
+			writeOffset = 0;
+			addSegment(fresh);
+			liveBytes = 0;
+			deadBytes = 0;
+			size = 0;
+			state = fresh;
+		} catch (IOException e) {
+			throw new ScratchException(e);
+		}
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Compaction
+	///////////////////////////////////////////////////
+
+	private void compactIfWasteful() throws IOException {
+		if (deadBytes > SEGMENT_SIZE && deadBytes > liveBytes) {
+			compact();
+		}
+	}
+
+	/**
+	 * Copies all live entries, in index order, into a new backing file and
+	 * publishes it. Readers still holding the old {@link State} can continue to
+	 * read from its mappings, and its file is only closed and deleted once the
+	 * old State is unreachable.
+	 */
+	synchronized void compact() throws IOException {
+		State old = state;
+		int count = size;
+		long[] index = new long[Math.max(count, 16)];
+		Arrays.fill(index, EMPTY);
+		State fresh = createState(index);
+
+		writeSegment = 0;
+		writeOffset = 0;
+		addSegment(fresh);
+		for (int i = 0; i < count; i++) {
+			long entry = old.index[i];
+			if (entry == EMPTY) continue;
+			ByteBuffer source = duplicate(old.segments[segmentOf(entry)], offsetOf(entry));
+			byte[] data = new byte[lengthOf(entry)];
+			source.get(data);
+			index[i] = append(fresh, data);
+		}
+		deadBytes = 0;
+		state = fresh;
+		//the old file is cleaned up once no reader can reach the old state
+	}
+
+
+
+
+	///////////////////////////////////////////////////
+	// Cleanup
+	///////////////////////////////////////////////////
+
+	private static final ReferenceQueue<State> UNREACHABLE = new ReferenceQueue<>();
+	//keeps the cleanups themselves reachable until they run
+	private static final Set<Cleanup> CLEANUPS = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	static {
+		Thread cleaner = new Thread(ScratchMappedBacking::clean, "Scratch Mapped Cleaner");
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	/**
+	 * Closes and deletes a State's backing file once the State itself can no
+	 * longer be reached, since readers may still be reading from its mappings
+	 * after it has been replaced. Holds on to the file and not the State, so
+	 * that the State can become unreachable.
+	 */
+	private static class Cleanup extends PhantomReference<State> {
+		private final File file;
+		private final RandomAccessFile raf;
+
+		Cleanup(State state) {
+			super(state, UNREACHABLE);
+			this.file = state.file;
+			this.raf = state.raf;
+		}
+
+		void run() {
+			CLEANUPS.remove(this);
+			try {
+				raf.close();
+			} catch (IOException e) {
+				//nothing to do, the file is temporary anyway
+			}
+			//if this fails (eg a mapping hasn't been released yet) deleteOnExit will get it
+			file.delete();
+		}
+	}
+
+	private static void register(State state) {
+		CLEANUPS.add(new Cleanup(state));
+	}
+
+	private static void clean() {
+		while (true) {
+			try {
+				((Cleanup) UNREACHABLE.remove()).run();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package org.peakaboo.framework.scratch.list.mapped;
+
+import java.io.IOException;
+
+import org.peakaboo.framework.scratch.ScratchEncoder;
+import org.peakaboo.framework.scratch.ScratchException;
+import org.peakaboo.framework.scratch.list.ScratchList;
+import org.peakaboo.framework.scratch.single.Compressed;
+
+/**
+ * A {@link ScratchList} backed by a memory-mapped temporary file. Unlike
+ * {@link org.peakaboo.framework.scratch.list.file.ScratchDiskList}, reads do
+ * not contend on a lock, which makes this list suitable for being read from
+ * many threads at once.
+ */
+public class ScratchMappedList<T> extends ScratchList<T>{
+
+	private ScratchMappedBacking backing;
+	private ScratchEncoder<T> encoder;
+
+
+	public ScratchMappedList(ScratchEncoder<T> encoder) throws IOException {
+		this.encoder = encoder;
+		this.backing = new ScratchMappedBacking();
+	}
+
+	///////////////////////////////////////////////////
+	// Core AbstractList Overrides
+	///////////////////////////////////////////////////
+
+	@Override
+	public T get(int index) {
+		byte[] bytes = backing.get(index);
+		if (bytes == null) { return null; }
+		return encoder.decode(bytes);
+	}
+
+	@Override
+	public int size() {
+		return backing.size();
+	}
+
+	@Override
+	public T set(int index, T element) {
+		T t = get(index);
+		backing.set(index, encoder.encode(element));
+		return t;
+	}
+
+	public void setCompressed(int index, Compressed<T> compressed) {
+		if (!compressed.getEncoder().equals(encoder)) {
+			throw new RuntimeException("Cannot add Compressed element with different ScratchEncoder");
+		}
+		backing.set(index, compressed.getBytes());
+	}
+
+	@Override
+	public void add(int index, T element) {
+		backing.add(index, encoder.encode(element));
+	}
+
+	public void addCompressed(int index, Compressed<T> compressed) {
+		if (!compressed.getEncoder().equals(encoder)) {
+			throw new RuntimeException("Cannot add Compressed element with different ScratchEncoder");
+		}
+		backing.add(index, compressed.getBytes());
+	}
+
+	@Override
+	public T remove(int index) {
+		T t = get(index);
+		backing.remove(index);
+		return t;
+	}
+
+
+
+
+
+
+	///////////////////////////////////////////////////
+	// Performance-Related Overrides
+	///////////////////////////////////////////////////
+
+	@Override
+	public void clear() {
+		backing.clear();
+	}
+
+	/**
+	 * Rewrites all live entries into a fresh backing file, reclaiming the space
+	 * left behind by replaced and removed entries. This happens automatically
+	 * once enough space has been wasted, but can be requested explicitly, eg
+	 * after a loading pass which overwrote many entries.
+	 */
+	public void compact() {
+		try {
+			backing.compact();
+		} catch (IOException e) {
+			throw new ScratchException(e);
+		}
+	}
+
+}
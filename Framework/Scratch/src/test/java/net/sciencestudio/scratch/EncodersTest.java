@@ -4,6 +4,8 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.peakaboo.framework.scratch.ScratchEncoder;
 import org.peakaboo.framework.scratch.encoders.compressors.Compressors;
+import org.peakaboo.framework.scratch.encoders.primitives.FloatArrayEncoder;
+import org.peakaboo.framework.scratch.encoders.primitives.Primitives;
 import org.peakaboo.framework.scratch.encoders.serializers.Serializers;
 import org.peakaboo.framework.scratch.single.Compressed;
 
@@ -17,6 +19,31 @@ public class EncodersTest {
 		 testEncoder(Serializers.kryo(String.class).then(Compressors.lz4good()));
 	}
 	
+	@Test
+	public void floats() {
+		float[] counts = new float[2048];
+		float[] values = new float[2048];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = (i * 37) % 500 - 20;
+			values[i] = counts[i] * 0.37f;
+		}
+		values[3] = Float.NaN;
+		values[4] = -0f;
+		
+		for (FloatArrayEncoder encoder : new FloatArrayEncoder[] {Primitives.floats(), Primitives.floatsLZ4()}) {
+			Assert.assertArrayEquals(counts, encoder.decode(encoder.encode(counts)), 0f);
+			Assert.assertArrayEquals(values, encoder.decode(encoder.encode(values)), 0f);
+			
+			//decoding into an existing array of the right size should reuse it
+			float[] target = new float[2048];
+			Assert.assertSame(target, encoder.decode(encoder.encode(counts), target));
+			Assert.assertArrayEquals(counts, target, 0f);
+		}
+		
+		//whole-number counts should take much less than 4 bytes per value
+		Assert.assertTrue(Primitives.floats().encode(counts).length < counts.length * 3);
+	}
+	
 	private void testEncoder(ScratchEncoder<String> encoder) {
 		String s = "\n" + 
 				"\n" + 
@@ -9,6 +9,7 @@ import org.peakaboo.framework.scratch.encoders.CompoundEncoder;
 import org.peakaboo.framework.scratch.encoders.compressors.Compressors;
 import org.peakaboo.framework.scratch.encoders.serializers.Serializers;
 import org.peakaboo.framework.scratch.list.ScratchLists;
+import org.peakaboo.framework.scratch.list.mapped.ScratchMappedList;
 
 
 public class ListTest{
@@ -18,6 +19,32 @@ public class ListTest{
 	public void test() throws IOException {
 		testList(ScratchLists.memoryBacked(Serializers.java()));
 		testList(ScratchLists.diskBacked(Serializers.java()));
+		testList(ScratchLists.mappedBacked(Serializers.java()));
+	}
+	
+	@Test
+	public void mapped() throws IOException {
+		ScratchMappedList<byte[]> list = new ScratchMappedList<>(Compressors.lz4fast());
+		
+		//fill out of order, leaving the list to grow to fit
+		for (int i = 99; i >= 0; i--) {
+			list.set(i, new byte[] {(byte)i, 1, 2, 3});
+		}
+		Assert.assertEquals(list.size(), 100);
+		
+		//overwrite everything enough times to trigger compaction
+		byte[] big = new byte[1 << 20];
+		for (int round = 0; round < 40; round++) {
+			big[0] = (byte)round;
+			list.set(round % 10, big);
+		}
+		list.compact();
+		
+		Assert.assertEquals(list.size(), 100);
+		Assert.assertEquals(list.get(0)[0], 30);
+		Assert.assertEquals(list.get(9)[0], 39);
+		Assert.assertEquals(list.get(40)[0], 40);
+		Assert.assertEquals(list.get(99)[3], 3);
 	}
 	
 	
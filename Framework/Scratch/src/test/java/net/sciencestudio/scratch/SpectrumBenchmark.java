@@ -0,0 +1,116 @@
+package net.sciencestudio.scratch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.peakaboo.framework.scratch.ScratchEncoder;
+import org.peakaboo.framework.scratch.encoders.compressors.Compressors;
+import org.peakaboo.framework.scratch.encoders.primitives.FloatArrayEncoder;
+import org.peakaboo.framework.scratch.encoders.primitives.Primitives;
+import org.peakaboo.framework.scratch.encoders.serializers.Serializers;
+
+/**
+ * Compares {@link FloatArrayEncoder} against the serializer/compressor
+ * combinations which have been used for storing spectra, using synthetic
+ * count data. Reports the encoded size and the time taken to encode and
+ * decode a single spectrum.
+ */
+public class SpectrumBenchmark {
+
+	private static final int CHANNELS = 2048;
+	private static final int SPECTRA = 5000;
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		List<float[]> counts = generate(true);
+		List<float[]> calibrated = generate(false);
+
+		System.out.println("=== Integer counts ===");
+		benchAll(counts);
+		System.out.println();
+		System.out.println("=== Non-integer values ===");
+		benchAll(calibrated);
+	}
+
+	private static void benchAll(List<float[]> data) {
+		Class<float[]> clazz = float[].class;
+
+		bench(Primitives.floats(), data);
+		bench(Primitives.floatsLZ4(), data);
+
+		bench(Serializers.kryo(clazz), data);
+		bench(Serializers.kryo(clazz).then(Compressors.lz4fast()), data);
+		bench(Serializers.kryo(clazz).then(Compressors.snappy()), data);
+
+		bench(Serializers.fstUnsafe(clazz), data);
+		bench(Serializers.fstUnsafe(clazz).then(Compressors.lz4fast()), data);
+		bench(Serializers.fstUnsafe(clazz).then(Compressors.lz4good()), data);
+		bench(Serializers.fstUnsafe(clazz).then(Compressors.snappy()), data);
+	}
+
+	/**
+	 * Generates spectra shaped like XRF data: a sloping background plus a few
+	 * gaussian peaks, with poisson-like noise. If integer is false, the values
+	 * are scaled so that they are no longer whole numbers.
+	 */
+	private static List<float[]> generate(boolean integer) {
+		Random r = new Random(1);
+		List<float[]> data = new ArrayList<>();
+		for (int i = 0; i < SPECTRA; i++) {
+			float[] s = new float[CHANNELS];
+			for (int j = 0; j < CHANNELS; j++) {
+				double mean = 20.0 * (CHANNELS - j) / CHANNELS;
+				mean += 400 * Math.exp(-Math.pow((j - 640) / 12.0, 2));
+				mean += 150 * Math.exp(-Math.pow((j - 705) / 12.0, 2));
+				mean += 900 * Math.exp(-Math.pow((j - 1010) / 14.0, 2));
+				double value = Math.max(0, Math.round(mean + r.nextGaussian() * Math.sqrt(mean)));
+				s[j] = integer ? (float)value : (float)(value * 0.731);
+			}
+			data.add(s);
+		}
+		return data;
+	}
+
+	private static void bench(ScratchEncoder<float[]> encoder, List<float[]> data) {
+
+		//warm up and measure size
+		long bytes = 0;
+		for (float[] s : data) {
+			byte[] encoded = encoder.encode(s);
+			encoder.decode(encoded);
+			bytes += encoded.length;
+		}
+
+		List<byte[]> encoded = new ArrayList<>(data.size());
+		long t1 = System.nanoTime();
+		for (int round = 0; round < ROUNDS; round++) {
+			encoded.clear();
+			for (float[] s : data) {
+				encoded.add(encoder.encode(s));
+			}
+		}
+		long t2 = System.nanoTime();
+
+		float[] target = new float[CHANNELS];
+		for (int round = 0; round < ROUNDS; round++) {
+			for (byte[] e : encoded) {
+				if (encoder instanceof FloatArrayEncoder) {
+					((FloatArrayEncoder) encoder).decode(e, target);
+				} else {
+					encoder.decode(e);
+				}
+			}
+		}
+		long t3 = System.nanoTime();
+
+		long count = (long)ROUNDS * data.size();
+		System.out.println(String.format("%-45s %8d bytes/spectrum %8d ns encode %8d ns decode",
+				encoder,
+				bytes / data.size(),
+				(t2 - t1) / count,
+				(t3 - t2) / count
+			));
+	}
+
+}
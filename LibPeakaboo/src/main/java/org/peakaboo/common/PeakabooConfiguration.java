@@ -1,16 +1,15 @@
 package org.peakaboo.common;
 
-import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.datasource.model.SpectrumEncoder;
 import org.peakaboo.framework.cyclops.Spectrum;
 import org.peakaboo.framework.scratch.ScratchEncoder;
-import org.peakaboo.framework.scratch.encoders.CompoundEncoder;
-import org.peakaboo.framework.scratch.encoders.compressors.Compressors;
-import org.peakaboo.framework.scratch.encoders.serializers.Serializers;
 
 public class PeakabooConfiguration {
 
 	public static boolean diskstore = true;
-	public static ScratchEncoder<Spectrum> spectrumEncoder = new CompoundEncoder<>(Serializers.fstUnsafe(ISpectrum.class), Compressors.lz4fast());
+	//when using a disk store, prefer the memory-mapped store over the RandomAccessFile one
+	public static boolean mappedstore = true;
+	public static ScratchEncoder<Spectrum> spectrumEncoder = new SpectrumEncoder(true);
 
 	
 	public static MemorySize memorySize = calcMemoryFootprint();
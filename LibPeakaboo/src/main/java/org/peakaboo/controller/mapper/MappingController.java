@@ -298,7 +298,7 @@ public class MappingController extends EventfulType<MapUpdateType>
 	}
 	
 	public void writeCSV(OutputStream os) throws IOException {
-		os.write(getFitting().mapAsCSV().getBytes());
+		getFitting().writeCSV(os);
 	}
 	
 
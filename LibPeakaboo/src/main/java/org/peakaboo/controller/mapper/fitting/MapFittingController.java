@@ -1,5 +1,10 @@
 package org.peakaboo.controller.mapper.fitting;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.peakaboo.calibration.CalibrationProfile;
@@ -11,9 +16,11 @@ import org.peakaboo.controller.mapper.fitting.modes.ModeController;
 import org.peakaboo.controller.mapper.fitting.modes.OverlayModeController;
 import org.peakaboo.controller.mapper.fitting.modes.RatioModeController;
 import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
+import org.peakaboo.datasink.model.export.CSVWriter;
 import org.peakaboo.display.map.MapScaleMode;
 import org.peakaboo.display.map.modes.MapModeData;
 import org.peakaboo.display.map.modes.MapModes;
+import org.peakaboo.display.map.modes.composite.CompositeModeData;
 import org.peakaboo.framework.cyclops.Coord;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
@@ -156,24 +163,55 @@ public class MapFittingController extends EventfulType<MapUpdateType> {
 
 	
 	
-	public String mapAsCSV()
-	{
-		StringBuilder sb = new StringBuilder();
-
-		MapModeData data = calcMapModeData();		
+	/**
+	 * Writes the current map to the given stream as comma separated values, one
+	 * row of the map per line. The stream is flushed but not closed.
+	 */
+	public void writeCSV(OutputStream output) throws IOException {
+		CSVWriter writer = new CSVWriter(output);
 
+		MapModeData data = calcMapModeData();
 		Coord<Integer> size = data.getSize();
-		for (int y = 0; y < size.y; y++) {
-			if (y != 0) sb.append("\n");
-			
-			for (int x = 0; x < size.x; x++) {
-				if (x != 0) sb.append(", ");
-				sb.append(data.getValueAtCoord(new Coord<Integer>(x, y)));
+		
+		if (data instanceof CompositeModeData) {
+			//composite maps are plain values, which can be formatted without building strings
+			Spectrum values = ((CompositeModeData) data).getData();
+			for (int y = 0; y < size.y; y++) {
+				if (y != 0) writer.endRow();
+				for (int x = 0; x < size.x; x++) {
+					int index = y * size.x + x;
+					if (index < values.size()) {
+						writer.value(values.get(index), 2);
+					} else {
+						writer.value("-");
+					}
+				}
+			}
+		} else {
+			Coord<Integer> coord = new Coord<>(0, 0);
+			for (int y = 0; y < size.y; y++) {
+				if (y != 0) writer.endRow();
+				for (int x = 0; x < size.x; x++) {
+					coord.x = x;
+					coord.y = y;
+					writer.value(data.getValueAtCoord(coord));
+				}
 			}
 		}
-			
-		return sb.toString();
+		
+		writer.flush();
+	}
 
+	public String mapAsCSV()
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			writeCSV(output);
+		} catch (IOException e) {
+			//writing to memory can't fail
+			throw new UncheckedIOException(e);
+		}
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
 	}
 
 	
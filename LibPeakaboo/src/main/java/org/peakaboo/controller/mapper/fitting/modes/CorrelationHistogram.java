@@ -0,0 +1,196 @@
+package org.peakaboo.controller.mapper.fitting.modes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A 2D histogram of the intensities of two maps, where each bin counts the
+ * pixels whose x and y intensities fall within its range. The pixels in each
+ * bin are recorded in a single compressed index: the pixels of bin b are
+ * entries offsets[b] through offsets[b+1]-1 of the pixels array. Everything is
+ * kept in primitive arrays so that large maps can be binned quickly and
+ * without boxing.
+ *
+ * @author NAS
+ *
+ */
+public class CorrelationHistogram {
+
+	private float[] x, y;
+	private int bins;
+	private boolean relative;
+
+	private float xMax, yMax;
+	private float[] counts;
+	private int[] offsets;
+	private int[] pixels;
+
+	/**
+	 * Bins the given maps. The upper end of each axis is the 99.9th percentile of
+	 * that axis' intensities, or of both axes' intensities if the scale is not
+	 * relative. The given arrays are kept, and should not be modified afterwards.
+	 */
+	public CorrelationHistogram(float[] x, float[] y, int bins, boolean relative) {
+		this.x = x;
+		this.y = y;
+		this.bins = bins;
+		this.relative = relative;
+
+		//max value is 99.9th percentile in histogram
+		int index999 = (int)(x.length * 0.999f);
+		xMax = x.length == 0 ? 0 : select(x.clone(), index999);
+		yMax = y.length == 0 ? 0 : select(y.clone(), index999);
+
+		//if it's absolute, we use the larger max to scale both histograms
+		if (!relative) {
+			xMax = Math.max(xMax, yMax);
+			yMax = xMax;
+		}
+
+		//count the pixels in each bin, then lay out the index and fill it in
+		int size = bins * bins;
+		int[] binCounts = new int[size];
+		int length = Math.min(x.length, y.length);
+		for (int i = 0; i < length; i++) {
+			int bin = bin(i);
+			if (bin != -1) binCounts[bin]++;
+		}
+
+		offsets = new int[size + 1];
+		counts = new float[size];
+		for (int bin = 0; bin < size; bin++) {
+			offsets[bin + 1] = offsets[bin] + binCounts[bin];
+			counts[bin] = binCounts[bin];
+		}
+
+		pixels = new int[offsets[size]];
+		int[] cursor = Arrays.copyOf(offsets, size);
+		for (int i = 0; i < length; i++) {
+			int bin = bin(i);
+			if (bin != -1) pixels[cursor[bin]++] = i;
+		}
+	}
+
+	/**
+	 * Returns the bin for the given pixel, or -1 if it should not be counted
+	 */
+	private int bin(int pixel) {
+		float xpct = x[pixel] / xMax;
+		float ypct = y[pixel] / yMax;
+
+		if (xpct <= 0.01f && ypct <= 0.01f) {
+			/*
+			 * Don't measure areas where neither element exists, this just creates a large
+			 * spike at 0,0 which can drown out everything else
+			 */
+			return -1;
+		}
+
+		int xbin = (int)(xpct*bins);
+		int ybin = (int)(ypct*bins);
+		if (xbin >= bins) { xbin = bins-1; }
+		if (ybin >= bins) { ybin = bins-1; }
+		if (xbin < 0 || ybin < 0) {
+			//only possible with negative intensities
+			return -1;
+		}
+		return ybin * bins + xbin;
+	}
+
+	/**
+	 * Returns true if this histogram was built from maps with the same values and
+	 * the same settings
+	 */
+	public boolean matches(float[] x, float[] y, int bins, boolean relative) {
+		return this.bins == bins
+				&& this.relative == relative
+				&& Arrays.equals(this.x, x)
+				&& Arrays.equals(this.y, y);
+	}
+
+	/**
+	 * The number of pixels in each bin, indexed by y*bins+x
+	 */
+	public float[] getCounts() {
+		return counts;
+	}
+
+	public float getXMax() {
+		return xMax;
+	}
+
+	public float getYMax() {
+		return yMax;
+	}
+
+	public int getBins() {
+		return bins;
+	}
+
+	/**
+	 * Returns the pixels in the given bins, in bin order
+	 */
+	public List<Integer> pixelsInBins(List<Integer> selected) {
+		BitSet seen = new BitSet(bins * bins);
+		int total = 0;
+		for (int bin : selected) {
+			if (bin < 0 || bin >= bins * bins || seen.get(bin)) continue;
+			seen.set(bin);
+			total += offsets[bin + 1] - offsets[bin];
+		}
+
+		List<Integer> result = new ArrayList<>(total);
+		for (int bin = seen.nextSetBit(0); bin >= 0; bin = seen.nextSetBit(bin + 1)) {
+			for (int i = offsets[bin]; i < offsets[bin + 1]; i++) {
+				result.add(pixels[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the value which would be at index k if the given values were sorted,
+	 * reordering them in the process. Runs in linear time on average.
+	 */
+	static float select(float[] values, int k) {
+		int lo = 0;
+		int hi = values.length - 1;
+		while (lo < hi) {
+			//median of three pivot guards against already sorted maps
+			int mid = (lo + hi) >>> 1;
+			if (values[mid] < values[lo]) swap(values, mid, lo);
+			if (values[hi] < values[lo]) swap(values, hi, lo);
+			if (values[hi] < values[mid]) swap(values, hi, mid);
+			float pivot = values[mid];
+
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (values[i] < pivot) i++;
+				while (values[j] > pivot) j--;
+				if (i <= j) {
+					swap(values, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return values[k];
+			}
+		}
+		return values[k];
+	}
+
+	private static void swap(float[] values, int a, int b) {
+		float t = values[a];
+		values[a] = values[b];
+		values[b] = t;
+	}
+
+}
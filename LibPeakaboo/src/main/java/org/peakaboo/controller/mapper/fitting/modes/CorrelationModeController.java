@@ -2,22 +2,16 @@ package org.peakaboo.controller.mapper.fitting.modes;
 
 import static java.util.stream.Collectors.toList;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.peakaboo.controller.mapper.MappingController;
 import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
 import org.peakaboo.display.map.MapScaleMode;
 import org.peakaboo.display.map.modes.correlation.CorrelationModeData;
 import org.peakaboo.framework.cyclops.Coord;
-import org.peakaboo.framework.cyclops.GridPerspective;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
 import org.peakaboo.mapping.filter.model.AreaMap;
@@ -30,8 +24,7 @@ public class CorrelationModeController extends ModeController {
 	private boolean clip = false;
 	private int bins = 100;
 	
-	private Map<Integer, List<Integer>> translation = new LinkedHashMap<>();
-	private boolean invalidated = true;
+	private CorrelationHistogram histogram;
 	
 	public CorrelationModeController(MappingController map) {
 		super(map);
@@ -101,66 +94,16 @@ public class CorrelationModeController extends ModeController {
 		Spectrum xData = super.sumGivenMaps(xTS);
 		Spectrum yData = super.sumGivenMaps(yTS);
 		
-		//Generate histograms
-		List<Float> xSorted = xData.stream().collect(Collectors.toList());
-		List<Float> ySorted = yData.stream().collect(Collectors.toList());
-		xSorted.sort(Float::compare);
-		ySorted.sort(Float::compare);
-		int index999 = (int)(xSorted.size() * 0.999f);
-		
-
-		//mnax value is 99.9th percentile in histogram
-		float xMax = xSorted.get(index999);
-		float yMax = ySorted.get(index999);
-		
-		//if it's absolute, we use the larger max to scale both histograms
-		if (map.getFitting().getMapScaleMode() != MapScaleMode.RELATIVE) {
-			xMax = Math.max(xMax, yMax);
-			yMax = Math.max(xMax, yMax);
-		}
-		
-		
-		GridPerspective<Float> grid = new GridPerspective<>(bins, bins, 0f);
-		Spectrum correlation = new ISpectrum(bins*bins);
-		
-		//we track which points on the original (spatial) maps each bin in the correlation map
-		//comes from so that selections can be mapped back to them
-		translation.clear();
-		for (int i = 0; i < bins*bins; i++) {
-			translation.put(i, new ArrayList<>());
-		}
-		invalidated = false;
-		
-		for (int i = 0; i < xData.size(); i++) {
-
-			float xpct = xData.get(i) / xMax;
-			float ypct = yData.get(i) / yMax;
-						
-			if (xpct <= 0.01f && ypct <= 0.01f) {
-				/*
-				 * Don't measure areas where neither element exists, this just creates a large
-				 * spike at 0,0 which can drown out everything else
-				 */
-				continue;
-			}
-			
-			
-			int xbin = (int)(xpct*bins);
-			int ybin = (int)(ypct*bins);
-			if (xbin >= bins) { xbin = bins-1; }
-			if (ybin >= bins) { ybin = bins-1; }
-			
-			int bindex = grid.getIndexFromXY(xbin, ybin);
-			if (bindex == -1 || bindex > bins*bins) {
-				//index was out of bounds
-				Map<String, Number> valueMap = Map.of("xMax", xMax, "yMax", yMax, "xpct", xpct, "ypct", ypct, "xbin", xbin, "ybin", ybin);
-				String values = valueMap.entrySet().stream().map(e -> "\t" + e.getKey() + ": " + e.getValue().toString()).reduce((a, b) -> a + "\n" + b).get();
-				throw new IndexOutOfBoundsException("index " + bindex + "is not within the expected range of 0 to " + bins*bins + "\n" + values);
-			}
-			translation.get(bindex).add(i);
-			correlation.set(bindex, correlation.get(bindex)+1);
-			
+		//rebinning is only needed if the maps or settings have changed since last time
+		boolean relative = map.getFitting().getMapScaleMode() == MapScaleMode.RELATIVE;
+		if (histogram == null || !histogram.matches(xData.backingArray(), yData.backingArray(), bins, relative)) {
+			//we track which points on the original (spatial) maps each bin in the correlation map
+			//comes from so that selections can be mapped back to them
+			histogram = new CorrelationHistogram(xData.backingArray(), yData.backingArray(), bins, relative);
 		}
+		float xMax = histogram.getXMax();
+		float yMax = histogram.getYMax();
+		Spectrum correlation = new ISpectrum(histogram.getCounts());
 
 		//clip outlying intense points if selected
 		if (clip) {
@@ -205,14 +148,10 @@ public class CorrelationModeController extends ModeController {
 
 	@Override
 	public List<Integer> translateSelection(List<Integer> points) {
-		if (invalidated) {
+		if (histogram == null) {
 			getData();
 		}
-		Set<Integer> translated = new HashSet<>();
-		for (int i : points) {
-			translated.addAll(translation.get(i));
-		}
-		return new ArrayList<>(translated);
+		return histogram.pixelsInBins(points);
 	}
 	
 	public Coord<Integer> getDimensions() {
@@ -5,10 +5,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 import org.peakaboo.calibration.CalibrationProfile;
@@ -22,17 +28,33 @@ import org.peakaboo.controller.plotter.undo.UndoController;
 import org.peakaboo.controller.plotter.view.ChannelCompositeMode;
 import org.peakaboo.controller.plotter.view.ViewController;
 import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
+import org.peakaboo.dataset.DataSet;
+import org.peakaboo.datasink.model.components.interaction.CallbackInteraction;
+import org.peakaboo.datasink.model.DataSink;
+import org.peakaboo.datasink.model.components.interaction.Interaction;
+import org.peakaboo.datasink.model.export.CSVWriter;
+import org.peakaboo.datasink.model.export.Float32Format;
+import org.peakaboo.datasource.model.DataSource;
 import org.peakaboo.datasource.model.components.scandata.ScanData;
+import org.peakaboo.datasource.model.components.scandata.analysis.Analysis;
+import org.peakaboo.datasource.model.components.scandata.analysis.LazyAnalysis;
+import org.peakaboo.datasource.model.datafile.DataFile;
+import org.peakaboo.datasource.model.internal.FilteredDataSource;
 import org.peakaboo.display.plot.PlotData;
 import org.peakaboo.filter.model.Filter;
 import org.peakaboo.filter.model.FilterSet;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.SigDigits;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
 import org.peakaboo.framework.eventful.EventfulType;
 import org.peakaboo.framework.plural.Plural;
 import org.peakaboo.framework.plural.executor.ExecutorSet;
+import org.peakaboo.framework.plural.executor.PluralExecutor;
+import org.peakaboo.framework.plural.monitor.TaskMonitor.Event;
+import org.peakaboo.framework.plural.streams.ExportPipeline;
 import org.peakaboo.framework.plural.streams.StreamExecutor;
 import org.peakaboo.mapping.rawmap.RawMapSet;
+import org.peakaboo.mapping.rawmap.RawMapSetCache;
 
 
 
@@ -55,6 +77,14 @@ public class PlotController extends EventfulType<PlotUpdateType>
 	private IOController					ioController;
 	
 	private File configDir;
+	
+	//the most recently generated maps, and a key for the settings other than fittings they were generated with
+	private volatile RawMapSet lastMaps;
+	private volatile String lastMapSettings;
+	
+	//identifies the contents of the dataset for the map cache, guarded by this
+	private WeakReference<DataSet> checksumDataSet = new WeakReference<>(null);
+	private String checksum;
 
 	public PlotController(File configDir)
 	{
@@ -192,8 +222,9 @@ public class PlotController extends EventfulType<PlotUpdateType>
 		
 		PlotSpectra spectra = new PlotSpectra();
 		spectra.raw = originalData;
-		spectra.filtered = filteringController.getFilteredPlot();
-		spectra.deltas = filteringController.getFilterDeltas();
+		//show the last results while filtering catches up
+		spectra.filtered = filteringController.getLatestFilteredPlot();
+		spectra.deltas = filteringController.getLatestFilterDeltas();
 		
 		return spectra;
 	}
@@ -207,12 +238,134 @@ public class PlotController extends EventfulType<PlotUpdateType>
 	 * @return
 	 */
 	public StreamExecutor<RawMapSet> getMapTask() {
-		return dataController.getMapTask(
+		return getMapTask(null, 0);
+	}
+	
+	/**
+	 * Returns an {@link StreamExecutor} which will generate a map based on the user's current 
+	 * selections, periodically passing partial results to the given preview {@link Consumer}. 
+	 * If maps for the same data and settings have been generated before and are still in the
+	 * {@link RawMapSetCache}, the returned task will load those instead. If only the fittings
+	 * have changed since the last maps were generated, only the maps affected by the change
+	 * are generated again.
+	 * @param preview receives partial {@link RawMapSet}s while the map is being generated, may be null
+	 * @param previewInterval the minimum time between previews in milliseconds
+	 */
+	public StreamExecutor<RawMapSet> getMapTask(Consumer<RawMapSet> preview, long previewInterval) {
+		//until the dataset's analysis is complete, its maps can't be matched to earlier ones
+		String datasetChecksum = datasetChecksum();
+		String settings = datasetChecksum == null ? null : RawMapSetCache.key(describeMapSettings(datasetChecksum, false));
+		RawMapSet previous = settings != null && settings.equals(lastMapSettings) ? lastMaps : null;
+		
+		Supplier<StreamExecutor<RawMapSet>> generate = () -> dataController.getMapTask(
 				filteringController.getActiveFilters(), 
 				fittingController.getFittingSelections(), 
 				fittingController.getCurveFitter(), 
-				fittingController.getFittingSolver()
+				fittingController.getFittingSolver(),
+				preview,
+				previewInterval,
+				previous
 			);
+		
+		StreamExecutor<RawMapSet> task;
+		if (!RawMapSetCache.isEnabled() || settings == null) {
+			task = generate.get();
+		} else {
+			String key = RawMapSetCache.key(describeMapSettings(datasetChecksum, true));
+			List<ITransitionSeries> visible = fittingController.getFittingSelections().getVisibleTransitionSeries();
+			if (RawMapSetCache.contains(key)) {
+				task = new StreamExecutor<>("Loading Maps");
+				task.setTask(() -> RawMapSetCache.get(key, visible).orElseGet(() -> {
+					//the entry couldn't be read, so fall back to generating the maps
+					RawMapSet maps = generate.get().run().orElse(null);
+					if (maps != null) {
+						RawMapSetCache.put(key, maps);
+					}
+					return maps;
+				}));
+			} else {
+				task = generate.get();
+				StreamExecutor<RawMapSet> generating = task;
+				task.addListener(event -> {
+					if (event == Event.COMPLETED && generating.getResult().isPresent()) {
+						RawMapSetCache.put(key, generating.getResult().get());
+					}
+				});
+			}
+		}
+		
+		//remember these maps so that the next task can reuse any unaffected maps
+		StreamExecutor<RawMapSet> result = task;
+		task.addListener(event -> {
+			if (event == Event.COMPLETED && result.getResult().isPresent()) {
+				lastMaps = result.getResult().get();
+				lastMapSettings = settings;
+			}
+		});
+		return task;
+	}
+	
+	/**
+	 * Describes everything which influences the generated maps: the dataset
+	 * and its contents, the filters, the fitting parameters, the curve fitter
+	 * and fitting solver, and optionally the fittings themselves
+	 */
+	private String describeMapSettings(String datasetChecksum, boolean includeFittings) {
+		SavedSession session = getSavedSettings();
+		
+		//settings which don't change the maps shouldn't change the key
+		session.view = null;
+		session.calibration = null;
+		session.data.discards = new ArrayList<>();
+		session.data.title = null;
+		session.fitting.annotations = new HashMap<>();
+		if (!includeFittings) {
+			session.fitting.fittings = new ArrayList<>();
+		}
+		
+		StringBuilder description = new StringBuilder(session.serialize());
+		if (includeFittings) {
+			for (ITransitionSeries ts : fittingController.getFittingSelections().getVisibleTransitionSeries()) {
+				description.append(ts.toIdentifierString()).append("\n");
+			}
+		}
+		
+		//identify the dataset by its contents as well as its location
+		for (DataFile file : dataController.getDataPaths()) {
+			description.append(file.getFilename()).append(":").append(file.size().orElse(-1L)).append("\n");
+		}
+		description.append(dataController.getDataSet().getScanData().scanCount()).append("\n");
+		description.append(datasetChecksum).append("\n");
+		
+		return description.toString();
+	}
+	
+	/**
+	 * Returns a checksum of the current dataset's average and maximum scans, or
+	 * null if the dataset's analysis is still in progress. The checksum is only
+	 * calculated once for each dataset.
+	 */
+	private synchronized String datasetChecksum() {
+		DataSet dataset = dataController.getDataSet();
+		if (checksumDataSet.get() == dataset) {
+			return checksum;
+		}
+		Analysis analysis = dataset.getAnalysis();
+		if (analysis instanceof LazyAnalysis && !((LazyAnalysis) analysis).isComplete()) {
+			((LazyAnalysis) analysis).start();
+			return null;
+		}
+		
+		long sum = 1;
+		for (ReadOnlySpectrum spectrum : new ReadOnlySpectrum[] {analysis.averagePlot(), analysis.maximumPlot()}) {
+			float[] values = SpectrumCalculations.array(spectrum);
+			for (int i = 0; i < spectrum.size(); i++) {
+				sum = 31 * sum + Float.floatToIntBits(values[i]);
+			}
+		}
+		checksum = Long.toHexString(sum);
+		checksumDataSet = new WeakReference<>(dataset);
+		return checksum;
 	}
 	
 	
@@ -220,49 +373,103 @@ public class PlotController extends EventfulType<PlotUpdateType>
 		ReadOnlySpectrum spectrum = currentScan();
 		FilterSet filters = filtering().getActiveFilters();
 		spectrum = filters.applyFiltersUnsynchronized(spectrum, data().getDataSet());
-		try (Writer writer = new OutputStreamWriter(new FileOutputStream(saveFile))) {
-			writer.write(spectrum.toString(", ") + "\n");
+		try (OutputStream output = new FileOutputStream(saveFile); CSVWriter writer = new CSVWriter(output)) {
+			writer.row(spectrum);
 		} catch (IOException e) {
 			PeakabooLog.get().log(Level.SEVERE, "Failed to save fitted data", e);
 		}
 	}
 	
+	/**
+	 * Returns the current data set's {@link DataSource} with the active filters
+	 * applied to every scan. This can be given to any {@link DataSink} to export
+	 * filtered data.
+	 */
+	public DataSource getFilteredDataSource() {
+		DataSet dataset = data().getDataSet();
+		return new FilteredDataSource(dataset.getDataSource(), filtering().getActiveFilters(), dataset);
+	}
+	
 	public ExecutorSet<Object> writeFitleredDataSetToCSV(File saveFile) {
 		
 		return Plural.build("Exporting Data", "Writing", (execset, exec) -> {
-			FilterSet filters = filtering().getActiveFilters();
-			ScanData data = data().getDataSet().getScanData();
+			ScanData data = getFilteredDataSource().getScanData();
 			
 			exec.setWorkUnits(data.scanCount());
 
-			try (Writer writer = new OutputStreamWriter(new FileOutputStream(saveFile))) {
-				int count = 0;
-				for (ReadOnlySpectrum spectrum : data) {
-					spectrum = filters.applyFiltersUnsynchronized(spectrum, data().getDataSet());
-					writer.write(spectrum.toString(", ") + "\n");
-
-					//abort test
-					if (execset.isAbortRequested()) {
-						break;
-					}
-					
-					//progress counter
-					count++;
-					if (count >= 100) {
-						exec.workUnitCompleted(count);
-						count = 0;
-					}
+			writeReplacing(saveFile, execset, file -> {
+				try (OutputStream output = new FileOutputStream(file); CSVWriter writer = new CSVWriter(output)) {
+					//scans are filtered ahead of the writer, in parallel if the source allows it
+					return ExportPipeline.run(data.scanCount(), data::get, data.isParallelizable(), writer::row, exec::workUnitCompleted, execset::isAbortRequested);
 				}
-			} catch (Exception e) { 
-				PeakabooLog.get().log(Level.SEVERE, "Failed to save fitted data", e);
-				execset.aborted();
-			}
+			});
+			
+			return null;
+		});
+		
+	}
+	
+	/**
+	 * Writes every scan in the data set, with the active filters applied, to the
+	 * given file in the {@link Float32Format}. Scans are filtered and written in
+	 * parallel chunks.
+	 */
+	public ExecutorSet<Object> writeFitleredDataSetToFloat32(File saveFile) {
+		
+		return Plural.build("Exporting Data", "Writing", (execset, exec) -> {
+			ScanData data = getFilteredDataSource().getScanData();
+			int width = data().getDataSet().getAnalysis().channelsPerScan();
+			
+			exec.setWorkUnits(data.scanCount());
+
+			writeReplacing(saveFile, execset, file ->
+				Float32Format.write(file.toPath(), width, data.scanCount(), data::get, interaction(execset, exec))
+			);
 			
 			return null;
 		});
 		
 	}
 	
+	/**
+	 * Writes an export to a temporary file beside the target, which only replaces
+	 * the target once the export has completed. If the export is aborted or fails,
+	 * the temporary file is removed, any existing target is left untouched, and
+	 * the {@link ExecutorSet} is marked as aborted.
+	 */
+	private static void writeReplacing(File target, ExecutorSet<?> execset, FileExport export) {
+		File temp = null;
+		try {
+			temp = File.createTempFile("." + target.getName() + "-", ".tmp", target.getAbsoluteFile().getParentFile());
+			if (export.write(temp)) {
+				Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				execset.aborted();
+			}
+		} catch (Exception e) {
+			PeakabooLog.get().log(Level.SEVERE, "Failed to write " + target, e);
+			execset.aborted();
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+	
+	@FunctionalInterface
+	private interface FileExport {
+		/**
+		 * @return false if the export was aborted
+		 */
+		boolean write(File file) throws IOException;
+	}
+	
+	private static Interaction interaction(ExecutorSet<?> execset, PluralExecutor exec) {
+		CallbackInteraction interaction = new CallbackInteraction();
+		interaction.setCallbackScansWritten(exec::workUnitCompleted);
+		interaction.setCallbackAbortRequested(execset::isAbortRequested);
+		return interaction;
+	}
 	
 
 	public void writeFittingInformation(OutputStream os) {
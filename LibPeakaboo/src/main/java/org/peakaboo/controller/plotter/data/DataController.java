@@ -20,6 +20,7 @@ import org.peakaboo.dataset.EmptyDataSet;
 import org.peakaboo.dataset.StandardDataSet;
 import org.peakaboo.datasource.model.DataSource;
 import org.peakaboo.datasource.model.components.scandata.ScanData;
+import org.peakaboo.datasource.model.components.scandata.analysis.LazyAnalysis;
 import org.peakaboo.datasource.model.datafile.DataFile;
 import org.peakaboo.datasource.model.internal.SelectionDataSource;
 import org.peakaboo.datasource.plugin.DataSourcePlugin;
@@ -143,6 +144,13 @@ public class DataController extends Eventful
 		
 	
 		plot.history().clear();
+		
+		//lazily calculated composites are refined in the background, so redraw as they are
+		if (dsp.getAnalysis() instanceof LazyAnalysis) {
+			((LazyAnalysis) dsp.getAnalysis()).addListener(() -> {
+				if (dataModel == dsp) updateListeners();
+			});
+		}
 			
 		// really shouldn't have to do this, but there is a reference to old datasets floating around somewhere
 		// (task listener?) which is preventing them from being garbage-collected
@@ -185,6 +193,10 @@ public class DataController extends Eventful
 		return Mapping.mapTask(dataModel, filters, fittings, fitter, solver);
 	}
 	
+	public StreamExecutor<RawMapSet> getMapTask(FilterSet filters, FittingSet fittings, CurveFitter fitter, FittingSolver solver, Consumer<RawMapSet> preview, long previewInterval, RawMapSet previousMaps) {
+		return Mapping.mapTask(dataModel, filters, fittings, fitter, solver, preview, previewInterval, previousMaps);
+	}
+	
 	
 
 	
@@ -1,16 +1,19 @@
 package org.peakaboo.controller.plotter.filtering;
 
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 
 import org.peakaboo.common.PeakabooLog;
 import org.peakaboo.controller.plotter.PlotController;
+import org.peakaboo.dataset.DataSet;
 import org.peakaboo.filter.model.Filter;
 import org.peakaboo.filter.model.FilterSet;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.eventful.Eventful;
 import org.peakaboo.framework.eventful.cache.EventfulCache;
-import org.peakaboo.framework.eventful.cache.EventfulNullableCache;
+import org.peakaboo.framework.eventful.cache.EventfulAsyncCache;
 
 
 public class FilteringController extends Eventful
@@ -24,21 +27,69 @@ public class FilteringController extends Eventful
 		this.plot = plotController;
 		filteringModel = new FilteringModel();
 		
-		filteringModel.filteredPlot = new EventfulNullableCache<>(() -> {
-			if (plot.currentScan() == null) {
+		//filtering can be slow, so it's done in the background while the last result is shown
+		filteringModel.filteredPlot = EventfulAsyncCache.snapshot(this::snapshot, inputs -> {
+			if (inputs.scan == null) {
 				return null;
 			}
-			return filteringModel.filters.applyFilters(plot.currentScan(), plot.data().getDataSet());
-		});
+			return inputs.filters.applyFilters(inputs.scan, inputs.dataset);
+		}, null);
 		
-		filteringModel.filterDeltas = new EventfulNullableCache<>(() -> { 
-			return filteringModel.filters.calculateDeltas(plot.currentScan(), plot.data().getDataSet());
-		});
+		filteringModel.filterDeltas = EventfulAsyncCache.snapshot(this::snapshot, inputs -> {
+			if (inputs.scan == null) {
+				return null;
+			}
+			//report the deltas against the filters the user sees, not our copies of them
+			Map<Filter, ReadOnlySpectrum> deltas = new LinkedHashMap<>();
+			inputs.filters.calculateDeltas(inputs.scan, inputs.dataset).forEach((copy, delta) -> deltas.put(inputs.originals.get(copy), delta));
+			return deltas;
+		}, null);
 				
 		filteringModel.filteredPlot.addListener(this::updateListeners);
 		filteringModel.filterDeltas.addUpstreamDependency(filteringModel.filteredPlot);
-		//Don't bother with the filterDeltas listener, these two things will only ever be invalidated together.
-		//filteringModel.filterDeltas.addListener(this::updateListeners);
+		//These two are invalidated together, but their new values can land separately
+		filteringModel.filterDeltas.addListener(this::updateListeners);
+	}
+
+	/**
+	 * The inputs to filtering, captured on the thread requesting the filtered
+	 * data so that the filters can be applied on another thread while the user
+	 * keeps editing them.
+	 */
+	private static class FilterInputs {
+		ReadOnlySpectrum scan;
+		DataSet dataset;
+		FilterSet filters = new FilterSet();
+		Map<Filter, Filter> originals = new IdentityHashMap<>();
+	}
+	
+	private FilterInputs snapshot() {
+		FilterInputs inputs = new FilterInputs();
+		inputs.scan = plot.currentScan();
+		inputs.dataset = plot.data().getDataSet();
+		for (Filter filter : filteringModel.filters.getFilters()) {
+			Filter copy = copy(filter);
+			inputs.filters.add(copy);
+			inputs.originals.put(copy, filter);
+		}
+		return inputs;
+	}
+	
+	/**
+	 * Copies a filter along with its current settings. If the filter can't be
+	 * copied, the filter itself is used.
+	 */
+	private static Filter copy(Filter filter) {
+		try {
+			Filter copy = filter.getClass().getDeclaredConstructor().newInstance();
+			copy.initialize();
+			copy.getParameterGroup().deserialize(filter.getParameterGroup().serialize());
+			copy.setEnabled(filter.isEnabled());
+			return copy;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			PeakabooLog.get().log(Level.WARNING, "Failed to copy filter " + filter.getFilterName(), e);
+			return filter;
+		}
 	}
 
 	public FilteringModel getFilteringModel()
@@ -141,6 +192,14 @@ public class FilteringController extends Eventful
 		return filteringModel.filteredPlot.getValue();
 	}
 	
+	/**
+	 * Returns the most recently filtered plot without waiting for filtering to
+	 * finish. Listeners are notified when an up-to-date plot is ready.
+	 */
+	public ReadOnlySpectrum getLatestFilteredPlot() {
+		return filteringModel.filteredPlot.getLatestValue();
+	}
+	
 	public EventfulCache<ReadOnlySpectrum> getFilteredPlotCache() {
 		return filteringModel.filteredPlot;
 	}
@@ -148,6 +207,14 @@ public class FilteringController extends Eventful
 	public Map<Filter, ReadOnlySpectrum> getFilterDeltas() {
 		return filteringModel.filterDeltas.getValue();
 	}
+	
+	/**
+	 * Returns the most recently calculated filter deltas without waiting for
+	 * filtering to finish.
+	 */
+	public Map<Filter, ReadOnlySpectrum> getLatestFilterDeltas() {
+		return filteringModel.filterDeltas.getLatestValue();
+	}
 
 
 	
@@ -28,7 +28,7 @@ import org.peakaboo.display.plot.PlotData;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.util.Mutable;
 import org.peakaboo.framework.eventful.EventfulType;
-import org.peakaboo.framework.eventful.cache.EventfulNullableCache;
+import org.peakaboo.framework.eventful.cache.EventfulAsyncCache;
 import org.peakaboo.framework.plural.executor.ExecutorSet;
 
 
@@ -45,29 +45,51 @@ public class FittingController extends EventfulType<Boolean>
 		fittingModel = new FittingModel();
 		
 		
-		fittingModel.selectionResults = new EventfulNullableCache<>(() -> {
+		//fitting is done in the background against copies of the fittings, so
+		//that the user can keep changing them while it runs
+		fittingModel.selectionResults = EventfulAsyncCache.snapshot(() -> new FittingInputs(fittingModel.selections), inputs -> {
 			ReadOnlySpectrum data = plot.filtering().getFilteredPlot();
 			if (data == null) {
 				return null;
 			}
-			return getFittingSolver().solve(data, fittingModel.selections, getCurveFitter());
-		});
+			return inputs.solver.solve(data, inputs.fittings, inputs.fitter);
+		}, null);
 		
-		fittingModel.proposalResults = new EventfulNullableCache<>(() -> {
-			if (plot.currentScan() == null) {
+		fittingModel.proposalResults = EventfulAsyncCache.snapshot(() -> new FittingInputs(fittingModel.proposals), inputs -> {
+			if (!inputs.hasData) {
 				return null;
 			}
-			return getFittingSolver().solve(getFittingSelectionResults().getResidual(), fittingModel.proposals, getCurveFitter());
-		});
+			return inputs.solver.solve(getFittingSelectionResults().getResidual(), inputs.fittings, inputs.fitter);
+		}, null);
 		
 		fittingModel.selectionResults.addUpstreamDependency(plot.filtering().getFilteredPlotCache());
 		fittingModel.proposalResults.addUpstreamDependency(fittingModel.selectionResults);
 		
+		fittingModel.selectionResults.addListener(() -> updateListeners(false));
 		fittingModel.proposalResults.addListener(() -> updateListeners(false));
 		
 		
 	}
 	
+	/**
+	 * The inputs to a fitting, captured on the thread requesting the results.
+	 * The spectrum being fitted comes from other caches, which take their own
+	 * copies of their inputs.
+	 */
+	private class FittingInputs {
+		FittingSet fittings;
+		FittingSolver solver;
+		CurveFitter fitter;
+		boolean hasData;
+		
+		FittingInputs(FittingSet fittings) {
+			this.fittings = new FittingSet(fittings);
+			this.solver = getFittingSolver();
+			this.fitter = getCurveFitter();
+			this.hasData = plot.currentScan() != null;
+		}
+	}
+	
 	public FittingModel getFittingModel()
 	{
 		return fittingModel;
@@ -531,8 +553,9 @@ public class FittingController extends EventfulType<Boolean>
 
 	
 	public void populatePlotData(PlotData data) {
-		data.selectionResults = getFittingSelectionResults();
-		data.proposedResults = getFittingProposalResults();
+		//don't hold up drawing the plot while fittings are recalculated
+		data.selectionResults = fittingModel.selectionResults.getLatestValue();
+		data.proposedResults = fittingModel.proposalResults.getLatestValue();
 		data.calibration = getEnergyCalibration();
 		data.detectorMaterial = getDetectorMaterial();
 		data.highlightedTransitionSeries = getHighlightedTransitionSeries();
@@ -3,6 +3,7 @@ package org.peakaboo.curvefit.curve.fitting;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -31,6 +32,18 @@ import org.peakaboo.framework.cyclops.SpectrumCalculations;
 public class Curve implements Comparable<Curve>
 {
 
+	private static final float		DEFAULT_RANGE_MULT = 0.5f; //HWHM is default significant area
+	
+	//The support window only reaches this many FWHMs either side of each peak.
+	//Lorentzian tails never fall away fast enough for a threshold alone to
+	//shorten the window much, but at this distance the Lorentzian part of the
+	//default pseudo-Voigt is below 0.1% of its peak's height
+	private static final float		SUPPORT_FWHMS = 10f;
+	
+	//Within that reach, channels where the normalized curve is below float
+	//precision relative to its peak are left out of the support window too
+	private static final float		SUPPORT_THRESHOLD = 1f / (1 << 24);
+
 	//The {@link TransitionSeries} that this fitting is based on
 	private ITransitionSeries		transitionSeries;
 		
@@ -48,16 +61,22 @@ public class Curve implements Comparable<Curve>
 	Spectrum						normalizedCurve;
 	private float normalizedSum;
 	private float normalizedMax;
+	
+	//The part of the normalized curve which is large enough to matter. Outside
+	//of this window, the normalized curve is either beyond SUPPORT_FWHMS of any
+	//peak or below SUPPORT_THRESHOLD of its peak
+	private int						supportStart;
+	private float[]					support;
 
 	
 	
 	//How broad an area around each transition to consider important
-	private static final float		DEFAULT_RANGE_MULT = 0.5f; //HWHM is default significant area
 	private float					rangeMultiplier;
 	
 	//Areas (in channels) where the curve is strong enough that we need to consider it.
 	private RangeSet				intenseRanges;
 	private Set<Integer>			intenseChannels;
+	private int[]					intenseChannelArray;
 	
 	//how large a footprint this curve has, used in scoring fittings
 	private int						baseSize;
@@ -78,6 +97,8 @@ public class Curve implements Comparable<Curve>
 		//constraintMask = DataTypeFactory.<Boolean> listInit(dataWidth);
 		intenseRanges = new RangeSet();
 		intenseChannels = new LinkedHashSet<>();
+		intenseChannelArray = new int[0];
+		support = new float[0];
 		
 		if (ts != null) setTransitionSeries(ts);
 		
@@ -86,11 +107,42 @@ public class Curve implements Comparable<Curve>
 	public void setTransitionSeries(ITransitionSeries ts)
 	{
 		this.transitionSeries = ts;
+		
+		//identical curves are often built by many fitting sets, so we share them
+		CurveShape cached = CurveCache.get(ts, parameters);
+		if (cached != null) {
+			copyShape(cached);
+			return;
+		}
+		
 		calculateConstraintMask();
 		calcUnscaledFit(ts.getShell() != TransitionShell.COMPOSITE);
+		CurveCache.put(ts, parameters, shape());
 		
 	}
 	
+	/**
+	 * Captures the calculated curve, without anything which would keep this
+	 * Curve's {@link FittingParameters} alive
+	 */
+	private CurveShape shape() {
+		return new CurveShape(normalizationScale, normalizedCurve, normalizedSum, normalizedMax, supportStart, 
+				support, intenseRanges, intenseChannels, intenseChannelArray, baseSize);
+	}
+	
+	private void copyShape(CurveShape shape) {
+		this.normalizationScale = shape.normalizationScale;
+		this.normalizedCurve = shape.normalizedCurve;
+		this.normalizedSum = shape.normalizedSum;
+		this.normalizedMax = shape.normalizedMax;
+		this.supportStart = shape.supportStart;
+		this.support = shape.support;
+		this.intenseRanges = shape.intenseRanges;
+		this.intenseChannels = shape.intenseChannels;
+		this.intenseChannelArray = shape.intenseChannelArray;
+		this.baseSize = shape.baseSize;
+	}
+	
 	public ITransitionSeries getTransitionSeries() {
 		return transitionSeries;
 	}
@@ -139,6 +191,71 @@ public class Curve implements Comparable<Curve>
 	public Spectrum scaleInto(float scale, Spectrum target) {
 		return SpectrumCalculations.multiplyBy_target(normalizedCurve, target, scale);
 	}
+	
+	/**
+	 * Subtracts this curve at the given scale from the target Spectrum, clamping
+	 * the result to be no less than zero. Only the channels in the support window
+	 * are touched, so the caller is responsible for clamping any other channels.
+	 * 
+	 * @param scale
+	 *            amount to scale the fitting by
+	 * @param target
+	 *            target Spectrum to subtract from
+	 */
+	public void subtractScaledFrom(float scale, Spectrum target) {
+		float[] values = target.backingArray();
+		int end = Math.min(support.length, values.length - supportStart);
+		for (int i = 0; i < end; i++) {
+			float value = values[supportStart + i] - support[i] * scale;
+			values[supportStart + i] = value < 0 ? 0 : value;
+		}
+	}
+	
+	/**
+	 * Adds this curve at the given scale to the target Spectrum. Only the
+	 * channels in the support window are touched.
+	 * 
+	 * @param scale
+	 *            amount to scale the fitting by
+	 * @param target
+	 *            target Spectrum to add to
+	 */
+	public void addScaledTo(float scale, Spectrum target) {
+		float[] values = target.backingArray();
+		int end = Math.min(support.length, values.length - supportStart);
+		for (int i = 0; i < end; i++) {
+			values[supportStart + i] += support[i] * scale;
+		}
+	}
+	
+	/**
+	 * Returns the value of the normalized curve at the given channel. Channels
+	 * outside of the support window are zero.
+	 */
+	public float getNormalized(int channel) {
+		int index = channel - supportStart;
+		if (index < 0 || index >= support.length) {
+			return 0f;
+		}
+		return support[index];
+	}
+	
+	/**
+	 * Returns the first channel of the support window, the smallest range of
+	 * channels containing every intense channel and every channel where the
+	 * normalized curve is significant.
+	 */
+	public int getSupportStart() {
+		return supportStart;
+	}
+	
+	/**
+	 * Returns the normalized curve's values in the support window, starting at
+	 * {@link #getSupportStart()}. The returned array must not be modified.
+	 */
+	public float[] getSupport() {
+		return support;
+	}
 
 
 
@@ -189,6 +306,39 @@ public class Curve implements Comparable<Curve>
 		return Collections.unmodifiableSet(intenseChannels);
 	}
 	
+	/**
+	 * Returns the channels for which this Curve is intense or significant, in
+	 * the same order as {@link #getIntenseChannels()}. The returned array must
+	 * not be modified.
+	 */
+	public int[] getIntenseChannelArray() {
+		return intenseChannelArray;
+	}
+	
+	/**
+	 * Returns the channels for which any of the given Curves are intense or
+	 * significant, without duplicates, in the order the Curves are given.
+	 */
+	public static int[] getIntenseChannelArray(List<Curve> curves) {
+		int width = 0;
+		for (Curve curve : curves) {
+			for (int channel : curve.intenseChannelArray) {
+				width = Math.max(width, channel+1);
+			}
+		}
+		boolean[] seen = new boolean[width];
+		int[] channels = new int[width];
+		int count = 0;
+		for (Curve curve : curves) {
+			for (int channel : curve.intenseChannelArray) {
+				if (seen[channel]) continue;
+				seen[channel] = true;
+				channels[count++] = channel;
+			}
+		}
+		return Arrays.copyOf(channels, count);
+	}
+	
 	
 
 	/**
@@ -197,8 +347,8 @@ public class Curve implements Comparable<Curve>
 	private void calculateConstraintMask()
 	{
 
-		
-		intenseRanges.clear();
+		//these may be shared with other curves, so we replace them rather than clearing them
+		intenseRanges = new RangeSet();
 
 		float range;
 		float mean;
@@ -231,10 +381,15 @@ public class Curve implements Comparable<Curve>
 			
 		}
 		
-		intenseChannels.clear();
+		intenseChannels = new LinkedHashSet<>();
 		for (int channel : intenseRanges) {
 			intenseChannels.add(channel);
 		}
+		intenseChannelArray = new int[intenseChannels.size()];
+		int index = 0;
+		for (int channel : intenseChannels) {
+			intenseChannelArray[index++] = channel;
+		}
 		
 		
 
@@ -254,6 +409,7 @@ public class Curve implements Comparable<Curve>
 		
 		Spectrum fit = new ISpectrum(calibration.getDataWidth());
 		List<FittingFunction> functions = new ArrayList<FittingFunction>();
+		RangeSet reach = new RangeSet();
 		
 
 		//Build a list of fitting functions
@@ -261,10 +417,13 @@ public class Curve implements Comparable<Curve>
 		{
 
 			functions.add(parameters.forTransition(t, this.transitionSeries.getShell()));
+			addReach(reach, t.energyValue, parameters.getFWHM(t));
 
 			if (fitEscape && parameters.getDetectorMaterial().get().hasOffset()) {
 				for (Transition esc : parameters.getDetectorMaterial().get().offset()) {
 					functions.add(parameters.forEscape(t, esc, this.transitionSeries.getElement(), this.transitionSeries.getShell()));
+					//escape peaks are as wide as the peak they escape from
+					addReach(reach, t.energyValue - esc.energyValue, parameters.getFWHM(t));
 				}
 			}
 
@@ -298,10 +457,49 @@ public class Curve implements Comparable<Curve>
 		}
 		normalizedSum = normalizedCurve.sum();
 		normalizedMax = normalizedCurve.max();
+		
+		calculateSupport(reach);
+
 
+	}
 
+	/**
+	 * Adds the channels within SUPPORT_FWHMS of a peak to the given set
+	 */
+	private void addReach(RangeSet reach, float energy, float fwhm) {
+		EnergyCalibration calibration = parameters.getCalibration();
+		int max = calibration.getDataWidth() - 1;
+		int start = calibration.channelFromEnergy(energy - fwhm * SUPPORT_FWHMS);
+		int stop = calibration.channelFromEnergy(energy + fwhm * SUPPORT_FWHMS);
+		if (stop < 0 || start > max) { return; }
+		reach.addRange(new Range(Math.max(0, start), Math.min(max, stop)));
 	}
 
+	/**
+	 * Finds the smallest window containing every intense channel and every
+	 * channel within reach of a peak where the normalized curve is significant
+	 */
+	private void calculateSupport(RangeSet reach) {
+		float threshold = SUPPORT_THRESHOLD * normalizedMax;
+		int first = Integer.MAX_VALUE, last = -1;
+		for (int i : reach) {
+			if (normalizedCurve.get(i) > threshold) {
+				first = Math.min(first, i);
+				last = i;
+			}
+		}
+		for (int channel : intenseChannelArray) {
+			first = Math.min(first, channel);
+			last = Math.max(last, channel);
+		}
+		if (last < 0) {
+			supportStart = 0;
+			support = new float[0];
+			return;
+		}
+		supportStart = first;
+		support = Arrays.copyOfRange(normalizedCurve.backingArray(), first, last+1);
+	}
 	
 	public String toString()
 	{
@@ -0,0 +1,177 @@
+package org.peakaboo.curvefit.curve.fitting;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.peakaboo.curvefit.peak.detector.DetectorMaterialType;
+import org.peakaboo.curvefit.peak.fitting.FittingFunction;
+import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
+import org.peakaboo.curvefit.peak.transition.Transition;
+
+/**
+ * A process-wide cache of calculated {@link Curve} shapes. Calculating a curve
+ * means evaluating a {@link FittingFunction} for every transition at every
+ * channel, and identical curves are built over and over by different
+ * {@link FittingSet}s, threads, peak proposals and energy calibration trials.
+ * Curves are keyed by their {@link ITransitionSeries} and every
+ * {@link FittingParameters} setting which affects their shape, and the least
+ * recently used curves are dropped when the cache grows beyond its maximum size.
+ * Only the {@link CurveShape} is kept, so that a cached curve doesn't keep the
+ * FittingSet it was first calculated for alive.
+ *
+ * @author NAS
+ *
+ */
+public class CurveCache {
+
+	private static final long DEFAULT_MAX_SIZE = 64L * 1024L * 1024L;
+
+	private static long maxSize = DEFAULT_MAX_SIZE;
+	private static long size = 0;
+	private static long hits = 0, misses = 0, evictions = 0;
+
+	private static final LinkedHashMap<Key, CurveShape> curves = new LinkedHashMap<>(256, 0.75f, true);
+
+	private CurveCache() {
+		//Not Constructable
+	}
+
+	static synchronized CurveShape get(ITransitionSeries ts, FittingParameters parameters) {
+		CurveShape curve = curves.get(new Key(ts, parameters));
+		if (curve == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return curve;
+	}
+
+	static synchronized void put(ITransitionSeries ts, FittingParameters parameters, CurveShape curve) {
+		CurveShape old = curves.put(new Key(ts, parameters), curve);
+		if (old != null) {
+			size -= old.footprint();
+		}
+		size += curve.footprint();
+		trim();
+	}
+
+	private static void trim() {
+		Iterator<Map.Entry<Key, CurveShape>> iterator = curves.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			size -= iterator.next().getValue().footprint();
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Sets the maximum estimated memory used by cached curves, in bytes
+	 */
+	public static synchronized void setMaxSize(long bytes) {
+		maxSize = bytes;
+		trim();
+	}
+
+	public static synchronized long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the estimated memory used by cached curves, in bytes
+	 */
+	public static synchronized long getSize() {
+		return size;
+	}
+
+	public static synchronized int getCount() {
+		return curves.size();
+	}
+
+	public static synchronized long getHits() {
+		return hits;
+	}
+
+	public static synchronized long getMisses() {
+		return misses;
+	}
+
+	public static synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public static synchronized void clear() {
+		curves.clear();
+		size = 0;
+	}
+
+	public static synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+
+
+	/**
+	 * A snapshot of everything which determines the shape of a curve
+	 */
+	private static class Key {
+
+		private ITransitionSeries ts;
+		//the transitions themselves, in case series from different peak tables are equal
+		private float[] transitions;
+		private float minEnergy, maxEnergy;
+		private int dataWidth;
+		private float fwhmBase;
+		private DetectorMaterialType detectorMaterial;
+		private Class<? extends FittingFunction> fittingFunction;
+		private boolean showEscapePeaks;
+		private int hash;
+
+		Key(ITransitionSeries ts, FittingParameters parameters) {
+			this.ts = ts;
+			List<Transition> list = ts.getAllTransitions();
+			this.transitions = new float[list.size() * 2];
+			for (int i = 0; i < list.size(); i++) {
+				transitions[i*2] = list.get(i).energyValue;
+				transitions[i*2+1] = list.get(i).relativeIntensity;
+			}
+			EnergyCalibration calibration = parameters.getCalibration();
+			this.minEnergy = calibration.getMinEnergy();
+			this.maxEnergy = calibration.getMaxEnergy();
+			this.dataWidth = calibration.getDataWidth();
+			this.fwhmBase = parameters.getFWHMBase();
+			this.detectorMaterial = parameters.getDetectorMaterial();
+			this.fittingFunction = parameters.getFittingFunction();
+			this.showEscapePeaks = parameters.getShowEscapePeaks();
+			this.hash = Objects.hash(ts, Arrays.hashCode(transitions), minEnergy, maxEnergy, dataWidth, fwhmBase, detectorMaterial, fittingFunction, showEscapePeaks);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return hash == other.hash
+					&& Float.compare(minEnergy, other.minEnergy) == 0
+					&& Float.compare(maxEnergy, other.maxEnergy) == 0
+					&& dataWidth == other.dataWidth
+					&& Float.compare(fwhmBase, other.fwhmBase) == 0
+					&& detectorMaterial == other.detectorMaterial
+					&& fittingFunction == other.fittingFunction
+					&& showEscapePeaks == other.showEscapePeaks
+					&& ts.equals(other.ts)
+					&& Arrays.equals(transitions, other.transitions);
+		}
+
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.peakaboo.curvefit.curve.fitting;
+
+import java.util.Set;
+
+import org.peakaboo.framework.cyclops.RangeSet;
+import org.peakaboo.framework.cyclops.Spectrum;
+
+/**
+ * The calculated shape of a {@link Curve}, without the
+ * {@link FittingParameters} or {@link FittingSet} it was calculated for, so
+ * that it can be cached and shared between Curves without keeping the rest of
+ * a fitting set alive. None of these values are modified once calculated.
+ *
+ * @author NAS
+ *
+ */
+class CurveShape {
+
+	final float normalizationScale;
+	final Spectrum normalizedCurve;
+	final float normalizedSum;
+	final float normalizedMax;
+	final int supportStart;
+	final float[] support;
+	final RangeSet intenseRanges;
+	final Set<Integer> intenseChannels;
+	final int[] intenseChannelArray;
+	final int baseSize;
+
+	CurveShape(float normalizationScale, Spectrum normalizedCurve, float normalizedSum, float normalizedMax,
+			int supportStart, float[] support, RangeSet intenseRanges, Set<Integer> intenseChannels,
+			int[] intenseChannelArray, int baseSize) {
+		this.normalizationScale = normalizationScale;
+		this.normalizedCurve = normalizedCurve;
+		this.normalizedSum = normalizedSum;
+		this.normalizedMax = normalizedMax;
+		this.supportStart = supportStart;
+		this.support = support;
+		this.intenseRanges = intenseRanges;
+		this.intenseChannels = intenseChannels;
+		this.intenseChannelArray = intenseChannelArray;
+		this.baseSize = baseSize;
+	}
+
+	/**
+	 * Estimates the memory used by this shape, in bytes
+	 */
+	long footprint() {
+		//the set of intense channels costs far more per entry than the array
+		return 4L * (normalizedCurve.size() + support.length) + 52L * intenseChannelArray.length;
+	}
+
+}
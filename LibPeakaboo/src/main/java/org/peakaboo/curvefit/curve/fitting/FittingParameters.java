@@ -82,6 +82,13 @@ public class FittingParameters {
 	 * calculates the FWHM value which should be used for this Transition.
 	 */
 	public float getFWHM(Transition t) {
+		return getFWHM(t.energyValue);
+	}
+	
+	/**
+	 * Calculates the FWHM value which should be used for a peak at the given energy
+	 */
+	public float getFWHM(float energy) {
 		//See Handbook of X-Ray Spectrometry rev2 p282
 		
 		//Energy required to create electron-hole pair in detector material
@@ -90,7 +97,6 @@ public class FittingParameters {
 		
 		float noise = fwhmBase;
 		
-		float energy = t.energyValue;
 		float noiseComponent = (float) (Math.pow(noise / 2.3548, 2));
 		float energyComponent = (float) (energyGap*fano*energy);
 			
@@ -21,6 +21,15 @@ public interface CurveFitter {
 
 	FittingResult fit(ReadOnlySpectrum data, Curve curve);
 	
+	/**
+	 * Determines the scale of the given curve without building a
+	 * {@link FittingResult}. Implementations should avoid allocating here, as
+	 * this is called for every curve of every spectrum when generating maps.
+	 */
+	default float fitScale(ReadOnlySpectrum data, Curve curve) {
+		return fit(data, curve).getCurveScale();
+	}
+	
 	String name(); 
 		
 }
@@ -11,10 +11,7 @@ import org.apache.commons.math3.optim.univariate.UnivariateOptimizer;
 import org.apache.commons.math3.optim.univariate.UnivariatePointValuePair;
 import org.peakaboo.curvefit.curve.fitting.Curve;
 import org.peakaboo.curvefit.curve.fitting.FittingResult;
-import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
-import org.peakaboo.framework.cyclops.Spectrum;
-import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 public class OptimizingCurveFitter implements CurveFitter {
 
@@ -27,14 +24,17 @@ public class OptimizingCurveFitter implements CurveFitter {
 		return result;
 	}
 	
-	
+	@Override
+	public float fitScale(ReadOnlySpectrum data, Curve curve) {
+		return this.findScale(data, curve);
+	}
 	
 	private float findScale(ReadOnlySpectrum data, Curve curve) {
 
 		UnivariateFunction score = scoringFunction(data, curve);
 		
 		double guess = 0;
-		for (int channel : curve.getIntenseChannels()) {
+		for (int channel : curve.getIntenseChannelArray()) {
 			guess = Math.max(guess, data.get(channel));
 		}
 		
@@ -56,19 +56,24 @@ public class OptimizingCurveFitter implements CurveFitter {
 	}
 	
 	protected UnivariateFunction scoringFunction(ReadOnlySpectrum data, Curve curve) {
+		//the curve's values at the intense channels don't change between evaluations
+		int[] channels = curve.getIntenseChannelArray();
+		float[] curveValues = new float[channels.length];
+		float[] dataValues = new float[channels.length];
+		for (int i = 0; i < channels.length; i++) {
+			curveValues[i] = curve.getNormalized(channels[i]);
+			dataValues[i] = data.get(channels[i]);
+		}
 		return new UnivariateFunction() {
 			
-			Spectrum scaled = new ISpectrum(data.size());
-			Spectrum residual = new ISpectrum(data.size());
-			
 			@Override
 			public double value(double scale) {
-				curve.scaleInto((float) scale, scaled);
-				SpectrumCalculations.subtractLists_target(data, scaled, residual);
-				
+				//only the intense channels are scored, so we calculate the residual 
+				//for those channels directly rather than scaling the whole curve
+				float fscale = (float) scale;
 				float score = 0;
-				for (int i : curve.getIntenseChannels()) {
-					float value = residual.get(i);
+				for (int i = 0; i < channels.length; i++) {
+					float value = dataValues[i] - curveValues[i] * fscale;
 					if (value < 0) {
 						value *= overfitPenalty;
 					}
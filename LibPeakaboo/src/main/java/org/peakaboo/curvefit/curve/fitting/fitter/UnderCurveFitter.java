@@ -3,6 +3,7 @@ package org.peakaboo.curvefit.curve.fitting.fitter;
 import org.peakaboo.curvefit.curve.fitting.Curve;
 import org.peakaboo.curvefit.curve.fitting.FittingResult;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 public class UnderCurveFitter implements CurveFitter {
 
@@ -27,6 +28,11 @@ public class UnderCurveFitter implements CurveFitter {
 		return result;
 	}
 	
+	@Override
+	public float fitScale(ReadOnlySpectrum data, Curve curve) {
+		return this.getRatioForCurveUnderData(data, curve);
+	}
+	
 
 	/**
 	 * Calculates the amount that this fitting should be scaled by to best fit the given data set
@@ -43,11 +49,15 @@ public class UnderCurveFitter implements CurveFitter {
 		float currentIntensity;
 		float cutoff;
 		
+		int[] channels = curve.getIntenseChannelArray();
+		float[] values = SpectrumCalculations.array(data);
+		int size = data.size();
+		
 		//look at every point in the ranges covered by transitions, find the max intensity
-		for (Integer i : curve.getIntenseChannels())
+		for (int i : channels)
 		{
-			if (i < 0 || i >= data.size()) continue;
-			currentIntensity = data.get(i);
+			if (i < 0 || i >= size) continue;
+			currentIntensity = values[i];
 			if (currentIntensity > topIntensity) topIntensity = currentIntensity;
 			dataConsidered = true;
 			
@@ -73,15 +83,15 @@ public class UnderCurveFitter implements CurveFitter {
 
 		
 		//look at every point in the ranges covered by transitions 
-		for (Integer i : curve.getIntenseChannels())
+		for (int i : channels)
 		{
-			if (i < 0 || i >= data.size()) continue;
-			
+			if (i < 0 || i >= size) continue;
 			
-			if (curve.get().get(i) >= cutoff)
+			float curveValue = curve.getNormalized(i);
+			if (curveValue >= cutoff)
 			{
 				
-				thisFactor = data.get(i) / curve.get().get(i);
+				thisFactor = values[i] / curveValue;
 				if (thisFactor < smallestFactor && !Float.isNaN(thisFactor)) 
 				{
 					smallestFactor = thisFactor;
@@ -18,4 +18,14 @@ public interface FittingSolver {
 	
 	FittingResultSet solve(ReadOnlySpectrum data, FittingSet fittings, CurveFitter fitter);
 	
+	/**
+	 * Creates a {@link SolverContext} for fitting many spectra against the given
+	 * {@link FittingSet} without building a {@link FittingResultSet} for each
+	 * one. Solvers should override this to reuse their working buffers between
+	 * spectra.
+	 */
+	default SolverContext context(FittingSet fittings, CurveFitter fitter) {
+		return new ResultSetSolverContext(this, fittings, fitter);
+	}
+	
 }
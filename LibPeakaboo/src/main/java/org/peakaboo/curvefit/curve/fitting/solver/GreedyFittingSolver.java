@@ -38,19 +38,21 @@ public class GreedyFittingSolver implements FittingSolver {
 		FittingParameters resultParameters = FittingParameters.copy(fittings.getFittingParameters());
 		
 		Spectrum remainder = new ISpectrum(data);
-		Spectrum scaled = new ISpectrum(data.size());
+		List<Curve> curves = fittings.getVisibleCurves();
+		if (!curves.isEmpty()) {
+			//subtracting the first curve would clamp every channel of the remainder 
+			//to zero, so we do that up front and then only touch each curve's window
+			SpectrumCalculations.subtractFromList_inplace(remainder, 0.0f, 0.0f);
+		}
 		
 		// calculate the curves
-		for (Curve curve : fittings.getCurves()) {
-			if (!curve.getTransitionSeries().isVisible()) { continue; }
-			
+		for (Curve curve : curves) {
 			FittingResult result = fitter.fit(remainder, curve);
-			curve.scaleInto(result.getCurveScale(), scaled);
-			SpectrumCalculations.subtractLists_inplace(remainder, scaled, 0.0f);
+			curve.subtractScaledFrom(result.getCurveScale(), remainder);
 			
 			//should this be done through a method addFit?
 			resultFits.add(result);
-			SpectrumCalculations.addLists_inplace(resultTotalFit, scaled);
+			curve.addScaledTo(result.getCurveScale(), resultTotalFit);
 		}
 
 		
@@ -59,4 +61,52 @@ public class GreedyFittingSolver implements FittingSolver {
 		
 	}
 	
+	@Override
+	public SolverContext context(FittingSet fittings, CurveFitter fitter) {
+		return new GreedySolverContext(fittings, fitter);
+	}
+	
+	private static class GreedySolverContext implements SolverContext {
+		
+		private CurveFitter fitter;
+		private List<Curve> curves;
+		private Spectrum remainder = new ISpectrum(0);
+		
+		GreedySolverContext(FittingSet fittings, CurveFitter fitter) {
+			this.fitter = fitter;
+			this.curves = fittings.getVisibleCurves();
+		}
+		
+		@Override
+		public List<Curve> getCurves() {
+			return curves;
+		}
+		
+		@Override
+		public void solve(ReadOnlySpectrum data, float[] scales) {
+			if (curves.isEmpty()) {
+				return;
+			}
+			if (remainder.size() != data.size()) {
+				remainder = new ISpectrum(data.size());
+			}
+			
+			//subtracting the first curve would clamp every channel of the remainder 
+			//to zero, so we do that up front and then only touch each curve's window
+			float[] values = remainder.backingArray();
+			for (int i = 0; i < values.length; i++) {
+				float value = data.get(i);
+				values[i] = value < 0 ? 0 : value;
+			}
+			
+			for (int i = 0; i < curves.size(); i++) {
+				Curve curve = curves.get(i);
+				float scale = fitter.fitScale(remainder, curve);
+				curve.subtractScaledFrom(scale, remainder);
+				scales[i] = scale;
+			}
+		}
+		
+	}
+	
 }
@@ -1,10 +1,10 @@
 package org.peakaboo.curvefit.curve.fitting.solver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
 
 import org.apache.commons.math3.analysis.MultivariateFunction;
 import org.apache.commons.math3.optim.PointValuePair;
@@ -35,47 +35,101 @@ public class MultisamplingOptimizingFittingSolver extends OptimizingFittingSolve
 			return getEmptyResult(data, fittings);
 		}
 		
-		List<Curve> curves = new ArrayList<>(fittings.getVisibleCurves());
-		sortCurves(curves);
+		MultisamplingSolverContext solver = new MultisamplingSolverContext(fittings, fitter);
+		double[] scalings = solver.optimize(data);
+		EvaluationContext context = new EvaluationContext(data, fittings, solver.curves, solver.channels);
 		
+		return evaluate(scalings, context);
 		
-		Set<Integer> intenseChannels = getIntenseChannels(curves);
 		
-		List<Curve> perm = new ArrayList<>(curves);
-		int counter = 0;
-		double[] scalings = new double[size];
-		while (counter <= 10) {
-			Collections.shuffle(perm, new Random(12345654321l));
-			
-			
-			double[] guess = getInitialGuess(size, perm, fitter, data);
-			EvaluationContext context = new EvaluationContext(data, fittings, perm);
-			MultivariateFunction cost = getCostFunction(context, intenseChannels);
-			PointValuePair result = optimizeCostFunction(cost, guess, 0.02d);
-			double[] permScalings = result.getPoint();
-			
-			//DON'T DO THIS, IT CAUSES ALL THE REST OF THE FITS TO BE BIASED TOWARDS THE FIRST ONE
-			//next iteration's guess will be this iterations results
-			//this improves performance like crazy over the first initial guess
-			//guess = permScalings;
+	}
+	
+	@Override
+	public SolverContext context(FittingSet fittings, CurveFitter fitter) {
+		return new MultisamplingSolverContext(fittings, fitter);
+	}
+	
+	/**
+	 * Fits each spectrum several times with the curves in a different order,
+	 * and averages the results. The permutations are the same for every
+	 * spectrum, so their {@link EvaluationContext}s are built once and reused.
+	 */
+	private class MultisamplingSolverContext implements SolverContext {
+		
+		private CurveFitter fitter;
+		private List<Curve> curves;
+		private int[] channels;
+		private List<List<Curve>> perms = new ArrayList<>();
+		private List<EvaluationContext> contexts = new ArrayList<>();
+		private List<MultivariateFunction> costs = new ArrayList<>();
+		//for each permutation, the index in curves of each of its entries
+		private List<int[]> permIndexes = new ArrayList<>();
+		private double[] guess;
+		private double[] scalings;
+		
+		MultisamplingSolverContext(FittingSet fittings, CurveFitter fitter) {
+			this.fitter = fitter;
+			this.curves = new ArrayList<>(fittings.getVisibleCurves());
+			sortCurves(curves);
+			this.channels = getIntenseChannels(curves);
+			this.guess = new double[curves.size()];
+			this.scalings = new double[curves.size()];
 			
-			for (int i = 0; i < scalings.length; i++) {
-				Curve c = perm.get(i);
-				int j = curves.indexOf(c);
-				scalings[j] += permScalings[i];
+			List<Curve> perm = new ArrayList<>(curves);
+			for (int counter = 0; counter <= 10; counter++) {
+				Collections.shuffle(perm, new Random(12345654321l));
+				List<Curve> permCopy = new ArrayList<>(perm);
+				EvaluationContext context = new EvaluationContext(null, fittings, permCopy, channels);
+				int[] permIndex = new int[permCopy.size()];
+				for (int i = 0; i < permIndex.length; i++) {
+					permIndex[i] = curves.indexOf(permCopy.get(i));
+				}
+				perms.add(permCopy);
+				contexts.add(context);
+				costs.add(getCostFunction(context));
+				permIndexes.add(permIndex);
 			}
-			counter++;
-			
 		}
 		
-		for (int i = 0; i < scalings.length; i++) {
-			scalings[i] /= counter;
+		@Override
+		public List<Curve> getCurves() {
+			return curves;
 		}
-
-		EvaluationContext context = new EvaluationContext(data, fittings, curves);
 		
-		return evaluate(scalings, context);
+		double[] optimize(ReadOnlySpectrum data) {
+			Arrays.fill(scalings, 0d);
+			for (int counter = 0; counter < perms.size(); counter++) {
+				EvaluationContext context = contexts.get(counter);
+				context.setData(data);
+				fillInitialGuess(guess, perms.get(counter), fitter, data);
+				PointValuePair result = optimizeCostFunction(costs.get(counter), guess, 0.02d);
+				double[] permScalings = result.getPoint();
+				
+				//DON'T REUSE permScalings AS THE NEXT GUESS, IT CAUSES ALL THE REST 
+				//OF THE FITS TO BE BIASED TOWARDS THE FIRST ONE
+				
+				int[] permIndex = permIndexes.get(counter);
+				for (int i = 0; i < scalings.length; i++) {
+					scalings[permIndex[i]] += permScalings[i];
+				}
+			}
+			
+			for (int i = 0; i < scalings.length; i++) {
+				scalings[i] /= perms.size();
+			}
+			return scalings;
+		}
 		
+		@Override
+		public void solve(ReadOnlySpectrum data, float[] scales) {
+			if (curves.isEmpty()) {
+				return;
+			}
+			double[] result = optimize(data);
+			for (int i = 0; i < result.length; i++) {
+				scales[i] = (float) result[i];
+			}
+		}
 		
 	}
 	
@@ -0,0 +1,340 @@
+package org.peakaboo.curvefit.curve.fitting.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.peakaboo.curvefit.curve.fitting.Curve;
+import org.peakaboo.curvefit.curve.fitting.FittingParameters;
+import org.peakaboo.curvefit.curve.fitting.FittingResult;
+import org.peakaboo.curvefit.curve.fitting.FittingResultSet;
+import org.peakaboo.curvefit.curve.fitting.FittingSet;
+import org.peakaboo.curvefit.curve.fitting.fitter.CurveFitter;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
+
+/**
+ * Solves for the scale of every curve at once as a non-negative linear least
+ * squares problem. Since the fitted signal is a linear combination of fixed
+ * curve shapes, the Gram matrix of the curves (restricted to their intense
+ * channels) only has to be calculated once per {@link FittingSet}, after which
+ * each spectrum only needs the projection of the data onto each curve and a
+ * small Cholesky solve. Factorizations are cached by the set of curves which
+ * end up with non-zero scales, which is usually the same from one spectrum to
+ * the next.
+ * <br/><br/>
+ * The {@link CurveFitter} is not used by this solver, as no initial guess is
+ * needed.
+ *
+ * @author NAS
+ *
+ */
+public class NNLSFittingSolver implements FittingSolver {
+
+	@Override
+	public String name() {
+		return "Non-Negative Least Squares";
+	}
+
+	@Override
+	public String toString() {
+		return name();
+	}
+
+	@Override
+	public FittingResultSet solve(ReadOnlySpectrum data, FittingSet fittings, CurveFitter fitter) {
+		NNLSSolverContext context = new NNLSSolverContext(fittings);
+		List<Curve> curves = context.getCurves();
+		float[] scales = new float[curves.size()];
+		context.solve(data, scales);
+
+		List<FittingResult> fits = new ArrayList<>();
+		Spectrum total = new ISpectrum(data.size());
+		for (int i = 0; i < curves.size(); i++) {
+			Curve curve = curves.get(i);
+			curve.addScaledTo(scales[i], total);
+			fits.add(new FittingResult(curve, scales[i]));
+		}
+		Spectrum residual = SpectrumCalculations.subtractLists(data, total);
+
+		return new FittingResultSet(total, residual, fits, FittingParameters.copy(fittings.getFittingParameters()));
+	}
+
+	@Override
+	public SolverContext context(FittingSet fittings, CurveFitter fitter) {
+		return new NNLSSolverContext(fittings);
+	}
+
+
+
+
+	/**
+	 * Holds the Gram matrix for a set of curves, the cached factorizations of
+	 * its sub-matrices, and the working buffers for the active set solver.
+	 */
+	private static class NNLSSolverContext implements SolverContext {
+
+		//largest number of cached factorizations before the cache is reset
+		private static final int MAX_CACHED_FACTORS = 1024;
+
+		private List<Curve> curves;
+		private int size;
+
+		//channels considered, and the value of each curve at those channels
+		private int[] channels;
+		private float[][] curveValues;
+		private float[] dataValues;
+
+		private double[][] gram;
+		private Map<Long, double[]> factors = new HashMap<>();
+
+		private double[] projection, x, s, w, rhs;
+		private boolean[] passive;
+		private int[] subset;
+
+		NNLSSolverContext(FittingSet fittings) {
+			curves = fittings.getVisibleCurves();
+			size = curves.size();
+
+			channels = Curve.getIntenseChannelArray(curves);
+
+			curveValues = new float[size][channels.length];
+			for (int i = 0; i < size; i++) {
+				Curve curve = curves.get(i);
+				for (int c = 0; c < channels.length; c++) {
+					curveValues[i][c] = curve.getNormalized(channels[c]);
+				}
+			}
+			dataValues = new float[channels.length];
+
+			gram = new double[size][size];
+			double largest = 0;
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j <= i; j++) {
+					double sum = 0;
+					for (int c = 0; c < channels.length; c++) {
+						sum += (double)curveValues[i][c] * curveValues[j][c];
+					}
+					gram[i][j] = sum;
+					gram[j][i] = sum;
+				}
+				largest = Math.max(largest, gram[i][i]);
+			}
+			//a very small ridge keeps the factorization stable for curves
+			//which are empty or which are nearly identical to each other
+			double ridge = Math.max(largest, 1d) * 1e-10;
+			for (int i = 0; i < size; i++) {
+				gram[i][i] += ridge;
+			}
+
+			projection = new double[size];
+			x = new double[size];
+			s = new double[size];
+			w = new double[size];
+			rhs = new double[size];
+			passive = new boolean[size];
+			subset = new int[size];
+		}
+
+		@Override
+		public List<Curve> getCurves() {
+			return curves;
+		}
+
+		@Override
+		public void solve(ReadOnlySpectrum data, float[] scales) {
+			if (size == 0) {
+				return;
+			}
+
+			for (int c = 0; c < channels.length; c++) {
+				dataValues[c] = data.get(channels[c]);
+			}
+			double largest = 0;
+			for (int i = 0; i < size; i++) {
+				double sum = 0;
+				float[] values = curveValues[i];
+				for (int c = 0; c < channels.length; c++) {
+					sum += (double)values[c] * dataValues[c];
+				}
+				projection[i] = sum;
+				largest = Math.max(largest, Math.abs(sum));
+			}
+
+			//The unconstrained solution is usually already non-negative
+			Arrays.fill(passive, true);
+			solvePassive(x);
+			boolean feasible = true;
+			for (int i = 0; i < size; i++) {
+				if (x[i] < 0) {
+					feasible = false;
+					break;
+				}
+			}
+			if (!feasible) {
+				activeSet(largest * 1e-12);
+			}
+
+			for (int i = 0; i < size; i++) {
+				scales[i] = (float) x[i];
+			}
+		}
+
+		/**
+		 * Lawson-Hanson active set method, operating on the normal equations
+		 */
+		private void activeSet(double tolerance) {
+			Arrays.fill(passive, false);
+			Arrays.fill(x, 0d);
+			gradient();
+
+			int iterations = 0;
+			int maxIterations = size * 3;
+			outer: while (iterations++ < maxIterations) {
+
+				//find the most promising curve not yet in the passive set
+				int next = -1;
+				double best = tolerance;
+				for (int i = 0; i < size; i++) {
+					if (!passive[i] && w[i] > best) {
+						best = w[i];
+						next = i;
+					}
+				}
+				if (next == -1) {
+					break;
+				}
+				passive[next] = true;
+
+				while (true) {
+					solvePassive(s);
+					double alpha = Double.MAX_VALUE;
+					int blocking = -1;
+					for (int i = 0; i < size; i++) {
+						if (passive[i] && s[i] <= 0) {
+							//a scale which is already zero and stays there blocks with a zero step
+							double denominator = x[i] - s[i];
+							double step = denominator > 0 ? x[i] / denominator : 0;
+							if (step < alpha) {
+								alpha = step;
+								blocking = i;
+							}
+						}
+					}
+					if (blocking == -1) {
+						System.arraycopy(s, 0, x, 0, size);
+						break;
+					}
+
+					//step towards the new solution until a scale hits zero, and
+					//drop every curve which has been driven to zero
+					for (int i = 0; i < size; i++) {
+						if (!passive[i]) continue;
+						x[i] += alpha * (s[i] - x[i]);
+						if (i == blocking || x[i] <= 0) {
+							x[i] = 0;
+							passive[i] = false;
+						}
+					}
+					if (iterations++ >= maxIterations) {
+						break outer;
+					}
+				}
+				gradient();
+			}
+
+			for (int i = 0; i < size; i++) {
+				if (x[i] < 0) x[i] = 0;
+			}
+		}
+
+		private void gradient() {
+			for (int i = 0; i < size; i++) {
+				double sum = projection[i];
+				for (int j = 0; j < size; j++) {
+					sum -= gram[i][j] * x[j];
+				}
+				w[i] = sum;
+			}
+		}
+
+		/**
+		 * Solves the normal equations for the curves in the passive set, storing
+		 * the result in the given array with zeros for every other curve.
+		 */
+		private void solvePassive(double[] result) {
+			int count = 0;
+			long key = 0;
+			for (int i = 0; i < size; i++) {
+				if (passive[i]) {
+					subset[count++] = i;
+					if (i < 64) key |= 1L << i;
+				}
+			}
+
+			double[] factor = null;
+			boolean cacheable = size <= 64;
+			if (cacheable) {
+				factor = factors.get(key);
+			}
+			if (factor == null) {
+				factor = factor(count);
+				if (cacheable) {
+					if (factors.size() >= MAX_CACHED_FACTORS) {
+						factors.clear();
+					}
+					factors.put(key, factor);
+				}
+			}
+
+			//forward substitution with L, then back substitution with L transposed
+			for (int i = 0; i < count; i++) {
+				double sum = projection[subset[i]];
+				for (int j = 0; j < i; j++) {
+					sum -= factor[i * count + j] * rhs[j];
+				}
+				rhs[i] = sum / factor[i * count + i];
+			}
+			for (int i = count - 1; i >= 0; i--) {
+				double sum = rhs[i];
+				for (int j = i + 1; j < count; j++) {
+					sum -= factor[j * count + i] * rhs[j];
+				}
+				rhs[i] = sum / factor[i * count + i];
+			}
+
+			Arrays.fill(result, 0d);
+			for (int i = 0; i < count; i++) {
+				result[subset[i]] = rhs[i];
+			}
+		}
+
+		/**
+		 * Cholesky factorization of the Gram matrix restricted to the first
+		 * count entries of subset, as a dense row-major lower triangle
+		 */
+		private double[] factor(int count) {
+			double[] factor = new double[count * count];
+			for (int i = 0; i < count; i++) {
+				for (int j = 0; j <= i; j++) {
+					double sum = gram[subset[i]][subset[j]];
+					for (int k = 0; k < j; k++) {
+						sum -= factor[i * count + k] * factor[j * count + k];
+					}
+					if (i == j) {
+						factor[i * count + i] = Math.sqrt(Math.max(sum, Double.MIN_NORMAL));
+					} else {
+						factor[i * count + j] = sum / factor[j * count + j];
+					}
+				}
+			}
+			return factor;
+		}
+
+	}
+
+}
@@ -2,9 +2,7 @@ package org.peakaboo.curvefit.curve.fitting.solver;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.math3.analysis.MultivariateFunction;
 import org.apache.commons.math3.optim.InitialGuess;
@@ -47,23 +45,17 @@ public class OptimizingFittingSolver implements FittingSolver {
 			return getEmptyResult(data, fittings);
 		}
 		
-		List<Curve> curves = new ArrayList<>(fittings.getVisibleCurves());
-		sortCurves(curves);
-		Set<Integer> intenseChannels = getIntenseChannels(curves);
-		EvaluationContext context = new EvaluationContext(data, fittings, curves);
-		MultivariateFunction cost = getCostFunction(context, intenseChannels);
-		double[] guess = getInitialGuess(size, curves, fitter, data);
-				
-			
-		PointValuePair result = optimizeCostFunction(cost, guess, 0.01d);
-
-		
-		double[] scalings = result.getPoint();
-		return evaluate(scalings, context);
-		
+		OptimizingSolverContext solver = new OptimizingSolverContext(fittings, fitter);
+		double[] scalings = solver.optimize(data);
+		return evaluate(scalings, solver.context);
 		
 	}
 	
+	@Override
+	public SolverContext context(FittingSet fittings, CurveFitter fitter) {
+		return new OptimizingSolverContext(fittings, fitter);
+	}
+	
 	protected FittingResultSet getEmptyResult(ReadOnlySpectrum data, FittingSet fittings) {
 		return new FittingResultSet(
 				new ISpectrum(data.size()), 
@@ -106,31 +98,30 @@ public class OptimizingFittingSolver implements FittingSolver {
 	
 	protected double[] getInitialGuess(int size, List<Curve> curves, CurveFitter fitter, ReadOnlySpectrum data) {
 		double[] guess = new double[size];
-		for (int i = 0; i < size; i++) {
+		fillInitialGuess(guess, curves, fitter, data);
+		return guess;
+	}
+	
+	protected void fillInitialGuess(double[] guess, List<Curve> curves, CurveFitter fitter, ReadOnlySpectrum data) {
+		for (int i = 0; i < guess.length; i++) {
 			Curve curve = curves.get(i);
-			FittingResult guessFittingResult = fitter.fit(data, curve);
 			
 			//there will usually be some overlap between elements, so
 			//we use 80% of the independently fitted guess.
-			guess[i] = guessFittingResult.getCurveScale() * 0.80f;
+			guess[i] = fitter.fitScale(data, curve) * 0.80f;
 			
 			//guesses shouldn't be zero
 			if (guess[i] == 0) {
 				guess[i] = 0.00001d;
 			}
 		}
-		return guess;
 	}
 	
-	protected Set<Integer> getIntenseChannels(List<Curve> curves) {
-		Set<Integer> intenseChannels = new LinkedHashSet<>();
-		for (Curve curve : curves) {
-			intenseChannels.addAll(curve.getIntenseChannels());
-		}
-		return intenseChannels;
+	protected int[] getIntenseChannels(List<Curve> curves) {
+		return Curve.getIntenseChannelArray(curves);
 	}
 	
-	protected MultivariateFunction getCostFunction(EvaluationContext context, Set<Integer> intenseChannels) {
+	protected MultivariateFunction getCostFunction(EvaluationContext context) {
 		return new MultivariateFunction() {
 			
 			@Override
@@ -145,7 +136,7 @@ public class OptimizingFittingSolver implements FittingSolver {
 				}
 
 				test(point, context);
-				float score = score(point, intenseChannels, context.residual);
+				float score = score(point, context.residual);
 				if (containsNegatives > 0) {
 					return score * (1f+containsNegatives);
 				}
@@ -171,24 +162,28 @@ public class OptimizingFittingSolver implements FittingSolver {
 		});
 	}
 
+	/**
+	 * Calculates the residual at each of the context's channels for the given
+	 * scalings. Only the channels which are scored are considered, so this
+	 * never touches the full width of the spectrum.
+	 */
 	private void test(double[] point, EvaluationContext context) {
-		int index = 0;
-		context.scratch.zero();
-		context.total.zero();
-		for (Curve curve : context.curves) {
-			float scale = (float) point[index++];
-			curve.scaleInto(scale, context.scratch);
-			SpectrumCalculations.addLists_inplace(context.total, context.scratch);
+		int curveCount = context.curveValues.length;
+		for (int i = 0; i < curveCount; i++) {
+			context.scales[i] = (float) point[i];
+		}
+		for (int channel = 0; channel < context.channels.length; channel++) {
+			float total = 0;
+			for (int i = 0; i < curveCount; i++) {
+				total += context.curveValues[i][channel] * context.scales[i];
+			}
+			context.residual[channel] = context.dataValues[channel] - total;
 		}
-		SpectrumCalculations.subtractLists_target(context.data, context.total, context.residual);
-
 	}
 	
-	private float score(double[] point, Set<Integer> intenseChannels, Spectrum residual) {
-		float[] ra = residual.backingArray();
+	private float score(double[] point, float[] residual) {
 		float score = 0;
-		for (int i : intenseChannels) {
-			float channelValue = ra[i];
+		for (float channelValue : residual) {
 			
 			//Negative values mean that we've fit more signal than exists
 			//We penalize this to prevent making up data where none exists.
@@ -210,33 +205,104 @@ public class OptimizingFittingSolver implements FittingSolver {
 		int index = 0;
 		List<FittingResult> fits = new ArrayList<>();
 		Spectrum total = new ISpectrum(context.data.size());
-		Spectrum scaled = new ISpectrum(context.data.size());
 		for (Curve curve : context.curves) {
 			float scale = (float) point[index++];
-			curve.scaleInto(scale, scaled);
+			curve.addScaledTo(scale, total);
 			fits.add(new FittingResult(curve, scale));
-			SpectrumCalculations.addLists_inplace(total, scaled);
 		}
 		Spectrum residual = SpectrumCalculations.subtractLists(context.data, total);
 		
 		return new FittingResultSet(total, residual, fits, context.fittings.getFittingParameters().copy());
 	}
 	
+	/**
+	 * Holds the values of each curve and of the data at the channels being
+	 * scored, along with the buffers used while evaluating the cost function.
+	 * A context can be reused for other spectra by calling
+	 * {@link #setData(ReadOnlySpectrum)}
+	 */
 	protected class EvaluationContext {
 		public ReadOnlySpectrum data;
 		public FittingSet fittings;
 		public List<Curve> curves;
-		public Spectrum scratch;
-		public Spectrum total;
-		public Spectrum residual;
-		public EvaluationContext(ReadOnlySpectrum data, FittingSet fittings, List<Curve> curves) {
-			this.data = data;
+		public int[] channels;
+		public float[][] curveValues;
+		public float[] dataValues;
+		public float[] scales;
+		public float[] residual;
+		
+		public EvaluationContext(ReadOnlySpectrum data, FittingSet fittings, List<Curve> curves, int[] channels) {
 			this.fittings = fittings;
 			this.curves = curves;
-			this.scratch = new ISpectrum(data.size());
-			this.total = new ISpectrum(data.size());
-			this.residual = new ISpectrum(data.size());
+			this.channels = channels;
+			this.curveValues = new float[curves.size()][channels.length];
+			for (int i = 0; i < curves.size(); i++) {
+				Curve curve = curves.get(i);
+				for (int channel = 0; channel < channels.length; channel++) {
+					curveValues[i][channel] = curve.getNormalized(channels[channel]);
+				}
+			}
+			this.dataValues = new float[channels.length];
+			this.scales = new float[curves.size()];
+			this.residual = new float[channels.length];
+			setData(data);
 		}
+		
+		public void setData(ReadOnlySpectrum data) {
+			this.data = data;
+			if (data == null) {
+				return;
+			}
+			for (int channel = 0; channel < channels.length; channel++) {
+				dataValues[channel] = data.get(channels[channel]);
+			}
+		}
+	}
+	
+	/**
+	 * Reusable {@link SolverContext} which keeps the same
+	 * {@link EvaluationContext} and cost function for every spectrum it fits.
+	 */
+	protected class OptimizingSolverContext implements SolverContext {
+		
+		protected CurveFitter fitter;
+		protected List<Curve> curves;
+		protected EvaluationContext context;
+		protected MultivariateFunction cost;
+		protected double[] guess;
+		
+		public OptimizingSolverContext(FittingSet fittings, CurveFitter fitter) {
+			this.fitter = fitter;
+			this.curves = new ArrayList<>(fittings.getVisibleCurves());
+			sortCurves(curves);
+			this.context = new EvaluationContext(null, fittings, curves, getIntenseChannels(curves));
+			this.cost = getCostFunction(context);
+			this.guess = new double[curves.size()];
+		}
+		
+		@Override
+		public List<Curve> getCurves() {
+			return curves;
+		}
+		
+		public double[] optimize(ReadOnlySpectrum data) {
+			context.setData(data);
+			fillInitialGuess(guess, curves, fitter, data);
+			PointValuePair result = optimizeCostFunction(cost, guess, 0.01d);
+			return result.getPoint();
+		}
+		
+		@Override
+		public void solve(ReadOnlySpectrum data, float[] scales) {
+			if (curves.isEmpty()) {
+				return;
+			}
+			double[] scalings = optimize(data);
+			for (int i = 0; i < scalings.length; i++) {
+				scales[i] = (float) scalings[i];
+			}
+		}
+		
 	}
 	
 }
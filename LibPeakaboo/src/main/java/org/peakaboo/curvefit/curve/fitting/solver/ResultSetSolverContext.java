@@ -0,0 +1,49 @@
+package org.peakaboo.curvefit.curve.fitting.solver;
+
+import java.util.List;
+
+import org.peakaboo.curvefit.curve.fitting.Curve;
+import org.peakaboo.curvefit.curve.fitting.FittingResult;
+import org.peakaboo.curvefit.curve.fitting.FittingResultSet;
+import org.peakaboo.curvefit.curve.fitting.FittingSet;
+import org.peakaboo.curvefit.curve.fitting.fitter.CurveFitter;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+
+/**
+ * {@link SolverContext} for {@link FittingSolver}s which don't provide their
+ * own. Calls {@link FittingSolver#solve(ReadOnlySpectrum, FittingSet, CurveFitter)}
+ * for each spectrum and reads the scales back out of the {@link FittingResultSet}.
+ */
+class ResultSetSolverContext implements SolverContext {
+
+	private FittingSolver solver;
+	private FittingSet fittings;
+	private CurveFitter fitter;
+	private List<Curve> curves;
+
+	ResultSetSolverContext(FittingSolver solver, FittingSet fittings, CurveFitter fitter) {
+		this.solver = solver;
+		this.fittings = fittings;
+		this.fitter = fitter;
+		this.curves = fittings.getVisibleCurves();
+	}
+
+	@Override
+	public List<Curve> getCurves() {
+		return curves;
+	}
+
+	@Override
+	public void solve(ReadOnlySpectrum data, float[] scales) {
+		FittingResultSet results = solver.solve(data, fittings, fitter);
+		for (FittingResult result : results.getFits()) {
+			for (int i = 0; i < curves.size(); i++) {
+				if (curves.get(i).getTransitionSeries() == result.getTransitionSeries()) {
+					scales[i] = result.getCurveScale();
+					break;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package org.peakaboo.curvefit.curve.fitting.solver;
+
+import java.util.List;
+
+import org.peakaboo.curvefit.curve.fitting.Curve;
+import org.peakaboo.curvefit.curve.fitting.FittingResultSet;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+
+/**
+ * A reusable workspace for fitting many spectra against the same set of
+ * {@link Curve}s with a {@link FittingSolver}. Where a full
+ * {@link FittingResultSet} isn't needed (eg when generating maps), a context
+ * lets the solver keep its working buffers between spectra, and reports only
+ * the scale of each curve.
+ * <br/><br/>
+ * A SolverContext is not thread-safe, each thread should create its own with
+ * {@link FittingSolver#context(org.peakaboo.curvefit.curve.fitting.FittingSet, org.peakaboo.curvefit.curve.fitting.fitter.CurveFitter)}
+ * @author NAS
+ *
+ */
+public interface SolverContext {
+
+	/**
+	 * The curves being fitted, in the order that their scales are reported by
+	 * {@link #solve(ReadOnlySpectrum, float[])}
+	 */
+	List<Curve> getCurves();
+
+	/**
+	 * Fits the curves to the given data, storing the scale for each curve in
+	 * the given array, in the same order as {@link #getCurves()}
+	 */
+	void solve(ReadOnlySpectrum data, float[] scales);
+
+}
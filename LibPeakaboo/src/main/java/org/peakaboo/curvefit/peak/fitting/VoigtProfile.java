@@ -0,0 +1,134 @@
+package org.peakaboo.curvefit.peak.fitting;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Evaluates the area-normalized Voigt profile, the convolution of a Gaussian
+ * with standard deviation sigma and a Lorentzian with half-width gamma.
+ * <br/><br/>
+ * Written in terms of u = x/sigma and a = gamma/sigma, every Voigt profile is
+ * a scaled copy of a single two-parameter function, so profiles are
+ * precomputed on a grid of u for log-spaced values of a and evaluated by
+ * interpolation. Each row of the table is computed the first time a nearby
+ * value of a is requested. Far from the centre, where the profile is
+ * dominated by the Lorentzian, an asymptotic expansion is used instead.
+ *
+ * @author NAS
+ *
+ */
+public class VoigtProfile {
+
+	//range and resolution of the ratio a = gamma/sigma
+	private static final double A_MIN = 1e-3;
+	private static final double A_MAX = 1e2;
+	private static final int A_PER_DECADE = 32;
+	private static final int A_STEPS = (int) Math.round(Math.log10(A_MAX / A_MIN) * A_PER_DECADE) + 1;
+
+	//range and resolution of the offset u = x/sigma
+	private static final double U_MAX = 16;
+	private static final int U_PER_UNIT = 32;
+	private static final int U_STEPS = (int) (U_MAX * U_PER_UNIT) + 1;
+
+	//range and step size used when integrating over the gaussian
+	private static final double T_MAX = 8.5;
+	private static final double T_STEP = 0.05;
+
+	private static final AtomicReferenceArray<float[]> rows = new AtomicReferenceArray<>(A_STEPS);
+
+	private VoigtProfile() {
+		//Not Constructable
+	}
+
+	/**
+	 * Returns the value of the area-normalized Voigt profile
+	 * @param x the distance from the centre of the peak
+	 * @param sigma the standard deviation of the gaussian component
+	 * @param gamma the half width at half maximum of the lorentzian component
+	 */
+	public static float value(float x, float sigma, float gamma) {
+		double u = Math.abs(x) / sigma;
+		double a = gamma / sigma;
+
+		//the lorentzian dominates, so the gaussian only slightly widens it
+		if (u >= U_MAX || a >= A_MAX) {
+			return (float) (asymptotic(u, a) / sigma);
+		}
+
+		//position within the table
+		double aPos = Math.log10(Math.max(a, A_MIN) / A_MIN) * A_PER_DECADE;
+		int aIndex = Math.min((int) aPos, A_STEPS - 2);
+		double aFrac = aPos - aIndex;
+		double uPos = u * U_PER_UNIT;
+		int uIndex = Math.min((int) uPos, U_STEPS - 2);
+		double uFrac = uPos - uIndex;
+
+		float[] lower = row(aIndex);
+		float[] upper = row(aIndex + 1);
+		double lowerValue = lower[uIndex] + (lower[uIndex+1] - lower[uIndex]) * uFrac;
+		double upperValue = upper[uIndex] + (upper[uIndex+1] - upper[uIndex]) * uFrac;
+		double value = lowerValue + (upperValue - lowerValue) * aFrac;
+
+		return (float) (value / sigma);
+	}
+
+	private static float[] row(int index) {
+		float[] row = rows.get(index);
+		if (row == null) {
+			//rows are deterministic, so if two threads race to build one, either result is fine
+			row = buildRow(A_MIN * Math.pow(10, (double) index / A_PER_DECADE));
+			rows.set(index, row);
+		}
+		return row;
+	}
+
+	/**
+	 * Calculates the unit-sigma Voigt profile for the given a at each u in the
+	 * table. The gaussian is treated as piecewise linear, and each piece is
+	 * integrated against the lorentzian exactly, so that the result stays
+	 * accurate even when the lorentzian is much narrower than the step size.
+	 */
+	private static float[] buildRow(double a) {
+		int steps = (int) Math.round(2 * T_MAX / T_STEP);
+		double[] gaussian = new double[steps + 1];
+		for (int j = 0; j <= steps; j++) {
+			double t = -T_MAX + j * T_STEP;
+			gaussian[j] = Math.exp(-t * t / 2) / Math.sqrt(2 * Math.PI);
+		}
+
+		float[] row = new float[U_STEPS];
+		for (int i = 0; i < U_STEPS; i++) {
+			double u = (double) i / U_PER_UNIT;
+			double sum = 0;
+			double s = -T_MAX - u;
+			double lastA = Math.atan(s / a) / Math.PI;
+			double lastB = a * Math.log(s * s + a * a) / (2 * Math.PI);
+			for (int j = 0; j < steps; j++) {
+				double t0 = -T_MAX + j * T_STEP;
+				s = t0 + T_STEP - u;
+				double nextA = Math.atan(s / a) / Math.PI;
+				double nextB = a * Math.log(s * s + a * a) / (2 * Math.PI);
+				double dA = nextA - lastA;
+				double dB = nextB - lastB;
+				double slope = (gaussian[j+1] - gaussian[j]) / T_STEP;
+				sum += gaussian[j] * dA + slope * (dB + (u - t0) * dA);
+				lastA = nextA;
+				lastB = nextB;
+			}
+			row[i] = (float) sum;
+		}
+		return row;
+	}
+
+	/**
+	 * Unit-sigma Voigt profile far from the centre or for a very broad
+	 * lorentzian, where convolving with the gaussian adds half of the
+	 * lorentzian's second derivative
+	 */
+	private static double asymptotic(double u, double a) {
+		double d = u * u + a * a;
+		double lorentz = a / (Math.PI * d);
+		double curvature = 2 * a * (3 * u * u - a * a) / (Math.PI * d * d * d);
+		return lorentz + curvature / 2;
+	}
+
+}
@@ -2,13 +2,13 @@ package org.peakaboo.curvefit.peak.fitting.functions;
 
 import org.peakaboo.curvefit.peak.fitting.FittingContext;
 import org.peakaboo.curvefit.peak.fitting.FittingFunction;
-import org.peakaboo.curvefit.peak.transition.Transition;
+import org.peakaboo.curvefit.peak.fitting.VoigtProfile;
 
 public class ConvolvingVoigtFittingFunction implements FittingFunction {
 
 	private FittingContext context;
 	
-	private FittingFunction signal;
+	private LorentzFittingFunction signal;
 	
 	@Override
 	public void initialize(FittingContext context) {
@@ -39,50 +39,10 @@ public class ConvolvingVoigtFittingFunction implements FittingFunction {
 		if(signal.forEnergyAbsolute(energy) < 0.0001) {
 			return 0;
 		}
-		//Create a kernel transition+fittingfunction centered around the current energy
-		Transition fake = new Transition(energy, 1f, "Fake Transition for Voigt Fitting Function");
-		FittingContext copy = new FittingContext(context.getFittingParameters(), fake, context.getTransitionSeriesType());
-		FittingFunction kernel = gaussian();
-		kernel.initialize(copy);
-		
-		return convolveForEnergy(energy, kernel);
-
-	}
-	
-	/**
-	 * Solves a function convolution at the given energy 
-	 */
-	private float convolveForEnergy(float energy, FittingFunction kernel) {
-		float max = kernel.forEnergyAbsolute(energy);
-		float deltaEnergy = 0f;
-		float sum = 0f;
-		float kernelValue, signalValue;
-		float normalizer = 0;
-		while (true) {
-			//kernel is centered at `energy`, so we can take advantage of 
-			//symmetry to only call it once for +/-
-			kernelValue = kernel.forEnergyAbsolute(energy + deltaEnergy);
-			signalValue = signal.forEnergyAbsolute(energy + deltaEnergy) + signal.forEnergyAbsolute(energy - deltaEnergy);
-			
-			if (kernelValue < 0.001f * max && kernelValue < 0.1f && signalValue < 0.2f) break;
-			
-			sum += kernelValue * signalValue; //same as kernel * signal1 + kernel * signal2
-			normalizer += kernelValue + kernelValue;
-			
-			deltaEnergy += 0.002;
-		}
-		
-		if (normalizer == 0) {
-			sum = 0;
-		} else {
-			sum /= normalizer;
-		}
-		
-		return sum;
-	}
-	
-	private GaussianFittingFunction gaussian() {
-		return new GaussianFittingFunction();
+		//The gaussian kernel's width depends on the energy it is centered 
+		//around, and the convolution is read from precomputed voigt profiles
+		float sigma = context.getFittingParameters().getFWHM(energy) / 2.35482f;
+		return VoigtProfile.value(energy - context.getEnergy(), sigma, signal.getGamma());
 	}
 	
 	private LorentzFittingFunction lorentz() {
@@ -24,7 +24,6 @@ import org.peakaboo.datasource.model.components.scandata.DummyScanData;
 import org.peakaboo.datasource.model.components.scandata.ScanData;
 import org.peakaboo.datasource.model.components.scandata.analysis.Analysis;
 import org.peakaboo.datasource.model.datafile.DataFile;
-import org.peakaboo.datasource.model.internal.SubsetDataSource;
 import org.peakaboo.framework.bolt.plugin.core.AlphaNumericComparitor;
 import org.peakaboo.framework.cyclops.Coord;
 import org.peakaboo.framework.plural.executor.AbstractExecutor;
@@ -194,9 +193,8 @@ public class StandardDataSet implements DataSet
 		if (ds == null || ds.getScanData().scanCount() == 0) return;
 
 		boolean hasRealSize = ds.getPhysicalSize().isPresent();
-		boolean isSubset = ds instanceof SubsetDataSource;
 			
-		//go over each scan, calculating the average, max10th and max value
+		//go over each scan, reading its physical coordinates
 		int updateInterval = Math.min(Math.max(ds.getScanData().scanCount()/100, 20), 1000);
 		int gcInterval = 5000;
 		if (applying != null) {
@@ -207,19 +205,11 @@ public class StandardDataSet implements DataSet
 			realCoords = new ArrayList<>();
 		}
 		
-		if (hasRealSize || isSubset) {
+		if (hasRealSize) {
 			for (int i = 0; i < ds.getScanData().scanCount(); i++) {
 				
-				if (isSubset) {
-					//subset data sources need to re-perform their analysis on the subset
-					SubsetDataSource sds = (SubsetDataSource) ds;
-					sds.reanalyze(i);
-				}
-				
-				if (hasRealSize) {
-					//read the real coordinates for this scan
-					realCoords.add(ds.getPhysicalSize().get().getPhysicalCoordinatesAtIndex(i));
-				}
+				//read the real coordinates for this scan
+				realCoords.add(ds.getPhysicalSize().get().getPhysicalCoordinatesAtIndex(i));
 	
 				if (i % updateInterval == 0) {
 					if (applying != null) applying.workUnitCompleted(updateInterval);
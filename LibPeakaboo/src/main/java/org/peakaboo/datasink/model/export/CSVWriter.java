@@ -0,0 +1,221 @@
+package org.peakaboo.datasink.model.export;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.SigDigits;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
+
+/**
+ * Writes comma separated values to an {@link OutputStream} through a reusable
+ * byte buffer, one row at a time. Whole numbers, which make up most raw count
+ * data, and values rounded to a few decimal places are formatted straight into
+ * the buffer without creating any objects. Other values are formatted exactly
+ * as {@link Float#toString(float)} would.
+ * <br/><br/>
+ * The writer does not close the underlying stream, so that it can be used for
+ * entries in archives.
+ *
+ * @author NAS
+ *
+ */
+public class CSVWriter implements Flushable, Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final byte[] SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
+	//Float.toString switches to scientific notation at 10^7
+	private static final float PLAIN_LIMIT = 1e7f;
+	private static final long[] POWERS = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+	private OutputStream output;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private boolean rowStart = true;
+	//scratch space for digits, which are generated backwards
+	private byte[] digits = new byte[20];
+
+	public CSVWriter(OutputStream output) {
+		this.output = output;
+	}
+
+	/**
+	 * Writes a value formatted as {@link Float#toString(float)} would
+	 */
+	public CSVWriter value(float value) throws IOException {
+		separate();
+		if (value == (long) value && Math.abs(value) < PLAIN_LIMIT) {
+			//negative zero is caught here as well
+			boolean negative = Float.floatToRawIntBits(value) < 0;
+			writeInteger((long) value, negative);
+			ensure(2);
+			buffer[position++] = '.';
+			buffer[position++] = '0';
+		} else {
+			text(Float.toString(value));
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a value rounded to the given number of decimal places (at most 6),
+	 * formatted as {@link SigDigits#roundFloatTo(float, int)} would.
+	 */
+	public CSVWriter value(float value, int decimals) throws IOException {
+		separate();
+		if (!(Math.abs(value) < PLAIN_LIMIT) || decimals < 0 || decimals >= POWERS.length) {
+			//large values, NaN and infinity
+			text(SigDigits.roundFloatTo(value, decimals));
+			return this;
+		}
+
+		long scale = POWERS[decimals];
+		double scaled = (double) value * scale;
+		double fraction = Math.abs(scaled - Math.floor(scaled) - 0.5);
+		if (fraction <= Math.ulp(value) * scale * 2) {
+			/*
+			 * Values this close to halfway between two roundings could round differently
+			 * depending on which decimal representation of the float is used, so leave
+			 * those to the slow path.
+			 */
+			text(SigDigits.roundFloatTo(value, decimals));
+			return this;
+		}
+
+		long rounded = (long) Math.rint(scaled);
+		long whole = Math.abs(rounded) / scale;
+		long part = Math.abs(rounded) % scale;
+		writeInteger(rounded < 0 ? -whole : whole, rounded < 0);
+		if (part != 0) {
+			//trim trailing zeroes
+			int places = decimals;
+			while (part % 10 == 0) {
+				part /= 10;
+				places--;
+			}
+			ensure(places + 1);
+			buffer[position++] = '.';
+			for (int i = places - 1; i >= 0; i--) {
+				buffer[position + i] = (byte) ('0' + part % 10);
+				part /= 10;
+			}
+			position += places;
+		}
+		return this;
+	}
+
+	/**
+	 * Writes an already formatted value
+	 */
+	public CSVWriter value(String value) throws IOException {
+		separate();
+		text(value);
+		return this;
+	}
+
+	/**
+	 * Writes every value of the given spectrum as a single row
+	 */
+	public CSVWriter row(ReadOnlySpectrum values) throws IOException {
+		float[] array = SpectrumCalculations.array(values);
+		return row(array, 0, values.size());
+	}
+
+	/**
+	 * Writes length values from the given array, starting at offset, as a single
+	 * row
+	 */
+	public CSVWriter row(float[] values, int offset, int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			value(values[i]);
+		}
+		return endRow();
+	}
+
+	/**
+	 * Ends the current row
+	 */
+	public CSVWriter endRow() throws IOException {
+		ensure(1);
+		buffer[position++] = '\n';
+		rowStart = true;
+		return this;
+	}
+
+	/**
+	 * Writes text as-is, without any separators
+	 */
+	public CSVWriter text(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > buffer.length) {
+			flushBuffer();
+			output.write(bytes);
+			return this;
+		}
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (rowStart) {
+			rowStart = false;
+			return;
+		}
+		ensure(SEPARATOR.length);
+		System.arraycopy(SEPARATOR, 0, buffer, position, SEPARATOR.length);
+		position += SEPARATOR.length;
+	}
+
+	private void writeInteger(long magnitude, boolean negative) throws IOException {
+		magnitude = Math.abs(magnitude);
+		int count = 0;
+		do {
+			digits[count++] = (byte) ('0' + magnitude % 10);
+			magnitude /= 10;
+		} while (magnitude != 0);
+
+		ensure(count + 1);
+		if (negative) {
+			buffer[position++] = '-';
+		}
+		while (count > 0) {
+			buffer[position++] = digits[--count];
+		}
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (position + bytes > buffer.length) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (position > 0) {
+			output.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	/**
+	 * Writes any buffered output to the underlying stream and flushes it
+	 */
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		output.flush();
+	}
+
+	/**
+	 * Flushes any buffered output, leaving the underlying stream open
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+}
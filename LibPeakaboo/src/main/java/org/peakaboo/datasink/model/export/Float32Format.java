@@ -0,0 +1,204 @@
+package org.peakaboo.datasink.model.export;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import org.peakaboo.datasink.model.components.interaction.Interaction;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+
+/**
+ * A simple binary format for a list of equally sized records, such as spectra
+ * or map rows. The file starts with a small header: the magic bytes "PKF4",
+ * the format version, the number of values in each record (int), and the
+ * number of records (long). The records follow as little-endian float32
+ * values, one after another. Because every record is the same size, records
+ * can be encoded in parallel chunks and written anywhere in the file.
+ *
+ * @author NAS
+ *
+ */
+public class Float32Format {
+
+	public static final int HEADER_SIZE = 20;
+	public static final int VERSION = 1;
+	private static final byte[] MAGIC = {'P', 'K', 'F', '4'};
+	//records are encoded in chunks of about this many bytes
+	private static final int CHUNK_BYTES = 1 << 20;
+
+	private Float32Format() {
+		//Not Constructable
+	}
+
+
+	/**
+	 * Writes count records of the given width to the given stream. Chunks of
+	 * records are encoded in parallel and written in order, so that only a few
+	 * chunks are held in memory at once. Records are fetched with the given
+	 * function, which may be called from several threads.
+	 *
+	 * @return false if the interaction requested that writing be aborted
+	 */
+	public static boolean write(OutputStream output, int width, int count, IntFunction<ReadOnlySpectrum> records, Interaction interaction) throws IOException {
+		output.write(header(width, count).array());
+
+		int perChunk = recordsPerChunk(width);
+		int chunks = chunks(count, perChunk);
+		int batch = Runtime.getRuntime().availableProcessors();
+		for (int first = 0; first < chunks; first += batch) {
+			if (interaction.isAbortedRequested()) {
+				return false;
+			}
+			int start = first;
+			List<ByteBuffer> encoded = new ArrayList<>();
+			IntStream.range(first, Math.min(chunks, first + batch))
+				.parallel()
+				.mapToObj(chunk -> encode(chunk, perChunk, width, count, records))
+				.forEachOrdered(encoded::add);
+			for (int i = 0; i < encoded.size(); i++) {
+				ByteBuffer buffer = encoded.get(i);
+				output.write(buffer.array(), 0, buffer.limit());
+				interaction.notifyScanWritten(chunkSize(start + i, perChunk, count));
+			}
+		}
+		output.flush();
+		return true;
+	}
+
+	/**
+	 * Writes count records of the given width to the given file. Chunks of
+	 * records are encoded and written in parallel, each at its own position in the
+	 * file. Records are fetched with the given function, which may be called from
+	 * several threads.
+	 *
+	 * @return false if the interaction requested that writing be aborted
+	 */
+	public static boolean write(Path path, int width, int count, IntFunction<ReadOnlySpectrum> records, Interaction interaction) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, header(width, count), 0);
+
+			int perChunk = recordsPerChunk(width);
+			int chunks = chunks(count, perChunk);
+			long recordBytes = (long) width * Float.BYTES;
+			AtomicReference<IOException> error = new AtomicReference<>();
+			IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				if (interaction.isAbortedRequested() || error.get() != null) {
+					return;
+				}
+				ByteBuffer buffer = encode(chunk, perChunk, width, count, records);
+				try {
+					writeFully(channel, buffer, HEADER_SIZE + (long) chunk * perChunk * recordBytes);
+				} catch (IOException e) {
+					error.compareAndSet(null, e);
+					return;
+				}
+				synchronized (interaction) {
+					interaction.notifyScanWritten(chunkSize(chunk, perChunk, count));
+				}
+			});
+
+			if (error.get() != null) {
+				throw error.get();
+			}
+			return !interaction.isAbortedRequested();
+		}
+	}
+
+	/**
+	 * Reads every record from a stream written in this format
+	 */
+	public static List<Spectrum> read(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(input);
+		byte[] headerBytes = new byte[HEADER_SIZE];
+		data.readFully(headerBytes);
+		ByteBuffer header = ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header.get() != MAGIC[i]) {
+				throw new IOException("Not a float32 record file");
+			}
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported float32 record file version " + version);
+		}
+		int width = header.getInt();
+		long count = header.getLong();
+
+		List<Spectrum> records = new ArrayList<>();
+		byte[] recordBytes = new byte[width * Float.BYTES];
+		FloatBuffer floats = ByteBuffer.wrap(recordBytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		for (long i = 0; i < count; i++) {
+			data.readFully(recordBytes);
+			float[] values = new float[width];
+			floats.rewind();
+			floats.get(values);
+			records.add(new ISpectrum(values, false));
+		}
+		return records;
+	}
+
+
+	private static ByteBuffer header(int width, long count) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(width);
+		header.putLong(count);
+		header.flip();
+		return header;
+	}
+
+	private static ByteBuffer encode(int chunk, int perChunk, int width, int count, IntFunction<ReadOnlySpectrum> records) {
+		int first = chunk * perChunk;
+		int size = chunkSize(chunk, perChunk, count);
+		ByteBuffer buffer = ByteBuffer.allocate(size * width * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		FloatBuffer floats = buffer.asFloatBuffer();
+		float[] record = new float[width];
+		for (int i = first; i < first + size; i++) {
+			ReadOnlySpectrum values = records.apply(i);
+			int length = values == null ? 0 : Math.min(width, values.size());
+			if (length > 0) {
+				values.copyInto(0, record, 0, length);
+			}
+			//missing or short records are padded with zeroes
+			for (int j = length; j < width; j++) {
+				record[j] = 0f;
+			}
+			floats.put(record);
+		}
+		return buffer;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static int recordsPerChunk(int width) {
+		return Math.max(1, CHUNK_BYTES / Math.max(1, width * Float.BYTES));
+	}
+
+	private static int chunks(int count, int perChunk) {
+		return (count + perChunk - 1) / perChunk;
+	}
+
+	private static int chunkSize(int chunk, int perChunk, int count) {
+		return Math.min(perChunk, count - chunk * perChunk);
+	}
+
+}
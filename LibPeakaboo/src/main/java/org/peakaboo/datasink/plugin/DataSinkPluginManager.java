@@ -5,6 +5,7 @@ import java.util.logging.Level;
 
 import org.peakaboo.common.PeakabooLog;
 import org.peakaboo.datasink.plugin.plugins.CSV;
+import org.peakaboo.datasink.plugin.plugins.Float32;
 import org.peakaboo.framework.bolt.plugin.core.BoltPluginManager;
 import org.peakaboo.framework.bolt.plugin.java.loader.BoltJarDirectoryLoader;
 import org.peakaboo.framework.bolt.plugin.java.loader.BoltJavaBuiltinLoader;
@@ -41,6 +42,7 @@ public class DataSinkPluginManager extends BoltPluginManager<DataSinkPlugin> {
 	
 	private void registerCustomPlugins() {
 		builtins.load(CSV.class);
+		builtins.load(Float32.class);
 	}
 
 	public synchronized void registerPlugin(Class<? extends JavaDataSinkPlugin> clazz) {
@@ -2,14 +2,12 @@ package org.peakaboo.datasink.plugin.plugins;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.nio.file.Files;
-import java.util.stream.Collectors;
 
+import org.peakaboo.datasink.model.export.CSVWriter;
 import org.peakaboo.datasink.plugin.AbstractDataSink;
 import org.peakaboo.datasource.model.DataSource;
-import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.datasource.model.components.scandata.ScanData;
+import org.peakaboo.framework.plural.streams.ExportPipeline;
 
 public class CSV extends AbstractDataSink {
 
@@ -31,22 +29,15 @@ public class CSV extends AbstractDataSink {
 	@Override
 	public void write(DataSource source, OutputStream output) throws IOException {
 		
-		Writer writer = new OutputStreamWriter(output);
-				
-		int counter = 0;
-		for (ReadOnlySpectrum s : source.getScanData()) {
-			String spectrum = s.stream().map(f -> Float.toString(f)).collect(Collectors.joining(", "));
-			writer.write(spectrum);
-			writer.write("\n");
-			counter++;
-			if (counter == 100) {
-				getInteraction().notifyScanWritten(counter);
-				counter = 0;
-				if (getInteraction().isAbortedRequested()) {
-					return;
-				}
-			}
+		CSVWriter writer = new CSVWriter(output);
+		ScanData scans = source.getScanData();
+		//scans are read (and filtered, for filtered sources) ahead of the writer, in parallel if the source allows it
+		boolean completed = ExportPipeline.run(scans.scanCount(), scans::get, scans.isParallelizable(), writer::row, getInteraction()::notifyScanWritten, getInteraction()::isAbortedRequested);
+		if (!completed) {
+			//the export is incomplete, and the caller learns of the abort from the interaction
+			return;
 		}
+		writer.flush();
 
 	}
 
@@ -0,0 +1,54 @@
+package org.peakaboo.datasink.plugin.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.peakaboo.datasink.model.export.Float32Format;
+import org.peakaboo.datasink.plugin.AbstractDataSink;
+import org.peakaboo.datasource.model.DataSource;
+import org.peakaboo.datasource.model.components.scandata.ScanData;
+
+public class Float32 extends AbstractDataSink {
+
+	@Override
+	public boolean pluginEnabled() {
+		return true;
+	}
+
+	@Override
+	public String pluginVersion() {
+		return "1.0";
+	}
+
+	@Override
+	public String pluginUUID() {
+		return "5d0b8a4e-7f83-4c1e-9a55-1b2f3c8e6d47";
+	}
+	
+	@Override
+	public void write(DataSource source, OutputStream output) throws IOException {
+		ScanData scans = source.getScanData();
+		int width = scans.getAnalysis().channelsPerScan();
+		if (width < 0) {
+			int first = scans.firstNonNullScanIndex();
+			width = first == -1 ? 0 : scans.get(first).size();
+		}
+		Float32Format.write(output, width, scans.scanCount(), scans::get, getInteraction());
+	}
+
+	@Override
+	public String getFormatExtension() {
+		return "f32";
+	}
+
+	@Override
+	public String getFormatName() {
+		return "Float32 Spectra";
+	}
+
+	@Override
+	public String getFormatDescription() {
+		return "Binary file with a short header followed by each spectrum as little-endian 32-bit floats";
+	}
+
+}
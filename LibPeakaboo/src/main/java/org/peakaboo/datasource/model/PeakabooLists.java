@@ -43,7 +43,10 @@ public final class PeakabooLists {
 	
 	public static <T> ScratchList<T> create(ScratchEncoder<T> encoder) {
 		//Config for disk-backed
-		DiskStrategy onDisk = PeakabooConfiguration.diskstore ? DiskStrategy.PREFER_DISK : DiskStrategy.PREFER_MEMORY;
+		DiskStrategy onDisk = DiskStrategy.PREFER_MEMORY;
+		if (PeakabooConfiguration.diskstore) {
+			onDisk = PeakabooConfiguration.mappedstore ? DiskStrategy.PREFER_MAPPED : DiskStrategy.PREFER_DISK;
+		}
 		return ScratchLists.get(onDisk, encoder);
 
 	}
@@ -0,0 +1,53 @@
+package org.peakaboo.datasource.model;
+
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.scratch.ScratchEncoder;
+import org.peakaboo.framework.scratch.ScratchException;
+import org.peakaboo.framework.scratch.encoders.primitives.FloatArrayEncoder;
+
+/**
+ * Stores a {@link Spectrum} as its raw channel values using a
+ * {@link FloatArrayEncoder}, avoiding the overhead of general purpose
+ * object serialization.
+ */
+public class SpectrumEncoder implements ScratchEncoder<Spectrum> {
+
+	private FloatArrayEncoder floats;
+	
+	public SpectrumEncoder() {
+		this(true);
+	}
+	
+	public SpectrumEncoder(boolean compress) {
+		this.floats = new FloatArrayEncoder(compress);
+	}
+	
+	@Override
+	public byte[] encode(Spectrum data) throws ScratchException {
+		return floats.encode(data.backingArray(), data.size());
+	}
+
+	@Override
+	public Spectrum decode(byte[] data) throws ScratchException {
+		return new ISpectrum(floats.decode(data), false);
+	}
+	
+	/**
+	 * Decodes the given bytes into the given Spectrum if it is the same size,
+	 * avoiding any allocation. Otherwise, a new Spectrum is returned.
+	 */
+	public Spectrum decode(byte[] data, Spectrum target) throws ScratchException {
+		float[] array = target == null ? null : target.backingArray();
+		float[] decoded = floats.decode(data, array);
+		if (decoded == array) {
+			return target;
+		}
+		return new ISpectrum(decoded, false);
+	}
+
+	public String toString() {
+		return "Spectrum Encoder (" + floats + ")";
+	}
+	
+}
@@ -52,6 +52,16 @@ public interface ScanData extends Iterable<ReadOnlySpectrum>
 		return scanCount() == 0;
 	}
 
+	/**
+	 * Reports if {@link #get(int)} may be called from several threads at once.
+	 * ScanData which read scans on demand through something which isn't thread
+	 * safe, like a shared file handle, should return false so that exports and
+	 * maps read them one at a time.
+	 */
+	default boolean isParallelizable() {
+		return true;
+	}
+
 	
 
 	/**
@@ -7,6 +7,7 @@ import org.peakaboo.datasource.model.components.scandata.analysis.Analysis;
 import org.peakaboo.datasource.model.components.scandata.analysis.DataSourceAnalysis;
 import org.peakaboo.datasource.model.components.scandata.loaderqueue.CompressedLoaderQueue;
 import org.peakaboo.datasource.model.components.scandata.loaderqueue.LoaderQueue;
+import org.peakaboo.datasource.model.components.scandata.loaderqueue.ParallelLoaderQueue;
 import org.peakaboo.datasource.model.components.scandata.loaderqueue.SimpleLoaderQueue;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
@@ -21,12 +22,12 @@ public class SimpleScanData implements ScanData {
 	private float maxEnergy;
 	private float minEnergy = 0;
 	private String name;
-	private Analysis analysis;
+	private DataSourceAnalysis analysis;
 	
 	public SimpleScanData(String name) {
 		this.name = name;
 		this.spectra = PeakabooLists.create();
-		this.analysis = new DataSourceAnalysis();
+		this.analysis = new DataSourceAnalysis(true);
 	}
 		
 
@@ -111,17 +112,23 @@ public class SimpleScanData implements ScanData {
 	}
 	
 	public LoaderQueue createLoaderQueue(int capacity) {
+		/*
+		 * ParallelLoaderQueue spreads analysis and compression over a pool of worker
+		 * threads shared by all loaders. It needs spare cores to be worthwhile, and
+		 * holds on to a few uncompressed spectra, so it's avoided on the smallest heaps
+		 */
+		int cores = Runtime.getRuntime().availableProcessors();
+		if (cores >= 4 && PeakabooConfiguration.memorySize != MemorySize.TINY) {
+			int depth = Math.min(capacity, maxUncompressedDepth());
+			return new ParallelLoaderQueue(this, analysis, depth);
+		}
+		
 		/*
 		 * CompressedLoaderQueue will move compression up to before the point the Spectrum
 		 * is stored in the queue. This saves order of 10s of MBs, but slows down the 
 		 * DataSource thread, since it now handles the compression.
 		 */
-		if (
-				(PeakabooConfiguration.memorySize == MemorySize.TINY && capacity > 200) || //1.6 - 3.2 MB
-				(PeakabooConfiguration.memorySize == MemorySize.SMALL && capacity > 400) || //3.2 - 6.4 MB
-				(PeakabooConfiguration.memorySize == MemorySize.MEDIUM && capacity > 1000) || //8 - 16 MB
-				(PeakabooConfiguration.memorySize == MemorySize.LARGE && capacity > 20000) //160 - 320 MB
-			) {
+		if (capacity > maxUncompressedDepth()) {
 			return new CompressedLoaderQueue(this, analysis, capacity);
 		} else {
 			return new SimpleLoaderQueue(this, capacity);			
@@ -129,6 +136,19 @@ public class SimpleScanData implements ScanData {
 	}
 
 
+	/**
+	 * The number of uncompressed spectra we're willing to hold in a queue
+	 * for a given memory footprint
+	 */
+	private static int maxUncompressedDepth() {
+		switch (PeakabooConfiguration.memorySize) {
+		case TINY: return 200; //1.6 - 3.2 MB
+		case SMALL: return 400; //3.2 - 6.4 MB
+		case MEDIUM: return 1000; //8 - 16 MB
+		default: return 20000; //160 - 320 MB
+		}
+	}
+
 	@Override
 	public Analysis getAnalysis() {
 		return this.analysis;
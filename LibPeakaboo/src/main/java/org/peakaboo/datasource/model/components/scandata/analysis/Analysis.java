@@ -39,6 +39,28 @@ public interface Analysis {
 	ReadOnlySpectrum maximumPlot();
 
 
+	/**
+	 * Produces a single scan/list containing the variance of each channel
+	 * 
+	 * @return the per-channel variance scan, or null if variance is not tracked
+	 */
+	default ReadOnlySpectrum variancePlot() {
+		return null;
+	}
+
+
+	/**
+	 * Produces a single scan/list containing an estimate of the given percentile
+	 * (0-1) of each channel's values
+	 * 
+	 * @return the per-channel percentile scan, or null if percentiles are not
+	 * tracked
+	 */
+	default ReadOnlySpectrum percentilePlot(float percentile) {
+		return null;
+	}
+
+
 	/**
 	 * Returns the size of a single scan
 	 * 
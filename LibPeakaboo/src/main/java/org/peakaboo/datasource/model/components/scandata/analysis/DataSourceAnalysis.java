@@ -1,49 +1,154 @@
 package org.peakaboo.datasource.model.components.scandata.analysis;
 
+import java.util.stream.IntStream;
+
+import org.peakaboo.datasource.model.components.scandata.ScanData;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
 import org.peakaboo.framework.cyclops.SpectrumCalculations;
+import org.peakaboo.framework.cyclops.SpectrumView;
 
+/**
+ * Accumulates per-channel statistics for the spectra it is given. Processing
+ * and merging are synchronized, so one instance can be shared between threads,
+ * but the faster approach is to give each thread its own partial analysis and
+ * {@link #merge(DataSourceAnalysis)} them at the end, as
+ * {@link #analyze(ScanData)} does.
+ * <br/><br/>
+ * Composite plots are calculated when first requested and returned as
+ * read-only views until more data is processed. Percentiles are only tracked
+ * when requested at construction, since their sketch is much larger than the
+ * other statistics. Loaded datasets request them, so that they are available
+ * without another pass over the data.
+ */
 public class DataSourceAnalysis implements Analysis {
 
 	protected int channelCount;
-	protected Spectrum summedSpectrum;
+	protected double[] summed;
+	protected double[] summedSquares;
 	protected int summedScanCount;
 	protected Spectrum maximumSpectrum;
 	protected float maxValue;
+	protected PercentileSketch sketch;
+	private final boolean percentiles;
+
+	private volatile ReadOnlySpectrum averageView;
+	private volatile ReadOnlySpectrum maximumView;
+	private volatile ReadOnlySpectrum varianceView;
 
 	public DataSourceAnalysis() {
+		this(false);
+	}
+
+	/**
+	 * @param percentiles true if this analysis should track the values needed to
+	 * answer {@link #percentilePlot(float)}
+	 */
+	public DataSourceAnalysis(boolean percentiles) {
+		this.percentiles = percentiles;
 		channelCount = -1;
 	}
-	
-	public void init(int channelCount) {
+
+	/**
+	 * Analyzes every scan in the given {@link ScanData} in parallel, including
+	 * percentiles
+	 */
+	public static DataSourceAnalysis analyze(ScanData data) {
+		return IntStream.range(0, data.scanCount()).parallel().collect(
+				() -> new DataSourceAnalysis(true),
+				(analysis, index) -> analysis.accumulate(data.get(index)),
+				DataSourceAnalysis::merge
+			);
+	}
+
+	public synchronized void init(int channelCount) {
 		this.channelCount = channelCount;
-		summedSpectrum = new ISpectrum(channelCount);
+		summed = new double[channelCount];
+		summedSquares = new double[channelCount];
 		summedScanCount = 0;
 		maximumSpectrum = new ISpectrum(channelCount);
 		maxValue = 0;
+		sketch = percentiles ? new PercentileSketch(channelCount) : null;
+		invalidate();
 	}
 
 	@Override
-	public void process(ReadOnlySpectrum spectrum) {
+	public synchronized void process(ReadOnlySpectrum spectrum) {
+		accumulate(spectrum);
+	}
+
+	private void accumulate(ReadOnlySpectrum spectrum) {
 		if (spectrum == null) { return; }
-		
+
 		// if this is the first (non-null) spectrum that we're seeing, use it to detect
 		// the channel count and initialize things
 		if (channelCount == -1) {
 			init(spectrum.size());
 		}
-		
-		SpectrumCalculations.addLists_inplace(summedSpectrum, spectrum);
+
+		int size = Math.min(channelCount, spectrum.size());
+		float[] values = SpectrumCalculations.array(spectrum);
+		for (int i = 0; i < size; i++) {
+			float value = values[i];
+			summed[i] += value;
+			summedSquares[i] += (double) value * value;
+		}
 		summedScanCount++;
 		SpectrumCalculations.maxLists_inplace(maximumSpectrum, spectrum);
 		maxValue = Math.max(maxValue, spectrum.max());
+		if (sketch != null) {
+			sketch.add(spectrum);
+		}
+		invalidate();
+	}
+
+	/**
+	 * Folds the results of another DataSourceAnalysis into this one, as though
+	 * every spectrum it processed had been processed here instead. This allows
+	 * several partial analyses to be accumulated on separate threads and then
+	 * combined at the end. The other analysis should not be modified while it
+	 * is being merged, and must track percentiles if and only if this one does.
+	 */
+	public synchronized void merge(DataSourceAnalysis other) {
+		if (other == null || other.channelCount == -1) { return; }
+		if (other.percentiles != percentiles) {
+			throw new IllegalArgumentException("Cannot merge analyses which differ in tracking percentiles");
+		}
+		if (channelCount == -1) {
+			init(other.channelCount);
+		}
+
+		for (int i = 0; i < channelCount; i++) {
+			summed[i] += other.summed[i];
+			summedSquares[i] += other.summedSquares[i];
+		}
+		summedScanCount += other.summedScanCount;
+		SpectrumCalculations.maxLists_inplace(maximumSpectrum, other.maximumSpectrum);
+		maxValue = Math.max(maxValue, other.maxValue);
+		if (sketch != null) {
+			sketch.merge(other.sketch);
+		}
+		invalidate();
+	}
+
+	private void invalidate() {
+		averageView = null;
+		maximumView = null;
+		varianceView = null;
 	}
 
 	@Override
-	public Spectrum maximumPlot() {
-		return new ISpectrum(maximumSpectrum);
+	public ReadOnlySpectrum maximumPlot() {
+		ReadOnlySpectrum view = maximumView;
+		if (view != null) { return view; }
+		synchronized (this) {
+			if (maximumView == null) {
+				ISpectrum maximum = channelCount == -1 ? new ISpectrum(0) : new ISpectrum(maximumSpectrum);
+				maximumView = maximum.readOnlyView();
+			}
+			return maximumView;
+		}
 	}
 
 	@Override
@@ -52,8 +157,51 @@ public class DataSourceAnalysis implements Analysis {
 	}
 
 	@Override
-	public Spectrum averagePlot() {
-		return SpectrumCalculations.divideBy(summedSpectrum, summedScanCount);
+	public ReadOnlySpectrum averagePlot() {
+		ReadOnlySpectrum view = averageView;
+		if (view != null) { return view; }
+		synchronized (this) {
+			if (averageView == null) {
+				float[] average = new float[Math.max(0, channelCount)];
+				for (int i = 0; i < channelCount && summedScanCount > 0; i++) {
+					average[i] = (float) (summed[i] / summedScanCount);
+				}
+				averageView = new SpectrumView(average, 0, average.length);
+			}
+			return averageView;
+		}
+	}
+
+	@Override
+	public ReadOnlySpectrum variancePlot() {
+		ReadOnlySpectrum view = varianceView;
+		if (view != null) { return view; }
+		synchronized (this) {
+			if (varianceView == null) {
+				float[] variance = new float[Math.max(0, channelCount)];
+				for (int i = 0; i < channelCount && summedScanCount > 0; i++) {
+					double mean = summed[i] / summedScanCount;
+					//rounding can leave tiny negative values for constant channels
+					variance[i] = (float) Math.max(0d, summedSquares[i] / summedScanCount - mean * mean);
+				}
+				varianceView = new SpectrumView(variance, 0, variance.length);
+			}
+			return varianceView;
+		}
+	}
+
+	@Override
+	public synchronized ReadOnlySpectrum percentilePlot(float percentile) {
+		if (!percentiles) { return null; }
+		if (sketch == null) { return new ISpectrum(0); }
+		return sketch.percentile(percentile);
+	}
+
+	/**
+	 * Reports if this analysis was created to track percentiles
+	 */
+	public boolean tracksPercentiles() {
+		return percentiles;
 	}
 
 	@Override
@@ -0,0 +1,154 @@
+package org.peakaboo.datasource.model.components.scandata.analysis;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.stream.IntStream;
+
+import org.peakaboo.common.PeakabooLog;
+import org.peakaboo.datasource.model.components.scandata.ScanData;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.eventful.Eventful;
+
+/**
+ * An {@link Analysis} of some of the scans in another {@link ScanData} which
+ * isn't calculated until one of its results is first requested. The scans are
+ * then analyzed in the background, in parallel blocks of neighbouring scans
+ * taken in the order they appear in the source, so that reads from the source
+ * stay as sequential as possible. Until the analysis is complete, results
+ * reflect the blocks finished so far, and listeners are notified periodically
+ * as they are refined, and once more when the analysis finishes or fails.
+ *
+ * @author NAS
+ *
+ */
+public class LazyAnalysis extends Eventful implements Analysis {
+
+	private static final int BLOCK_SIZE = 1024;
+	private static final long NOTIFY_INTERVAL = 250;
+
+	private ScanData source;
+	private int[] indexes;
+	private int channels;
+	private DataSourceAnalysis analysis;
+	private CompletableFuture<Void> task;
+	private AtomicLong lastNotified = new AtomicLong(0);
+
+	/**
+	 * @param source the scans to draw from
+	 * @param indexes the indexes in the source of the scans to analyze
+	 * @param channels the number of channels in each scan
+	 */
+	public LazyAnalysis(ScanData source, int[] indexes, int channels) {
+		this.source = source;
+		this.indexes = indexes.clone();
+		Arrays.sort(this.indexes);
+		this.channels = channels;
+		this.analysis = new DataSourceAnalysis(true);
+		if (channels >= 0) {
+			this.analysis.init(channels);
+		}
+	}
+
+	/**
+	 * Starts analyzing the scans in the background if that hasn't already been
+	 * done.
+	 */
+	public synchronized CompletableFuture<Void> start() {
+		if (task == null) {
+			task = CompletableFuture.runAsync(this::analyze);
+			task.whenComplete((result, error) -> {
+				if (error != null) {
+					PeakabooLog.get().log(Level.SEVERE, "Failed to analyze scans", error);
+				}
+				notifyProgress(true);
+				//nothing more will change, so don't keep the listeners from being collected
+				removeAllListeners();
+			});
+		}
+		return task;
+	}
+
+	/**
+	 * Analyzes the scans if that hasn't already been done, and waits for the
+	 * analysis to complete.
+	 */
+	public void complete() {
+		start().join();
+	}
+
+	public boolean isComplete() {
+		CompletableFuture<Void> current;
+		synchronized (this) {
+			current = task;
+		}
+		return current != null && current.isDone();
+	}
+
+	private void analyze() {
+		int blocks = (indexes.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		IntStream.range(0, blocks).parallel().forEach(block -> {
+			DataSourceAnalysis partial = new DataSourceAnalysis(true);
+			int stop = Math.min(indexes.length, (block + 1) * BLOCK_SIZE);
+			for (int i = block * BLOCK_SIZE; i < stop; i++) {
+				partial.process(source.get(indexes[i]));
+			}
+			analysis.merge(partial);
+			notifyProgress(false);
+		});
+	}
+
+	private void notifyProgress(boolean force) {
+		long now = System.currentTimeMillis();
+		long last = lastNotified.get();
+		if (force || (now - last >= NOTIFY_INTERVAL && lastNotified.compareAndSet(last, now))) {
+			updateListeners();
+		}
+	}
+
+	/**
+	 * Adds a scan to the results alongside the scans drawn from the source
+	 */
+	@Override
+	public void process(ReadOnlySpectrum spectrum) {
+		analysis.process(spectrum);
+		notifyProgress(false);
+	}
+
+	@Override
+	public ReadOnlySpectrum averagePlot() {
+		start();
+		return analysis.averagePlot();
+	}
+
+	@Override
+	public ReadOnlySpectrum maximumPlot() {
+		start();
+		return analysis.maximumPlot();
+	}
+
+	@Override
+	public ReadOnlySpectrum variancePlot() {
+		start();
+		return analysis.variancePlot();
+	}
+
+	@Override
+	public ReadOnlySpectrum percentilePlot(float percentile) {
+		start();
+		return analysis.percentilePlot(percentile);
+	}
+
+	@Override
+	public int channelsPerScan() {
+		return channels;
+	}
+
+	@Override
+	public float maximumIntensity() {
+		start();
+		return analysis.maximumIntensity();
+	}
+
+}
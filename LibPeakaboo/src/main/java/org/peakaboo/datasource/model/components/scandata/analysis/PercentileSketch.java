@@ -0,0 +1,104 @@
+package org.peakaboo.datasource.model.components.scandata.analysis;
+
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
+
+/**
+ * Approximates the distribution of values in every channel with a histogram
+ * of logarithmically sized bins, so that percentiles can be estimated after a
+ * single pass over the data. Each power of two is split into four bins, so an
+ * estimate is always within about 19% of the true value. Values below one
+ * share a single bin, and values at or above 2<sup>24</sup> are counted in the
+ * last bin. Sketches of the same width can be merged by adding their counts.
+ *
+ * @author NAS
+ *
+ */
+public class PercentileSketch {
+
+	private static final int BINS_PER_OCTAVE = 4;
+	private static final int OCTAVES = 24;
+	static final int BINS = 1 + BINS_PER_OCTAVE * OCTAVES;
+
+	private int channels;
+	private int count;
+	private int[] bins;
+
+	public PercentileSketch(int channels) {
+		this.channels = channels;
+		this.count = 0;
+		this.bins = new int[channels * BINS];
+	}
+
+	public void add(ReadOnlySpectrum spectrum) {
+		int size = Math.min(channels, spectrum.size());
+		float[] values = SpectrumCalculations.array(spectrum);
+		for (int i = 0; i < size; i++) {
+			bins[i * BINS + bin(values[i])]++;
+		}
+		count++;
+	}
+
+	public void merge(PercentileSketch other) {
+		if (other.channels != channels) {
+			throw new IllegalArgumentException("Cannot merge sketches of " + other.channels + " and " + channels + " channels");
+		}
+		for (int i = 0; i < bins.length; i++) {
+			bins[i] += other.bins[i];
+		}
+		count += other.count;
+	}
+
+	/**
+	 * Estimates the given percentile (0-1) of the values in each channel
+	 */
+	public Spectrum percentile(float percentile) {
+		Spectrum result = new ISpectrum(channels);
+		if (count == 0) { return result; }
+
+		//the (fractional) number of values at or below the percentile
+		float rank = Math.max(0f, Math.min(1f, percentile)) * count;
+		for (int channel = 0; channel < channels; channel++) {
+			int offset = channel * BINS;
+			int seen = 0;
+			for (int bin = 0; bin < BINS; bin++) {
+				int inBin = bins[offset + bin];
+				if (inBin == 0) continue;
+				if (seen + inBin >= rank || bin == BINS - 1) {
+					//interpolate linearly within the bin
+					float fraction = Math.max(0f, Math.min(1f, (rank - seen) / inBin));
+					float low = lowerBound(bin);
+					float high = lowerBound(bin + 1);
+					result.set(channel, low + (high - low) * fraction);
+					break;
+				}
+				seen += inBin;
+			}
+		}
+		return result;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	static int bin(float value) {
+		if (!(value >= 1f)) { return 0; }
+		int exponent = Math.getExponent(value);
+		if (exponent >= OCTAVES) { return BINS - 1; }
+		//the top bits of the mantissa pick the bin within this power of two
+		int fraction = (Float.floatToRawIntBits(value) >> (23 - 2)) & (BINS_PER_OCTAVE - 1);
+		return 1 + exponent * BINS_PER_OCTAVE + fraction;
+	}
+
+	static float lowerBound(int bin) {
+		if (bin <= 0) { return 0f; }
+		bin--;
+		int exponent = bin / BINS_PER_OCTAVE;
+		int fraction = bin % BINS_PER_OCTAVE;
+		return (float) Math.scalb(1.0 + fraction / (double) BINS_PER_OCTAVE, exponent);
+	}
+
+}
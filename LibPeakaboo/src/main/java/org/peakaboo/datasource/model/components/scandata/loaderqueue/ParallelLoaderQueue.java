@@ -0,0 +1,215 @@
+package org.peakaboo.datasource.model.components.scandata.loaderqueue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.peakaboo.common.PeakabooConfiguration;
+import org.peakaboo.common.PeakabooConfiguration.MemorySize;
+import org.peakaboo.common.PeakabooLog;
+import org.peakaboo.datasource.model.components.scandata.SimpleScanData;
+import org.peakaboo.datasource.model.components.scandata.analysis.DataSourceAnalysis;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.scratch.ScratchEncoder;
+import org.peakaboo.framework.scratch.single.Compressed;
+
+/**
+ * ParallelLoaderQueue fans the analysis and compression of submitted spectra
+ * out across an {@link Executor}, by default one with a bounded number of
+ * threads shared by every ParallelLoaderQueue. Each concurrently running task
+ * borrows its own partial {@link DataSourceAnalysis}, and these are merged
+ * into the ScanData's analysis when the queue is finished.
+ * <br/><br/>
+ * Spectra are committed to the {@link SimpleScanData} in the order they were
+ * submitted, regardless of which task finishes first, so spectra submitted
+ * without an index end up at the same positions they would with a
+ * {@link SimpleLoaderQueue}. If any spectrum fails to process, the failure is
+ * thrown from the next call to submit or finish.
+ * @author NAS
+ *
+ */
+public class ParallelLoaderQueue implements LoaderQueue {
+
+	class SpectrumIndex {
+		public Spectrum spectrum;
+		public Compressed<Spectrum> compressed;
+		public int index;
+		public long sequence;
+	}
+
+	private static Executor sharedExecutor;
+
+	private SimpleScanData data;
+	private DataSourceAnalysis analysis;
+	private ScratchEncoder<Spectrum> encoder;
+	private Executor executor;
+
+	private int depth;
+	private Semaphore inflight;
+	private Queue<DataSourceAnalysis> idle = new ConcurrentLinkedQueue<>();
+	private List<DataSourceAnalysis> partials = new ArrayList<>();
+
+	//submission sequence, may be shared by several submitting threads
+	private AtomicLong submitted = new AtomicLong(0);
+
+	//commit ordering, guarded by pending
+	private Map<Long, SpectrumIndex> pending = new HashMap<>();
+	private long committed = 0;
+
+	//the first failure which stopped an entry from being stored
+	private volatile Throwable failure;
+
+	public ParallelLoaderQueue(SimpleScanData data, DataSourceAnalysis analysis, int depth) {
+		this(data, analysis, depth, getSharedExecutor());
+	}
+
+	/**
+	 * @param depth the most spectra which may be submitted but not yet committed
+	 * @param executor runs the processing of each spectrum
+	 */
+	public ParallelLoaderQueue(SimpleScanData data, DataSourceAnalysis analysis, int depth, Executor executor) {
+		this.data = data;
+		this.analysis = analysis;
+		this.encoder = PeakabooConfiguration.spectrumEncoder;
+		this.executor = executor;
+		this.depth = Math.max(1, depth);
+		this.inflight = new Semaphore(this.depth);
+	}
+
+	/**
+	 * Returns the {@link Executor} used by ParallelLoaderQueues which aren't
+	 * given one, creating a pool of up to 8 daemon threads, depending on the
+	 * processors and memory available, on first use.
+	 */
+	public static synchronized Executor getSharedExecutor() {
+		if (sharedExecutor == null) {
+			int cores = Runtime.getRuntime().availableProcessors();
+			int threads = Math.max(1, Math.min(cores - 1, PeakabooConfiguration.memorySize == MemorySize.SMALL ? 2 : 8));
+			AtomicInteger count = new AtomicInteger(0);
+			sharedExecutor = Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, "ParallelLoaderQueue-" + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Replaces the {@link Executor} used by ParallelLoaderQueues created after
+	 * this call which aren't given one. The executor must not run tasks on the
+	 * submitting thread while it blocks. Passing null goes back to the default
+	 * pool.
+	 */
+	public static synchronized void setSharedExecutor(Executor executor) {
+		sharedExecutor = executor;
+	}
+
+	private void work(SpectrumIndex struct) {
+		DataSourceAnalysis partial = borrow();
+		try {
+			partial.process(struct.spectrum);
+			struct.compressed = Compressed.create(struct.spectrum, encoder);
+		} catch (Throwable e) {
+			//reported to the loader on its next submit or finish
+			PeakabooLog.get().log(Level.SEVERE, "Exception while processing LoaderQueue Spectrum entries", e);
+			if (failure == null) {
+				failure = e;
+			}
+		} finally {
+			idle.add(partial);
+			//always commit, so that later entries aren't held up waiting for this one
+			struct.spectrum = null;
+			commit(struct);
+		}
+	}
+
+	private DataSourceAnalysis borrow() {
+		DataSourceAnalysis partial = idle.poll();
+		if (partial == null) {
+			partial = new DataSourceAnalysis(analysis.tracksPercentiles());
+			synchronized (partials) {
+				partials.add(partial);
+			}
+		}
+		return partial;
+	}
+
+	private void checkFailure() {
+		Throwable e = failure;
+		if (e == null) return;
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		throw new RuntimeException("Failed to process spectrum", e);
+	}
+
+	/**
+	 * Hands a processed entry back for storage. Entries are held until all
+	 * entries submitted before them have been stored, and then written in
+	 * submission order.
+	 */
+	private void commit(SpectrumIndex struct) {
+		synchronized (pending) {
+			pending.put(struct.sequence, struct);
+			SpectrumIndex next;
+			while ((next = pending.remove(committed)) != null) {
+				committed++;
+				if (next.compressed != null) {
+					if (next.index == -1) {
+						data.add(next.compressed);
+					} else {
+						data.set(next.index, next.compressed);
+					}
+				}
+				//a failed entry isn't stored, the failure is reported to the loader
+				inflight.release();
+			}
+		}
+	}
+
+	@Override
+	public void submit(Spectrum s) throws InterruptedException {
+		submit(-1, s);
+	}
+
+	@Override
+	public void submit(int index, Spectrum s) throws InterruptedException {
+		checkFailure();
+		inflight.acquire();
+		SpectrumIndex struct = new SpectrumIndex();
+		struct.index = index;
+		struct.spectrum = s;
+		struct.sequence = submitted.getAndIncrement();
+		try {
+			executor.execute(() -> work(struct));
+		} catch (RuntimeException e) {
+			struct.spectrum = null;
+			commit(struct);
+			throw e;
+		}
+	}
+
+	@Override
+	public void finish() throws InterruptedException {
+		//every entry has been committed once all of the permits are free
+		inflight.acquire(depth);
+		inflight.release(depth);
+		checkFailure();
+		synchronized (partials) {
+			for (DataSourceAnalysis partial : partials) {
+				analysis.merge(partial);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.peakaboo.datasource.model.internal;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.peakaboo.dataset.DataSet;
+import org.peakaboo.datasource.model.DataSource;
+import org.peakaboo.datasource.model.components.datasize.DataSize;
+import org.peakaboo.datasource.model.components.fileformat.FileFormat;
+import org.peakaboo.datasource.model.components.interaction.Interaction;
+import org.peakaboo.datasource.model.components.metadata.Metadata;
+import org.peakaboo.datasource.model.components.physicalsize.PhysicalSize;
+import org.peakaboo.datasource.model.components.scandata.ScanData;
+import org.peakaboo.datasource.model.components.scandata.analysis.Analysis;
+import org.peakaboo.datasource.model.components.scandata.analysis.LazyAnalysis;
+import org.peakaboo.filter.model.FilterSet;
+import org.peakaboo.framework.autodialog.model.Group;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.plural.streams.ExportPipeline;
+
+/**
+ * Represents the scans of another DataSource with a {@link FilterSet} applied.
+ * Scans are filtered on demand, and iterating over them filters scans ahead of
+ * time through an {@link ExportPipeline}, in parallel if the underlying scans
+ * allow it, so any DataSink writing this DataSource gets its filtering done in
+ * parallel.
+ * @author NAS
+ *
+ */
+public class FilteredDataSource implements DataSource, ScanData {
+
+	private DataSource source;
+	private FilterSet filters;
+	private DataSet dataset;
+	private LazyAnalysis analysis;
+
+	/**
+	 * @param source the DataSource to filter
+	 * @param filters the filters to apply, which should not change while this is in use
+	 * @param dataset the DataSet given to the filters
+	 */
+	public FilteredDataSource(DataSource source, FilterSet filters, DataSet dataset) {
+		this.source = source;
+		this.filters = filters;
+		this.dataset = dataset;
+		int[] indexes = IntStream.range(0, source.getScanData().scanCount()).toArray();
+		this.analysis = new LazyAnalysis(this, indexes, source.getScanData().getAnalysis().channelsPerScan());
+	}
+
+	@Override
+	public ReadOnlySpectrum get(int index) throws IndexOutOfBoundsException {
+		ReadOnlySpectrum spectrum = source.getScanData().get(index);
+		if (spectrum == null) {
+			return null;
+		}
+		return filters.applyFiltersUnsynchronized(spectrum, dataset);
+	}
+
+	@Override
+	public Iterator<ReadOnlySpectrum> iterator() {
+		return new ExportPipeline<>(scanCount(), this::get, isParallelizable());
+	}
+
+	@Override
+	public boolean isParallelizable() {
+		return source.getScanData().isParallelizable();
+	}
+
+	@Override
+	public int scanCount() {
+		return source.getScanData().scanCount();
+	}
+
+	@Override
+	public String scanName(int index) {
+		return source.getScanData().scanName(index);
+	}
+
+	@Override
+	public float maxEnergy() {
+		return source.getScanData().maxEnergy();
+	}
+
+	@Override
+	public float minEnergy() {
+		return source.getScanData().minEnergy();
+	}
+
+	@Override
+	public String datasetName() {
+		return "Filtered " + source.getScanData().datasetName();
+	}
+
+	@Override
+	public Analysis getAnalysis() {
+		return analysis;
+	}
+
+	@Override
+	public Optional<Metadata> getMetadata() {
+		return source.getMetadata();
+	}
+
+	@Override
+	public Optional<DataSize> getDataSize() {
+		return source.getDataSize();
+	}
+
+	@Override
+	public Optional<PhysicalSize> getPhysicalSize() {
+		return source.getPhysicalSize();
+	}
+
+	@Override
+	public FileFormat getFileFormat() {
+		return source.getFileFormat();
+	}
+
+	@Override
+	public boolean isRectangular() {
+		return source.isRectangular();
+	}
+
+	@Override
+	public void setInteraction(Interaction interaction) {
+		throw new UnsupportedOperationException("Cannot set interaction in derived DataSource");
+	}
+
+	@Override
+	public Interaction getInteraction() {
+		return source.getInteraction();
+	}
+
+	@Override
+	public ScanData getScanData() {
+		return this;
+	}
+
+	@Override
+	public void read(List<Path> files) throws Exception {
+		throw new UnsupportedOperationException("Cannot read in derived DataSource");
+	}
+
+	@Override
+	public Optional<Group> getParameters(List<Path> paths) {
+		return Optional.empty();
+	}
+
+}
@@ -13,7 +13,7 @@ import org.peakaboo.datasource.model.components.metadata.Metadata;
 import org.peakaboo.datasource.model.components.physicalsize.PhysicalSize;
 import org.peakaboo.datasource.model.components.scandata.ScanData;
 import org.peakaboo.datasource.model.components.scandata.analysis.Analysis;
-import org.peakaboo.datasource.model.components.scandata.analysis.DataSourceAnalysis;
+import org.peakaboo.datasource.model.components.scandata.analysis.LazyAnalysis;
 import org.peakaboo.framework.autodialog.model.Group;
 import org.peakaboo.framework.cyclops.Coord;
 import org.peakaboo.framework.cyclops.GridPerspective;
@@ -31,7 +31,7 @@ public class SelectionDataSource implements SubsetDataSource, ScanData, DataSize
 	private DataSource source;
 	private Coord<Integer> sourceDimensions;
 	private List<Integer> selectedIndexes;
-	private DataSourceAnalysis analysis;
+	private LazyAnalysis analysis;
 	
 	private Coord<Integer> dimensions;
 	private Coord<Integer> offset;
@@ -49,9 +49,9 @@ public class SelectionDataSource implements SubsetDataSource, ScanData, DataSize
 		this.selectedIndexes = new ArrayList<>(selectedIndexes);
 		this.sourceDimensions = dimensions;
 		
-		//we don't reanalyze in the constructor for performance reasons
-		this.analysis = new DataSourceAnalysis();
-		this.analysis.init(source.getScanData().getAnalysis().channelsPerScan());
+		//the selection isn't analyzed until its results are needed
+		int[] indexes = this.selectedIndexes.stream().mapToInt(Integer::intValue).toArray();
+		this.analysis = new LazyAnalysis(source.getScanData(), indexes, source.getScanData().getAnalysis().channelsPerScan());
 		
 		sourceGrid = new GridPerspective<>(dimensions.x, dimensions.y, 0);
 		int minx = dimensions.x;
@@ -81,6 +81,11 @@ public class SelectionDataSource implements SubsetDataSource, ScanData, DataSize
 		return selectedIndexes.size();
 	}
 
+	@Override
+	public boolean isParallelizable() {
+		return source.getScanData().isParallelizable();
+	}
+
 	@Override
 	public String scanName(int index) {
 		return source.getScanData().scanName(getOriginalIndex(index));
@@ -166,14 +171,7 @@ public class SelectionDataSource implements SubsetDataSource, ScanData, DataSize
 
 	@Override
 	public void reanalyze() {
-		for (int i = 0; i < scanCount(); i++) {
-			this.reanalyze(i);
-		}
-	}
-
-	@Override
-	public void reanalyze(int i) {
-		this.analysis.process(get(i));
+		this.analysis.complete();
 	}
 
 	@Override
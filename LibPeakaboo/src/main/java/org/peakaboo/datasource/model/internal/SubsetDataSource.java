@@ -24,16 +24,11 @@ public interface SubsetDataSource extends DataSource {
 	int getUpdatedIndex(int originalIndex);
 
 	/**
-	 * Part of the initialization of a SubsetDataSource is reanalyzing the
-	 * constrained data. This method reanalyzes all indexes in the datasource
+	 * A SubsetDataSource's analysis covers only the constrained data, and may be
+	 * calculated lazily. This method analyzes all indexes in the datasource
+	 * now, and waits for the analysis to complete.
 	 */
 	void reanalyze();
 	
-	/**
-	 * Part of the initialization of a SubsetDataSource is reanalyzing the
-	 * constrained data. This method reanalyzes one specific index in the datasource
-	 */
-	void reanalyze(int i);
-	
 	
 }
@@ -5,10 +5,8 @@ import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.BooleanStyle;
 import org.peakaboo.framework.autodialog.model.style.editors.IntegerStyle;
 import org.peakaboo.framework.autodialog.model.style.editors.SeparatorStyle;
-import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
-import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 
 public abstract class AbstractBackgroundFilter extends AbstractFilter {
@@ -67,9 +65,15 @@ public abstract class AbstractBackgroundFilter extends AbstractFilter {
 	
 	protected abstract ReadOnlySpectrum getBackground(ReadOnlySpectrum data, DataSet dataset, int percent);
 	
-	private final ReadOnlySpectrum getBackground(ReadOnlySpectrum data, DataSet dataset) {
+	@Override
+	protected final ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset) {
+		return filterApplyToNew(data, dataset);
+	}
+	
+	@Override
+	protected final void filterApplyTo(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
 		if (data == null) {
-			return null;
+			return;
 		}
 		
 		int start = startindex.getValue();
@@ -77,31 +81,20 @@ public abstract class AbstractBackgroundFilter extends AbstractFilter {
 		if (stop >= data.size()) stop = data.size() - 1;
 		if (start >= data.size()) start = data.size() - 1;
 		
-		boolean usePartial = partial.getValue();
-		
-		if (usePartial) {
-			
-			ReadOnlySpectrum partial = data.subSpectrum(start, stop);
-			Spectrum result = new ISpectrum(data.size(), 0f);
-			partial = getBackground(partial, dataset, percent.getValue());
-			
-			for (int i = 0; i < partial.size(); i++)
-			{
-				result.set(i + start, partial.get(i));
+		if (partial.getValue()) {
+			//only the channels in the subset have any background to remove
+			ReadOnlySpectrum background = getBackground(data.subSpectrum(start, stop), dataset, percent.getValue());
+			BufferedFilter.copy(data, target);
+			for (int i = 0; i < background.size(); i++) {
+				target.set(i + start, data.get(i + start) - background.get(i));
 			}
-			
-			return result;
-			
 		} else {
-			return getBackground(data, dataset, percent.getValue());
+			ReadOnlySpectrum background = getBackground(data, dataset, percent.getValue());
+			float[] out = target.backingArray();
+			for (int i = 0; i < data.size(); i++) {
+				out[i] = data.get(i) - background.get(i);
+			}
 		}
-		
-	}
-	
-	@Override
-	protected final ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset) {
-		ReadOnlySpectrum background = getBackground(data, dataset);
-		return SpectrumCalculations.subtractLists(data, background);
 	}
 	
 	@Override
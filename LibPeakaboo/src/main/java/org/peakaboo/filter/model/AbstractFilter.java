@@ -10,6 +10,7 @@ import org.peakaboo.dataset.DataSet;
 import org.peakaboo.filter.plugins.JavaFilterPlugin;
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.Value;
+import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
 
@@ -25,7 +26,7 @@ import org.peakaboo.framework.cyclops.Spectrum;
  * 
  */
 
-public abstract class AbstractFilter implements Serializable, JavaFilterPlugin {
+public abstract class AbstractFilter implements Serializable, JavaFilterPlugin, BufferedFilter {
 	
 	private List<Value<?>>		parameters;
 	public boolean				enabled;
@@ -75,7 +76,29 @@ public abstract class AbstractFilter implements Serializable, JavaFilterPlugin {
 	 * @param data the Spectrum to filter
 	 */
 	protected abstract ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset);
-		
+	
+	/**
+	 * Filter the given {@link Spectrum}, writing the result into target. Filters
+	 * which can calculate their results directly into a buffer should override
+	 * this, by default the result of {@link #filterApplyTo(ReadOnlySpectrum, DataSet)}
+	 * is copied into target.
+	 * @param data the Spectrum to filter
+	 * @param target the Spectrum to write the result into
+	 */
+	protected void filterApplyTo(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		ReadOnlySpectrum newdata = filterApplyTo(data, dataset);
+		BufferedFilter.copy(newdata == null ? data : newdata, target);
+	}
+	
+	/**
+	 * Helper for filters which implement {@link #filterApplyTo(ReadOnlySpectrum, Spectrum, DataSet)}
+	 * and want to implement {@link #filterApplyTo(ReadOnlySpectrum, DataSet)} in terms of it.
+	 */
+	protected final ReadOnlySpectrum filterApplyToNew(ReadOnlySpectrum data, DataSet dataset) {
+		Spectrum target = new ISpectrum(data.size());
+		filterApplyTo(data, target, dataset);
+		return target;
+	}
 	
 
 	@Override
@@ -94,6 +117,20 @@ public abstract class AbstractFilter implements Serializable, JavaFilterPlugin {
 		
 	}
 
+	@Override
+	public void filter(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		
+		try{
+			filterApplyTo(data, target, dataset);
+		}
+		catch(Throwable e)
+		{
+			PeakabooLog.get().log(Level.SEVERE, "Error applying filter " + this.getClass().getSimpleName(), e);
+			BufferedFilter.copy(data, target);
+		}
+		
+	}
+
 	public String toString() {
 		return this.getFilterName();
 	}
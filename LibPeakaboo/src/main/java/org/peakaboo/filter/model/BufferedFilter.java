@@ -0,0 +1,62 @@
+package org.peakaboo.filter.model;
+
+import org.peakaboo.dataset.DataSet;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+
+/**
+ * A {@link Filter} which can write its results into a spectrum provided by the
+ * caller rather than allocating a new one. {@link FilterSet} chains these
+ * filters through a pair of reusable buffers, so that filtering a spectrum
+ * doesn't leave a trail of intermediate spectra behind it. Filters which don't
+ * implement this interface are adapted with {@link #apply(Filter, ReadOnlySpectrum, Spectrum, DataSet)}.
+ * 
+ * @author NAS
+ *
+ */
+public interface BufferedFilter extends Filter {
+
+	/**
+	 * Applies the filter to the given spectrum, writing the result into target.
+	 * Every channel of target must be written. The data and target spectra are
+	 * the same size and are never the same object, and data must not be
+	 * modified.
+	 * 
+	 * @param data    the data to process
+	 * @param target  the spectrum to write the result into
+	 * @param dataset the DataSet to which this spectrum belongs
+	 */
+	void filter(ReadOnlySpectrum data, Spectrum target, DataSet dataset);
+	
+	
+	/**
+	 * Applies the given filter to data, writing the result into target. Filters
+	 * which don't implement {@link BufferedFilter} are applied normally and their
+	 * result is copied into target.
+	 */
+	static void apply(Filter filter, ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		if (filter instanceof BufferedFilter) {
+			((BufferedFilter) filter).filter(data, target, dataset);
+		} else {
+			copy(filter.filter(data, dataset), target);
+		}
+	}
+	
+	/**
+	 * Copies source into target without allocating. If the source is shorter than
+	 * the target, the remaining channels are set to zero.
+	 */
+	static void copy(ReadOnlySpectrum source, Spectrum target) {
+		if (source == target) {
+			return;
+		}
+		float[] out = target.backingArray();
+		int length = target.size();
+		int size = Math.min(source.size(), length);
+		source.copyInto(0, out, 0, size);
+		for (int i = size; i < length; i++) {
+			out[i] = 0f;
+		}
+	}
+	
+}
@@ -0,0 +1,57 @@
+package org.peakaboo.filter.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+
+/**
+ * A per-thread pool of scratch {@link Spectrum} buffers for filtering. Buffers
+ * are taken with {@link #acquire(int)} and must be handed back with
+ * {@link #release(Spectrum)} by the same thread once they're no longer in use.
+ * Since every thread has its own pool, nested users (eg a filter which applies
+ * another filter) simply take different buffers.
+ * 
+ * @author NAS
+ *
+ */
+public class FilterBuffers {
+
+	//more than this many idle buffers per thread are left for the garbage collector
+	private static final int MAX_IDLE = 8;
+	
+	private static final ThreadLocal<Deque<Spectrum>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+	
+	private FilterBuffers() {
+		//Not Constructable
+	}
+	
+	/**
+	 * Returns a buffer of the given size from this thread's pool. Its contents are
+	 * undefined.
+	 */
+	public static Spectrum acquire(int size) {
+		Deque<Spectrum> buffers = pool.get();
+		Spectrum buffer = buffers.pollFirst();
+		if (buffer == null || buffer.size() != size) {
+			//sizes rarely change, so a mismatched buffer is just dropped
+			return new ISpectrum(size);
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Returns a buffer to this thread's pool
+	 */
+	public static void release(Spectrum buffer) {
+		if (buffer == null) {
+			return;
+		}
+		Deque<Spectrum> buffers = pool.get();
+		if (buffers.size() < MAX_IDLE) {
+			buffers.offerFirst(buffer);
+		}
+	}
+	
+}
@@ -113,26 +113,89 @@ public class FilterSet implements Iterable<Filter> {
 
 	
 	public ReadOnlySpectrum applyFiltersUnsynchronized(ReadOnlySpectrum data, DataSet dataset) {
-
-		for (Filter f : filters) {
-			if (f != null && f.isEnabled() && !f.isPreviewOnly()) {
-				data = f.filter(data, dataset);
+		Spectrum target = new ISpectrum(data.size());
+		applyFiltersUnsynchronized(data, target, dataset);
+		return target;
+	}
+	
+	/**
+	 * Applies the active filters to data, writing the result into target, which
+	 * must be the same size as data and must not be data. Intermediate results
+	 * are passed between a pair of buffers from {@link FilterBuffers}, and the
+	 * last filter writes directly into target, so no spectra are allocated by
+	 * {@link BufferedFilter}s. Infinity and NaN values are replaced with 0.
+	 */
+	public void applyFiltersUnsynchronized(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		
+		int last = -1;
+		for (int i = 0; i < filters.size(); i++) {
+			if (isApplied(filters.get(i))) {
+				last = i;
+			}
+		}
+		
+		if (last == -1) {
+			BufferedFilter.copy(data, target);
+		} else {
+			//bounce intermediate results back and forth between two buffers
+			Spectrum front = null, back = null;
+			ReadOnlySpectrum source = data;
+			for (int i = 0; i <= last; i++) {
+				Filter f = filters.get(i);
+				if (!isApplied(f)) continue;
+				
+				Spectrum output = target;
+				if (i != last) {
+					if (front == null) {
+						front = FilterBuffers.acquire(data.size());
+					}
+					output = front;
+					front = back;
+					back = output;
+				}
+				BufferedFilter.apply(f, source, output, dataset);
+				source = output;
 			}
+			FilterBuffers.release(front);
+			FilterBuffers.release(back);
 		}
 		
 		//Replace Inf/NaN with 0
-		data = correctNonFinite(data);
-
-		return data;
+		correctNonFiniteInPlace(target);
+		
+	}
+	
+	private static boolean isApplied(Filter f) {
+		return f != null && f.isEnabled() && !f.isPreviewOnly();
+	}
+	
+	//Replace Inf/NaN with 0 in place
+	private void correctNonFiniteInPlace(Spectrum data) {
+		float[] values = data.backingArray();
+		boolean corrected = false;
+		for (int i = 0; i < data.size(); i++) {
+			float v = values[i];
+			//v - v is NaN for both NaN and Infinity
+			if (v - v != 0) {
+				values[i] = 0;
+				corrected = true;
+			}
+		}
+		if (corrected) {
+			PeakabooLog.get().log(Level.WARNING, "Filtered data contained NaN or Infinity");
+		}
 	}
 	
 	//Scan the Spectrum for Infinity and NaN values, and replace them with 0 if found
 	private ReadOnlySpectrum correctNonFinite(ReadOnlySpectrum data) {
 		//Scan the results for Infinity and NaN values, and replace them with 0 if found
 		Spectrum corrected = null;
-		for (int i = 0; i < data.size(); i++) {
-			float v = data.get(i);
-			if (Float.isInfinite(v) || Float.isNaN(v)) {
+		float[] values = SpectrumCalculations.array(data);
+		int size = data.size();
+		for (int i = 0; i < size; i++) {
+			float v = values[i];
+			//v - v is NaN for both NaN and Infinity
+			if (v - v != 0) {
 				//only incur the copy penalty if needed
 				if (corrected == null) {
 					corrected = new ISpectrum(data);
@@ -9,6 +9,7 @@ import org.peakaboo.framework.autodialog.model.style.editors.IntegerStyle;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
 import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SlidingWindow;
 import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 /**
@@ -116,56 +117,47 @@ public final class BruknerBackgroundFilter extends AbstractBackgroundFilter
 		float diff = iAvg - iMin;
 		final float cutoff = iAvg + 2 * diff;
 
-		Spectrum result = new ISpectrum(data); 
+		//create 2 buffers to bounce the data back and forth between
+		float[] source = data.backingArrayCopy();
+		float[] target = new float[source.length];
 
 		//initially cap the data at the given cutoff
-		for (int i = 0; i < result.size(); i++)
+		for (int i = 0; i < source.length; i++)
 		{
-			if (result.get(i) > cutoff) result.set(i, cutoff);
+			if (source[i] > cutoff) source[i] = cutoff;
 		}
 		
-		Spectrum result2 = new ISpectrum(result.size());
-
-		int i = 0;
-		while (repetitions > 0)
+		//any repetitions at all means one more pass than asked for
+		int passes = repetitions > 0 ? repetitions + 1 : 0;
+		for (int pass = 0; pass < passes; pass++)
 		{
-			removeBackgroundBruknerIteration(result, result2, windowSize);
-			
-			i++;
-			if (i > repetitions)
-			{
-				result = result2;
-				break;
-			}
-
-			removeBackgroundBruknerIteration(result2, result, windowSize);
-			
-			i++;
-			if (i > repetitions) break;
-
+			removeBackgroundBruknerIteration(source, target, windowSize);
+			float[] swap = source;
+			source = target;
+			target = swap;
 		}
 
-		return result;
+		return new ISpectrum(source, false);
 
 	}
 	
 	/**
 	 * Performs a single iteration of the brukner min(data, moving average) process
 	 * @param source the data to look at
-	 * @param target the {@link Spectrum} to write the new values out to
+	 * @param target the array to write the new values out to
 	 * @param windowSize the window size for the moving average
 	 */
-	private static void removeBackgroundBruknerIteration(final Spectrum source, final Spectrum target, final int windowSize)
+	private static void removeBackgroundBruknerIteration(final float[] source, final float[] target, final int windowSize)
 	{
 
-		for (int i = 0; i < source.size(); i++)
+		//the running sum costs the same no matter how wide the window is
+		SlidingWindow.sum(source, target, windowSize);
+		
+		//values near the ends are still divided by the full window
+		float width = windowSize * 2 + 1;
+		for (int i = 0; i < source.length; i++)
 		{
-			int start, stop;
-			start = Math.max(i - windowSize, 0);
-			stop = Math.min(i + windowSize+1, source.size() - 1);
-			float average = SpectrumCalculations.sumValuesInList(source, start, stop) / (windowSize * 2 + 1);
-			target.set(i, Math.min(average, source.get(i)));
-			
+			target[i] = Math.min(target[i] / width, source[i]);
 		}
 		
 	}
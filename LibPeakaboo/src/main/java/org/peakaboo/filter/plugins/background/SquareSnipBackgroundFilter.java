@@ -7,7 +7,7 @@ import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.IntegerStyle;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
-import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SlidingWindow;
 
 public class SquareSnipBackgroundFilter extends AbstractBackgroundFilter {
 
@@ -43,47 +43,37 @@ public class SquareSnipBackgroundFilter extends AbstractBackgroundFilter {
 		int iterations = pIterations.getValue();
 		
 		//create 2 buffers to bounce the data back and forth between
-		Spectrum buffer1 = new ISpectrum(data);
-		Spectrum buffer2 = new ISpectrum(data);
+		float[] source = data.backingArrayCopy();
+		float[] target = new float[source.length];
 		
-		for (int i = 0; i < buffer1.size(); i++) {
-			float v = Math.max(0, buffer1.get(i));
-			v = (float) Math.sqrt(Math.sqrt(v));
-			buffer1.set(i, v);
+		for (int i = 0; i < source.length; i++) {
+			float v = Math.max(0, source[i]);
+			source[i] = (float) Math.sqrt(Math.sqrt(v));
 		}
 		
-		Spectrum source = null, target = null;
 		for (int l = 0; l < iterations; l++) {
 			
 			if (l - iterations < 8) {
 				window /= 1.41;
 			}
 			
-			source = buffer1;
-			target = buffer2;
-			for (int i = 0; i < source.size(); i++) {
-				int lChannel = Math.max(0, i - window);
-				int rChannel = Math.min(source.size()-1, i + window);
-				float mean = (source.get(lChannel) + source.get(rChannel)) / 2f;
-				if (mean < source.get(i)) { 
-					target.set(i, mean);
-				} else {
-					target.set(i, source.get(i));
-				}
-			}
-			//flip buffers 1 and 2 around so that we're constantly copying the data back and forth
-			buffer1 = target;
-			buffer2 = source;
+			SlidingWindow.snip(source, target, window);
+			
+			//flip the buffers around so that we're constantly copying the data back and forth
+			float[] swap = source;
+			source = target;
+			target = swap;
 		}
 		
 		float fPercent = percent  /100f;
 		//which ever buffer was the target last, that is where we get our data from
 		//now we apply an inverse transform to the sqrt at the start
-		for (int i = 0; i < target.size(); i++) {
-			target.set(i, (float) Math.pow(Math.pow(target.get(i), 2), 2) * fPercent);
+		for (int i = 0; i < source.length; i++) {
+			float v = source[i] * source[i];
+			source[i] = v * v * fPercent;
 		}
 		
-		return target;
+		return new ISpectrum(source, false);
 	}
 
 	@Override
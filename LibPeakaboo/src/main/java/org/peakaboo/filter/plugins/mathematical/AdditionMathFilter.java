@@ -6,6 +6,7 @@ import org.peakaboo.filter.model.FilterType;
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.RealStyle;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
 import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 
@@ -28,7 +29,12 @@ public class AdditionMathFilter extends AbstractFilter
 	
 	@Override
 	protected ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset) {
-		return SpectrumCalculations.subtractFromList(data, 0.0f-amount.getValue().floatValue());
+		return filterApplyToNew(data, dataset);
+	}
+	
+	@Override
+	protected void filterApplyTo(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		SpectrumCalculations.subtractFromList(data, target, 0.0f-amount.getValue().floatValue());
 	}
 
 
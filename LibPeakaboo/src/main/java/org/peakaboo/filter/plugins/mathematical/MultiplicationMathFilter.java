@@ -8,7 +8,7 @@ import org.peakaboo.filter.model.FilterType;
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.RealStyle;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
-import org.peakaboo.framework.cyclops.SpectrumCalculations;
+import org.peakaboo.framework.cyclops.Spectrum;
 
 
 public class MultiplicationMathFilter extends AbstractFilter {
@@ -29,7 +29,16 @@ public class MultiplicationMathFilter extends AbstractFilter {
 	
 	@Override
 	protected ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset) {
-		return SpectrumCalculations.multiplyBy(data, amount.getValue().floatValue());
+		return filterApplyToNew(data, dataset);
+	}
+	
+	@Override
+	protected void filterApplyTo(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		float value = amount.getValue().floatValue();
+		float[] out = target.backingArray();
+		for (int i = 0; i < data.size(); i++) {
+			out[i] = data.get(i) * value;
+		}
 	}
 
 
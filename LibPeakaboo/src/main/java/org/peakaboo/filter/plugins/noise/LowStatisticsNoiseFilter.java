@@ -8,6 +8,7 @@ import org.peakaboo.framework.autodialog.model.style.editors.IntegerStyle;
 import org.peakaboo.framework.autodialog.model.style.editors.RealStyle;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.SlidingWindow;
 import org.peakaboo.framework.cyclops.Spectrum;
 
 public class LowStatisticsNoiseFilter extends AbstractFilter {
@@ -35,13 +36,15 @@ public class LowStatisticsNoiseFilter extends AbstractFilter {
 	// but we don't have access to that information. Maybe..?
 	protected ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset) {
 		Spectrum out = new ISpectrum(data.size());
+		//every channel tries several window sizes, so look up window sums instead of adding them up
+		double[] prefix = SlidingWindow.prefixSums(data.backingArrayCopy());
 		for (int i = 0; i < data.size(); i++) {
-			out.set(i, filterChannel(i, data));
+			out.set(i, filterChannel(i, data, prefix));
 		}
 		return out;
 	}
 	
-	private float filterChannel(int i, ReadOnlySpectrum data) {
+	private float filterChannel(int i, ReadOnlySpectrum data, double[] prefix) {
 		int window = pWindowSize.getValue();
 		float maxSignal = pMaxSignal.getValue();
 		float centrepointFactor = pCentrepointFactor.getValue();
@@ -55,8 +58,8 @@ public class LowStatisticsNoiseFilter extends AbstractFilter {
 			int lWindow = leftWindowSize(window, i);
 			int rWindow = rightWindowSize(window, i, data.size());
 			
-			float lsum = sumWindow(i-lWindow, i-1, data);
-			float rsum = sumWindow(i+1, i+rWindow, data);
+			float lsum = sumWindow(i-lWindow, i-1, prefix);
+			float rsum = sumWindow(i+1, i+rWindow, prefix);
 			float sum = lsum + data.get(i) + rsum;
 			
 			boolean belowMax = sum < maxSignal;
@@ -74,12 +77,8 @@ public class LowStatisticsNoiseFilter extends AbstractFilter {
 	}
 	
 	
-	private float sumWindow(int start, int stop, ReadOnlySpectrum data) {
-		float sum = 0;
-		for (int i = start; i <= stop; i++) {
-			sum += data.get(i);
-		}
-		return sum;
+	private float sumWindow(int start, int stop, double[] prefix) {
+		return (float) (prefix[stop+1] - prefix[start]);
 	}
 	
 	private int leftWindowSize(int requestedSize, int channel) {
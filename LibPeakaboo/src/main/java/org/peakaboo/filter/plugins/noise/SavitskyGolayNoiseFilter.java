@@ -7,6 +7,7 @@ import java.util.logging.Level;
 import org.peakaboo.common.PeakabooLog;
 import org.peakaboo.dataset.DataSet;
 import org.peakaboo.filter.model.AbstractFilter;
+import org.peakaboo.filter.model.BufferedFilter;
 import org.peakaboo.filter.model.FilterType;
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.BooleanStyle;
@@ -15,7 +16,9 @@ import org.peakaboo.framework.autodialog.model.style.editors.RealStyle;
 import org.peakaboo.framework.autodialog.model.style.editors.SeparatorStyle;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.SlidingWindow;
 import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 //From Handbook of X-Ray Spectrometry
 public class SavitskyGolayNoiseFilter extends AbstractFilter {
@@ -119,6 +122,17 @@ public class SavitskyGolayNoiseFilter extends AbstractFilter {
 	protected ReadOnlySpectrum filterApplyTo(ReadOnlySpectrum data, DataSet dataset) {
 		return fastSavitskyGolayFilter(data, reach.getValue(), ignore.getValue() ? max.getValue() : Float.MAX_VALUE);
 	}
+	
+	@Override
+	protected void filterApplyTo(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		float[] coefs = getCoeffs();
+		if (coefs == null) {
+			PeakabooLog.get().log(Level.WARNING, "Failed to load Savitsky Golay coefficients");
+			BufferedFilter.copy(data, target);
+			return;
+		}
+		savitskyGolay(SpectrumCalculations.array(data), target.backingArray(), coefs, ignore.getValue() ? max.getValue() : Float.MAX_VALUE);
+	}
 
 	@Override
 	public String getFilterName() {
@@ -152,32 +166,21 @@ public class SavitskyGolayNoiseFilter extends AbstractFilter {
 			return new ISpectrum(data);
 		}
 		
-		Spectrum out = new ISpectrum(data.size());
+		float[] out = new float[data.size()];
+		savitskyGolay(SpectrumCalculations.array(data), out, coefs, max);
+		return new ISpectrum(out, false);
 		
-		for (int i = 0; i < data.size(); i++) {
-
-			//skip signal stronger than max
-			if (data.get(i) > max) {
-				out.set(i, data.get(i));
-				continue;
-			} 
-			
-			float sum = 0;
-			float normalize = 0;
-			for (int j = -reach; j <= reach; j++) {
-				float coef = coefs[Math.abs(j)];
-				int di = i+j;
-				if (di < 0 || di >= data.size()) continue;
-				sum += coef * data.get(di);
-				normalize += coef;
-			}
-			
-			out.set(i, normalize == 0 ? 0f : sum / normalize);
+	}
+	
+	private static void savitskyGolay(float[] source, float[] out, float[] coefs, float max) {
+		SlidingWindow.symmetric(source, out, coefs);
 		
+		//skip signal stronger than max
+		for (int i = 0; i < source.length; i++) {
+			if (source[i] > max) {
+				out[i] = source[i];
+			}
 		}
-		
-		return out;
-		
 	}
 
 }
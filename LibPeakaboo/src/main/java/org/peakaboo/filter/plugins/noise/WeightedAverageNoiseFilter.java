@@ -7,7 +7,9 @@ import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.IntegerStyle;
 import org.peakaboo.framework.cyclops.ISpectrum;
 import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.SlidingWindow;
 import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 public class WeightedAverageNoiseFilter extends AbstractFilter {
 
@@ -59,6 +61,11 @@ public class WeightedAverageNoiseFilter extends AbstractFilter {
 		data = weightedMovingAverage(data, reach.getValue());
 		return data;
 	}
+	
+	@Override
+	protected void filterApplyTo(ReadOnlySpectrum data, Spectrum target, DataSet dataset) {
+		SlidingWindow.exponential(SpectrumCalculations.array(data), target.backingArray(), reach.getValue(), 0.5f);
+	}
 
 	
 	@Override
@@ -99,49 +106,12 @@ public class WeightedAverageNoiseFilter extends AbstractFilter {
 		 * for a windowSpan n, the center-point's weight will be 2^n. 
 		 * Other points will be 2^(n-d) where d is distance from center.
 		 * This will continue until at the outsides of the window, n=d,
-		 * and the weight is 2^0=1
+		 * and the weight is 2^0=1. Relative to the center-point, that is
+		 * a weight of 0.5^d.
 		 */
-		
-		int size = windowSpan*2+1;
-		float[] weights = new float[size];
-		for (int i = 0; i < windowSpan; i++) {
-			weights[i] = (float) Math.pow(2, i);
-			weights[size-1 - i] = (float) Math.pow(2, i);
-		}
-		weights[windowSpan] = (float) Math.pow(2, windowSpan);
-			
-				
-		Spectrum smoothed = new ISpectrum(data.size());
-		
-		int start, stop;
-		float totalWeight;
-		int pos;
-		float sum;
-		for (int i = 0; i < data.size(); i++) {
-
-			// exact same as in last loop
-			start = Math.max(0,  i - windowSpan);
-			stop = Math.min(data.size()-1, i + windowSpan);
-			
-			totalWeight = 0;
-			pos = 0;
-			sum = 0;
-			for (int p = start; p <= stop; p++) {
-				totalWeight += weights[pos];
-				sum += (data.get(p) * weights[pos]);
-				pos++;
-			}
-
-			if (totalWeight == 0) {
-				smoothed.set(i, 0);
-			} else {
-				smoothed.set(i, sum / totalWeight);
-			}
-
-		}
-
-
-		return smoothed;
+		float[] smoothed = new float[data.size()];
+		SlidingWindow.exponential(data.backingArrayCopy(), smoothed, windowSpan, 0.5f);
+		return new ISpectrum(smoothed, false);
 
 	}
 	
@@ -1,16 +1,28 @@
 package org.peakaboo.mapping;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import org.peakaboo.common.PeakabooLog;
 import org.peakaboo.controller.plotter.data.DataController;
-import org.peakaboo.curvefit.curve.fitting.FittingResult;
-import org.peakaboo.curvefit.curve.fitting.FittingResultSet;
+import org.peakaboo.curvefit.curve.fitting.Curve;
 import org.peakaboo.curvefit.curve.fitting.FittingSet;
 import org.peakaboo.curvefit.curve.fitting.fitter.CurveFitter;
 import org.peakaboo.curvefit.curve.fitting.solver.FittingSolver;
+import org.peakaboo.curvefit.curve.fitting.solver.SolverContext;
 import org.peakaboo.curvefit.peak.transition.DummyTransitionSeries;
 import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
 import org.peakaboo.dataset.DataSet;
@@ -42,6 +54,17 @@ public class Mapping {
 		//Not Constructable
 	}
 
+	/**
+	 * Number of spectra processed together by a worker between progress updates
+	 */
+	private static final int BLOCK_SIZE = 64;
+	
+	/**
+	 * Coarsest grid spacing visited first when generating maps progressively.
+	 * Must be a power of two.
+	 */
+	public static final int PREVIEW_STRIDE = 8;
+	
 	/**
 	 * Generates a map based on the given inputs. Returns a {@link StreamExecutor} which can execute this task asynchronously and return the result
 	 * @param dataset the {@link DataSet} providing access to data
@@ -57,10 +80,39 @@ public class Mapping {
 			CurveFitter fitter, 
 			FittingSolver solver
 		) {
+		return mapTask(dataset, filters, fittings, fitter, solver, null, 0, null);
+	}
+	
+	/**
+	 * Generates a map based on the given inputs, periodically providing partial
+	 * results as a preview. Spectra are processed coarse-to-fine, starting with
+	 * every {@link #PREVIEW_STRIDE}th row and column, so that early previews
+	 * cover the whole map at a low resolution.
+	 * @param dataset the {@link DataSet} providing access to data
+	 * @param filters the {@link FilterSet} containing all filters needing to be applied to this data
+	 * @param fittings the {@link FittingSet} containing all fittings needing to be turned into maps
+	 * @param preview receives a partial {@link RawMapSet} periodically while the task runs. May be null, in which case spectra are processed in order and no previews are generated
+	 * @param previewInterval the minimum time between previews in milliseconds
+	 * @param previousMaps a {@link RawMapSet} previously generated from the same data, filters, fitter and 
+	 * solver, but possibly different fittings. Maps which can't have been affected by the change in fittings 
+	 * are reused from it, and only the affected maps are generated again. May be null.
+	 * @return a {@link StreamExecutor} which will return a {@link RawMapSet}
+	 */
+	public static StreamExecutor<RawMapSet> mapTask(
+			DataSet dataset, 
+			FilterSet filters, 
+			FittingSet fittings, 
+			CurveFitter fitter, 
+			FittingSolver solver,
+			Consumer<RawMapSet> preview,
+			long previewInterval,
+			RawMapSet previousMaps
+		) {
 		
 		List<ITransitionSeries> transitionSeries = fittings.getVisibleTransitionSeries();
 
-		int mapsize = dataset.getScanData().scanCount();
+		int scancount = dataset.getScanData().scanCount();
+		int mapsize = scancount;
 		//Handle non-contiguous datasets
 		boolean noncontiguous = !dataset.getDataSource().isRectangular() && dataset.getDataSource().getDataSize().isPresent();
 		Coord<Integer> dimensions = dataset.getDataSize().getDataDimensions();
@@ -69,28 +121,102 @@ public class Mapping {
 			//the dataset is non-contiguous, but provides dimensions and a way to get a coord per index
 			mapsize = dimensions.x * dimensions.y;
 		}
-		RawMapSet maps = new RawMapSet(transitionSeries, mapsize, !noncontiguous);
 		
-		StreamExecutor<RawMapSet> streamer = new StreamExecutor<>("Applying Filters & Fittings");
-		streamer.setTask(new Range(0, dataset.getScanData().scanCount()-1), stream -> {
+		//When we have maps from before the fittings were changed, we only need 
+		//to solve for the curves which might have been affected by the change
+		FittingSet solving = fittings;
+		Set<ITransitionSeries> reused = new HashSet<>();
+		if (previousMaps != null && previousMaps.size() == mapsize) {
+			Set<ITransitionSeries> affected = affectedTransitionSeries(fittings, previousMaps);
+			solving = new FittingSet(fittings);
+			for (ITransitionSeries ts : transitionSeries) {
+				if (!affected.contains(ts)) {
+					reused.add(ts);
+					solving.remove(ts);
+				}
+			}
+			PeakabooLog.get().log(Level.INFO, "Reusing " + reused.size() + " of " + transitionSeries.size() + " maps");
+		}
+		RawMapSet maps = new RawMapSet(transitionSeries, mapsize, !noncontiguous, previousMaps, reused);
+		FittingSet solvingFinal = solving;
+		if (!reused.isEmpty() && solving.getVisibleCurves().isEmpty()) {
+			//nothing has changed which could affect the maps
+			StreamExecutor<RawMapSet> unchanged = new StreamExecutor<>("Applying Filters & Fittings");
+			unchanged.setTask(() -> maps);
+			return unchanged;
+		}
+		
+		//Spectra are handed out in blocks, and each block is processed by a 
+		//worker which keeps its solver context and buffers for the whole pass
+		int blocks = (scancount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		Queue<MappingWorker> workers = new ConcurrentLinkedQueue<>();
+		
+		//When previewing, spectra are visited coarse-to-fine and we track which 
+		//points have been measured so that the preview can fill in the gaps
+		int width = Math.max(1, dimensions.x);
+		int[] order = preview == null ? null : progressiveOrder(dataset, scancount, noncontiguous, width);
+		boolean[] measured = preview == null ? null : new boolean[mapsize];
+		AtomicLong lastPreview = new AtomicLong(System.currentTimeMillis());
+		//workers write to the maps under the shared lock, and previews are copied
+		//under the exclusive one, so they only ever see completed blocks
+		ReadWriteLock previewLock = new ReentrantReadWriteLock();
+		
+		StreamExecutor<RawMapSet> streamer = new StreamExecutor<>("Applying Filters & Fittings", 1);
+		streamer.setParallel(dataset.getScanData().isParallelizable());
+		streamer.setTask(new Range(0, blocks-1), stream -> {
 			
 			long t1 = System.currentTimeMillis();
 			
-			stream.forEach(index -> {
+			stream.forEach(block -> {
 				
-				ReadOnlySpectrum data = dataset.getScanData().get(index);
-				if (data == null) return;
+				MappingWorker worker = workers.poll();
+				if (worker == null) {
+					worker = new MappingWorker(solver.context(solvingFinal, fitter), maps);
+				}
 				
-				data = filters.applyFiltersUnsynchronized(data, dataset);
+				int first = block * BLOCK_SIZE;
+				int last = Math.min(first + BLOCK_SIZE, scancount);
+				if (preview != null) {
+					previewLock.readLock().lock();
+				}
+				try {
+					for (int position = first; position < last; position++) {
+						int index = order == null ? position : order[position];
+						ReadOnlySpectrum data = dataset.getScanData().get(index);
+						if (data == null) continue;
+						
+						data = worker.filter(filters, data, dataset);
+						
+						int translated = index;
+						if (noncontiguous) {
+							translated = grid.getIndexFromXY(dataset.getDataSize().getDataCoordinatesAtIndex(index));
+						}
+						worker.map(data, translated);
+						if (measured != null) {
+							measured[translated] = true;
+						}
+					}
+				} finally {
+					if (preview != null) {
+						previewLock.readLock().unlock();
+					}
+				}
 				
-				FittingResultSet frs = solver.solve(data, fittings, fitter);
+				workers.offer(worker);
 				
-				for (FittingResult result : frs.getFits()) {
-					if (noncontiguous) {
-						int translated = grid.getIndexFromXY(dataset.getDataSize().getDataCoordinatesAtIndex(index));
-						maps.putIntensityInMapAtPoint(result.getFitSum(), result.getTransitionSeries(), translated);	
-					} else {
-						maps.putIntensityInMapAtPoint(result.getFitSum(), result.getTransitionSeries(), index);
+				if (preview != null) {
+					long now = System.currentTimeMillis();
+					long previous = lastPreview.get();
+					//only one worker gets to send the preview for this interval
+					if (now - previous >= previewInterval && lastPreview.compareAndSet(previous, now)) {
+						RawMapSet snapshot;
+						previewLock.writeLock().lock();
+						try {
+							snapshot = maps.preview(measured, width, PREVIEW_STRIDE, reused);
+						} finally {
+							previewLock.writeLock().unlock();
+						}
+						preview.accept(snapshot);
 					}
 				}
 				
@@ -107,6 +233,144 @@ public class Mapping {
 		
 	}
 	
+	/**
+	 * Determines which of the currently visible {@link ITransitionSeries} may
+	 * have different maps than those in a previously generated
+	 * {@link RawMapSet}. This includes any series which are new, as well as
+	 * any series connected to a new or removed series through a chain of
+	 * overlapping {@link Curve}s, since solvers balance overlapping curves
+	 * against each other. If the order of the series has changed, all of them
+	 * are considered affected, since solvers like the greedy solver depend on
+	 * the order.
+	 */
+	public static Set<ITransitionSeries> affectedTransitionSeries(FittingSet fittings, RawMapSet previousMaps) {
+		List<Curve> curves = fittings.getVisibleCurves();
+		List<ITransitionSeries> current = fittings.getVisibleTransitionSeries();
+		List<ITransitionSeries> before = previousMaps.getAllTransitionSeries();
+		
+		List<ITransitionSeries> retainedNow = new ArrayList<>(current);
+		retainedNow.retainAll(before);
+		List<ITransitionSeries> retainedBefore = new ArrayList<>(before);
+		retainedBefore.retainAll(current);
+		if (!retainedNow.equals(retainedBefore)) {
+			return new HashSet<>(current);
+		}
+		
+		//curves which were added or removed
+		Deque<Curve> changed = new ArrayDeque<>();
+		Set<ITransitionSeries> affected = new HashSet<>();
+		for (Curve curve : curves) {
+			if (!before.contains(curve.getTransitionSeries())) {
+				changed.add(curve);
+				affected.add(curve.getTransitionSeries());
+			}
+		}
+		for (ITransitionSeries ts : before) {
+			if (!current.contains(ts)) {
+				changed.add(new Curve(ts, fittings.getFittingParameters()));
+			}
+		}
+		
+		//spread to every curve reachable through overlapping curves
+		while (!changed.isEmpty()) {
+			Curve curve = changed.pop();
+			for (Curve other : curves) {
+				if (affected.contains(other.getTransitionSeries())) continue;
+				if (curve.isOverlapping(other)) {
+					affected.add(other.getTransitionSeries());
+					changed.add(other);
+				}
+			}
+		}
+		
+		return affected;
+	}
+	
+	/**
+	 * Orders the spectra of a dataset coarse-to-fine: every 
+	 * {@link #PREVIEW_STRIDE}th row and column first, then every half of that,
+	 * and so on until every spectrum has been included. Within each pass, 
+	 * spectra stay in their original order.
+	 */
+	private static int[] progressiveOrder(DataSet dataset, int scancount, boolean noncontiguous, int width) {
+		int passes = Integer.numberOfTrailingZeros(PREVIEW_STRIDE) + 1;
+		byte[] pass = new byte[scancount];
+		int[] offsets = new int[passes + 1];
+		for (int index = 0; index < scancount; index++) {
+			int x, y;
+			if (noncontiguous) {
+				Coord<Integer> coord = dataset.getDataSize().getDataCoordinatesAtIndex(index);
+				x = coord.x;
+				y = coord.y;
+			} else {
+				x = index % width;
+				y = index / width;
+			}
+			int p = 0;
+			for (int stride = PREVIEW_STRIDE; stride > 1; stride /= 2) {
+				if (x % stride == 0 && y % stride == 0) break;
+				p++;
+			}
+			pass[index] = (byte) p;
+			offsets[p + 1]++;
+		}
+		for (int p = 0; p < passes; p++) {
+			offsets[p + 1] += offsets[p];
+		}
+		int[] order = new int[scancount];
+		for (int index = 0; index < scancount; index++) {
+			order[offsets[pass[index]]++] = index;
+		}
+		return order;
+	}
+	
+	/**
+	 * Fits spectra and writes the sum of each fitted curve directly into a
+	 * {@link RawMapSet}, reusing the same {@link SolverContext} and scale buffer
+	 * for every spectrum. Not thread-safe, each worker is used by one thread at
+	 * a time.
+	 */
+	private static class MappingWorker {
+		
+		private SolverContext context;
+		private RawMapSet maps;
+		private List<Curve> curves;
+		private int[] mapIndexes;
+		private float[] scales;
+		
+		//reused for every filtered spectrum this worker maps
+		private Spectrum filtered;
+		
+		MappingWorker(SolverContext context, RawMapSet maps) {
+			this.context = context;
+			this.maps = maps;
+			this.curves = context.getCurves();
+			this.scales = new float[curves.size()];
+			this.mapIndexes = new int[curves.size()];
+			for (int i = 0; i < curves.size(); i++) {
+				mapIndexes[i] = maps.getMapIndex(curves.get(i).getTransitionSeries());
+			}
+		}
+		
+		ReadOnlySpectrum filter(FilterSet filters, ReadOnlySpectrum data, DataSet dataset) {
+			if (filtered == null || filtered.size() != data.size()) {
+				filtered = new ISpectrum(data.size());
+			}
+			filters.applyFiltersUnsynchronized(data, filtered, dataset);
+			return filtered;
+		}
+		
+		void map(ReadOnlySpectrum data, int index) {
+			Arrays.fill(scales, 0f);
+			context.solve(data, scales);
+			for (int i = 0; i < scales.length; i++) {
+				if (mapIndexes[i] == -1) continue;
+				maps.putIntensityInMapAtPoint(curves.get(i).scaleSum(scales[i]), mapIndexes[i], index);
+			}
+		}
+		
+	}
+	
 
 	public static ExecutorSet<RawMapSet> quickMapTask(DataController data, int channel) {
 		
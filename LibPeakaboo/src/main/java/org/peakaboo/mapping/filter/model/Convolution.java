@@ -0,0 +1,343 @@
+package org.peakaboo.mapping.filter.model;
+
+import java.util.stream.IntStream;
+
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
+
+/**
+ * A normalized convolution over the data of an {@link AreaMap}. Each point
+ * becomes the weighted sum of its neighbours divided by the sum of the weights
+ * which fell inside the map, so that points along the border aren't darkened
+ * by the missing neighbours outside of it.
+ * <br/><br/>
+ * Kernels which are the outer product of a horizontal and vertical kernel
+ * (eg a box average) are applied as two one-dimensional passes. Since the
+ * in-bounds weights of a separable kernel are also separable, this gives the
+ * same result as the two-dimensional kernel. Maps are processed in bands of
+ * rows in parallel, and the interior of each band is convolved without any
+ * bounds checks, leaving only the edges of the map to the slower checked path.
+ *
+ * @author NAS
+ *
+ */
+public class Convolution {
+
+	//number of rows in each unit of parallel work
+	private static final int BAND_ROWS = 32;
+
+	//when the weights fall inside the map sum to zero, they're treated as this instead
+	private static final float EMPTY_WEIGHT = 0.01f;
+
+	private int reach;
+
+	//the full kernel, as a flattened (2*reach+1)^2 row-major array
+	private float[] kernel;
+
+	//for separable kernels, the horizontal and vertical components, otherwise null
+	private float[] horizontal, vertical;
+
+	private boolean clamp = false;
+
+
+	private Convolution(int reach) {
+		this.reach = reach;
+	}
+
+	/**
+	 * Creates a convolution from a square kernel with an odd number of rows and
+	 * columns. If the kernel turns out to be separable, it will be applied as two
+	 * one-dimensional passes.
+	 */
+	public static Convolution of(float[][] kernel) {
+		int size = kernel.length;
+		if (size % 2 != 1) {
+			throw new IllegalArgumentException("Kernel must have an odd size");
+		}
+		Convolution convolution = new Convolution(size / 2);
+		convolution.kernel = new float[size * size];
+		for (int y = 0; y < size; y++) {
+			if (kernel[y].length != size) {
+				throw new IllegalArgumentException("Kernel must be square");
+			}
+			System.arraycopy(kernel[y], 0, convolution.kernel, y * size, size);
+		}
+		convolution.separate();
+		return convolution;
+	}
+
+	/**
+	 * Creates a convolution from a separable kernel, where the weight of each
+	 * point is horizontal[dx] * vertical[dy]
+	 */
+	public static Convolution separable(float[] horizontal, float[] vertical) {
+		int size = horizontal.length;
+		if (size % 2 != 1 || vertical.length != size) {
+			throw new IllegalArgumentException("Kernel components must have the same odd size");
+		}
+		Convolution convolution = new Convolution(size / 2);
+		convolution.kernel = new float[size * size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				convolution.kernel[y * size + x] = horizontal[x] * vertical[y];
+			}
+		}
+		convolution.horizontal = horizontal.clone();
+		convolution.vertical = vertical.clone();
+		return convolution;
+	}
+
+	/**
+	 * Negative results will be replaced with zero
+	 */
+	public Convolution clamped() {
+		clamp = true;
+		return this;
+	}
+
+	public boolean isSeparable() {
+		return horizontal != null;
+	}
+
+	/**
+	 * Applies this convolution to the given map the given number of times,
+	 * returning a new {@link AreaMap} with the same metadata.
+	 * <br/><br/>
+	 * Each repetition reads only the result of the one before it. The filters
+	 * this replaced read and wrote the same array from the second repetition
+	 * on, so points late in the scan order saw neighbours which had already
+	 * been convolved again. Results for more than one repetition differ
+	 * slightly from theirs as a result, but no longer depend on scan order.
+	 */
+	public AreaMap apply(AreaMap source, int reps) {
+		float[] data = SpectrumCalculations.array(source.getData());
+		int width = source.getSize().x;
+		int height = source.getSize().y;
+		for (int rep = 0; rep < reps; rep++) {
+			data = apply(data, width, height);
+		}
+		return new AreaMap(new ISpectrum(data, false), source);
+	}
+
+	/**
+	 * Applies this convolution to a row-major width x height map, returning the
+	 * result in a new array. The given array is not modified.
+	 */
+	public float[] apply(float[] data, int width, int height) {
+		float[] result = new float[data.length];
+		if (isSeparable()) {
+			float[] temp = new float[data.length];
+			bands(height, (first, last) -> horizontalPass(data, temp, width, first, last));
+			bands(height, (first, last) -> verticalPass(temp, result, width, height, first, last));
+		} else {
+			bands(height, (first, last) -> fullPass(data, result, width, height, first, last));
+		}
+		return result;
+	}
+
+
+	/**
+	 * Runs the given operation over bands of rows in parallel. Each call is given
+	 * the first row (inclusive) and last row (exclusive) of its band.
+	 */
+	public static void bands(int height, BandOperation operation) {
+		int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+		IntStream.range(0, bands).parallel().forEach(band -> {
+			int first = band * BAND_ROWS;
+			operation.apply(first, Math.min(first + BAND_ROWS, height));
+		});
+	}
+
+	@FunctionalInterface
+	public interface BandOperation {
+		void apply(int first, int last);
+	}
+
+
+
+
+
+	///////////////////////////////////
+	// Two-dimensional kernels
+	///////////////////////////////////
+
+	private void fullPass(float[] data, float[] result, int width, int height, int first, int last) {
+		int size = reach * 2 + 1;
+		float total = 0;
+		for (float weight : kernel) {
+			total += weight;
+		}
+
+		for (int y = first; y < last; y++) {
+			boolean interiorRow = y >= reach && y < height - reach;
+			int row = y * width;
+			for (int x = 0; x < width; x++) {
+
+				//the interior of the map, where every tap is in bounds
+				if (interiorRow && x == reach) {
+					int end = width - reach;
+					for (; x < end; x++) {
+						float sum = 0;
+						int k = 0;
+						for (int dy = -reach; dy <= reach; dy++) {
+							int offset = row + dy * width + x - reach;
+							for (int dx = 0; dx < size; dx++) {
+								sum += data[offset + dx] * kernel[k++];
+							}
+						}
+						result[row + x] = finish(sum, total);
+					}
+					if (x >= width) break;
+				}
+
+				//the border of the map
+				float sum = 0;
+				float count = 0;
+				for (int dy = -reach; dy <= reach; dy++) {
+					int py = y + dy;
+					if (py < 0 || py >= height) continue;
+					for (int dx = -reach; dx <= reach; dx++) {
+						int px = x + dx;
+						if (px < 0 || px >= width) continue;
+						float weight = kernel[(dy + reach) * size + dx + reach];
+						sum += data[py * width + px] * weight;
+						count += weight;
+					}
+				}
+				result[row + x] = finish(sum, count);
+
+			}
+		}
+	}
+
+
+
+
+	///////////////////////////////////
+	// Separable kernels
+	///////////////////////////////////
+
+	private void horizontalPass(float[] data, float[] result, int width, int first, int last) {
+		float total = 0;
+		for (float weight : horizontal) {
+			total += weight;
+		}
+		int end = width - reach;
+		for (int y = first; y < last; y++) {
+			int row = y * width;
+			for (int x = 0; x < width; x++) {
+				if (x >= reach && x < end) {
+					float sum = 0;
+					int offset = row + x - reach;
+					for (int k = 0; k < horizontal.length; k++) {
+						sum += data[offset + k] * horizontal[k];
+					}
+					result[row + x] = sum / nonzero(total);
+				} else {
+					float sum = 0;
+					float count = 0;
+					for (int dx = -reach; dx <= reach; dx++) {
+						int px = x + dx;
+						if (px < 0 || px >= width) continue;
+						float weight = horizontal[dx + reach];
+						sum += data[row + px] * weight;
+						count += weight;
+					}
+					result[row + x] = sum / nonzero(count);
+				}
+			}
+		}
+	}
+
+	private void verticalPass(float[] data, float[] result, int width, int height, int first, int last) {
+		float total = 0;
+		for (float weight : vertical) {
+			total += weight;
+		}
+		for (int y = first; y < last; y++) {
+			int row = y * width;
+			if (y >= reach && y < height - reach) {
+				int top = row - reach * width;
+				for (int x = 0; x < width; x++) {
+					float sum = 0;
+					int offset = top + x;
+					for (int k = 0; k < vertical.length; k++) {
+						sum += data[offset] * vertical[k];
+						offset += width;
+					}
+					result[row + x] = finish(sum, total);
+				}
+			} else {
+				for (int x = 0; x < width; x++) {
+					float sum = 0;
+					float count = 0;
+					for (int dy = -reach; dy <= reach; dy++) {
+						int py = y + dy;
+						if (py < 0 || py >= height) continue;
+						float weight = vertical[dy + reach];
+						sum += data[py * width + x] * weight;
+						count += weight;
+					}
+					result[row + x] = finish(sum, count);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the kernel is the outer product of a single row and column, and
+	 * if so, records them as the separable components of this kernel.
+	 */
+	private void separate() {
+		int size = reach * 2 + 1;
+
+		//find the largest entry to use as a pivot
+		int pivot = 0;
+		for (int i = 1; i < kernel.length; i++) {
+			if (Math.abs(kernel[i]) > Math.abs(kernel[pivot])) {
+				pivot = i;
+			}
+		}
+		float pivotValue = kernel[pivot];
+		if (pivotValue == 0) {
+			return;
+		}
+		int py = pivot / size;
+		int px = pivot % size;
+
+		//every entry must satisfy k[y][x] * k[py][px] == k[y][px] * k[py][x]
+		float tolerance = Math.abs(pivotValue * pivotValue) * 1e-6f;
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				float lhs = kernel[y * size + x] * pivotValue;
+				float rhs = kernel[y * size + px] * kernel[py * size + x];
+				if (Math.abs(lhs - rhs) > tolerance) {
+					return;
+				}
+			}
+		}
+
+		horizontal = new float[size];
+		vertical = new float[size];
+		for (int i = 0; i < size; i++) {
+			horizontal[i] = kernel[py * size + i];
+			vertical[i] = kernel[i * size + px] / pivotValue;
+		}
+	}
+
+
+
+
+	private float finish(float sum, float count) {
+		float value = sum / nonzero(count);
+		if (clamp && value < 0) {
+			return 0;
+		}
+		return value;
+	}
+
+	private static float nonzero(float count) {
+		return count == 0 ? EMPTY_WEIGHT : count;
+	}
+
+}
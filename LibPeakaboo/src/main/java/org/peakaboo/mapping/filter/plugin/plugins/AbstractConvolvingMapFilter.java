@@ -3,11 +3,8 @@ package org.peakaboo.mapping.filter.plugin.plugins;
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.IntegerSpinnerStyle;
 import org.peakaboo.framework.autodialog.model.style.editors.RealSpinnerStyle;
-import org.peakaboo.framework.cyclops.GridPerspective;
-import org.peakaboo.framework.cyclops.ISpectrum;
-import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
-import org.peakaboo.framework.cyclops.Spectrum;
 import org.peakaboo.mapping.filter.model.AreaMap;
+import org.peakaboo.mapping.filter.model.Convolution;
 
 public abstract class AbstractConvolvingMapFilter extends AbstractMapFilter {
 
@@ -48,48 +45,7 @@ public abstract class AbstractConvolvingMapFilter extends AbstractMapFilter {
 	
 	@Override
 	public AreaMap filter(AreaMap source) {
-		ReadOnlySpectrum data = source.getData();
-		Spectrum filtered = new ISpectrum(data.size());
-		GridPerspective<Float> grid = new GridPerspective<Float>(source.getSize().x, source.getSize().y, 0f);
-
-		//apply the intenisty value to 
-		float[][] kernel = getKernel(intensity.getValue());
-				
-		for (int rep = 0; rep < reps.getValue(); rep++) {
-		
-			for (int y = 0; y < source.getSize().y; y++) {
-				for (int x = 0; x < source.getSize().x; x++) {
-	
-					float sum = 0f;
-					float count = 0;
-					
-					for (int dy = -reach; dy <= reach; dy++) {
-						int py = y+dy;
-						for (int dx = -reach; dx <= reach; dx++) {
-							int px = x+dx;
-							if (!grid.boundsCheck(px, py)) {
-								continue;
-							}
-							float kval = kernel[reach+dy][reach+dx];
-							sum += grid.get(data, px, py)*kval;
-							count += kval;
-						}
-					}
-					
-					if (count == 0) {
-						count = 0.01f;
-					}
-					float newValue = Math.max(0, sum/count);
-					grid.set(filtered, x, y, newValue);
-					
-				}
-			}
-			
-			data = filtered;
-			
-		}
-		
-		return new AreaMap(filtered, source);
+		return Convolution.of(getKernel(intensity.getValue())).clamped().apply(source, reps.getValue());
 	}
 
 	@Override
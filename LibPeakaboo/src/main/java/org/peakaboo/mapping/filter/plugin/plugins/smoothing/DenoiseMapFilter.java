@@ -2,11 +2,10 @@ package org.peakaboo.mapping.filter.plugin.plugins.smoothing;
 
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.RealSpinnerStyle;
-import org.peakaboo.framework.cyclops.GridPerspective;
 import org.peakaboo.framework.cyclops.ISpectrum;
-import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
-import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
 import org.peakaboo.mapping.filter.model.AreaMap;
+import org.peakaboo.mapping.filter.model.Convolution;
 import org.peakaboo.mapping.filter.plugin.MapFilterDescriptor;
 import org.peakaboo.mapping.filter.plugin.plugins.AbstractMapFilter;
 
@@ -41,35 +40,32 @@ public class DenoiseMapFilter extends AbstractMapFilter {
 	
 	@Override
 	public AreaMap filter(AreaMap source) {
-		ReadOnlySpectrum data = source.getData();
-		Spectrum filtered = new ISpectrum(data);
-		GridPerspective<Float> grid = new GridPerspective<Float>(source.getSize().x, source.getSize().y, 0f);
-		
+		float[] data = SpectrumCalculations.array(source.getData());
+		float[] filtered = data.clone();
+		int width = source.getSize().x;
+		int height = source.getSize().y;
 		float threshold = paramThreshold.getValue();
 		
-		for (int y = 0; y < source.getSize().y; y++) {
-			for (int x = 0; x < source.getSize().x; x++) {
-
-				float sum = 0f;
-				int count = 0;
-				float value = grid.get(data, x, y);
-				
-				int delta[] = {-1, 0, 1};
-				boolean replace = true;
-				
-				average: 
-				for (int dx : delta) {
-					for (int dy : delta) {
-						if (dx == 0 && dy == 0) {
-							continue;
-						}
-						
-						int px = x+dx;
-						int py = y+dy;
-						float pvalue;
-						
-						if (grid.boundsCheck(px, py)) {
-							pvalue = grid.get(data, px, py);
+		Convolution.bands(height, (first, last) -> {
+			for (int y = first; y < last; y++) {
+				//clip the neighbourhood to the map once per row and column instead of per neighbour
+				int miny = Math.max(y-1, 0), maxy = Math.min(y+1, height-1);
+				for (int x = 0; x < width; x++) {
+					int minx = Math.max(x-1, 0), maxx = Math.min(x+1, width-1);
+	
+					float sum = 0f;
+					int count = 0;
+					float value = data[y*width + x];
+					boolean replace = true;
+					
+					average: 
+					for (int px = minx; px <= maxx; px++) {
+						for (int py = miny; py <= maxy; py++) {
+							if (px == x && py == y) {
+								continue;
+							}
+							
+							float pvalue = data[py*width + px];
 							sum += pvalue; 
 							count ++;
 							
@@ -78,23 +74,20 @@ public class DenoiseMapFilter extends AbstractMapFilter {
 								break average;
 							}
 						}
-						
 					}
+	
+					if (replace) {
+						float average = sum/count;
+						if (value < average/threshold || value > average*threshold) {
+							filtered[y*width + x] = average;
+						}	
+					}
+					
 				}
-
-				if (replace) {
-					float average = sum/count;
-					if (value < average/threshold || value > average*threshold) {
-						grid.set(filtered, x, y, average);
-					}	
-				}
-				
-				
 			}
-		}
-
+		});
 		
-		return new AreaMap(filtered, source);
+		return new AreaMap(new ISpectrum(filtered, false), source);
 	}
 
 	@Override
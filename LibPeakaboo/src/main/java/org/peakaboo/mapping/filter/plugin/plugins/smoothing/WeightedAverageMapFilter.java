@@ -2,11 +2,8 @@ package org.peakaboo.mapping.filter.plugin.plugins.smoothing;
 
 import org.peakaboo.framework.autodialog.model.Parameter;
 import org.peakaboo.framework.autodialog.model.style.editors.IntegerSpinnerStyle;
-import org.peakaboo.framework.cyclops.GridPerspective;
-import org.peakaboo.framework.cyclops.ISpectrum;
-import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
-import org.peakaboo.framework.cyclops.Spectrum;
 import org.peakaboo.mapping.filter.model.AreaMap;
+import org.peakaboo.mapping.filter.model.Convolution;
 import org.peakaboo.mapping.filter.plugin.MapFilterDescriptor;
 import org.peakaboo.mapping.filter.plugin.plugins.AbstractMapFilter;
 
@@ -46,64 +43,34 @@ public class WeightedAverageMapFilter extends AbstractMapFilter{
 	
 	@Override
 	public AreaMap filter(AreaMap source) {
-		ReadOnlySpectrum data = source.getData();
-		Spectrum filtered = new ISpectrum(data.size());
-		GridPerspective<Float> grid = new GridPerspective<Float>(source.getSize().x, source.getSize().y, 0f);
-
-		int r = radius.getValue();
-		
-		for (int rep = 0; rep < reps.getValue(); rep++) {
-		
-			for (int y = 0; y < source.getSize().y; y++) {
-				for (int x = 0; x < source.getSize().x; x++) {
-					
-					float sum = 0f;
-					float weights = 0f;
-					
-					for (int dy = -r; dy <= +r; dy++) {
-						int sy = y+dy;
-						for (int dx = -r; dx <= +r; dx++) {
-							int sx = x+dx;
-														
-							//don't include oob points
-							if (!grid.boundsCheck(sx, sy)) {
-								continue;
-							}
-							
-							// do a fast distance check to avoid unneeded sqrt calls
-							// this rough distance should never be less than the pythagorean distance,
-							// although when x or y = 0, it will be equal.
-							int roughdist = Math.abs(dx) + Math.abs(dy);
-							if (roughdist > r+1f) { continue; }
-							
-							
-							//calculate weight for this point and do a proper distance check
-							double dist = Math.sqrt(dx*dx+dy*dy);
-							float weight = (float) (r+1f - dist);
-							if (weight < 0) { continue; }
-							
-							//normalize and square the weight to give extra weight to the central points
-							float maxweight = r+1f;
-							weight = (weight/maxweight);
-							weight *= weight;
-							
-							//add to the sum
-							sum += grid.get(data, sx, sy) * weight;
-							weights += weight;
-						}
-					}
-					
-					grid.set(filtered, x, y, sum/weights);
-					
-				}
+		return Convolution.of(getKernel(radius.getValue())).apply(source, reps.getValue());
+	}
+	
+	private static float[][] getKernel(int r) {
+		float[][] kernel = new float[r*2+1][r*2+1];
+		for (int dy = -r; dy <= +r; dy++) {
+			for (int dx = -r; dx <= +r; dx++) {
+				
+				// do a fast distance check to avoid unneeded sqrt calls
+				// this rough distance should never be less than the pythagorean distance,
+				// although when x or y = 0, it will be equal.
+				int roughdist = Math.abs(dx) + Math.abs(dy);
+				if (roughdist > r+1f) { continue; }
+				
+				//calculate weight for this point and do a proper distance check
+				double dist = Math.sqrt(dx*dx+dy*dy);
+				float weight = (float) (r+1f - dist);
+				if (weight < 0) { continue; }
+				
+				//normalize and square the weight to give extra weight to the central points
+				float maxweight = r+1f;
+				weight = (weight/maxweight);
+				weight *= weight;
+				
+				kernel[r+dy][r+dx] = weight;
 			}
-			
-			data = filtered;
-			
 		}
-
-		
-		return new AreaMap(filtered, source);
+		return kernel;
 	}
 
 	@Override
@@ -60,5 +60,13 @@ public class RawMap implements Cloneable {
 	void setData(int index, float intensity) {
 		data.set(index, intensity);
 	}
+	
+	float getData(int index) {
+		return data.get(index);
+	}
+	
+	Spectrum getData() {
+		return data;
+	}
 
 }
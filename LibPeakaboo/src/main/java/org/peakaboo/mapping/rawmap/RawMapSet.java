@@ -4,6 +4,7 @@ package org.peakaboo.mapping.rawmap;
 import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Stream;
@@ -51,6 +52,35 @@ public class RawMapSet implements Cloneable, Iterable<RawMap> {
 
 	}
 	
+	/**
+	 * Create a new RawMapSet for the given {@link ITransitionSeries}, where the
+	 * maps for any {@link ITransitionSeries} in reuse start with a copy of the
+	 * corresponding map in a previous RawMapSet rather than being empty. The maps
+	 * are copied so that later changes to either set don't affect the other.
+	 * 
+	 * @param transitionSeries list of {@link ITransitionSeries} to store {@link RawMap}s for in this {@link RawMapSet}
+	 * @param mapSize the size of the map data in each of the {@link RawMap}s
+	 * @param previous the {@link RawMapSet} to reuse maps from, which must have the same map size
+	 * @param reuse the {@link ITransitionSeries} whose maps should be taken from previous
+	 */
+	public RawMapSet(List<ITransitionSeries> transitionSeries, int mapSize, boolean allPointsValid, RawMapSet previous, Collection<ITransitionSeries> reuse)
+	{
+		maps = new ArrayList<>();
+		for (ITransitionSeries ts : transitionSeries) {
+			RawMap old = null;
+			if (reuse.contains(ts)) {
+				old = previous.stream().filter(m -> m.transitionSeries.equals(ts)).findFirst().orElse(null);
+			}
+			if (old != null) {
+				maps.add(new RawMap(ts, new ISpectrum(old.getData())));
+			} else {
+				maps.add(new RawMap(ts, mapSize));
+			}
+		}
+		this.mapSize = mapSize;
+		this.allPointsValid = allPointsValid;
+	}
+	
 	public RawMapSet(List<RawMap> maps, int mapSize, boolean allPointsValid, boolean flagToMakeSignatureDifferent)
 	{
 		this.maps = maps;
@@ -126,6 +156,17 @@ public class RawMapSet implements Cloneable, Iterable<RawMap> {
 		return null;
 	}
 	
+	/**
+	 * Gets the index of the {@link RawMap} related to the given
+	 * {@link ITransitionSeries}, or -1 if there is no such map
+	 */
+	public int getMapIndex(ITransitionSeries ts) {
+		for (int i = 0; i < maps.size(); i++) {
+			if (maps.get(i).transitionSeries == ts) return i;
+		}
+		return -1;
+	}
+	
 
 	public List<RawMap> getMaps() {
 		return new ArrayList<>(maps);
@@ -160,8 +201,69 @@ public class RawMapSet implements Cloneable, Iterable<RawMap> {
 		m.setData(index, intensity);
 
 	}
+	
+	/**
+	 * Stores an intensity in the map at the given map index, as returned by
+	 * {@link #getMapIndex(ITransitionSeries)}. This avoids looking up the map by
+	 * {@link ITransitionSeries} for every point.
+	 */
+	public void putIntensityInMapAtPoint(float intensity, int mapIndex, int index)
+	{
+		maps.get(mapIndex).setData(index, intensity);
+	}
 
 
+	/**
+	 * Creates a copy of this partially generated map set for previewing. Points
+	 * which haven't been measured yet take the value of the nearest measured
+	 * point on a coarser grid, down to the given stride, so that a map generated
+	 * coarse-to-fine appears at a low resolution first rather than as scattered
+	 * points.
+	 * 
+	 * @param measured which points of the map have been measured so far
+	 * @param width the width of the map
+	 * @param stride the coarsest grid spacing used when generating the map
+	 * @param complete {@link ITransitionSeries} whose maps are already complete, and are copied as-is
+	 */
+	public RawMapSet preview(boolean[] measured, int width, int stride, Collection<ITransitionSeries> complete) {
+		
+		//find the source point for each point in the map once, and reuse it for each map
+		int[] source = new int[mapSize];
+		for (int index = 0; index < mapSize; index++) {
+			source[index] = -1;
+			if (measured[index]) {
+				source[index] = index;
+				continue;
+			}
+			int x = index % width;
+			int y = index / width;
+			for (int s = 2; s <= stride; s *= 2) {
+				int parent = (y - y % s) * width + (x - x % s);
+				if (parent < mapSize && measured[parent]) {
+					source[index] = parent;
+					break;
+				}
+			}
+		}
+		
+		List<RawMap> previews = new ArrayList<>();
+		for (RawMap map : maps) {
+			if (complete.contains(map.transitionSeries)) {
+				previews.add(map.clone());
+				continue;
+			}
+			Spectrum data = new ISpectrum(mapSize, 0.0f);
+			for (int index = 0; index < mapSize; index++) {
+				if (source[index] != -1) {
+					data.set(index, map.getData(source[index]));
+				}
+			}
+			previews.add(new RawMap(map.transitionSeries, data));
+		}
+		return new RawMapSet(previews, mapSize, allPointsValid, true);
+		
+	}
+	
 	public Iterator<RawMap> iterator()
 	{
 		return maps.iterator();
@@ -0,0 +1,241 @@
+package org.peakaboo.mapping.rawmap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+import org.peakaboo.common.PeakabooLog;
+import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.scratch.encoders.primitives.FloatArrayEncoder;
+import org.peakaboo.framework.scratch.encoders.primitives.Primitives;
+
+/**
+ * A persistent, size-bounded cache of generated {@link RawMapSet}s. Entries are
+ * stored as files named by a key which should be derived from everything which
+ * influences the maps (the dataset, filters, fittings, fitter and solver), so
+ * that a matching entry can be used in place of generating the maps again.
+ * <br/><br/>
+ * When the cache grows beyond its maximum size, the least recently used
+ * entries are removed. The cache is disabled until {@link #init(File)} is
+ * called.
+ *
+ * @author NAS
+ *
+ */
+public class RawMapSetCache {
+
+	private static final int MAGIC = 0x50424D43; //PBMC
+	private static final int VERSION = 1;
+	private static final String EXTENSION = ".maps";
+	private static final long DEFAULT_MAX_SIZE = 1024L * 1024L * 1024L;
+
+	//written under the class lock by init, read without it
+	private static volatile File directory;
+	private static volatile long maxSize;
+	private static volatile ExecutorService writer;
+
+	private RawMapSetCache() {
+		//Not Constructable
+	}
+
+	public synchronized static void init(File directory) {
+		init(directory, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Enables the cache, storing entries in the given directory
+	 * @param directory the directory to store cached maps in
+	 * @param maxSize the maximum total size of all cached maps, in bytes
+	 */
+	public synchronized static void init(File directory, long maxSize) {
+		directory.mkdirs();
+
+		//remove any entries which were left half-written
+		File[] partials = directory.listFiles((dir, name) -> name.endsWith(".tmp"));
+		if (partials != null) {
+			for (File partial : partials) {
+				partial.delete();
+			}
+		}
+
+		RawMapSetCache.maxSize = maxSize;
+		if (writer == null) {
+			writer = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "Map Cache Writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		//set last, since it marks the cache as enabled
+		RawMapSetCache.directory = directory;
+	}
+
+	public static boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Derives a cache key from a description of everything which influences
+	 * the generated maps.
+	 */
+	public static String key(String description) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest) {
+				sb.append(String.format("%02x", b));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			//every java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reports if there is an entry for the given key. This is a quick check,
+	 * and does not guarantee that the entry can be read.
+	 */
+	public static boolean contains(String key) {
+		return isEnabled() && file(key).exists();
+	}
+
+	/**
+	 * Reads the entry for the given key. The maps are returned in the order of
+	 * the given {@link ITransitionSeries}, which must be the same series the
+	 * entry was stored with.
+	 */
+	public static Optional<RawMapSet> get(String key, List<ITransitionSeries> transitionSeries) {
+		if (!contains(key)) {
+			return Optional.empty();
+		}
+		File file = file(key);
+		FloatArrayEncoder encoder = Primitives.floatsLZ4();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return Optional.empty();
+			}
+			int mapSize = in.readInt();
+			boolean allPointsValid = in.readBoolean();
+			int mapCount = in.readInt();
+
+			Map<String, float[]> entries = new HashMap<>();
+			for (int i = 0; i < mapCount; i++) {
+				String identifier = in.readUTF();
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				entries.put(identifier, encoder.decode(bytes));
+			}
+
+			List<RawMap> maps = new ArrayList<>();
+			for (ITransitionSeries ts : transitionSeries) {
+				float[] data = entries.get(ts.toIdentifierString());
+				if (data == null || data.length != mapSize) {
+					return Optional.empty();
+				}
+				maps.add(new RawMap(ts, new ISpectrum(data, false)));
+			}
+
+			//mark this entry as recently used
+			file.setLastModified(System.currentTimeMillis());
+			return Optional.of(new RawMapSet(maps, mapSize, allPointsValid, true));
+
+		} catch (IOException | RuntimeException e) {
+			PeakabooLog.get().log(Level.WARNING, "Failed to read cached maps", e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Stores the given maps under the given key. This happens in the
+	 * background, and does nothing if the cache has not been initialized.
+	 */
+	public static void put(String key, RawMapSet maps) {
+		if (!isEnabled()) {
+			return;
+		}
+		writer.submit(() -> {
+			try {
+				write(key, maps);
+				evict(file(key));
+			} catch (IOException | RuntimeException e) {
+				PeakabooLog.get().log(Level.WARNING, "Failed to write cached maps", e);
+			}
+		});
+	}
+
+	private static void write(String key, RawMapSet maps) throws IOException {
+		File temp = new File(directory, key + ".tmp");
+		FloatArrayEncoder encoder = Primitives.floatsLZ4();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(maps.size());
+			out.writeBoolean(maps.isReplottable());
+			out.writeInt(maps.mapCount());
+			for (RawMap map : maps) {
+				out.writeUTF(map.transitionSeries.toIdentifierString());
+				Spectrum data = map.getData();
+				byte[] bytes = encoder.encode(data.backingArray(), data.size());
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+		Files.move(temp.toPath(), file(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache is within its
+	 * maximum size. The given entry is kept regardless.
+	 */
+	private static void evict(File keep) {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (files == null) {
+			return;
+		}
+		long total = 0;
+		for (File file : files) {
+			total += file.length();
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files) {
+			if (total <= maxSize) {
+				break;
+			}
+			if (file.equals(keep)) {
+				continue;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+			}
+		}
+	}
+
+	private static File file(String key) {
+		return new File(directory, key + EXTENSION);
+	}
+
+}
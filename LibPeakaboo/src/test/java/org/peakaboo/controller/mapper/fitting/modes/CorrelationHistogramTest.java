@@ -0,0 +1,66 @@
+package org.peakaboo.controller.mapper.fitting.modes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorrelationHistogramTest {
+
+	@Test
+	public void select() {
+		Random random = new Random(1);
+		for (int length : new int[] {1, 2, 7, 1000, 4321}) {
+			float[] values = new float[length];
+			for (int i = 0; i < length; i++) {
+				//plenty of repeated values
+				values[i] = random.nextInt(50);
+			}
+			float[] sorted = values.clone();
+			Arrays.sort(sorted);
+			for (int k : new int[] {0, length / 2, (int)(length * 0.999f), length - 1}) {
+				Assert.assertEquals(sorted[k], CorrelationHistogram.select(values.clone(), k), 0f);
+			}
+		}
+	}
+
+	@Test
+	public void bins() {
+		Random random = new Random(2);
+		int size = 10000;
+		int bins = 20;
+		float[] x = new float[size];
+		float[] y = new float[size];
+		for (int i = 0; i < size; i++) {
+			x[i] = random.nextFloat() * 100f;
+			y[i] = x[i] * 0.5f + random.nextFloat() * 10f;
+		}
+		CorrelationHistogram histogram = new CorrelationHistogram(x, y, bins, true);
+
+		float[] sortedX = x.clone();
+		Arrays.sort(sortedX);
+		Assert.assertEquals(sortedX[(int)(size * 0.999f)], histogram.getXMax(), 0f);
+		Assert.assertTrue(histogram.matches(x.clone(), y.clone(), bins, true));
+		Assert.assertFalse(histogram.matches(x, y, bins + 1, true));
+
+		//every pixel listed in a bin should be counted in that bin, and land in it
+		List<Integer> all = new ArrayList<>();
+		float total = 0;
+		for (int bin = 0; bin < bins * bins; bin++) {
+			List<Integer> pixels = histogram.pixelsInBins(Arrays.asList(bin));
+			Assert.assertEquals(histogram.getCounts()[bin], pixels.size(), 0f);
+			total += histogram.getCounts()[bin];
+			for (int pixel : pixels) {
+				int xbin = Math.min(bins - 1, (int)(x[pixel] / histogram.getXMax() * bins));
+				int ybin = Math.min(bins - 1, (int)(y[pixel] / histogram.getYMax() * bins));
+				Assert.assertEquals(bin, ybin * bins + xbin);
+			}
+			all.add(bin);
+		}
+		Assert.assertEquals(total, histogram.pixelsInBins(all).size(), 0f);
+	}
+
+}
@@ -0,0 +1,43 @@
+package org.peakaboo.curvefit.curve.fitting;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.curvefit.peak.table.Element;
+import org.peakaboo.curvefit.peak.table.PeakTable;
+import org.peakaboo.curvefit.peak.table.XrayLibPeakTable;
+import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
+import org.peakaboo.curvefit.peak.transition.TransitionShell;
+
+public class CurveCacheTest {
+
+	@Test
+	public void shared() {
+		PeakTable table = new XrayLibPeakTable();
+		ITransitionSeries fe = table.get(Element.Fe, TransitionShell.K);
+		CurveCache.clear();
+		CurveCache.resetStatistics();
+		
+		FittingSet first = new FittingSet();
+		first.getFittingParameters().setCalibration(0f, 20.48f, 2048);
+		first.addTransitionSeries(fe);
+		Curve original = first.getCurves().get(0);
+		Assert.assertEquals(1, CurveCache.getMisses());
+		
+		//an identical curve in another fitting set should come from the cache
+		FittingSet second = new FittingSet(first);
+		Curve copy = second.getCurves().get(0);
+		Assert.assertEquals(1, CurveCache.getHits());
+		Assert.assertSame(original.get(), copy.get());
+		Assert.assertSame(fe, copy.getTransitionSeries());
+		
+		//but a different calibration should not
+		FittingSet third = new FittingSet();
+		third.getFittingParameters().setCalibration(0f, 20.48f, 1024);
+		third.addTransitionSeries(fe);
+		Curve other = third.getCurves().get(0);
+		Assert.assertEquals(2, CurveCache.getMisses());
+		Assert.assertEquals(1024, other.get().size());
+		Assert.assertEquals(2, CurveCache.getCount());
+	}
+	
+}
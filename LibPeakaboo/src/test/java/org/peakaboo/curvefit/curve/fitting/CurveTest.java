@@ -0,0 +1,82 @@
+package org.peakaboo.curvefit.curve.fitting;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.curvefit.peak.table.Element;
+import org.peakaboo.curvefit.peak.table.PeakTable;
+import org.peakaboo.curvefit.peak.table.XrayLibPeakTable;
+import org.peakaboo.curvefit.peak.transition.TransitionShell;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+
+public class CurveTest {
+
+	private static final int CHANNELS = 2048;
+
+	/**
+	 * Subtracting or adding a curve through its support window should match
+	 * using the whole curve inside the window, even for a large fit over a
+	 * low-intensity background, and the tails left outside of the window should
+	 * be negligible
+	 */
+	@Test
+	public void support() {
+		FittingSet fittings = fittings();
+
+		Random random = new Random(1);
+		Spectrum background = new ISpectrum(CHANNELS);
+		for (int i = 0; i < background.size(); i++) {
+			background.set(i, random.nextFloat() * 50f);
+		}
+
+		float scale = 1e7f;
+		float tolerance = scale / (1 << 24) * 1.01f;
+		for (Curve curve : fittings.getCurves()) {
+			Assert.assertTrue(curve.getSupport().length > 0);
+			int start = curve.getSupportStart();
+			int stop = start + curve.getSupport().length;
+
+			Spectrum subtracted = new ISpectrum(background);
+			curve.subtractScaledFrom(scale, subtracted);
+			Spectrum added = new ISpectrum(background);
+			curve.addScaledTo(scale, added);
+
+			for (int i = 0; i < background.size(); i++) {
+				float full = curve.normalizedCurve.get(i) * scale;
+				if (i >= start && i < stop) {
+					Assert.assertEquals(Math.max(0, background.get(i) - full), subtracted.get(i), tolerance);
+					Assert.assertEquals(background.get(i) + full, added.get(i), tolerance + Math.ulp(background.get(i) + full));
+					Assert.assertEquals(curve.normalizedCurve.get(i), curve.getNormalized(i), 1f / (1 << 24));
+				} else {
+					Assert.assertEquals(background.get(i), subtracted.get(i), 0f);
+					Assert.assertEquals(background.get(i), added.get(i), 0f);
+					Assert.assertTrue(curve.normalizedCurve.get(i) < 1e-3f);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The default pseudo-Voigt has long Lorentzian tails, but its support window
+	 * should still leave out a good part of the spectrum, even for a series with
+	 * lines spread over several keV
+	 */
+	@Test
+	public void bounded() {
+		for (Curve curve : fittings().getCurves()) {
+			Assert.assertTrue(curve.getSupport().length < CHANNELS * 3 / 4);
+		}
+	}
+
+	private static FittingSet fittings() {
+		PeakTable table = new XrayLibPeakTable();
+		FittingSet fittings = new FittingSet();
+		fittings.getFittingParameters().setCalibration(0f, 20.48f, CHANNELS);
+		fittings.addTransitionSeries(table.get(Element.Fe, TransitionShell.K));
+		fittings.addTransitionSeries(table.get(Element.Au, TransitionShell.L));
+		return fittings;
+	}
+
+}
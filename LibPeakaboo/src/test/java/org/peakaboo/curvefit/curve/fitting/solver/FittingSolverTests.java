@@ -1,6 +1,24 @@
 package org.peakaboo.curvefit.curve.fitting.solver;
 
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
 import org.junit.Test;
+import org.peakaboo.curvefit.curve.fitting.Curve;
+import org.peakaboo.curvefit.curve.fitting.FittingResult;
+import org.peakaboo.curvefit.curve.fitting.FittingResultSet;
+import org.peakaboo.curvefit.curve.fitting.FittingSet;
+import org.peakaboo.curvefit.curve.fitting.fitter.CurveFitter;
+import org.peakaboo.curvefit.curve.fitting.fitter.OptimizingCurveFitter;
+import org.peakaboo.curvefit.curve.fitting.fitter.UnderCurveFitter;
+import org.peakaboo.curvefit.peak.table.Element;
+import org.peakaboo.curvefit.peak.table.PeakTable;
+import org.peakaboo.curvefit.peak.table.XrayLibPeakTable;
+import org.peakaboo.curvefit.peak.transition.TransitionShell;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.cyclops.SpectrumCalculations;
 
 public class FittingSolverTests {
 
@@ -13,4 +31,88 @@ public class FittingSolverTests {
 		
 	}
 	
+	private FittingSet fittings() {
+		PeakTable table = new XrayLibPeakTable();
+		FittingSet fittings = new FittingSet();
+		fittings.getFittingParameters().setCalibration(0f, 20.48f, 2048);
+		fittings.addTransitionSeries(table.get(Element.Fe, TransitionShell.K));
+		fittings.addTransitionSeries(table.get(Element.Ca, TransitionShell.K));
+		fittings.addTransitionSeries(table.get(Element.Zn, TransitionShell.K));
+		return fittings;
+	}
+	
+	private Spectrum data(FittingSet fittings, float... scales) {
+		Spectrum data = new ISpectrum(2048);
+		List<Curve> curves = fittings.getCurves();
+		for (int i = 0; i < curves.size(); i++) {
+			SpectrumCalculations.addLists_inplace(data, curves.get(i).scale(scales[i]));
+		}
+		return data;
+	}
+	
+	/**
+	 * A SolverContext should report the same scales as a full solve, and should
+	 * give the same answer when reused for another spectrum
+	 */
+	@Test
+	public void context() {
+		FittingSet fittings = fittings();
+		Spectrum first = data(fittings, 1000f, 300f, 50f);
+		Spectrum second = data(fittings, 20f, 800f, 400f);
+		
+		List<FittingSolver> solvers = Arrays.asList(new GreedyFittingSolver(), new OptimizingFittingSolver(), new MultisamplingOptimizingFittingSolver(), new NNLSFittingSolver());
+		List<CurveFitter> fitters = Arrays.asList(new UnderCurveFitter(), new OptimizingCurveFitter());
+		for (FittingSolver solver : solvers) {
+			for (CurveFitter fitter : fitters) {
+				SolverContext context = solver.context(fittings, fitter);
+				float[] scales = new float[context.getCurves().size()];
+				for (Spectrum data : Arrays.asList(first, second)) {
+					FittingResultSet results = solver.solve(data, fittings, fitter);
+					context.solve(data, scales);
+					for (FittingResult result : results.getFits()) {
+						int index = context.getCurves().indexOf(result.getCurve());
+						Assert.assertEquals(solver + "/" + fitter, result.getCurveScale(), scales[index], 0.0001f * Math.max(1f, result.getCurveScale()));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void optimizing() {
+		FittingSet fittings = fittings();
+		Spectrum data = data(fittings, 1000f, 300f, 50f);
+		SolverContext context = new OptimizingFittingSolver().context(fittings, new OptimizingCurveFitter());
+		float[] scales = new float[3];
+		context.solve(data, scales);
+		float[] expected = {1000f, 300f, 50f};
+		for (int i = 0; i < 3; i++) {
+			int index = context.getCurves().indexOf(fittings.getCurves().get(i));
+			Assert.assertEquals(expected[i], scales[index], expected[i] * 0.05f);
+		}
+	}
+	
+	/**
+	 * NNLS should recover the exact scales of noise-free data, and shouldn't
+	 * assign a negative scale to a curve which isn't present
+	 */
+	@Test
+	public void nnls() {
+		FittingSet fittings = fittings();
+		Spectrum data = data(fittings, 1000f, 300f, 0f);
+		
+		//pull the data down under where the absent curve would be
+		Curve absent = fittings.getCurves().get(2);
+		for (int channel : absent.getIntenseChannels()) {
+			data.set(channel, data.get(channel) - absent.get().get(channel) * 20f);
+		}
+		
+		SolverContext context = new NNLSFittingSolver().context(fittings, null);
+		float[] scales = new float[3];
+		context.solve(data, scales);
+		Assert.assertEquals(1000f, scales[0], 1f);
+		Assert.assertEquals(300f, scales[1], 1f);
+		Assert.assertEquals(0f, scales[2], 0f);
+	}
+	
 }
@@ -0,0 +1,156 @@
+package org.peakaboo.curvefit.peak.fitting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.curvefit.curve.fitting.FittingParameters;
+import org.peakaboo.curvefit.curve.fitting.FittingSet;
+import org.peakaboo.curvefit.peak.fitting.functions.ConvolvingVoigtFittingFunction;
+import org.peakaboo.curvefit.peak.fitting.functions.GaussianFittingFunction;
+import org.peakaboo.curvefit.peak.fitting.functions.LorentzFittingFunction;
+import org.peakaboo.curvefit.peak.transition.Transition;
+import org.peakaboo.curvefit.peak.transition.TransitionShell;
+
+public class ConvolvingVoigtFittingFunctionTest {
+
+	/**
+	 * The tabulated profiles should agree with the direct convolution they
+	 * replaced. The direct convolution samples the 10eV-wide lorentzian every
+	 * 2eV, which overestimates narrow peaks by over ten percent, so the 
+	 * tolerance here is loose.
+	 */
+	@Test
+	public void matchesConvolution() {
+		for (FittingContext context : contexts()) {
+			Reference reference = new Reference(context);
+			FittingFunction tabulated = tabulated(context);
+			float peak = context.getEnergy();
+			float max = reference.forEnergyAbsolute(peak);
+			for (float energy = peak - 2f; energy <= peak + 2f; energy += 0.005f) {
+				float expected = reference.forEnergyAbsolute(energy);
+				float actual = tabulated.forEnergyAbsolute(energy);
+				Assert.assertEquals("at " + energy + " for peak " + peak, expected, actual, max * 0.15f);
+			}
+		}
+	}
+	
+	/**
+	 * Against a fine double precision convolution, the tabulated profiles should
+	 * be very close.
+	 */
+	@Test
+	public void accurate() {
+		for (FittingContext context : contexts()) {
+			FittingFunction tabulated = tabulated(context);
+			float peak = context.getEnergy();
+			double sigma = context.getFittingParameters().getFWHM(peak) / 2.35482;
+			double max = convolve(0, sigma, 0.005);
+			for (float energy = peak - 2f; energy <= peak + 2f; energy += 0.05f) {
+				sigma = context.getFittingParameters().getFWHM(energy) / 2.35482;
+				double expected = convolve(energy - peak, sigma, 0.005);
+				float actual = tabulated.forEnergyAbsolute(energy);
+				Assert.assertEquals("at " + energy + " for peak " + peak, expected, actual, max * 0.002);
+			}
+		}
+	}
+	
+	private static List<FittingContext> contexts() {
+		List<FittingContext> contexts = new ArrayList<>();
+		for (float fwhmBase : new float[] {0.08f, 0.16f, 0.3f}) {
+			FittingParameters parameters = new FittingSet().getFittingParameters();
+			parameters.setCalibration(0f, 20.48f, 2048);
+			parameters.setFWMHBase(fwhmBase);
+			for (float peak : new float[] {1.5f, 6.4f, 15.7f}) {
+				Transition transition = new Transition(peak, 1f, "Test");
+				contexts.add(new FittingContext(parameters, transition, TransitionShell.K));
+			}
+		}
+		return contexts;
+	}
+	
+	private static FittingFunction tabulated(FittingContext context) {
+		FittingFunction function = new ConvolvingVoigtFittingFunction();
+		function.initialize(context);
+		return function;
+	}
+	
+	/**
+	 * Integrates a normalized gaussian against a lorentzian out to 10 sigma
+	 */
+	private static double convolve(double x, double sigma, double gamma) {
+		double step = gamma / 200;
+		double sum = 0;
+		for (double t = -10 * sigma; t <= 10 * sigma; t += step) {
+			double gaussian = Math.exp(-t * t / (2 * sigma * sigma)) / (sigma * Math.sqrt(2 * Math.PI));
+			double d = x - t;
+			double lorentz = gamma / (Math.PI * (d * d + gamma * gamma));
+			sum += gaussian * lorentz * step;
+		}
+		return sum;
+	}
+
+	@Test
+	public void normalized() {
+		//the profile should integrate to one for narrow and broad lorentzians
+		for (float gamma : new float[] {0.0005f, 0.005f, 0.05f, 5f}) {
+			double sum = 0;
+			float step = 0.001f;
+			for (float x = -20f; x <= 20f; x += step) {
+				sum += VoigtProfile.value(x, 0.07f, gamma) * step;
+			}
+			//a lorentzian has long tails, so some of the area lies beyond the range summed
+			double tails = 1 - 2 / Math.PI * Math.atan(20 / gamma);
+			Assert.assertEquals(1.0 - tails, sum, 0.002);
+		}
+	}
+
+
+	/**
+	 * The direct numerical convolution which the tabulated profiles replaced
+	 */
+	private static class Reference {
+
+		private FittingContext context;
+		private LorentzFittingFunction signal;
+
+		Reference(FittingContext context) {
+			this.context = context;
+			signal = new LorentzFittingFunction();
+			signal.initialize(new FittingContext(context) {
+				@Override
+				public float getFWHM() {
+					return 0.010f;
+				}
+			});
+		}
+
+		float forEnergyAbsolute(float energy) {
+			if(signal.forEnergyAbsolute(energy) < 0.0001) {
+				return 0;
+			}
+			Transition fake = new Transition(energy, 1f, "Fake Transition for Voigt Fitting Function");
+			FittingContext copy = new FittingContext(context.getFittingParameters(), fake, context.getTransitionSeriesType());
+			FittingFunction kernel = new GaussianFittingFunction();
+			kernel.initialize(copy);
+
+			float max = kernel.forEnergyAbsolute(energy);
+			float deltaEnergy = 0f;
+			float sum = 0f;
+			float kernelValue, signalValue;
+			float normalizer = 0;
+			while (true) {
+				kernelValue = kernel.forEnergyAbsolute(energy + deltaEnergy);
+				signalValue = signal.forEnergyAbsolute(energy + deltaEnergy) + signal.forEnergyAbsolute(energy - deltaEnergy);
+				if (kernelValue < 0.001f * max && kernelValue < 0.1f && signalValue < 0.2f) break;
+				sum += kernelValue * signalValue;
+				normalizer += kernelValue + kernelValue;
+				deltaEnergy += 0.002;
+			}
+			return normalizer == 0 ? 0 : sum / normalizer;
+		}
+
+	}
+
+}
@@ -0,0 +1,153 @@
+package org.peakaboo.datasink.model.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.datasink.model.components.interaction.SimpleInteraction;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.SigDigits;
+import org.peakaboo.framework.cyclops.Spectrum;
+import org.peakaboo.framework.plural.streams.ExportPipeline;
+
+public class ExportFormatTest {
+
+	/**
+	 * Values written by the CSVWriter should look exactly like the strings the
+	 * exports used to build
+	 */
+	@Test
+	public void csv() throws IOException {
+		Random random = new Random(1);
+		List<Float> values = new ArrayList<>();
+		float[] special = {0f, -0f, 1f, -1f, 0.005f, 0.015f, -0.004f, 2.675f, 9999999f, 1e7f, 123456789f, 1e-5f, Float.NaN, Float.POSITIVE_INFINITY, Float.MIN_VALUE};
+		for (float f : special) values.add(f);
+		for (int i = 0; i < 5000; i++) {
+			values.add((float) random.nextInt(100000));
+			values.add(random.nextFloat() * 1000f - 500f);
+			values.add(Math.round(random.nextFloat() * 100000f) / 1000f);
+			values.add(Float.intBitsToFloat(random.nextInt()));
+		}
+
+		ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		ByteArrayOutputStream rounded = new ByteArrayOutputStream();
+		CSVWriter plainWriter = new CSVWriter(plain);
+		CSVWriter roundedWriter = new CSVWriter(rounded);
+		StringBuilder plainExpected = new StringBuilder();
+		StringBuilder roundedExpected = new StringBuilder();
+		for (int i = 0; i < values.size(); i++) {
+			float value = values.get(i);
+			if (i != 0) {
+				plainExpected.append(", ");
+				roundedExpected.append(", ");
+			}
+			plainExpected.append(Float.toString(value));
+			roundedExpected.append(SigDigits.roundFloatTo(value, 2));
+			plainWriter.value(value);
+			roundedWriter.value(value, 2);
+		}
+		plainWriter.endRow().close();
+		roundedWriter.endRow().close();
+
+		Assert.assertEquals(plainExpected.append("\n").toString(), new String(plain.toByteArray(), StandardCharsets.UTF_8));
+		Assert.assertEquals(roundedExpected.append("\n").toString(), new String(rounded.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Records written in parallel chunks to a stream or a file should read back
+	 * in order
+	 */
+	@Test
+	public void float32() throws IOException {
+		int width = 2048;
+		int count = 600;
+		List<Spectrum> records = new ArrayList<>();
+		Random random = new Random(2);
+		for (int i = 0; i < count; i++) {
+			Spectrum record = new ISpectrum(width);
+			for (int j = 0; j < width; j++) {
+				record.set(j, random.nextFloat());
+			}
+			records.add(record);
+		}
+
+		SimpleInteraction interaction = new SimpleInteraction();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Assert.assertTrue(Float32Format.write(output, width, count, records::get, interaction));
+		Assert.assertEquals(count, interaction.getScansWritten());
+		Assert.assertEquals(Float32Format.HEADER_SIZE + (long) width * count * Float.BYTES, output.size());
+		Assert.assertEquals(records, Float32Format.read(new ByteArrayInputStream(output.toByteArray())));
+
+		Path file = Files.createTempFile("peakaboo", ".f32");
+		try {
+			Assert.assertTrue(Float32Format.write(file, width, count, records::get, new SimpleInteraction()));
+			Assert.assertArrayEquals(output.toByteArray(), Files.readAllBytes(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Records produced out of order in parallel should be written in order, and
+	 * an abort should stop the export early
+	 */
+	@Test
+	public void pipeline() throws IOException {
+		int count = 1000;
+		IntFunction<Integer> stage = i -> {
+			//later records finish first within each group
+			LockSupport.parkNanos((10 - i % 10) * 10000L);
+			return i;
+		};
+
+		List<Integer> written = new ArrayList<>();
+		SimpleInteraction interaction = new SimpleInteraction();
+		Assert.assertTrue(ExportPipeline.run(count, stage, written::add, interaction::notifyScanWritten, interaction::isAbortedRequested));
+		Assert.assertEquals(count, interaction.getScansWritten());
+		Assert.assertEquals(IntStream.range(0, count).boxed().collect(Collectors.toList()), written);
+
+		written.clear();
+		SimpleInteraction aborting = new SimpleInteraction();
+		aborting.setAbortRequested(true);
+		Assert.assertFalse(ExportPipeline.run(count, stage, written::add, aborting::notifyScanWritten, aborting::isAbortedRequested));
+		Assert.assertTrue(written.size() < count);
+	}
+
+	/**
+	 * A sequential pipeline should only produce records on the writing thread,
+	 * and only as they are needed
+	 */
+	@Test
+	public void sequential() throws IOException {
+		int count = 500;
+		Thread writer = Thread.currentThread();
+		List<Integer> produced = new ArrayList<>();
+		IntFunction<Integer> stage = i -> {
+			Assert.assertSame(writer, Thread.currentThread());
+			produced.add(i);
+			return i;
+		};
+
+		List<Integer> written = new ArrayList<>();
+		SimpleInteraction interaction = new SimpleInteraction();
+		Assert.assertTrue(ExportPipeline.run(count, stage, false, record -> {
+			//nothing is produced ahead of the writer
+			Assert.assertEquals(record.intValue(), produced.size() - 1);
+			written.add(record);
+		}, interaction::notifyScanWritten, interaction::isAbortedRequested));
+		Assert.assertEquals(IntStream.range(0, count).boxed().collect(Collectors.toList()), written);
+	}
+
+}
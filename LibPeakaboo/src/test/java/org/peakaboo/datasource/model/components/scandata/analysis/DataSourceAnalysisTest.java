@@ -0,0 +1,135 @@
+package org.peakaboo.datasource.model.components.scandata.analysis;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.datasource.model.components.scandata.SimpleScanData;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+
+public class DataSourceAnalysisTest {
+
+	private static final int CHANNELS = 64;
+	private static final int SCANS = 500;
+
+	@Test
+	public void parallel() {
+		SimpleScanData data = data();
+		DataSourceAnalysis parallel = DataSourceAnalysis.analyze(data);
+		Analysis sequential = data.getAnalysis();
+
+		Assert.assertEquals(sequential.channelsPerScan(), parallel.channelsPerScan());
+		Assert.assertEquals(sequential.maximumIntensity(), parallel.maximumIntensity(), 0f);
+		for (int i = 0; i < CHANNELS; i++) {
+			Assert.assertEquals(sequential.averagePlot().get(i), parallel.averagePlot().get(i), 0.001f);
+			Assert.assertEquals(sequential.maximumPlot().get(i), parallel.maximumPlot().get(i), 0f);
+			Assert.assertEquals(sequential.variancePlot().get(i), parallel.variancePlot().get(i), 0.01f);
+		}
+	}
+
+	@Test
+	public void statistics() {
+		SimpleScanData data = data();
+		DataSourceAnalysis analysis = new DataSourceAnalysis(true);
+		for (int s = 0; s < SCANS; s++) {
+			analysis.process(data.get(s));
+		}
+		ReadOnlySpectrum median = analysis.percentilePlot(0.5f);
+		//loaded data tracks percentiles as it is read
+		ReadOnlySpectrum loaded = data.getAnalysis().percentilePlot(0.5f);
+		Assert.assertNotNull(loaded);
+		Assert.assertNull(new DataSourceAnalysis().percentilePlot(0.5f));
+		for (int i = 0; i < CHANNELS; i++) {
+			double sum = 0, squares = 0;
+			float[] values = new float[SCANS];
+			for (int s = 0; s < SCANS; s++) {
+				float value = data.get(s).get(i);
+				values[s] = value;
+				sum += value;
+				squares += value * value;
+			}
+			double mean = sum / SCANS;
+			Assert.assertEquals(mean, analysis.averagePlot().get(i), 0.001);
+			Assert.assertEquals(squares / SCANS - mean * mean, analysis.variancePlot().get(i), 0.01);
+			
+			Arrays.sort(values);
+			float actual = values[SCANS / 2];
+			Assert.assertEquals(actual, median.get(i), actual * 0.2f);
+			Assert.assertEquals(median.get(i), loaded.get(i), 0f);
+		}
+	}
+
+	@Test
+	public void mismatched() {
+		SimpleScanData data = data();
+		DataSourceAnalysis plain = new DataSourceAnalysis();
+		plain.process(data.get(0));
+		DataSourceAnalysis tracking = new DataSourceAnalysis(true);
+		tracking.process(data.get(1));
+
+		try {
+			tracking.merge(plain);
+			Assert.fail("Merged an analysis without percentiles");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			plain.merge(tracking);
+			Assert.fail("Merged an analysis with percentiles");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void cached() {
+		SimpleScanData data = data();
+		Analysis analysis = data.getAnalysis();
+		ReadOnlySpectrum average = analysis.averagePlot();
+		Assert.assertSame(average, analysis.averagePlot());
+		Assert.assertSame(analysis.maximumPlot(), analysis.maximumPlot());
+
+		//new data replaces the cached plots, but the old ones are left unchanged
+		float before = average.get(0);
+		ISpectrum spectrum = new ISpectrum(CHANNELS, 100000f);
+		data.add(spectrum);
+		Assert.assertNotSame(average, analysis.averagePlot());
+		Assert.assertEquals(before, average.get(0), 0f);
+		Assert.assertEquals(100000f, analysis.maximumPlot().get(0), 0f);
+	}
+
+	@Test
+	public void lazy() {
+		SimpleScanData data = data();
+		int[] indexes = new int[] {400, 3, 17, 250, 499, 0, 42};
+		LazyAnalysis lazy = new LazyAnalysis(data, indexes, CHANNELS);
+		Assert.assertFalse(lazy.isComplete());
+		lazy.complete();
+		Assert.assertTrue(lazy.isComplete());
+
+		DataSourceAnalysis expected = new DataSourceAnalysis();
+		for (int index : indexes) {
+			expected.process(data.get(index));
+		}
+		for (int i = 0; i < CHANNELS; i++) {
+			Assert.assertEquals(expected.averagePlot().get(i), lazy.averagePlot().get(i), 0.001f);
+			Assert.assertEquals(expected.maximumPlot().get(i), lazy.maximumPlot().get(i), 0f);
+		}
+	}
+
+	private static SimpleScanData data() {
+		Random random = new Random(1);
+		SimpleScanData data = new SimpleScanData("Test");
+		for (int s = 0; s < SCANS; s++) {
+			float[] values = new float[CHANNELS];
+			for (int i = 0; i < CHANNELS; i++) {
+				values[i] = 10f * (i + 1) + random.nextInt(100);
+			}
+			data.add(values);
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,92 @@
+package org.peakaboo.datasource.model.components.scandata.loaderqueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.datasource.model.components.scandata.SimpleScanData;
+import org.peakaboo.datasource.model.components.scandata.analysis.DataSourceAnalysis;
+import org.peakaboo.framework.cyclops.ISpectrum;
+
+public class ParallelLoaderQueueTest {
+
+	private static final int SCANS = 50;
+
+	/**
+	 * Spectra which finish processing in reverse order should still be committed
+	 * in the order they were submitted
+	 */
+	@Test
+	public void order() throws InterruptedException {
+		SimpleScanData data = new SimpleScanData("Test");
+		DataSourceAnalysis analysis = new DataSourceAnalysis();
+		DeferredExecutor executor = new DeferredExecutor();
+		ParallelLoaderQueue queue = new ParallelLoaderQueue(data, analysis, SCANS, executor);
+
+		for (int i = 0; i < SCANS; i++) {
+			queue.submit(new ISpectrum(4, i));
+		}
+		executor.runReversed();
+		queue.finish();
+
+		Assert.assertEquals(SCANS, data.scanCount());
+		for (int i = 0; i < SCANS; i++) {
+			Assert.assertEquals(i, data.get(i).get(0), 0f);
+		}
+		Assert.assertEquals(SCANS - 1, analysis.maximumIntensity(), 0f);
+	}
+
+	/**
+	 * A spectrum which fails to process should fail the load rather than leave a
+	 * gap or a placeholder in the data
+	 */
+	@Test
+	public void failure() throws InterruptedException {
+		SimpleScanData data = new SimpleScanData("Test");
+		DeferredExecutor executor = new DeferredExecutor();
+		ParallelLoaderQueue queue = new ParallelLoaderQueue(data, new DataSourceAnalysis(), SCANS, executor);
+
+		queue.submit(new ISpectrum(4, 1f));
+		queue.submit(new ISpectrum(4, 2f) {
+			@Override
+			public float max() {
+				throw new IllegalStateException("Unreadable");
+			}
+		});
+		queue.submit(new ISpectrum(4, 3f));
+		executor.runReversed();
+
+		try {
+			queue.finish();
+			Assert.fail("Failure was not reported");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	/**
+	 * Holds on to tasks until told to run them, last first
+	 */
+	private static class DeferredExecutor implements Executor {
+
+		private List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runReversed() {
+			Collections.reverse(tasks);
+			for (Runnable task : tasks) {
+				task.run();
+			}
+			tasks.clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.peakaboo.filter.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.dataset.DataSet;
+import org.peakaboo.dataset.EmptyDataSet;
+import org.peakaboo.filter.plugins.background.BruknerBackgroundFilter;
+import org.peakaboo.filter.plugins.mathematical.MultiplicationMathFilter;
+import org.peakaboo.filter.plugins.noise.SavitskyGolayNoiseFilter;
+import org.peakaboo.filter.plugins.noise.WeightedAverageNoiseFilter;
+import org.peakaboo.framework.autodialog.model.Value;
+import org.peakaboo.framework.cyclops.ISpectrum;
+import org.peakaboo.framework.cyclops.ReadOnlySpectrum;
+import org.peakaboo.framework.cyclops.Spectrum;
+
+public class FilterSetTest {
+
+	/**
+	 * Chaining filters through buffers should give the same result as applying
+	 * each filter on its own
+	 */
+	@Test
+	public void buffered() {
+		FilterSet filters = new FilterSet();
+		filters.add(filter(new BruknerBackgroundFilter()));
+		filters.add(filter(new WeightedAverageNoiseFilter()));
+		filters.add(new LegacyFilter());
+		filters.add(filter(new SavitskyGolayNoiseFilter()));
+		filters.add(filter(new MultiplicationMathFilter()));
+
+		DataSet dataset = new EmptyDataSet();
+		ReadOnlySpectrum data = data();
+		ReadOnlySpectrum expected = data;
+		for (Filter f : filters) {
+			expected = f.filter(expected, dataset);
+		}
+
+		Spectrum target = new ISpectrum(data.size());
+		filters.applyFiltersUnsynchronized(data, target, dataset);
+		for (int i = 0; i < data.size(); i++) {
+			Assert.assertEquals(expected.get(i), target.get(i), Math.abs(expected.get(i)) * 1e-5f + 1e-4f);
+		}
+
+		//the input is left alone
+		Assert.assertEquals(data(), data);
+	}
+
+	@Test
+	public void nonFinite() {
+		FilterSet filters = new FilterSet();
+		filters.add(new LegacyFilter());
+		Spectrum data = data();
+		data.set(10, Float.NaN);
+		data.set(20, Float.POSITIVE_INFINITY);
+		ReadOnlySpectrum result = filters.applyFiltersUnsynchronized(data, new EmptyDataSet());
+		Assert.assertEquals(0f, result.get(10), 0f);
+		Assert.assertEquals(0f, result.get(20), 0f);
+		Assert.assertEquals(data.get(30) * 2f, result.get(30), 0f);
+	}
+
+	private static Filter filter(Filter filter) {
+		filter.initialize();
+		return filter;
+	}
+
+	private static Spectrum data() {
+		Random random = new Random(4);
+		Spectrum data = new ISpectrum(1024);
+		for (int i = 0; i < data.size(); i++) {
+			data.set(i, random.nextFloat() * 100f + (float) (1000 * Math.exp(-Math.pow(i - 500, 2) / 200)));
+		}
+		return data;
+	}
+
+	/**
+	 * A filter which only implements the original contract, and so must be adapted
+	 */
+	private static class LegacyFilter implements Filter {
+
+		private boolean enabled = true;
+
+		@Override
+		public ReadOnlySpectrum filter(ReadOnlySpectrum data, DataSet dataset) {
+			Spectrum result = new ISpectrum(data.size());
+			for (int i = 0; i < data.size(); i++) {
+				result.set(i, data.get(i) * 2f);
+			}
+			return result;
+		}
+
+		public boolean isEnabled() { return enabled; }
+		public void setEnabled(boolean enabled) { this.enabled = enabled; }
+		public String getFilterName() { return "Legacy"; }
+		public String getFilterDescription() { return "Doubles the data"; }
+		@SuppressWarnings("removal")
+		public FilterType getFilterType() { return FilterType.MATHEMATICAL; }
+		public List<Value<?>> getParameters() { return new ArrayList<>(); }
+		public void setParameters(List<Value<?>> params) {}
+		public void initialize() {}
+		public boolean canFilterSubset() { return true; }
+
+	}
+
+}
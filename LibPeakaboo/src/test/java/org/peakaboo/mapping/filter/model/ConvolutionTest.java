@@ -0,0 +1,79 @@
+package org.peakaboo.mapping.filter.model;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConvolutionTest {
+
+	private static final int WIDTH = 77;
+	private static final int HEIGHT = 45;
+
+	@Test
+	public void full() {
+		float[][] kernel = {
+			{-1, -1, -1},
+			{-1, 15, -1},
+			{-1, -1, -1},
+		};
+		Convolution convolution = Convolution.of(kernel).clamped();
+		Assert.assertFalse(convolution.isSeparable());
+		compare(reference(data(), kernel, true), convolution.apply(data(), WIDTH, HEIGHT));
+	}
+
+	@Test
+	public void separable() {
+		float[][] kernel = {
+			{1, 2, 3, 2, 1},
+			{2, 4, 6, 4, 2},
+			{1, 2, 3, 2, 1},
+			{2, 4, 6, 4, 2},
+			{1, 2, 3, 2, 1},
+		};
+		Convolution convolution = Convolution.of(kernel);
+		Assert.assertTrue(convolution.isSeparable());
+		compare(reference(data(), kernel, false), convolution.apply(data(), WIDTH, HEIGHT));
+	}
+
+	private static float[] data() {
+		Random random = new Random(1);
+		float[] data = new float[WIDTH * HEIGHT];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = random.nextFloat() * 100f;
+		}
+		return data;
+	}
+
+	/**
+	 * Straightforward bounds-checked normalized convolution
+	 */
+	private static float[] reference(float[] data, float[][] kernel, boolean clamp) {
+		int reach = kernel.length / 2;
+		float[] result = new float[data.length];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				float sum = 0, count = 0;
+				for (int dy = -reach; dy <= reach; dy++) {
+					for (int dx = -reach; dx <= reach; dx++) {
+						int px = x + dx, py = y + dy;
+						if (px < 0 || py < 0 || px >= WIDTH || py >= HEIGHT) continue;
+						sum += data[py * WIDTH + px] * kernel[dy + reach][dx + reach];
+						count += kernel[dy + reach][dx + reach];
+					}
+				}
+				float value = sum / count;
+				result[y * WIDTH + x] = clamp ? Math.max(0, value) : value;
+			}
+		}
+		return result;
+	}
+
+	private static void compare(float[] expected, float[] actual) {
+		Assert.assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], actual[i], Math.abs(expected[i]) * 1e-4f + 1e-4f);
+		}
+	}
+
+}
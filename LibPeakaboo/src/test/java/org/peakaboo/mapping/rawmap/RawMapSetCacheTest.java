@@ -0,0 +1,56 @@
+package org.peakaboo.mapping.rawmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.peakaboo.curvefit.peak.table.Element;
+import org.peakaboo.curvefit.peak.table.PeakTable;
+import org.peakaboo.curvefit.peak.table.XrayLibPeakTable;
+import org.peakaboo.curvefit.peak.transition.ITransitionSeries;
+import org.peakaboo.curvefit.peak.transition.TransitionShell;
+
+public class RawMapSetCacheTest {
+
+	@Test
+	public void roundtrip() throws IOException, InterruptedException {
+		File dir = Files.createTempDirectory("mapcache").toFile();
+		RawMapSetCache.init(dir);
+		
+		PeakTable table = new XrayLibPeakTable();
+		List<ITransitionSeries> series = Arrays.asList(table.get(Element.Fe, TransitionShell.K), table.get(Element.Zn, TransitionShell.K));
+		RawMapSet maps = new RawMapSet(series, 100, true);
+		for (int i = 0; i < 100; i++) {
+			maps.putIntensityInMapAtPoint(i * 1.5f, 0, i);
+			maps.putIntensityInMapAtPoint(100 - i, 1, i);
+		}
+		
+		String key = RawMapSetCache.key("roundtrip");
+		Assert.assertFalse(RawMapSetCache.contains(key));
+		RawMapSetCache.put(key, maps);
+		for (int i = 0; i < 100 && !RawMapSetCache.contains(key); i++) {
+			Thread.sleep(20);
+		}
+		
+		//read back in a different order than stored
+		List<ITransitionSeries> reversed = Arrays.asList(series.get(1), series.get(0));
+		Optional<RawMapSet> cached = RawMapSetCache.get(key, reversed);
+		Assert.assertTrue(cached.isPresent());
+		Assert.assertEquals(100, cached.get().size());
+		Assert.assertTrue(cached.get().getMap(0).transitionSeries == series.get(1));
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(100 - i, cached.get().getMap(0).getData(i), 0f);
+			Assert.assertEquals(i * 1.5f, cached.get().getMap(1).getData(i), 0f);
+		}
+		
+		//a series which wasn't stored is a miss
+		Assert.assertFalse(RawMapSetCache.get(key, Collections.singletonList(table.get(Element.Ca, TransitionShell.K))).isPresent());
+	}
+	
+}
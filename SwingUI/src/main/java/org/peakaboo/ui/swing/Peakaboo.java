@@ -37,6 +37,7 @@ import org.peakaboo.framework.swidget.widgets.layerpanel.LayerDialog;
 import org.peakaboo.framework.swidget.widgets.layerpanel.LayerDialog.MessageType;
 import org.peakaboo.framework.swidget.widgets.layerpanel.LayerPanelConfig;
 import org.peakaboo.mapping.filter.model.MapFilterPluginManager;
+import org.peakaboo.mapping.rawmap.RawMapSetCache;
 import org.peakaboo.ui.swing.environment.DesktopApp;
 import org.peakaboo.ui.swing.plotting.PlotFrame;
 
@@ -215,6 +216,9 @@ public class Peakaboo {
 			DataSourcePluginManager.init(DesktopApp.appDir("Plugins/DataSource"));
 			DataSinkPluginManager.init(DesktopApp.appDir("Plugins/DataSink"));
 			CalibrationPluginManager.init(DesktopApp.appDir("Plugins/CalibrationReference"));
+			
+			//Init map cache
+			RawMapSetCache.init(DesktopApp.appDir("MapCache"));
 
 			try {
 				peakLoader.join();
@@ -21,6 +21,7 @@ import org.peakaboo.curvefit.curve.fitting.fitter.OptimizingCurveFitter;
 import org.peakaboo.curvefit.curve.fitting.fitter.UnderCurveFitter;
 import org.peakaboo.curvefit.curve.fitting.solver.GreedyFittingSolver;
 import org.peakaboo.curvefit.curve.fitting.solver.MultisamplingOptimizingFittingSolver;
+import org.peakaboo.curvefit.curve.fitting.solver.NNLSFittingSolver;
 import org.peakaboo.curvefit.curve.fitting.solver.OptimizingFittingSolver;
 import org.peakaboo.curvefit.peak.detector.DetectorMaterialType;
 import org.peakaboo.curvefit.peak.fitting.functions.ConvolvingVoigtFittingFunction;
@@ -154,7 +155,8 @@ public class AdvancedOptionsPanel extends HeaderLayer {
 				null,
 				new GreedyFittingSolver(),
 				new OptimizingFittingSolver(),
-				new MultisamplingOptimizingFittingSolver()
+				new MultisamplingOptimizingFittingSolver(),
+				new NNLSFittingSolver()
 			);
 		build(panel, solversBox, "Multi-Curve Solver", "The strategy used to determine how overlapping element emission curves coexist.", true);
 		
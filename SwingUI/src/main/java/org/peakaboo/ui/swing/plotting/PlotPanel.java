@@ -141,6 +141,9 @@ public class PlotPanel extends TabbedLayerPanel {
 	
 	private Mutable<SavedMapSession> 	mapSession = new Mutable<>();
 	
+	//minimum time between map previews while generating maps, in milliseconds
+	private static final long MAP_PREVIEW_INTERVAL = 2000;
+	
 	public PlotPanel(TabbedInterface<TabbedLayerPanel> container) {
 		super(container);
 		this.tabs = container;
@@ -603,6 +606,21 @@ public class PlotPanel extends TabbedLayerPanel {
 
 	}
 
+	public void actionExportFilteredData(DataSink sink) {
+		DataSource source = controller.getFilteredDataSource();
+
+		SimpleFileExtension ext = new SimpleFileExtension(sink.getFormatName(), sink.getFormatExtension());
+		SwidgetFilePanels.saveFile(this, "Export Filtered Scan Data", controller.io().getLastFolder(), ext, file -> {
+			if (!file.isPresent()) {
+				return;
+			}
+			controller.io().setLastFolder(file.get().getParentFile());
+			actionExportData(source, sink, file.get());
+			
+		});
+
+	}
+
 	public void actionExportData(DataSource source, DataSink sink, File file) {
 
 		try (OutputStream os = new FileOutputStream(file)) {
@@ -620,8 +638,12 @@ public class PlotPanel extends TabbedLayerPanel {
 
 		if (!controller.data().hasDataSet()) return;
 
-
-		StreamExecutor<RawMapSet> mapTask = controller.getMapTask();
+		//The map window is opened with the first preview, and then updated as the maps improve
+		Mutable<RawDataController> mapData = new Mutable<>();
+		StreamExecutor<RawMapSet> mapTask = controller.getMapTask(
+				preview -> SwingUtilities.invokeLater(() -> showMaps(mapData, preview)), 
+				MAP_PREVIEW_INTERVAL
+			);
 		if (mapTask == null) return;
 
 		TaskMonitorView taskView = new TaskMonitorView(mapTask);
@@ -636,46 +658,16 @@ public class PlotPanel extends TabbedLayerPanel {
 			//hide the task panel since this is either COMPLETED or ABORTED
 			removeLayer(layer);
 			
-			//If this task was aborted instead of completed, exit early
+			//If this task was aborted instead of completed, exit early. Any 
+			//preview which has already been shown is left open
 			if (event == Event.ABORTED) { return; }
 			
 			//If there is no result, exit early
 			if (!mapTask.getResult().isPresent()) { return; }
 			
-			
-			MapperFrame mapperWindow;
+			//Queued behind any pending previews, so that they can't replace the final result
 			RawMapSet results = mapTask.getResult().get();
-			RawDataController mapData = new RawDataController();
-			
-
-			Coord<Integer> dataDimensions = null;
-			Coord<Bounds<Number>> physicalDimensions = null;
-			SISize physicalUnit = null;
-			
-			Optional<PhysicalSize> physical = controller.data().getDataSet().getPhysicalSize();
-			if (physical.isPresent()) {
-				physicalDimensions = physical.get().getPhysicalDimensions();
-				physicalUnit = physical.get().getPhysicalUnit();
-			}
-			
-			if (controller.data().getDataSet().hasGenuineDataSize()) {
-				dataDimensions = controller.data().getDataSet().getDataSize().getDataDimensions();
-			}
-			
-			mapData.setMapData(
-					results,
-					controller.data().getTitle(),
-					controller.data().getDiscards().list(),
-					dataDimensions,
-					physicalDimensions,
-					physicalUnit,
-					controller.calibration().getCalibrationProfile()
-				);
-			
-			
-			mapperWindow = new MapperFrame(getTabbedInterface(), mapData, mapSession, controller);
-
-			mapperWindow.setVisible(true);
+			SwingUtilities.invokeLater(() -> showMaps(mapData, results));
 
 		});
 		
@@ -685,6 +677,48 @@ public class PlotPanel extends TabbedLayerPanel {
 
 
 	}
+	
+	/**
+	 * Shows the given maps, either by opening a new map window, or by updating
+	 * the one already opened for an earlier preview of the same maps
+	 */
+	private void showMaps(Mutable<RawDataController> mapData, RawMapSet results) {
+		
+		boolean opened = mapData.get() != null;
+		if (!opened) {
+			mapData.set(new RawDataController());
+		}
+
+		Coord<Integer> dataDimensions = null;
+		Coord<Bounds<Number>> physicalDimensions = null;
+		SISize physicalUnit = null;
+		
+		Optional<PhysicalSize> physical = controller.data().getDataSet().getPhysicalSize();
+		if (physical.isPresent()) {
+			physicalDimensions = physical.get().getPhysicalDimensions();
+			physicalUnit = physical.get().getPhysicalUnit();
+		}
+		
+		if (controller.data().getDataSet().hasGenuineDataSize()) {
+			dataDimensions = controller.data().getDataSet().getDataSize().getDataDimensions();
+		}
+		
+		mapData.get().setMapData(
+				results,
+				controller.data().getTitle(),
+				controller.data().getDiscards().list(),
+				dataDimensions,
+				physicalDimensions,
+				physicalUnit,
+				controller.calibration().getCalibrationProfile()
+			);
+		
+		if (!opened) {
+			MapperFrame mapperWindow = new MapperFrame(getTabbedInterface(), mapData.get(), mapSession, controller);
+			mapperWindow.setVisible(true);
+		}
+		
+	}
 
 
 	public void actionSaveSession() {
@@ -819,11 +853,24 @@ public class PlotPanel extends TabbedLayerPanel {
 			
 			ExecutorSetViewLayer layer = new ExecutorSetViewLayer(this, execset);
 			
-			execset.addListener(() -> {
-				if (execset.isAborted()) {
-					saveFile.get().delete();
-				}
-			});
+			pushLayer(layer);
+			execset.startWorking();
+			
+			
+		});
+	}
+	
+	public void actionSaveFilteredDataSetBinary() {	
+		SimpleFileExtension binary = new SimpleFileExtension("Float32 Spectra", "f32");
+		SwidgetFilePanels.saveFile(this, "Save Fitted Data to Binary File", controller.io().getLastFolder(), binary, saveFile -> {
+			if (!saveFile.isPresent()) {
+				return;
+			}
+			controller.io().setLastFolder(saveFile.get().getParentFile());
+			
+			ExecutorSet<Object> execset = controller.writeFitleredDataSetToFloat32(saveFile.get());
+			
+			ExecutorSetViewLayer layer = new ExecutorSetViewLayer(this, execset);
 			
 			pushLayer(layer);
 			execset.startWorking();
@@ -20,9 +20,11 @@ public class PlotMenuExport extends JPopupMenu {
 
 	private JMenuItem exportFittingsMenuItem;
 	private JMenuItem exportFilteredDataMenuItem;
+	private JMenuItem exportFilteredDataBinaryMenuItem;
 	private JMenuItem exportFilteredSpectrumMenuItem;
 	private JMenuItem exportArchive;
 	private JMenu exportSinks;
+	private JMenu exportFilteredSinks;
 	private JMenuItem snapshotMenuItem;
 	
 	public PlotMenuExport(PlotPanel plot) {
@@ -38,6 +40,17 @@ public class PlotMenuExport extends JPopupMenu {
 		
 		this.add(exportSinks);
 		
+		exportFilteredSinks = new JMenu("Filtered Data");
+		
+		for (BoltPluginPrototype<? extends DataSinkPlugin> plugin : DataSinkPluginManager.system().getPlugins()) {
+			exportFilteredSinks.add(new FluentMenuItem()
+					.withText(plugin.getName())
+					.withAction(() -> plot.actionExportFilteredData(plugin.create()))
+				);
+		}
+		
+		this.add(exportFilteredSinks);
+		
 
 		
 		snapshotMenuItem = new FluentMenuItem()
@@ -63,6 +76,13 @@ public class PlotMenuExport extends JPopupMenu {
 				.withAction(plot::actionSaveFilteredDataSet);
 		this.add(exportFilteredDataMenuItem);
 		
+		exportFilteredDataBinaryMenuItem = new FluentMenuItem()
+				.withText("Filtered Data Set as Float32")
+				.withTooltip("Saves the filtered dataset to a binary file of 32-bit floats")
+				.withIcon(StockIcon.DOCUMENT_EXPORT)
+				.withAction(plot::actionSaveFilteredDataSetBinary);
+		this.add(exportFilteredDataBinaryMenuItem);
+		
 		exportFittingsMenuItem = new FluentMenuItem()
 				.withText("Fittings as Text")
 				.withTooltip("Saves the current fitting data to a text file")
@@ -84,8 +104,10 @@ public class PlotMenuExport extends JPopupMenu {
 		snapshotMenuItem.setEnabled(hasData);
 		exportFittingsMenuItem.setEnabled(hasData);
 		exportFilteredDataMenuItem.setEnabled(hasData);
+		exportFilteredDataBinaryMenuItem.setEnabled(hasData);
 		exportArchive.setEnabled(hasData);
 		exportSinks.setEnabled(hasData);
+		exportFilteredSinks.setEnabled(hasData);
 	}
 	
 }